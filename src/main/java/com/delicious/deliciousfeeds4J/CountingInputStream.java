@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Counts the bytes read from a response body. Optionally keeps a copy of the first bytes, so an error
+ * response can still be inspected after the body was streamed into the parser.
+ *
+ * @author Patrick Meier
+ */
+final class CountingInputStream extends FilterInputStream {
+
+    private long count;
+
+    private final byte[] prefix;
+
+    private int prefixLength;
+
+    CountingInputStream(InputStream input) {
+        this(input, 0);
+    }
+
+    CountingInputStream(InputStream input, int prefixSize) {
+        super(input);
+        this.prefix = new byte[prefixSize];
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    @Override
+    public int read() throws IOException {
+        final int value = super.read();
+
+        if (value >= 0) {
+            if (prefixLength < prefix.length)
+                prefix[prefixLength++] = (byte) value;
+
+            count++;
+        }
+
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        final int read = super.read(buffer, offset, length);
+
+        if (read > 0) {
+            if (prefixLength < prefix.length) {
+                final int copy = Math.min(read, prefix.length - prefixLength);
+                System.arraycopy(buffer, offset, prefix, prefixLength, copy);
+                prefixLength += copy;
+            }
+
+            count += read;
+        }
+
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        final long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    //Reads on until the prefix is complete, so a failed parse does not cut off the error result
+    void fillPrefix() throws IOException {
+        final byte[] buffer = new byte[512];
+
+        while (prefixLength < prefix.length && read(buffer, 0, Math.min(buffer.length, prefix.length - prefixLength)) >= 0) {
+        }
+    }
+
+    String getPrefix(Charset charset) {
+        return new String(prefix, 0, prefixLength, charset);
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    long getCount() {
+        return count;
+    }
+}
@@ -11,17 +11,27 @@
 package com.delicious.deliciousfeeds4J;
 
 import com.delicious.deliciousfeeds4J.beans.*;
+import com.delicious.deliciousfeeds4J.concurrent.Deadline;
+import com.delicious.deliciousfeeds4J.concurrent.FeedExecutors;
+import com.delicious.deliciousfeeds4J.concurrent.Priority;
+import com.delicious.deliciousfeeds4J.concurrent.HedgePolicy;
+import com.delicious.deliciousfeeds4J.concurrent.RequestLanes;
 import com.delicious.deliciousfeeds4J.exceptions.DeliciousFeedsException;
-import org.apache.commons.lang.StringUtils;
+import com.delicious.deliciousfeeds4J.exceptions.ErrorCode;
+import com.delicious.deliciousfeeds4J.metrics.FeedMetrics;
+import com.delicious.deliciousfeeds4J.partition.LocalPartition;
+import com.delicious.deliciousfeeds4J.ratelimit.RateLimiter;
+import com.delicious.deliciousfeeds4J.url.UrlIdentity;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.Set;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
 
 import static com.delicious.deliciousfeeds4J.DeliciousUtil.*;
-import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
 
 /**
  * DeliciousFeeds is a class to access the Feeds-API from <a href="http://delicious.com">Delicious</a>. It uses the current
@@ -46,50 +56,159 @@ public class DeliciousFeeds {
 
     public static final boolean DEFAULT_CONTRAIN_API_LIMIT = false;
 
+    public static final boolean DEFAULT_COMPRESSION = true;
+
     //The API Endpoint
-    private static final String API_ENDPOINT = "http://feeds.delicious.com/v2/json/";
+    public static final String API_ENDPOINT = "http://feeds.delicious.com/v2/json/";
 
-    //All Feeds available
-    private static final String RECENT_BOOKMARKS = "recent";
+    //How many connections to one host can be open at once - further requests wait for a free one
+    public static final int MAX_CONNECTIONS_PER_HOST = DeliciousUtil.MAX_CONNECTIONS_PER_ROUTE;
 
-    private static final String RECENT_BOOKMARKS_BY_TAG = "tag";
+    //---------------------------------------------------------------------------
+    // Instance fields
+    //---------------------------------------------------------------------------
 
-    private static final String PUBLIC_USER_SUMMARY = "userinfo";
+    private String apiEndpoint = API_ENDPOINT;
 
-    private static final String PUBLIC_TAGS = "tags";
+    private String userAgent = DEFAULT_USER_AGENT;
 
-    private static final String PRIVATE_USER_INBOX = "inbox";
+    private boolean expandUrls = DEFAULT_EXPAND_URLS;
 
-    private static final String USER_NETWORK = "network";
+    private boolean constainAPILimit = DEFAULT_CONTRAIN_API_LIMIT;
 
-    private static final String USER_NETWORK_MEMBERS = "networkmembers";
+    private UrlIdentity urlIdentity = UrlIdentity.getDefault();
 
-    private static final String URL_BOOKMARKS = "url";
+    private RateLimiter rateLimiter;
 
-    private static final String URL_INFO = "urlinfo";
+    private RequestLanes lanes;
 
-    private static final String POPULAR_BOOKMARKS = "popular";
+    private Priority priority = Priority.INTERACTIVE;
 
-    //---------------------------------------------------------------------------
-    // Instance fields
-    //---------------------------------------------------------------------------
+    private HedgePolicy hedgePolicy;
 
-    private String userAgent = DEFAULT_USER_AGENT;
+    private long timeoutNanos;
 
-    private boolean expandUrls = DEFAULT_EXPAND_URLS;
+    //Set on copies from withDeadline
+    private Deadline deadline;
 
-    private boolean constainAPILimit = DEFAULT_CONTRAIN_API_LIMIT;
+    private ExecutorService executor = FeedExecutors.getDefault();
+
+    private LocalPartition partition;
+
+    private boolean compression = DEFAULT_COMPRESSION;
+
+    private FeedMetrics metrics = new FeedMetrics();
 
     //---------------------------------------------------------------------------
     // Methods
     //---------------------------------------------------------------------------
 
-    private List<Bookmark> expandUrlsFromBookmarks(List<Bookmark> bookmarks) throws IOException {
+    private RateLimiter currentRateLimiter() {
+        if (rateLimiter != null)
+            return rateLimiter;
+
+        return constainAPILimit ? API_LIMIT : null;
+    }
+
+    //The deadline of a call - a fixed one, one from the timeout or none at all
+    private Deadline currentDeadline() {
+        if (deadline != null)
+            return deadline;
+
+        return timeoutNanos > 0 ? Deadline.after(timeoutNanos, TimeUnit.NANOSECONDS) : null;
+    }
+
+    private <T> FeedResult<T> call(FeedType feedType, String subject, String key, int count, String[] tags,
+                                   ResponseParser<T> parser, String message, Object... context) {
+        return call(currentDeadline(), feedType, subject, key, count, tags, parser, message, context);
+    }
+
+    //Failures are returned - the context (alternating names and values) is only formatted if they are thrown
+    private <T> FeedResult<T> call(Deadline deadline, FeedType feedType, String subject, String key, int count,
+                                   String[] tags, ResponseParser<T> parser, String message, Object... context) {
+        final String url = feedType.getRequestTemplate().expand(apiEndpoint, subject, key, count, tags);
+
+        try {
+            final FeedResponse<T> response = hedgePolicy != null
+                    ? doHedgedGetRequest(url, userAgent, currentRateLimiter(), lanes, priority, deadline, compression,
+                    feedType, metrics, parser, hedgePolicy, executor)
+                    : doGetRequest(url, userAgent, currentRateLimiter(), lanes, priority, deadline, compression,
+                    feedType, metrics, parser);
+
+            return FeedResult.of(response, url, message, context);
+        } catch (DeliciousFeedsException ex) {
+            return FeedResult.failure(ex);
+        }
+    }
+
+    private FeedResult<List<Bookmark>> callBookmarks(FeedType feedType, String subject, String key, int count,
+                                                     String[] tags, String message, Object... context) {
+        final Deadline deadline = currentDeadline();
+        final FeedResult<List<Bookmark>> result = call(deadline, feedType, subject, key, count, tags,
+                BOOKMARK_LIST_PARSER, message, context);
+
+        if (result.isSuccess() == false)
+            return result;
+
+        try {
+            return FeedResult.success(expandUrlsFromBookmarks(result.getValue(), deadline));
+        } catch (Exception ex) {
+            if (deadline != null && deadline.isExpired())
+                return FeedResult.failure(deadlineExceeded(deadline, "Deadline expired while expanding shortened urls!", ex));
+
+            return FeedResult.failure(ex, null, null, message, context);
+        }
+    }
+
+    private List<Bookmark> expandUrlsFromBookmarks(List<Bookmark> bookmarks, final Deadline deadline) throws IOException {
 
         //Maybe expand the shortened urls
         if (expandUrls && bookmarks != null && bookmarks.size() > 0) {
-            for (Bookmark bookmark : bookmarks)
-                bookmark.setUrl(expandShortenedUrl(bookmark.getUrl(), userAgent));
+
+            //Every expansion is a blocking request of its own, so they are run in parallel
+            final List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(bookmarks.size());
+
+            for (final Bookmark bookmark : bookmarks) {
+                if (isShortenedUrl(bookmark.getUrl()) == false)
+                    continue;
+
+                tasks.add(new FutureTask<Void>(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        bookmark.setUrl(expandShortenedUrl(bookmark.getUrl(), userAgent, deadline));
+                        return null;
+                    }
+                }));
+            }
+
+            final Object expansionEvent = FeedEvents.beginUrlExpansion();
+
+            runAll(tasks);
+
+            try {
+                for (FutureTask<Void> task : tasks) {
+                    if (deadline != null && deadline.hasTimeLimit())
+                        task.get(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+                    else
+                        task.get();
+                }
+            } catch (InterruptedException ex) {
+                cancelAll(tasks);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while expanding shortened urls!");
+            } catch (TimeoutException ex) {
+                cancelAll(tasks);
+                throw new InterruptedIOException("Deadline expired while expanding shortened urls!");
+            } catch (ExecutionException ex) {
+                cancelAll(tasks);
+
+                if (ex.getCause() instanceof IOException)
+                    throw (IOException) ex.getCause();
+
+                throw new IOException("Error while expanding shortened urls!", ex.getCause());
+            } finally {
+                FeedEvents.endUrlExpansion(expansionEvent, bookmarks.size(), tasks.size());
+            }
 
             logger.info("Successfully expanded all shortened urls!");
         }
@@ -97,6 +216,84 @@ public class DeliciousFeeds {
         return bookmarks;
     }
 
+    private <T> Map<String, T> findForUsers(Collection<String> usernames, final UserCall<T> call) throws DeliciousFeedsException {
+        if (usernames == null || usernames.isEmpty())
+            throw new IllegalArgumentException("Usernames must not be null or empty!");
+
+        //Submit one call per user first, then collect in the given order
+        final Map<String, FutureTask<T>> futures = new LinkedHashMap<String, FutureTask<T>>();
+
+        for (final String username : usernames) {
+            if (username == null || username.isEmpty())
+                throw new IllegalArgumentException("Username must not be null or empty!");
+
+            if (futures.containsKey(username))
+                continue;
+
+            //Users owned by other nodes are fetched there
+            if (partition != null && !partition.isLocal(username))
+                continue;
+
+            futures.put(username, new FutureTask<T>(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return call.find(username);
+                }
+            }));
+        }
+
+        if (partition != null)
+            logger.debug("Node '{}' owns {} of {} users.", new Object[]{partition.getLocalNode(), futures.size(), usernames.size()});
+
+        runAll(futures.values());
+
+        final Map<String, T> results = new LinkedHashMap<String, T>();
+
+        try {
+            for (Map.Entry<String, FutureTask<T>> entry : futures.entrySet())
+                results.put(entry.getKey(), entry.getValue().get());
+        } catch (InterruptedException ex) {
+            cancelAll(futures.values());
+            Thread.currentThread().interrupt();
+            throw new DeliciousFeedsException("Interrupted while finding feeds for users!", ex);
+        } catch (ExecutionException ex) {
+            cancelAll(futures.values());
+
+            if (ex.getCause() instanceof DeliciousFeedsException)
+                throw (DeliciousFeedsException) ex.getCause();
+
+            throw new DeliciousFeedsException("Error while finding feeds for users!", ex.getCause());
+        }
+
+        return results;
+    }
+
+    private void runAll(Collection<? extends FutureTask<?>> tasks) {
+        for (FutureTask<?> task : tasks) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException ex) {
+                logger.debug("Executor rejected a task - running it on the calling thread.", ex);
+                break;
+            }
+        }
+
+        //Help with tasks that were not started yet - a task only runs once, so this is a no-op for the others.
+        //This way nested calls on a bounded executor can not starve waiting for each other.
+        for (FutureTask<?> task : tasks)
+            task.run();
+    }
+
+    private static void cancelAll(Collection<? extends Future<?>> futures) {
+        for (Future<?> future : futures)
+            future.cancel(true);
+    }
+
+    //A single feed call for one user - used for the batch methods
+    private interface UserCall<T> {
+        T find(String username) throws DeliciousFeedsException;
+    }
+
     /**
      * Find the most recent bookmarks on delicious from all users. Here the default count
      * of 10 entries is used.
@@ -117,24 +314,24 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public List<Bookmark> findBookmarks(int count) throws DeliciousFeedsException {
+        return tryFindBookmarks(count).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findBookmarks(int)}, but failures are returned instead of thrown.
+     *
+     * @param count how many entries should be returned - from 1 to 100
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if count does not match borders
+     */
+    public FeedResult<List<Bookmark>> tryFindBookmarks(int count) {
         if (count <= 0 || count > 100)
             throw new IllegalArgumentException("Count has to be a value from minimum 1 to maximum 100!");
 
         logger.info("Trying to find the last {} recent bookmarks from all users...", count);
 
-        final String json = doGetRequest(API_ENDPOINT + RECENT_BOOKMARKS + "?count=" + count, userAgent, constainAPILimit);
-
-        try {
-            List<Bookmark> bookmarks = deserializeBookmarksFromJson(json);
-
-            //Expand Urls
-            bookmarks = expandUrlsFromBookmarks(bookmarks);
-
-            return bookmarks;
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding recent bookmarks",
-                    buildPair("count", Integer.toString(count)));
-        }
+        return callBookmarks(FeedType.RECENT_BOOKMARKS, null, null, count, null,
+                "Error while finding recent bookmarks", "count", count);
     }
 
     /**
@@ -157,24 +354,24 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public List<Bookmark> findPopularBookmarks(int count) throws DeliciousFeedsException {
+        return tryFindPopularBookmarks(count).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findPopularBookmarks(int)}, but failures are returned instead of thrown.
+     *
+     * @param count how many entries should be returned - from 1 to 100
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if count does not match borders
+     */
+    public FeedResult<List<Bookmark>> tryFindPopularBookmarks(int count) {
         if (count <= 0 || count > 100)
             throw new IllegalArgumentException("Count has to be a value from minimum 1 to maximum 100!");
 
         logger.info("Trying to find the last {} popular bookmarks from all users...", count);
 
-        final String json = doGetRequest(API_ENDPOINT + POPULAR_BOOKMARKS + "?count=" + count, userAgent, constainAPILimit);
-
-        try {
-            List<Bookmark> bookmarks = deserializeBookmarksFromJson(json);
-
-            //Expand Urls
-            bookmarks = expandUrlsFromBookmarks(bookmarks);
-
-            return bookmarks;
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding popular bookmarks",
-                    buildPair("count", Integer.toString(count)));
-        }
+        return callBookmarks(FeedType.POPULAR_BOOKMARKS, null, null, count, null,
+                "Error while finding popular bookmarks", "count", count);
     }
 
     /**
@@ -200,6 +397,18 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public List<Bookmark> findBookmarksByTags(int count, String... tags) throws DeliciousFeedsException {
+        return tryFindBookmarksByTags(count, tags).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findBookmarksByTags(int, String...)}, but failures are returned instead of thrown.
+     *
+     * @param count how many entries should be returned - from 1 to 100
+     * @param tags  the tags to use (minimum 1!)
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if count does not match borders or tags are null or empty
+     */
+    public FeedResult<List<Bookmark>> tryFindBookmarksByTags(int count, String... tags) {
         if (count <= 0 || count > 100)
             throw new IllegalArgumentException("Count has to be a value from minimum 1 to maximum 100!");
 
@@ -207,22 +416,10 @@ public class DeliciousFeeds {
             throw new IllegalArgumentException("Tags must not be null or empty!");
 
         logger.info("Trying to find the last {} recent bookmarks from all users with this tags: {}", count,
-                StringUtils.join(tags, ", "));
-
-        final String json = doGetRequest(API_ENDPOINT + RECENT_BOOKMARKS_BY_TAG + "/" + StringUtils.join(tags, "+")
-                + "?count=" + count, userAgent, constainAPILimit);
-
-        try {
-            List<Bookmark> bookmarks = deserializeBookmarksFromJson(json);
-
-            //Expand Urls
-            bookmarks = expandUrlsFromBookmarks(bookmarks);
+                Arrays.asList(tags));
 
-            return bookmarks;
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding recent bookmarks by tags",
-                    buildPair("count", Integer.toString(count)), buildPair("tags", StringUtils.join(tags, ", ")));
-        }
+        return callBookmarks(FeedType.TAG_BOOKMARKS, null, null, count, tags,
+                "Error while finding recent bookmarks by tags", "count", count, "tags", tags);
     }
 
     /**
@@ -248,6 +445,18 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public List<Bookmark> findPopularBookmarksByTags(int count, String... tags) throws DeliciousFeedsException {
+        return tryFindPopularBookmarksByTags(count, tags).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findPopularBookmarksByTags(int, String...)}, but failures are returned instead of thrown.
+     *
+     * @param count how many entries should be returned - from 1 to 100
+     * @param tags  the tags to use (minimum 1!)
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if count does not match borders or tags are null or empty
+     */
+    public FeedResult<List<Bookmark>> tryFindPopularBookmarksByTags(int count, String... tags) {
         if (count <= 0 || count > 100)
             throw new IllegalArgumentException("Count has to be a value from minimum 1 to maximum 100!");
 
@@ -255,22 +464,10 @@ public class DeliciousFeeds {
             throw new IllegalArgumentException("Tags must not be null or empty!");
 
         logger.info("Trying to find the last {} popular bookmarks from all users with this tags: {}", count,
-                StringUtils.join(tags, ", "));
-
-        final String json = doGetRequest(API_ENDPOINT + POPULAR_BOOKMARKS + "/" + StringUtils.join(tags, "+")
-                + "?count=" + count, userAgent, constainAPILimit);
-
-        try {
-            List<Bookmark> bookmarks = deserializeBookmarksFromJson(json);
+                Arrays.asList(tags));
 
-            //Expand Urls
-            bookmarks = expandUrlsFromBookmarks(bookmarks);
-
-            return bookmarks;
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding popular bookmarks by tags",
-                    buildPair("count", Integer.toString(count)), buildPair("tags", StringUtils.join(tags, ", ")));
-        }
+        return callBookmarks(FeedType.POPULAR_TAG_BOOKMARKS, null, null, count, tags,
+                "Error while finding popular bookmarks by tags", "count", count, "tags", tags);
     }
 
     /**
@@ -296,6 +493,18 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public List<Bookmark> findBookmarksByUser(int count, String username) throws DeliciousFeedsException {
+        return tryFindBookmarksByUser(count, username).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findBookmarksByUser(int, String)}, but failures are returned instead of thrown.
+     *
+     * @param count    how many entries should be returned - from 1 to 100
+     * @param username the username
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if count does not match borders or username is null or empty
+     */
+    public FeedResult<List<Bookmark>> tryFindBookmarksByUser(int count, String username) {
         if (count <= 0 || count > 100)
             throw new IllegalArgumentException("Count has to be a value from minimum 1 to maximum 100!");
 
@@ -304,19 +513,33 @@ public class DeliciousFeeds {
 
         logger.info("Trying to find the last {} recent bookmarks for user '{}'...", count, username);
 
-        final String json = doGetRequest(API_ENDPOINT + username + "?count=" + count, userAgent, constainAPILimit);
+        return callBookmarks(FeedType.USER_BOOKMARKS, username, null, count, null,
+                "Error while finding recent bookmarks for user", "count", count, "username", username);
+    }
 
-        try {
-            List<Bookmark> bookmarks = deserializeBookmarksFromJson(json);
+    /**
+     * Find the most recent bookmarks on delicious from several users at once. The requests are run in
+     * parallel on the executor (see {@link #setExecutor(ExecutorService)}), but still respect the API limit.
+     *
+     * @param count     how many entries should be returned per user - from 1 to 100
+     * @param usernames the usernames - only the ones owned by the local node if a partition is set (see
+     *                  {@link #setPartition(LocalPartition)})
+     * @return the bookmarks per username in the given order, null values if nothing found!
+     * @throws IllegalArgumentException if count does not match borders or usernames are null or empty
+     * @throws DeliciousFeedsException  if something goes wrong for any of the users
+     */
+    public Map<String, List<Bookmark>> findBookmarksByUsers(final int count, Collection<String> usernames) throws DeliciousFeedsException {
+        if (count <= 0 || count > 100)
+            throw new IllegalArgumentException("Count has to be a value from minimum 1 to maximum 100!");
 
-            //Expand Urls
-            bookmarks = expandUrlsFromBookmarks(bookmarks);
+        logger.info("Trying to find the last {} recent bookmarks for {} users...", count, usernames != null ? usernames.size() : 0);
 
-            return bookmarks;
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding recent bookmarks for user",
-                    buildPair("count", Integer.toString(count)), buildPair("username", username));
-        }
+        return findForUsers(usernames, new UserCall<List<Bookmark>>() {
+            @Override
+            public List<Bookmark> find(String username) throws DeliciousFeedsException {
+                return findBookmarksByUser(count, username);
+            }
+        });
     }
 
     /**
@@ -344,6 +567,19 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public List<Bookmark> findPrivateBookmarksByUser(int count, String username, String key) throws DeliciousFeedsException {
+        return tryFindPrivateBookmarksByUser(count, username, key).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findPrivateBookmarksByUser(int, String, String)}, but failures are returned instead of thrown.
+     *
+     * @param count    how many entries should be returned - from 1 to 100
+     * @param username the username
+     * @param key      the key to retrieve private bookmarks (can be obtained on delicious.com)
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if count does not match borders, username is null or empty or key is null or empty
+     */
+    public FeedResult<List<Bookmark>> tryFindPrivateBookmarksByUser(int count, String username, String key) {
         if (count <= 0 || count > 100)
             throw new IllegalArgumentException("Count has to be a value from minimum 1 to maximum 100!");
 
@@ -355,20 +591,9 @@ public class DeliciousFeeds {
 
         logger.info("Trying to find the last {} recent private bookmarks for user '{}'...", count, username);
 
-        final String json = doGetRequest(API_ENDPOINT + username + "?private=" + key + "&count=" + count, userAgent, constainAPILimit);
-
-        try {
-            List<Bookmark> bookmarks = deserializeBookmarksFromJson(json);
-
-            //Expand Urls
-            bookmarks = expandUrlsFromBookmarks(bookmarks);
-
-            return bookmarks;
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding recent private bookmarks for user",
-                    buildPair("count", Integer.toString(count)), buildPair("username", username),
-                    buildPair("key", key));
-        }
+        return callBookmarks(FeedType.PRIVATE_USER_BOOKMARKS, username, key, count, null,
+                "Error while finding recent private bookmarks for user",
+                "count", count, "username", username, "key", key);
     }
 
     /**
@@ -396,6 +621,19 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public List<Bookmark> findBookmarksByUserAndTags(int count, String username, String... tags) throws DeliciousFeedsException {
+        return tryFindBookmarksByUserAndTags(count, username, tags).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findBookmarksByUserAndTags(int, String, String...)}, but failures are returned instead of thrown.
+     *
+     * @param count    how many entries should be returned - from 1 to 100
+     * @param username the username
+     * @param tags     the tags to use (minimum 1!)
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if count does not match borders, username is null or empty or tags are null or empty
+     */
+    public FeedResult<List<Bookmark>> tryFindBookmarksByUserAndTags(int count, String username, String... tags) {
         if (count <= 0 || count > 100)
             throw new IllegalArgumentException("Count has to be a value from minimum 1 to maximum 100!");
 
@@ -406,22 +644,11 @@ public class DeliciousFeeds {
             throw new IllegalArgumentException("Tags must not be null or empty!");
 
         logger.info("Trying to find the last {} recent bookmarks for user '{}' with this tags: {}", count, username,
-                StringUtils.join(tags, ", "));
-
-        final String json = doGetRequest(API_ENDPOINT + username + "/" + StringUtils.join(tags, "+") + "?count=" + count, userAgent, constainAPILimit);
-
-        try {
-            List<Bookmark> bookmarks = deserializeBookmarksFromJson(json);
-
-            //Expand Urls
-            bookmarks = expandUrlsFromBookmarks(bookmarks);
+                Arrays.asList(tags));
 
-            return bookmarks;
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding recent bookmarks for user by tags",
-                    buildPair("count", Integer.toString(count)), buildPair("username", username),
-                    buildPair("tags", StringUtils.join(tags, ", ")));
-        }
+        return callBookmarks(FeedType.USER_TAG_BOOKMARKS, username, null, count, tags,
+                "Error while finding recent bookmarks for user by tags",
+                "count", count, "username", username, "tags", tags);
     }
 
     /**
@@ -451,6 +678,21 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public List<Bookmark> findPrivateBookmarksByUserAndTags(int count, String username, String key, String... tags) throws DeliciousFeedsException {
+        return tryFindPrivateBookmarksByUserAndTags(count, username, key, tags).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findPrivateBookmarksByUserAndTags(int, String, String, String...)},
+     * but failures are returned instead of thrown.
+     *
+     * @param count    how many entries should be returned - from 1 to 100
+     * @param username the username
+     * @param key      the key to retrieve private bookmarks (can be obtained on delicious.com)
+     * @param tags     the tags to use (minimum 1!)
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if count does not match borders, username is null or empty, key is null or empty, or tags are null or empty
+     */
+    public FeedResult<List<Bookmark>> tryFindPrivateBookmarksByUserAndTags(int count, String username, String key, String... tags) {
         if (count <= 0 || count > 100)
             throw new IllegalArgumentException("Count has to be a value from minimum 1 to maximum 100!");
 
@@ -463,22 +705,11 @@ public class DeliciousFeeds {
         if (tags == null || tags.length == 0)
             throw new IllegalArgumentException("Tags must not be null or empty!");
 
-        logger.info("Trying to find the last {} recent private bookmarks for user '{}' with this tags: {}", count, username, StringUtils.join(tags, ", "));
-
-        final String json = doGetRequest(API_ENDPOINT + username + "/" + StringUtils.join(tags, "+") + "?private=" + key + "&count=" + count, userAgent, constainAPILimit);
+        logger.info("Trying to find the last {} recent private bookmarks for user '{}' with this tags: {}", count, username, Arrays.asList(tags));
 
-        try {
-            List<Bookmark> bookmarks = deserializeBookmarksFromJson(json);
-
-            //Expand Urls
-            bookmarks = expandUrlsFromBookmarks(bookmarks);
-
-            return bookmarks;
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding recent private bookmarks for user by tags",
-                    buildPair("count", Integer.toString(count)), buildPair("username", username),
-                    buildPair("key", key), buildPair("tags", StringUtils.join(tags, ", ")));
-        }
+        return callBookmarks(FeedType.PRIVATE_USER_TAG_BOOKMARKS, username, key, count, tags,
+                "Error while finding recent private bookmarks for user by tags",
+                "count", count, "username", username, "key", key, "tags", tags);
     }
 
     /**
@@ -491,19 +722,24 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public UserInfo findPublicUserSummary(String username) throws DeliciousFeedsException {
+        return tryFindPublicUserSummary(username).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findPublicUserSummary(String)}, but failures are returned instead of thrown.
+     *
+     * @param username the username
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if username is null or empty
+     */
+    public FeedResult<UserInfo> tryFindPublicUserSummary(String username) {
         if (username == null || username.isEmpty())
             throw new IllegalArgumentException("Username must not be null or empty!");
 
         logger.info("Trying to find a public information summary for user '{}' ...", username);
 
-        final String json = doGetRequest(API_ENDPOINT + PUBLIC_USER_SUMMARY + "/" + username, userAgent, constainAPILimit);
-
-        try {
-            return deserializePublicUserInformationFromJson(username, json);
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding public information summary for user",
-                    buildPair("username", username));
-        }
+        return call(FeedType.USER_SUMMARY, username, null, 0, null, userInfoParser(username),
+                "Error while finding public information summary for user", "username", username);
     }
 
     /**
@@ -515,18 +751,24 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public Set<Tag> findPublicTagsByUser(String username) throws DeliciousFeedsException {
+        return tryFindPublicTagsByUser(username).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findPublicTagsByUser(String)}, but failures are returned instead of thrown.
+     *
+     * @param username the username
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if username is null or empty
+     */
+    public FeedResult<Set<Tag>> tryFindPublicTagsByUser(String username) {
         if (username == null || username.isEmpty())
             throw new IllegalArgumentException("Username must not be null or empty!");
 
         logger.info("Trying to find all public tags for user '{}' ...", username);
 
-        final String json = doGetRequest(API_ENDPOINT + PUBLIC_TAGS + "/" + username, userAgent, constainAPILimit);
-
-        try {
-            return deserializeTagsFromJson(json);
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding all public tags for user", buildPair("username", username));
-        }
+        return call(FeedType.USER_TAGS, username, null, 0, null, TAG_SET_PARSER,
+                "Error while finding all public tags for user", "username", username);
     }
 
     /**
@@ -539,22 +781,29 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public Set<Tag> findRelatedPublicTagsByUserAndTags(String username, String... tags) throws DeliciousFeedsException {
+        return tryFindRelatedPublicTagsByUserAndTags(username, tags).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findRelatedPublicTagsByUserAndTags(String, String...)},
+     * but failures are returned instead of thrown.
+     *
+     * @param username the username
+     * @param tags     the tags to use (minimum 1!)
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if username is null or empty or tags are null or empty
+     */
+    public FeedResult<Set<Tag>> tryFindRelatedPublicTagsByUserAndTags(String username, String... tags) {
         if (username == null || username.isEmpty())
             throw new IllegalArgumentException("Username must not be null or empty!");
 
         if (tags == null || tags.length == 0)
             throw new IllegalArgumentException("Tags must not be null or empty!");
 
-        logger.info("Trying to find all related public tags for user '{}' with this tags: {}", username, StringUtils.join(tags, ", "));
+        logger.info("Trying to find all related public tags for user '{}' with this tags: {}", username, Arrays.asList(tags));
 
-        final String json = doGetRequest(API_ENDPOINT + PUBLIC_TAGS + "/" + username + "/" + StringUtils.join(tags, "+"), userAgent, constainAPILimit);
-
-        try {
-            return deserializeTagsFromJson(json);
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding related public tags for user",
-                    buildPair("username", username), buildPair("tags", StringUtils.join(tags, ", ")));
-        }
+        return call(FeedType.RELATED_USER_TAGS, username, null, 0, tags, TAG_SET_PARSER,
+                "Error while finding related public tags for user", "username", username, "tags", tags);
     }
 
     /**
@@ -582,6 +831,20 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public List<Bookmark> findPrivateInboxBookmarksByUser(int count, String username, String key) throws DeliciousFeedsException {
+        return tryFindPrivateInboxBookmarksByUser(count, username, key).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findPrivateInboxBookmarksByUser(int, String, String)},
+     * but failures are returned instead of thrown.
+     *
+     * @param count    how many entries should be returned - from 1 to 100
+     * @param username the username
+     * @param key      the key to retrieve private bookmarks (can be obtained on delicious.com)
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if count does not match borders, username is null or empty, key is null or empty
+     */
+    public FeedResult<List<Bookmark>> tryFindPrivateInboxBookmarksByUser(int count, String username, String key) {
         if (count <= 0 || count > 100)
             throw new IllegalArgumentException("Count has to be a value from minimum 1 to maximum 100!");
 
@@ -593,20 +856,9 @@ public class DeliciousFeeds {
 
         logger.info("Trying to find the last {} recent private inbox bookmarks for user '{}'...", count, username);
 
-        final String json = doGetRequest(API_ENDPOINT + PRIVATE_USER_INBOX + "/" + username + "?private=" + key + "&count=" + count, userAgent, constainAPILimit);
-
-        try {
-            List<Bookmark> bookmarks = deserializeBookmarksFromJson(json);
-
-            //Expand Urls
-            bookmarks = expandUrlsFromBookmarks(bookmarks);
-
-            return bookmarks;
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding recent private inbox bookmarks for user",
-                    buildPair("count", Integer.toString(count)), buildPair("username", username),
-                    buildPair("key", key));
-        }
+        return callBookmarks(FeedType.INBOX_BOOKMARKS, username, key, count, null,
+                "Error while finding recent private inbox bookmarks for user",
+                "count", count, "username", username, "key", key);
     }
 
     /**
@@ -632,6 +884,18 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public List<Bookmark> findNetworkBookmarksByUser(int count, String username) throws DeliciousFeedsException {
+        return tryFindNetworkBookmarksByUser(count, username).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findNetworkBookmarksByUser(int, String)}, but failures are returned instead of thrown.
+     *
+     * @param count    how many entries should be returned - from 1 to 100
+     * @param username the username
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if count does not match borders or username is null or empty
+     */
+    public FeedResult<List<Bookmark>> tryFindNetworkBookmarksByUser(int count, String username) {
         if (count <= 0 || count > 100)
             throw new IllegalArgumentException("Count has to be a value from minimum 1 to maximum 100!");
 
@@ -640,19 +904,8 @@ public class DeliciousFeeds {
 
         logger.info("Trying to find the last {} recent bookmarks from the user's network for user '{}'...", count, username);
 
-        final String json = doGetRequest(API_ENDPOINT + USER_NETWORK + "/" + username + "?count=" + count, userAgent, constainAPILimit);
-
-        try {
-            List<Bookmark> bookmarks = deserializeBookmarksFromJson(json);
-
-            //Expand Urls
-            bookmarks = expandUrlsFromBookmarks(bookmarks);
-
-            return bookmarks;
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding recent bookmarks from user's network",
-                    buildPair("count", Integer.toString(count)), buildPair("username", username));
-        }
+        return callBookmarks(FeedType.NETWORK_BOOKMARKS, username, null, count, null,
+                "Error while finding recent bookmarks from user's network", "count", count, "username", username);
     }
 
     /**
@@ -680,6 +933,20 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public List<Bookmark> findNetworkBookmarksByUserAndTags(int count, String username, String... tags) throws DeliciousFeedsException {
+        return tryFindNetworkBookmarksByUserAndTags(count, username, tags).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findNetworkBookmarksByUserAndTags(int, String, String...)},
+     * but failures are returned instead of thrown.
+     *
+     * @param count    how many entries should be returned - from 1 to 100
+     * @param username the username
+     * @param tags     the tags to use (minimum 1!)
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if count does not match borders, username is null or empty or tags are null or empty
+     */
+    public FeedResult<List<Bookmark>> tryFindNetworkBookmarksByUserAndTags(int count, String username, String... tags) {
         if (count <= 0 || count > 100)
             throw new IllegalArgumentException("Count has to be a value from minimum 1 to maximum 100!");
 
@@ -690,22 +957,11 @@ public class DeliciousFeeds {
             throw new IllegalArgumentException("Tags must not be null or empty!");
 
         logger.info("Trying to find the last {} recent bookmarks from the user's network for user '{}' with this tags: {}",
-                count, username, StringUtils.join(tags, ", "));
-
-        final String json = doGetRequest(API_ENDPOINT + USER_NETWORK + "/" + username + "/" + StringUtils.join(tags, "+") + "?count=" + count, userAgent, constainAPILimit);
-
-        try {
-            List<Bookmark> bookmarks = deserializeBookmarksFromJson(json);
+                count, username, Arrays.asList(tags));
 
-            //Expand Urls
-            bookmarks = expandUrlsFromBookmarks(bookmarks);
-
-            return bookmarks;
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding recent bookmarks from user's network",
-                    buildPair("count", Integer.toString(count)), buildPair("username", username),
-                    buildPair("tags", StringUtils.join(tags, ", ")));
-        }
+        return callBookmarks(FeedType.NETWORK_TAG_BOOKMARKS, username, null, count, tags,
+                "Error while finding recent bookmarks from user's network",
+                "count", count, "username", username, "tags", tags);
     }
 
     /**
@@ -717,18 +973,45 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public Set<User> findNetworkMembersByUser(String username) throws DeliciousFeedsException {
+        return tryFindNetworkMembersByUser(username).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findNetworkMembersByUser(String)}, but failures are returned instead of thrown.
+     *
+     * @param username the username
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if username is null or empty
+     */
+    public FeedResult<Set<User>> tryFindNetworkMembersByUser(String username) {
         if (username == null || username.isEmpty())
             throw new IllegalArgumentException("Username must not be null or empty!");
 
         logger.info("Trying to find all network members for user '{}' ...", username);
 
-        final String json = doGetRequest(API_ENDPOINT + USER_NETWORK_MEMBERS + "/" + username, userAgent, constainAPILimit);
+        return call(FeedType.NETWORK_MEMBERS, username, null, 0, null, USER_SET_PARSER,
+                "Error while finding all network members for user", "username", username);
+    }
 
-        try {
-            return deserializeUsersFromJson(json);
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding all network members for user", buildPair("username", username));
-        }
+    /**
+     * Find all network members from several users at once. The requests are run in parallel on the
+     * executor (see {@link #setExecutor(ExecutorService)}), but still respect the API limit.
+     *
+     * @param usernames the usernames - only the ones owned by the local node if a partition is set (see
+     *                  {@link #setPartition(LocalPartition)})
+     * @return the network members per username in the given order, null values if nothing found!
+     * @throws IllegalArgumentException if usernames are null or empty
+     * @throws DeliciousFeedsException  if something goes wrong for any of the users
+     */
+    public Map<String, Set<User>> findNetworkMembersByUsers(Collection<String> usernames) throws DeliciousFeedsException {
+        logger.info("Trying to find all network members for {} users...", usernames != null ? usernames.size() : 0);
+
+        return findForUsers(usernames, new UserCall<Set<User>>() {
+            @Override
+            public Set<User> find(String username) throws DeliciousFeedsException {
+                return findNetworkMembersByUser(username);
+            }
+        });
     }
 
     /**
@@ -757,59 +1040,282 @@ public class DeliciousFeeds {
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public List<Bookmark> findBookmarksByUrl(int count, String url) throws DeliciousFeedsException {
-        if (count <= 0 || count > 100)
-            throw new IllegalArgumentException("Count has to be a value from minimum 1 to maximum 100!");
+        return tryFindBookmarksByUrl(count, url).getOrThrow();
+    }
 
+    /**
+     * Same as {@link #findBookmarksByUrl(int, String)}, but failures are returned instead of thrown.
+     *
+     * @param count how many entries should be returned (value is multiplied by 10!) - from 1 to 100
+     * @param url   the url
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if count does not match borders or url is null or empty
+     */
+    public FeedResult<List<Bookmark>> tryFindBookmarksByUrl(int count, String url) {
         if (url == null || url.isEmpty())
             throw new IllegalArgumentException("Url must not be null or empty!");
 
-        logger.info("Trying to find the last {} bookmarks for this url: {}", count * 10, url);
+        return tryFindBookmarksByUrlKey(count, urlIdentity.keyOf(url), url);
+    }
 
-        final String json = doGetRequest(API_ENDPOINT + URL_BOOKMARKS + "/" + md5Hex(url) + "?count=" + count,
-                userAgent, constainAPILimit);
+    /**
+     * Find bookmarks on delicious for a url identified by its key. Here the default count
+     * of 10 entries is used.
+     *
+     * @param urlKey the key of the url (e.g. {@code UrlKey.fromHex(bookmark.getMd5())})
+     * @return a list of bookmarks for this url, null if nothing found!
+     * @throws IllegalArgumentException if urlKey is null
+     * @throws DeliciousFeedsException  if something goes wrong
+     */
+    public List<Bookmark> findBookmarksByUrlKey(UrlKey urlKey) throws DeliciousFeedsException {
+        return findBookmarksByUrlKey(DEFAULT_COUNT / 10, urlKey);
+    }
 
-        try {
-            List<Bookmark> bookmarks = deserializeBookmarksFromJson(json);
+    /**
+     * Find bookmarks on delicious for a url identified by its key. This skips hashing the url, so
+     * already known hashes like {@code Bookmark.getMd5()} can be used directly.
+     * <p/>
+     * <b>Important! Delicious seems to multiply the given count by 10! So a given count of 1 actually
+     * yields 10 bookmarks!</b>
+     *
+     * @param count  how many entries should be returned (value is multiplied by 10!) - from 1 to 100
+     * @param urlKey the key of the url (e.g. {@code UrlKey.fromHex(bookmark.getMd5())})
+     * @return a list of bookmarks for this url, null if nothing found!
+     * @throws IllegalArgumentException if count does not match borders or urlKey is null
+     * @throws DeliciousFeedsException  if something goes wrong
+     */
+    public List<Bookmark> findBookmarksByUrlKey(int count, UrlKey urlKey) throws DeliciousFeedsException {
+        return tryFindBookmarksByUrlKey(count, urlKey).getOrThrow();
+    }
 
-            //Expand Urls
-            bookmarks = expandUrlsFromBookmarks(bookmarks);
+    /**
+     * Same as {@link #findBookmarksByUrlKey(int, UrlKey)}, but failures are returned instead of thrown.
+     *
+     * @param count  how many entries should be returned (value is multiplied by 10!) - from 1 to 100
+     * @param urlKey the key of the url (e.g. {@code UrlKey.fromHex(bookmark.getMd5())})
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if count does not match borders or urlKey is null
+     */
+    public FeedResult<List<Bookmark>> tryFindBookmarksByUrlKey(int count, UrlKey urlKey) {
+        if (urlKey == null)
+            throw new IllegalArgumentException("UrlKey must not be null!");
 
-            return bookmarks;
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding bookmarks for url",
-                    buildPair("count", Integer.toString(count)), buildPair("url", url));
-        }
+        return tryFindBookmarksByUrlKey(count, urlKey, null);
+    }
+
+    private FeedResult<List<Bookmark>> tryFindBookmarksByUrlKey(int count, UrlKey urlKey, String url) {
+        if (count <= 0 || count > 100)
+            throw new IllegalArgumentException("Count has to be a value from minimum 1 to maximum 100!");
+
+        final String hash = urlKey.toHex();
+
+        logger.info("Trying to find the last {} bookmarks for this url: {}", count * 10, url != null ? url : hash);
+
+        return callBookmarks(FeedType.URL_BOOKMARKS, hash, null, count, null,
+                "Error while finding bookmarks for url", "count", count, "url", url, "hash", hash);
     }
 
     /**
-     * Find bookmarks on delicious for a specific url. Here the default count
-     * of 10 entries is used.
+     * Find summary information about a specific url.
      *
      * @param url the url
      * @return an info-object about the url, null if nothing found!
-     * @throws IllegalArgumentException if username is null or empty
+     * @throws IllegalArgumentException if url is null or empty
      * @throws DeliciousFeedsException  if something goes wrong
      */
     public UrlInfo findUrlInfoByUrl(String url) throws DeliciousFeedsException {
+        return tryFindUrlInfoByUrl(url).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findUrlInfoByUrl(String)}, but failures are returned instead of thrown.
+     *
+     * @param url the url
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if url is null or empty
+     */
+    public FeedResult<UrlInfo> tryFindUrlInfoByUrl(String url) {
 
         if (url == null || url.isEmpty())
             throw new IllegalArgumentException("Url must not be null or empty!");
 
-        logger.info("Trying to find the urlinfo for this url: {}", url);
+        return tryFindUrlInfoByUrlKey(urlIdentity.keyOf(url), url);
+    }
 
-        final String json = doGetRequest(API_ENDPOINT + URL_INFO + "/" + md5Hex(url), userAgent, constainAPILimit);
+    /**
+     * Find summary information about a url identified by its key. This skips hashing the url, so
+     * already known hashes like {@code Bookmark.getMd5()} can be used directly.
+     *
+     * @param urlKey the key of the url (e.g. {@code UrlKey.fromHex(bookmark.getMd5())})
+     * @return an info-object about the url, null if nothing found!
+     * @throws IllegalArgumentException if urlKey is null
+     * @throws DeliciousFeedsException  if something goes wrong
+     */
+    public UrlInfo findUrlInfoByUrlKey(UrlKey urlKey) throws DeliciousFeedsException {
+        return tryFindUrlInfoByUrlKey(urlKey).getOrThrow();
+    }
+
+    /**
+     * Same as {@link #findUrlInfoByUrlKey(UrlKey)}, but failures are returned instead of thrown.
+     *
+     * @param urlKey the key of the url (e.g. {@code UrlKey.fromHex(bookmark.getMd5())})
+     * @return the result, its value is null if nothing found
+     * @throws IllegalArgumentException if urlKey is null
+     */
+    public FeedResult<UrlInfo> tryFindUrlInfoByUrlKey(UrlKey urlKey) {
+        if (urlKey == null)
+            throw new IllegalArgumentException("UrlKey must not be null!");
+
+        return tryFindUrlInfoByUrlKey(urlKey, null);
+    }
+
+    private FeedResult<UrlInfo> tryFindUrlInfoByUrlKey(UrlKey urlKey, String url) {
+        final String hash = urlKey.toHex();
+
+        logger.info("Trying to find the urlinfo for this url: {}", url != null ? url : hash);
+
+        return call(FeedType.URL_INFO, hash, null, 0, null, URL_INFO_PARSER,
+                "Error while finding urlinfo for url", "url", url, "hash", hash);
+    }
+
+    /**
+     * Expands a shortened delicious url (e.g. http://icio.us/+a7f570d6d6842) to the original url. Other
+     * urls are returned as they are. This is what {@link #setExpandUrls(boolean)} does for every bookmark.
+     *
+     * @param url the url to expand
+     * @return the expanded url or the given url if it was not shortened or could not be expanded
+     * @throws DeliciousFeedsException if something goes wrong
+     */
+    public String expandUrl(String url) throws DeliciousFeedsException {
+        final Deadline deadline = currentDeadline();
 
         try {
-            return deserializeUrlInfoFromJson(json);
-        } catch (Exception ex) {
-            throw buildException(ex, json, "Error while finding urlinfo for url", buildPair("url", url));
+            return expandShortenedUrl(url, userAgent, deadline);
+        } catch (IOException ex) {
+            if (deadline != null && deadline.isExpired())
+                throw deadlineExceeded(deadline, "Deadline expired while expanding url: " + url, ex);
+
+            throw new DeliciousFeedsException("Error while expanding url: " + url, ex);
+        }
+    }
+
+    /**
+     * Creates a copy of this instance whose calls all share the given deadline: every step of a call - waiting
+     * for the rate limiter, leasing a connection, reading the response and expanding urls - only waits as
+     * long as the deadline has time left. Cancelling the deadline from another thread aborts the running
+     * request and closes its connection. Failed calls report {@link ErrorCode#TIMEOUT} or
+     * {@link ErrorCode#CANCELLED}.
+     * <pre>
+     * UrlInfo urlInfo = deliciousFeeds.withDeadline(Deadline.after(300, TimeUnit.MILLISECONDS)).findUrlInfoByUrl(url);
+     * </pre>
+     * The copy shares all settings with this instance at the time of the call, including the metrics.
+     *
+     * @param deadline the deadline of the calls of the copy
+     * @return the copy
+     * @throws IllegalArgumentException if deadline is null
+     */
+    public DeliciousFeeds withDeadline(Deadline deadline) {
+        if (deadline == null)
+            throw new IllegalArgumentException("Deadline must not be null!");
+
+        final DeliciousFeeds copy = new DeliciousFeeds();
+        copy.apiEndpoint = apiEndpoint;
+        copy.userAgent = userAgent;
+        copy.expandUrls = expandUrls;
+        copy.constainAPILimit = constainAPILimit;
+        copy.urlIdentity = urlIdentity;
+        copy.rateLimiter = rateLimiter;
+        copy.lanes = lanes;
+        copy.priority = priority;
+        copy.hedgePolicy = hedgePolicy;
+        copy.executor = executor;
+        copy.partition = partition;
+        copy.compression = compression;
+        copy.metrics = metrics;
+        copy.timeoutNanos = timeoutNanos;
+        copy.deadline = deadline;
+        return copy;
+    }
+
+    /**
+     * Prepares everything the first request would otherwise pay for: creates the HTTP client, builds the
+     * deserializers of all beans, resolves the delicious host and opens pooled connections to it. Useful for
+     * short-lived workers whose first request is latency critical.
+     *
+     * @param connections how many connections should be opened - from 0 to 100. Stops early if running
+     *                    requests keep the connection pool busy.
+     * @throws IllegalArgumentException if connections does not match borders
+     * @throws DeliciousFeedsException  if the host can not be resolved or connected to
+     */
+    public void warmUp(int connections) throws DeliciousFeedsException {
+
+        if (connections < 0 || connections > 100)
+            throw new IllegalArgumentException("Connections must be between 0 and 100!");
+
+        try {
+            DeliciousUtil.warmUp(apiEndpoint, connections);
+        } catch (IOException ex) {
+            throw new DeliciousFeedsException("Error while warming up connections to: " + apiEndpoint, ex);
         }
     }
 
+    /**
+     * Gets how many connections shared by all instances are used by running requests right now.
+     *
+     * @return the number of leased connections
+     */
+    public static int getLeasedConnections() {
+        return DeliciousUtil.getLeasedConnections();
+    }
+
+    /**
+     * Gets how many requests are waiting for a connection right now, because {@link #MAX_CONNECTIONS_PER_HOST}
+     * connections are already in use. Anything above 0 means the connection pool is saturated.
+     *
+     * @return the number of waiting requests
+     */
+    public static int getPendingConnections() {
+        return DeliciousUtil.getPendingConnections();
+    }
+
+    /**
+     * Closes the connections shared by all instances. Requests still running may fail, the next request
+     * opens new connections.
+     */
+    public static void shutdown() {
+        DeliciousUtil.close();
+    }
+
     //---------------------------------------------------------------------------
     // Getters & Setters
     //---------------------------------------------------------------------------
 
+    /**
+     * Gets the url the feed paths are appended to.
+     *
+     * @return the API endpoint
+     */
+    public String getApiEndpoint() {
+        return apiEndpoint;
+    }
+
+    /**
+     * Sets the url the feed paths are appended to, e.g. a mirror or a stub server for tests. Default is
+     * {@link #API_ENDPOINT}.
+     *
+     * @param apiEndpoint the API endpoint, ending with a slash
+     * @throws IllegalArgumentException if apiEndpoint is null, empty or does not end with a slash
+     */
+    public void setApiEndpoint(String apiEndpoint) {
+        if (apiEndpoint == null || apiEndpoint.isEmpty())
+            throw new IllegalArgumentException("ApiEndpoint must not be null or empty!");
+
+        if (apiEndpoint.endsWith("/") == false)
+            throw new IllegalArgumentException("ApiEndpoint must end with a slash!");
+
+        this.apiEndpoint = apiEndpoint;
+    }
+
     /**
      * Gets the current UserAgent used for requests.
      *
@@ -877,4 +1383,223 @@ public class DeliciousFeeds {
     public void setConstainAPILimit(boolean constainAPILimit) {
         this.constainAPILimit = constainAPILimit;
     }
+
+    /**
+     * Gets the UrlIdentity used to canonicalize and hash urls for the url- and urlinfo-feeds.
+     *
+     * @return the current UrlIdentity
+     */
+    public UrlIdentity getUrlIdentity() {
+        return urlIdentity;
+    }
+
+    /**
+     * Sets the UrlIdentity used to canonicalize and hash urls for the url- and urlinfo-feeds. By default
+     * the shared {@link UrlIdentity#getDefault()} instance is used.
+     *
+     * @param urlIdentity the UrlIdentity to use
+     * @throws IllegalArgumentException if urlIdentity is null
+     */
+    public void setUrlIdentity(UrlIdentity urlIdentity) {
+        if (urlIdentity == null)
+            throw new IllegalArgumentException("UrlIdentity must not be null!");
+
+        this.urlIdentity = urlIdentity;
+    }
+
+    /**
+     * Gets the RateLimiter used for all requests of this instance.
+     *
+     * @return the RateLimiter or null if {@link #isConstainAPILimit()} decides
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Sets a RateLimiter used for all requests of this instance instead of the fixed pause of 1 second
+     * from {@link #setConstainAPILimit(boolean)}. Set it to null to go back to the fixed pause.
+     *
+     * @param rateLimiter the RateLimiter to use or null
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Gets the time budget of every call.
+     *
+     * @param unit the unit to convert the timeout to
+     * @return the timeout, 0 if calls can take as long as they need
+     */
+    public long getTimeout(TimeUnit unit) {
+        return unit.convert(timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the time budget of every call: each call gets a {@link Deadline} this far in the future. Default
+     * is 0 - calls can take as long as they need. Copies from {@link #withDeadline(Deadline)} use their
+     * deadline instead.
+     *
+     * @param timeout the timeout, 0 for none
+     * @param unit    the unit of the timeout
+     * @throws IllegalArgumentException if timeout is negative or unit is null
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Timeout must not be negative!");
+
+        if (unit == null)
+            throw new IllegalArgumentException("Unit must not be null!");
+
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Gets the lanes the requests of this instance are scheduled in.
+     *
+     * @return the lanes or null if requests are sent right away
+     */
+    public RequestLanes getLanes() {
+        return lanes;
+    }
+
+    /**
+     * Sets the lanes the requests of this instance are scheduled in, together with the requests of all
+     * other instances using the same lanes. Share one instance between e.g. the web tier and batch jobs, so
+     * interactive requests get reserved connections and are sent before queued bulk ones. The rate limiter
+     * should be shared as well - its permits are then handed out in the order of the lanes.
+     *
+     * @param lanes the lanes to use or null to send requests right away
+     */
+    public void setLanes(RequestLanes lanes) {
+        this.lanes = lanes;
+    }
+
+    /**
+     * Gets the lane the requests of this instance are scheduled in, if lanes are set.
+     *
+     * @return the priority of the requests
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the lane the requests of this instance are scheduled in, if lanes are set. Default is
+     * {@link Priority#INTERACTIVE} - instances used by batch jobs should be set to {@link Priority#BULK}.
+     *
+     * @param priority the priority of the requests
+     * @throws IllegalArgumentException if priority is null
+     */
+    public void setPriority(Priority priority) {
+        if (priority == null)
+            throw new IllegalArgumentException("Priority must not be null!");
+
+        this.priority = priority;
+    }
+
+    /**
+     * Gets the policy deciding which slow requests get a duplicate.
+     *
+     * @return the policy or null if requests are never duplicated
+     */
+    public HedgePolicy getHedgePolicy() {
+        return hedgePolicy;
+    }
+
+    /**
+     * Sets the policy deciding which slow requests get a duplicate ("hedge"): a request still running after
+     * the delay of the policy is sent again on another connection from the executor, and whichever answers
+     * first is used. The hedge takes a permit from the rate limiter and is only sent if one is free right away.
+     * Default is null - requests are never duplicated.
+     *
+     * @param hedgePolicy the policy to use or null
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    /**
+     * Gets the executor used for the batch methods, for expanding urls and for hedges.
+     *
+     * @return the current executor
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor used for the batch methods and for expanding urls. By default the shared
+     * {@link FeedExecutors#getDefault()} executor is used, which starts a virtual thread per request on Java 21+.
+     *
+     * @param executor the executor to use
+     * @throws IllegalArgumentException if executor is null
+     */
+    public void setExecutor(ExecutorService executor) {
+        if (executor == null)
+            throw new IllegalArgumentException("Executor must not be null!");
+
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the partition of the users this node is responsible for.
+     *
+     * @return the partition or null if all users are fetched
+     */
+    public LocalPartition getPartition() {
+        return partition;
+    }
+
+    /**
+     * Sets the partition of the users this node is responsible for when several nodes share the work. The
+     * batch methods then skip all users owned by other nodes. By default (null) all users are fetched.
+     *
+     * @param partition the partition of the local node or null
+     */
+    public void setPartition(LocalPartition partition) {
+        this.partition = partition;
+    }
+
+    /**
+     * Gets whether compressed responses are requested.
+     *
+     * @return true if compressed responses are requested
+     */
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * Sets whether gzip or deflate compressed responses are requested. They are decompressed while being
+     * parsed. Default is true.
+     *
+     * @param compression true to request compressed responses
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Gets the metrics of the responses received by this instance, like the transferred bytes per feed.
+     *
+     * @return the metrics
+     */
+    public FeedMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics to record the responses to - several instances can share the same metrics.
+     *
+     * @param metrics the metrics to use
+     * @throws IllegalArgumentException if metrics is null
+     */
+    public void setMetrics(FeedMetrics metrics) {
+        if (metrics == null)
+            throw new IllegalArgumentException("Metrics must not be null!");
+
+        this.metrics = metrics;
+    }
 }
@@ -17,36 +17,83 @@
 package com.delicious.deliciousfeeds4J;
 
 import com.delicious.deliciousfeeds4J.beans.*;
+import com.delicious.deliciousfeeds4J.concurrent.Deadline;
+import com.delicious.deliciousfeeds4J.concurrent.HedgePolicy;
+import com.delicious.deliciousfeeds4J.concurrent.Priority;
+import com.delicious.deliciousfeeds4J.concurrent.RequestLanes;
 import com.delicious.deliciousfeeds4J.exceptions.DeliciousFeedsException;
+import com.delicious.deliciousfeeds4J.exceptions.ErrorCode;
 import com.delicious.deliciousfeeds4J.exceptions.YouGotBannedException;
+import com.delicious.deliciousfeeds4J.metrics.FeedMetrics;
+import com.delicious.deliciousfeeds4J.ratelimit.IntervalRateLimiter;
+import com.delicious.deliciousfeeds4J.ratelimit.RateLimiter;
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
 import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.BasicResponseHandler;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.client.DefaultRedirectStrategy;
 import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.CoreProtocolPNames;
+import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
 import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonProcessingException;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.io.*;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
 import java.net.Proxy;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
  * A simple util class. Mainly for handling JSON deserialization and doing the actual
@@ -64,22 +111,338 @@ final class DeliciousUtil {
     //Snippet to detect if url is shortened
     private static final String URL_SHORTENED_SNIPPET = "icio.us/+";
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    //All feeds are served by the same host, so nearly all connections go to a single route
+    private static final int MAX_CONNECTIONS = 200;
 
-    private static final DefaultHttpClient HTTP_CLIENT;
+    static final int MAX_CONNECTIONS_PER_ROUTE = 100;
 
-    static {
-        final PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager();
-        HTTP_CLIENT = new DefaultHttpClient(connectionManager);
-        HTTP_CLIENT.setRedirectStrategy(new DefaultRedirectStrategy());
+    //How long warming up waits for a pooled connection if no connect timeout is set
+    private static final long WARM_UP_LEASE_TIMEOUT_MILLIS = 1000;
 
-        objectMapper.configure(DeserializationConfig.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int PURGE_INTERVAL = 1024;
+
+    private static final AtomicInteger CANCELLED_ABORTS = new AtomicInteger();
+
+    //States of a hedged request: the hedge is not sent yet, it is running, it answered first or it is not needed
+    private static final int HEDGE_PENDING = 0;
+
+    private static final int HEDGE_RUNNING = 1;
+
+    private static final int HEDGE_WON = 2;
+
+    private static final int HEDGE_LOST = 3;
+
+    //Error results are small - this much of every body is kept to detect them after streaming
+    private static final int CONTENT_PREFIX_SIZE = 4096;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    //One request per second is what delicious allows - shared by all DeliciousFeeds-instances
+    static final RateLimiter API_LIMIT = new IntervalRateLimiter(1, TimeUnit.SECONDS);
+
+    private static final TypeReference<List<Bookmark>> BOOKMARK_LIST_TYPE = new TypeReference<List<Bookmark>>() {
+    };
+
+    private static final TypeReference<Set<User>> USER_SET_TYPE = new TypeReference<Set<User>>() {
+    };
+
+    private static final TypeReference<Map<String, Integer>> TAG_MAP_TYPE = new TypeReference<Map<String, Integer>>() {
+    };
+
+    private static final TypeReference<Set<UserInfoDetail>> USER_INFO_DETAIL_SET_TYPE = new TypeReference<Set<UserInfoDetail>>() {
+    };
+
+    private static final TypeReference<Set<UrlInfo>> URL_INFO_SET_TYPE = new TypeReference<Set<UrlInfo>>() {
+    };
+
+    //Created on first use and again after close() - guarded by HTTP_CLIENT_LOCK, not by a monitor, so waiting
+    //virtual threads do not pin their carrier
+    private static volatile DefaultHttpClient httpClient;
+
+    private static final Lock HTTP_CLIENT_LOCK = new ReentrantLock();
+
+    //Lazy initialization without locking
+    private static final class ObjectMapperHolder {
+        private static final ObjectMapper INSTANCE = new ObjectMapper();
+
+        static {
+            INSTANCE.configure(DeserializationConfig.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
+        }
+    }
+
+    //Parses a response body - streamed from the connection or from a string
+    interface ResponseParser<T> {
+        T parse(JsonParser parser) throws Exception;
     }
 
+    static final ResponseParser<UrlInfo> URL_INFO_PARSER = new ResponseParser<UrlInfo>() {
+        @Override
+        public UrlInfo parse(JsonParser parser) throws Exception {
+
+            //Actually deserialize
+            final Set<UrlInfo> urlInfos = objectMapper().readValue(parser, URL_INFO_SET_TYPE);
+
+            if (urlInfos == null || urlInfos.isEmpty()) {
+                logger.debug("No UrlInfos found. Collection was empty.");
+                return null;
+            }
+
+            return urlInfos.iterator().next();
+        }
+    };
+
+    static final ResponseParser<Set<User>> USER_SET_PARSER = new ResponseParser<Set<User>>() {
+        @Override
+        public Set<User> parse(JsonParser parser) throws Exception {
+
+            //Actually deserialize
+            final Set<User> users = objectMapper().readValue(parser, USER_SET_TYPE);
+
+            if (users == null || users.isEmpty()) {
+                logger.debug("No users found. Collection was empty.");
+                return null;
+            }
+
+            logger.info("Successfully deserialized {} users!", users.size());
+
+            return users;
+        }
+    };
+
+    static final ResponseParser<Set<Tag>> TAG_SET_PARSER = new ResponseParser<Set<Tag>>() {
+        @Override
+        public Set<Tag> parse(JsonParser parser) throws Exception {
+
+            //Actually deserialize
+            final Map<String, Integer> tagMap = objectMapper().readValue(parser, TAG_MAP_TYPE);
+
+            if (tagMap == null || tagMap.isEmpty()) {
+                logger.debug("No tags found. Collection was empty.");
+                return null;
+            }
+
+            logger.info("Successfully deserialized {} tagMap!", tagMap.size());
+
+            //Build the set
+            final Set<Tag> tags = new TreeSet<Tag>();
+
+            for (Map.Entry<String, Integer> entry : tagMap.entrySet()) {
+                final Tag tag = new Tag();
+                tag.setName(entry.getKey());
+                tag.setCount(entry.getValue());
+
+                tags.add(tag);
+            }
+
+            return tags;
+        }
+    };
+
+    static final ResponseParser<List<Bookmark>> BOOKMARK_LIST_PARSER = new ResponseParser<List<Bookmark>>() {
+        @Override
+        public List<Bookmark> parse(JsonParser parser) throws Exception {
+
+            //Actually deserialize
+            final List<Bookmark> bookmarks = objectMapper().readValue(parser, BOOKMARK_LIST_TYPE);
+
+            if (bookmarks == null || bookmarks.isEmpty()) {
+                logger.debug("No bookmarks found. Collection was empty.");
+                return null;
+            }
+
+            logger.info("Successfully deserialized {} bookmarks!", bookmarks.size());
+
+            return bookmarks;
+        }
+    };
+
     //---------------------------------------------------------------------------
     // Methods
     //---------------------------------------------------------------------------
 
+    static ObjectMapper objectMapper() {
+        return ObjectMapperHolder.INSTANCE;
+    }
+
+    static DefaultHttpClient httpClient() {
+        final DefaultHttpClient client = httpClient;
+
+        if (client != null)
+            return client;
+
+        HTTP_CLIENT_LOCK.lock();
+        try {
+            if (httpClient == null) {
+                logger.debug("Creating the HTTP client...");
+
+                //The pool guards its state with a ReentrantLock, so waiting virtual threads do not pin their carrier
+                final PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager();
+                connectionManager.setMaxTotal(MAX_CONNECTIONS);
+                connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+
+                final DefaultHttpClient newClient = new DefaultHttpClient(connectionManager);
+                newClient.setRedirectStrategy(new DefaultRedirectStrategy());
+
+                httpClient = newClient;
+            }
+
+            return httpClient;
+        } finally {
+            HTTP_CLIENT_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Does the work of the first request up front: builds the HTTP client and the deserializers of all
+     * beans, resolves the host of the url and opens up to the given number of pooled connections to it -
+     * fewer if running requests keep the pool busy.
+     */
+    static void warmUp(String url, int connections) throws IOException {
+        final long start = System.nanoTime();
+
+        final ObjectMapper objectMapper = objectMapper();
+        for (TypeReference<?> type : new TypeReference<?>[]{BOOKMARK_LIST_TYPE, USER_SET_TYPE, TAG_MAP_TYPE,
+                USER_INFO_DETAIL_SET_TYPE, URL_INFO_SET_TYPE})
+            objectMapper.canDeserialize(objectMapper.getTypeFactory().constructType(type));
+
+        final HttpGet request = new HttpGet(url);
+        final HttpHost target = URIUtils.extractHost(request.getURI());
+
+        //Caches the address in the JVM for the first connection
+        InetAddress.getAllByName(target.getHostName());
+
+        //Same route as the requests will take, so they find the connections in the pool
+        final DefaultHttpClient client = httpClient();
+        final ClientConnectionManager connectionManager = client.getConnectionManager();
+        final HttpRoute route;
+        try {
+            route = client.getRoutePlanner().determineRoute(target, request, new BasicHttpContext());
+        } catch (HttpException ex) {
+            throw new IOException("No route to: " + target, ex);
+        }
+
+        //Requests running meanwhile need connections too - do not wait for them longer than for a connect
+        final int connectTimeout = HttpConnectionParams.getConnectionTimeout(client.getParams());
+        final long leaseTimeout = connectTimeout > 0 ? connectTimeout : WARM_UP_LEASE_TIMEOUT_MILLIS;
+
+        //Lease all before releasing any, otherwise the pool hands out the same connection again
+        final List<ManagedClientConnection> leased = new ArrayList<ManagedClientConnection>(connections);
+        try {
+            for (int i = 0; i < connections; i++) {
+                final ManagedClientConnection connection = connectionManager.requestConnection(route, null)
+                        .getConnection(leaseTimeout, TimeUnit.MILLISECONDS);
+                leased.add(connection);
+
+                if (connection.isOpen() == false)
+                    connection.open(route, new BasicHttpContext(), client.getParams());
+
+                connection.markReusable();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while opening connections to: " + target);
+        } catch (ConnectionPoolTimeoutException ex) {
+            //The pool is busy with real requests, which are warm already
+            logger.debug("No more pooled connections available for {} - stopped warming up.", target);
+        } finally {
+            for (ManagedClientConnection connection : leased)
+                connectionManager.releaseConnection(connection, -1, TimeUnit.MILLISECONDS);
+        }
+
+        logger.info("Warmed up {} connections to {} in {} ms", new Object[]{leased.size(), target,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)});
+    }
+
+    /**
+     * Closes all pooled connections. The next request creates a new HTTP client, requests running while
+     * closing may fail.
+     */
+    static void close() {
+        HTTP_CLIENT_LOCK.lock();
+        try {
+            if (httpClient != null) {
+                logger.debug("Closing the HTTP client...");
+
+                httpClient.getConnectionManager().shutdown();
+                httpClient = null;
+            }
+        } finally {
+            HTTP_CLIENT_LOCK.unlock();
+        }
+    }
+
+    //Connections which are open and idle in the pool
+    static int getAvailableConnections() {
+        final DefaultHttpClient client = httpClient;
+
+        if (client == null)
+            return 0;
+
+        return ((PoolingClientConnectionManager) client.getConnectionManager()).getTotalStats().getAvailable();
+    }
+
+    //Connections which are used by running requests
+    static int getLeasedConnections() {
+        final DefaultHttpClient client = httpClient;
+
+        if (client == null)
+            return 0;
+
+        return ((PoolingClientConnectionManager) client.getConnectionManager()).getTotalStats().getLeased();
+    }
+
+    //Requests waiting for a connection, because the pool is exhausted
+    static int getPendingConnections() {
+        final DefaultHttpClient client = httpClient;
+
+        if (client == null)
+            return 0;
+
+        return ((PoolingClientConnectionManager) client.getConnectionManager()).getTotalStats().getPending();
+    }
+
+    static ResponseParser<UserInfo> userInfoParser(final String username) {
+        return new ResponseParser<UserInfo>() {
+            @Override
+            public UserInfo parse(JsonParser parser) throws Exception {
+
+                //Actually deserialize
+                final Set<UserInfoDetail> userInfoDetails = objectMapper().readValue(parser, USER_INFO_DETAIL_SET_TYPE);
+
+                if (userInfoDetails == null || userInfoDetails.isEmpty()) {
+                    logger.debug("No userInfoDetails found. Collection was empty.");
+                    return null;
+                }
+
+                logger.info("Successfully deserialized {} userInfoDetails!", userInfoDetails.size());
+
+                //Now build a UserInfo-object
+                final UserInfo userInfo = new UserInfo();
+                userInfo.setUser(username);
+
+                for (UserInfoDetail userInfoDetail : userInfoDetails) {
+
+                    if (userInfoDetail.getId().equals(UserInfoDetail.ITEMS_ID))
+                        userInfo.setItems(userInfoDetail.getCount());
+                    else if (userInfoDetail.getId().equals(UserInfoDetail.FOLLOWERS_ID))
+                        userInfo.setFollowers(userInfoDetail.getCount());
+                    else if (userInfoDetail.getId().equals(UserInfoDetail.FOLLOWING_ID))
+                        userInfo.setFollowing(userInfoDetail.getCount());
+
+                    userInfo.getUserInfoDetailSet().add(userInfoDetail);
+                }
+
+                return userInfo;
+            }
+        };
+    }
+
+    private static JsonParser createParser(String json) throws IOException {
+        return objectMapper().getJsonFactory().createJsonParser(json);
+    }
+
     public static UrlInfo deserializeUrlInfoFromJson(String json) throws Exception {
 
         logger.debug("Trying to deserialize JSON to UrlInfos...");
@@ -91,16 +454,7 @@ final class DeliciousUtil {
             return null;
         }
 
-        //Actually deserialize
-        final Set<UrlInfo> urlInfos = ((Set<UrlInfo>) objectMapper.readValue(json, new TypeReference<Set<UrlInfo>>() {
-        }));
-
-        if (urlInfos == null || urlInfos.isEmpty()) {
-            logger.debug("No UrlInfos found. Collection was empty.");
-            return null;
-        }
-
-        return urlInfos.iterator().next();
+        return URL_INFO_PARSER.parse(createParser(json));
     }
 
     public static Set<User> deserializeUsersFromJson(String json) throws Exception {
@@ -114,18 +468,7 @@ final class DeliciousUtil {
             return null;
         }
 
-        //Actually deserialize
-        final Set<User> users = ((Set<User>) objectMapper.readValue(json, new TypeReference<Set<User>>() {
-        }));
-
-        if (users == null || users.isEmpty()) {
-            logger.debug("No users found. Collection was empty.");
-            return null;
-        }
-
-        logger.info("Successfully deserialized {} users!", users.size());
-
-        return users;
+        return USER_SET_PARSER.parse(createParser(json));
     }
 
     public static String buildPair(String name, String value) {
@@ -137,6 +480,14 @@ final class DeliciousUtil {
 
     public static DeliciousFeedsException buildException(Exception cause, String json, String message, String... args) {
 
+        //Check if it is maybe an error-result...
+        final ErrorResult errorResult = args != null && args.length > 0 ? deserializeErrorResult(json) : null;
+
+        return buildException(cause, errorResult, message, args);
+    }
+
+    static DeliciousFeedsException buildException(Exception cause, ErrorResult errorResult, String message, String... args) {
+
         final StringBuilder messageBuffer = new StringBuilder();
 
         boolean showCause = true;
@@ -149,9 +500,6 @@ final class DeliciousUtil {
             messageBuffer.append("[");
             messageBuffer.append(StringUtils.join(args, ", "));
 
-            //Check if it is maybe an error-result...
-            final ErrorResult errorResult = deserializeErrorResult(json);
-
             if (errorResult != null) {
                 messageBuffer.append(", ");
                 messageBuffer.append(buildPair("message", errorResult.getMessage()));
@@ -167,9 +515,25 @@ final class DeliciousUtil {
         }
 
         if (showCause)
-            return new DeliciousFeedsException(messageBuffer.toString(), cause);
+            return new DeliciousFeedsException(errorCodeOf(cause), messageBuffer.toString(), cause);
         else
-            return new DeliciousFeedsException(messageBuffer.toString());
+            return new DeliciousFeedsException(ErrorCode.ERROR_RESULT, messageBuffer.toString());
+    }
+
+    static ErrorCode errorCodeOf(Exception cause) {
+        if (cause instanceof DeliciousFeedsException)
+            return ((DeliciousFeedsException) cause).getErrorCode();
+
+        if (isTimeout(cause))
+            return ErrorCode.TIMEOUT;
+
+        if (cause instanceof InterruptedIOException)
+            return ErrorCode.INTERRUPTED;
+
+        if (cause instanceof IOException && cause instanceof JsonProcessingException == false)
+            return ErrorCode.IO_ERROR;
+
+        return ErrorCode.INVALID_RESPONSE;
     }
 
     public static ErrorResult deserializeErrorResult(String json) {
@@ -185,7 +549,7 @@ final class DeliciousUtil {
 
         try {
             //Actually deserialize
-            final JsonNode root = objectMapper.readTree(json);
+            final JsonNode root = objectMapper().readTree(json);
 
             if (root.isArray() == false || root.size() != 1) {
                 logger.debug("Error-Result is not an array or has more or less than one entry. Got {} entries.", root.size());
@@ -201,7 +565,7 @@ final class DeliciousUtil {
 
             final String error = errorResultNode.get("result").toString();
 
-            return objectMapper.readValue(error, ErrorResult.class);
+            return objectMapper().readValue(error, ErrorResult.class);
         } catch (Exception ex) {
             logger.debug("Error while deserializing error-result response!", ex);
             return null;
@@ -219,30 +583,7 @@ final class DeliciousUtil {
             return null;
         }
 
-        //Actually deserialize
-        final Map<String, Integer> tagMap = ((Map<String, Integer>) objectMapper.readValue(json,
-                new TypeReference<Map<String, Integer>>() {
-                }));
-
-        if (tagMap == null || tagMap.isEmpty()) {
-            logger.debug("No tags found. Collection was empty.");
-            return null;
-        }
-
-        logger.info("Successfully deserialized {} tagMap!", tagMap.size());
-
-        //Build the set
-        final Set<Tag> tags = new TreeSet<Tag>();
-
-        for (Map.Entry<String, Integer> entry : tagMap.entrySet()) {
-            final Tag tag = new Tag();
-            tag.setName(entry.getKey());
-            tag.setCount(entry.getValue());
-
-            tags.add(tag);
-        }
-
-        return tags;
+        return TAG_SET_PARSER.parse(createParser(json));
     }
 
     public static UserInfo deserializePublicUserInformationFromJson(String username, String json) throws Exception {
@@ -256,35 +597,7 @@ final class DeliciousUtil {
             return null;
         }
 
-        //Actually deserialize
-        final Set<UserInfoDetail> userInfoDetails = ((Set<UserInfoDetail>) objectMapper.readValue(json,
-                new TypeReference<Set<UserInfoDetail>>() {
-                }));
-
-        if (userInfoDetails == null || userInfoDetails.isEmpty()) {
-            logger.debug("No userInfoDetails found. Collection was empty.");
-            return null;
-        }
-
-        logger.info("Successfully deserialized {} userInfoDetails!", userInfoDetails.size());
-
-        //Now build a UserInfo-object
-        final UserInfo userInfo = new UserInfo();
-        userInfo.setUser(username);
-
-        for (UserInfoDetail userInfoDetail : userInfoDetails) {
-
-            if (userInfoDetail.getId().equals(UserInfoDetail.ITEMS_ID))
-                userInfo.setItems(userInfoDetail.getCount());
-            else if (userInfoDetail.getId().equals(UserInfoDetail.FOLLOWERS_ID))
-                userInfo.setFollowers(userInfoDetail.getCount());
-            else if (userInfoDetail.getId().equals(UserInfoDetail.FOLLOWING_ID))
-                userInfo.setFollowing(userInfoDetail.getCount());
-
-            userInfo.getUserInfoDetailSet().add(userInfoDetail);
-        }
-
-        return userInfo;
+        return userInfoParser(username).parse(createParser(json));
     }
 
     public static List<Bookmark> deserializeBookmarksFromJson(String json) throws Exception {
@@ -298,21 +611,14 @@ final class DeliciousUtil {
             return null;
         }
 
-        //Actually deserialize
-        final List<Bookmark> bookmarks = ((List<Bookmark>) objectMapper.readValue(json, new TypeReference<List<Bookmark>>() {
-        }));
-
-        if (bookmarks == null || bookmarks.isEmpty()) {
-            logger.debug("No bookmarks found. Collection was empty.");
-            return null;
-        }
-
-        logger.info("Successfully deserialized {} bookmarks!", bookmarks.size());
-
-        return bookmarks;
+        return BOOKMARK_LIST_PARSER.parse(createParser(json));
     }
 
     public static String doGetRequest(String url, String userAgent, boolean constainAPILimit) throws DeliciousFeedsException {
+        return doGetRequest(url, userAgent, constainAPILimit ? API_LIMIT : null);
+    }
+
+    public static String doGetRequest(String url, String userAgent, RateLimiter rateLimiter) throws DeliciousFeedsException {
 
         logger.info("Executing GET-Request to url: " + url);
 
@@ -325,24 +631,574 @@ final class DeliciousUtil {
         final ResponseHandler<String> responseHandler = new BasicResponseHandler();
 
         try {
-            if (constainAPILimit) {
-                logger.info("Waiting for 1 second to not reach the API limit and get banned!");
-                Thread.sleep(1000);
+            if (rateLimiter != null) {
+                logger.info("Waiting for a permit to not reach the API limit and get banned!");
+                rateLimiter.acquire();
             }
 
-            return HTTP_CLIENT.execute(getRequest, responseHandler);
+            return httpClient().execute(getRequest, responseHandler);
         } catch (Exception ex) {
 
+            //Keep the interrupt for the caller
+            if (ex instanceof InterruptedException)
+                Thread.currentThread().interrupt();
+
             //Check if you maybe got banned...
             if (ex instanceof HttpResponseException)
-                if (((HttpResponseException) ex).getStatusCode() == 503)
+                if (((HttpResponseException) ex).getStatusCode() == 503) {
+                    FeedEvents.banned(null, 503);
                     throw new YouGotBannedException(ex);
+                }
 
             throw new DeliciousFeedsException("Error occured while executing GET-Request to url: " + url, ex);
         }
     }
 
+    /**
+     * Executes a GET-request and streams the body into the given parser. Compressed responses are
+     * decompressed on the fly, without buffering the body. Parse errors and error statuses are returned in the
+     * response, errors of the connection are thrown.
+     */
+    static <T> FeedResponse<T> doGetRequest(String url, String userAgent, RateLimiter rateLimiter, boolean compression,
+                                            final FeedType feedType, final FeedMetrics metrics,
+                                            final ResponseParser<T> parser) throws DeliciousFeedsException {
+        return doGetRequest(url, userAgent, rateLimiter, null, null, null, compression, feedType, metrics, parser);
+    }
+
+    /**
+     * Like {@link #doGetRequest(String, String, RateLimiter, boolean, FeedType, FeedMetrics, ResponseParser)},
+     * but the request waits in the given lane for a slot and its rate permit, if lanes are given. If a deadline
+     * is given, every step only waits as long as it has time left, and cancelling it aborts the request and
+     * closes its connection.
+     */
+    static <T> FeedResponse<T> doGetRequest(String url, String userAgent, RateLimiter rateLimiter,
+                                            RequestLanes lanes, Priority priority, Deadline deadline,
+                                            boolean compression, final FeedType feedType, final FeedMetrics metrics,
+                                            final ResponseParser<T> parser) throws DeliciousFeedsException {
+        return doGetRequest(url, userAgent, rateLimiter, lanes, priority, deadline, compression, feedType, metrics,
+                parser, null);
+    }
+
+    //Runs onDispatch once the request got its slot and rate permit, right before it is sent
+    private static <T> FeedResponse<T> doGetRequest(String url, String userAgent, RateLimiter rateLimiter,
+                                                    RequestLanes lanes, Priority priority, Deadline deadline,
+                                                    boolean compression, final FeedType feedType,
+                                                    final FeedMetrics metrics, final ResponseParser<T> parser,
+                                                    Runnable onDispatch) throws DeliciousFeedsException {
+
+        logger.info("Executing GET-Request to url: " + url);
+
+        final HttpGet getRequest = new HttpGet(url);
+
+        final HttpParams params = new BasicHttpParams();
+        params.setParameter(CoreProtocolPNames.USER_AGENT, userAgent);
+        getRequest.setParams(params);
+
+        if (compression)
+            getRequest.setHeader("Accept-Encoding", ACCEPT_ENCODING);
+
+        boolean admitted = false;
+        CancelInterrupt interrupt = null;
+
+        try {
+            if (lanes != null || rateLimiter != null) {
+                final long timeout = deadline != null ? deadline.remaining(TimeUnit.NANOSECONDS) : Long.MAX_VALUE;
+
+                if (deadline != null) {
+                    interrupt = new CancelInterrupt(Thread.currentThread());
+                    deadline.addCancelListener(interrupt);
+                }
+
+                final Object waitEvent = FeedEvents.beginRateLimitWait();
+                final boolean permitted;
+                try {
+                    if (lanes != null) {
+                        logger.debug("Waiting in lane {} for a slot...", priority);
+                        permitted = admitted = lanes.tryAcquire(priority, rateLimiter, timeout, TimeUnit.NANOSECONDS);
+                    } else if (timeout == Long.MAX_VALUE) {
+                        logger.info("Waiting for a permit to not reach the API limit and get banned!");
+                        rateLimiter.acquire();
+                        permitted = true;
+                    } else {
+                        logger.info("Waiting for a permit to not reach the API limit and get banned!");
+                        permitted = rateLimiter.tryAcquire(timeout, TimeUnit.NANOSECONDS);
+                    }
+                } finally {
+                    FeedEvents.endRateLimitWait(waitEvent, rateLimiter);
+
+                    if (interrupt != null) {
+                        deadline.removeCancelListener(interrupt);
+
+                        //The interrupt was only meant to end the wait - one of the caller is kept
+                        if (interrupt.interrupted)
+                            Thread.interrupted();
+                    }
+                }
+
+                if (permitted == false)
+                    throw deadlineExceeded(deadline, "Deadline expired while waiting to execute GET-Request to url: " + url, null);
+            }
+
+            if (deadline != null) {
+                if (deadline.isExpired())
+                    throw deadlineExceeded(deadline, "Deadline expired before executing GET-Request to url: " + url, null);
+
+                applyTimeouts(params, deadline);
+            }
+
+            if (onDispatch != null)
+                onDispatch.run();
+
+            final Runnable abort = deadline != null ? abortOnCancel(getRequest) : null;
+            final Future<?> scheduledAbort = deadline != null && deadline.hasTimeLimit()
+                    ? AbortSchedulerHolder.INSTANCE.schedule(abort, deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                    : null;
+
+            if (abort != null)
+                deadline.addCancelListener(abort);
+
+            final Object requestEvent = FeedEvents.beginRequest();
+            try {
+                return httpClient().execute(getRequest, new ResponseHandler<FeedResponse<T>>() {
+                    @Override
+                    public FeedResponse<T> handleResponse(HttpResponse response) throws IOException {
+                        return parseResponse(response, feedType, metrics, parser, requestEvent);
+                    }
+                });
+            } finally {
+                FeedEvents.endRequest(requestEvent, feedType, url);
+
+                if (abort != null)
+                    deadline.removeCancelListener(abort);
+
+                if (scheduledAbort != null)
+                    cancelScheduledAbort(scheduledAbort);
+            }
+        } catch (DeliciousFeedsException ex) {
+            throw ex;
+        } catch (InterruptedException ex) {
+            final boolean byCancel = interrupt != null && interrupt.interrupted;
+
+            //Keep an interrupt of the caller
+            if (byCancel == false)
+                Thread.currentThread().interrupt();
+
+            if (deadline != null && deadline.isCancelled())
+                throw deadlineExceeded(deadline, "Cancelled while waiting to execute GET-Request to url: " + url, ex);
+
+            throw new DeliciousFeedsException(ErrorCode.INTERRUPTED, "Interrupted while executing GET-Request to url: " + url, ex);
+        } catch (Exception ex) {
+            if (deadline != null && deadline.isExpired())
+                throw deadlineExceeded(deadline, "Deadline expired while executing GET-Request to url: " + url, ex);
+
+            throw new DeliciousFeedsException(isTimeout(ex) ? ErrorCode.TIMEOUT : ErrorCode.IO_ERROR,
+                    "Error occured while executing GET-Request to url: " + url, ex);
+        } finally {
+            if (admitted)
+                lanes.release(priority);
+        }
+    }
+
+    /**
+     * Like {@link #doGetRequest(String, String, RateLimiter, RequestLanes, Priority, Deadline, boolean, FeedType, FeedMetrics, ResponseParser)},
+     * but if the request is still running after the delay of the hedge policy, a duplicate is sent on another
+     * connection from the executor. The delay starts when the request is sent, time spent waiting for a slot
+     * or permit does not count. Whichever answers first is returned and the other one is aborted. The
+     * duplicate needs a rate permit right away and a share of the hedge budget, otherwise it is not sent.
+     */
+    static <T> FeedResponse<T> doHedgedGetRequest(final String url, final String userAgent, final RateLimiter rateLimiter,
+                                                  final RequestLanes lanes, final Priority priority, Deadline deadline,
+                                                  final boolean compression, final FeedType feedType,
+                                                  final FeedMetrics metrics, final ResponseParser<T> parser,
+                                                  final HedgePolicy policy, final Executor executor) throws DeliciousFeedsException {
+        policy.recordRequest();
+
+        final long delayNanos = policy.getDelay(feedType, TimeUnit.NANOSECONDS);
+
+        //Latencies are measured from sending, so queueing does not stretch the hedge delay
+        final AtomicLong dispatchedAt = new AtomicLong();
+
+        //Too few latencies known yet to tell a slow request
+        if (delayNanos < 0) {
+            final FeedResponse<T> response = doGetRequest(url, userAgent, rateLimiter, lanes, priority, deadline,
+                    compression, feedType, metrics, parser, recordDispatch(dispatchedAt));
+
+            policy.recordLatency(feedType, System.nanoTime() - dispatchedAt.get());
+            return response;
+        }
+
+        //Each attempt can be aborted on its own, cancelling the call aborts both
+        final Deadline primaryDeadline = forkDeadline(deadline);
+        final Deadline hedgeDeadline = forkDeadline(deadline);
+        final Runnable cancelAttempts = new Runnable() {
+            @Override
+            public void run() {
+                primaryDeadline.cancel();
+                hedgeDeadline.cancel();
+            }
+        };
+
+        final AtomicInteger state = new AtomicInteger(HEDGE_PENDING);
+
+        final FutureTask<FeedResponse<T>> hedge = new FutureTask<FeedResponse<T>>(new Callable<FeedResponse<T>>() {
+            @Override
+            public FeedResponse<T> call() throws Exception {
+                //The rate permit was taken before, so only the lane is waited for
+                final FeedResponse<T> response = doGetRequest(url, userAgent, null, lanes, priority, hedgeDeadline,
+                        compression, feedType, metrics, parser);
+
+                if (state.compareAndSet(HEDGE_RUNNING, HEDGE_WON)) {
+                    logger.debug("Hedge answered first, aborting the request to url: {}", url);
+                    policy.recordHedgeWin();
+                    primaryDeadline.cancel();
+                }
+
+                return response;
+            }
+        });
+
+        //Runs on the executor - taking a permit of a distributed rate limiter may block on the network
+        final Runnable startHedge = new Runnable() {
+            @Override
+            public void run() {
+
+                //Claimed before reserving anything, so an answer meanwhile does not cost budget or permit
+                if (hedgeDeadline.isExpired() || state.compareAndSet(HEDGE_PENDING, HEDGE_RUNNING) == false)
+                    return;
+
+                //The budget is taken first, as it can be given back - a rate permit can not
+                boolean reserved = policy.tryHedge();
+
+                if (reserved && rateLimiter != null) {
+                    try {
+                        reserved = rateLimiter.tryAcquire(0, TimeUnit.NANOSECONDS);
+                    } catch (InterruptedException ex) {
+                        reserved = false;
+                        Thread.currentThread().interrupt();
+                    }
+
+                    if (reserved == false)
+                        policy.refundHedge();
+                }
+
+                if (reserved == false) {
+                    logger.debug("No hedge budget or rate permit left for a hedge of the request to url: {}", url);
+
+                    //The request finishes on its own - and a failed one waiting for the hedge gives up
+                    state.compareAndSet(HEDGE_RUNNING, HEDGE_PENDING);
+                    hedge.cancel(false);
+                    return;
+                }
+
+                logger.debug("Sending a hedge of the slow request to url: {}", url);
+                hedge.run();
+            }
+        };
+
+        //Runs on the scheduler thread, which aborts requests as well - so it only hands over
+        final Runnable triggerHedge = new Runnable() {
+            @Override
+            public void run() {
+                if (state.get() != HEDGE_PENDING)
+                    return;
+
+                try {
+                    executor.execute(startHedge);
+                } catch (RejectedExecutionException ex) {
+                    logger.debug("Executor rejected the hedge of the request to url: {}", url);
+                }
+            }
+        };
+
+        final AtomicReference<Future<?>> scheduledHedge = new AtomicReference<Future<?>>();
+        final Runnable dispatchPrimary = new Runnable() {
+            @Override
+            public void run() {
+                dispatchedAt.set(System.nanoTime());
+                scheduledHedge.set(AbortSchedulerHolder.INSTANCE.schedule(triggerHedge, delayNanos, TimeUnit.NANOSECONDS));
+            }
+        };
+
+        if (deadline != null)
+            deadline.addCancelListener(cancelAttempts);
+
+        try {
+            FeedResponse<T> response = null;
+            DeliciousFeedsException failure = null;
+            try {
+                response = doGetRequest(url, userAgent, rateLimiter, lanes, priority, primaryDeadline, compression,
+                        feedType, metrics, parser, dispatchPrimary);
+            } catch (DeliciousFeedsException ex) {
+                failure = ex;
+            } finally {
+                if (scheduledHedge.get() != null)
+                    cancelScheduledAbort(scheduledHedge.get());
+            }
+
+            //No hedge was sent - or it lost and is aborted
+            if (state.compareAndSet(HEDGE_PENDING, HEDGE_LOST) || (response != null && state.compareAndSet(HEDGE_RUNNING, HEDGE_LOST))) {
+                hedgeDeadline.cancel();
+                hedge.cancel(false);
+
+                if (failure != null)
+                    throw failure;
+
+                policy.recordLatency(feedType, System.nanoTime() - dispatchedAt.get());
+                return response;
+            }
+
+            //The hedge answered first or is the last chance
+            try {
+                response = hedge.get();
+            } catch (InterruptedException ex) {
+                hedgeDeadline.cancel();
+                Thread.currentThread().interrupt();
+
+                throw new DeliciousFeedsException(ErrorCode.INTERRUPTED, "Interrupted while executing GET-Request to url: " + url, ex);
+            } catch (ExecutionException ex) {
+                throw failure != null ? failure : unwrap(ex);
+            } catch (CancellationException ex) {
+                throw failure != null ? failure : new DeliciousFeedsException(ErrorCode.CANCELLED, "Hedge of GET-Request was cancelled, url: " + url, ex);
+            }
+
+            policy.recordLatency(feedType, System.nanoTime() - dispatchedAt.get());
+            return response;
+        } finally {
+            if (deadline != null)
+                deadline.removeCancelListener(cancelAttempts);
+        }
+    }
+
+    private static Runnable recordDispatch(final AtomicLong dispatchedAt) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                dispatchedAt.set(System.nanoTime());
+            }
+        };
+    }
+
+    //An attempt of a hedged request has the time limit of the call, but can be cancelled on its own
+    private static Deadline forkDeadline(Deadline deadline) {
+        if (deadline != null && deadline.hasTimeLimit())
+            return Deadline.after(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+
+        return Deadline.cancellable();
+    }
+
+    private static DeliciousFeedsException unwrap(ExecutionException ex) {
+        if (ex.getCause() instanceof DeliciousFeedsException)
+            return (DeliciousFeedsException) ex.getCause();
+
+        return new DeliciousFeedsException(ErrorCode.UNKNOWN, "Hedge of GET-Request failed!", ex.getCause());
+    }
+
+    static DeliciousFeedsException deadlineExceeded(Deadline deadline, String message, Throwable cause) {
+        return new DeliciousFeedsException(deadline.isCancelled() ? ErrorCode.CANCELLED : ErrorCode.TIMEOUT, message, cause);
+    }
+
+    private static boolean isTimeout(Exception ex) {
+        return ex instanceof SocketTimeoutException || ex instanceof ConnectTimeoutException;
+    }
+
+    //Connecting, leasing a connection and every read give up when the deadline passes
+    private static void applyTimeouts(HttpParams params, Deadline deadline) {
+        if (deadline.hasTimeLimit() == false)
+            return;
+
+        final int millis = (int) Math.max(1, Math.min(Integer.MAX_VALUE, deadline.remaining(TimeUnit.MILLISECONDS)));
+
+        HttpConnectionParams.setConnectionTimeout(params, millis);
+        HttpConnectionParams.setSoTimeout(params, millis);
+        HttpClientParams.setConnectionManagerTimeout(params, millis);
+    }
+
+    //Aborting closes the connection, so a blocked read returns right away
+    private static Runnable abortOnCancel(final HttpGet getRequest) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                getRequest.abort();
+            }
+        };
+    }
+
+    //Java 6 can not remove cancelled tasks from the queue right away, so they are purged now and then
+    private static void cancelScheduledAbort(Future<?> scheduledAbort) {
+        if (scheduledAbort.cancel(false) && CANCELLED_ABORTS.incrementAndGet() % PURGE_INTERVAL == 0)
+            AbortSchedulerHolder.INSTANCE.purge();
+    }
+
+    //Interrupts a waiting thread when the deadline is cancelled, and remembers it did
+    private static final class CancelInterrupt implements Runnable {
+
+        private final Thread thread;
+
+        //Only read once the listener was removed, so it does not run anymore
+        private volatile boolean interrupted;
+
+        CancelInterrupt(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        public void run() {
+
+            //An interrupt already pending belongs to the caller
+            if (thread.isInterrupted() == false) {
+                interrupted = true;
+                thread.interrupt();
+            }
+        }
+    }
+
+    //Aborts requests whose deadline passed - created on first use
+    private static final class AbortSchedulerHolder {
+        private static final ScheduledThreadPoolExecutor INSTANCE = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "deliciousfeeds4j-deadline");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    static <T> FeedResponse<T> parseResponse(HttpResponse response, FeedType feedType, FeedMetrics metrics,
+                                             ResponseParser<T> parser, Object requestEvent) throws IOException {
+
+        final StatusLine statusLine = response.getStatusLine();
+        final HttpEntity entity = response.getEntity();
+
+        if (statusLine.getStatusCode() >= 300) {
+            FeedEvents.responseReceived(requestEvent, statusLine.getStatusCode(), false, 0, 0);
+
+            if (statusLine.getStatusCode() == 503)
+                FeedEvents.banned(feedType, statusLine.getStatusCode());
+
+            if (entity != null)
+                entity.getContent().close();
+
+            return FeedResponse.status(statusLine.getStatusCode(), statusLine.getReasonPhrase());
+        }
+
+        final Charset charset = charsetOf(entity);
+
+        if (entity == null) {
+            FeedEvents.responseReceived(requestEvent, statusLine.getStatusCode(), false, 0, 0);
+            return FeedResponse.parsed(statusLine.getStatusCode(), null, new CountingInputStream(new ByteArrayInputStream(new byte[0])), charset);
+        }
+
+        final String encoding = entity.getContentEncoding() != null ? entity.getContentEncoding().getValue() : null;
+
+        final CountingInputStream wire = new CountingInputStream(entity.getContent());
+        CountingInputStream body = null;
+        InputStream stream = wire;
+        Inflater inflater = null;
+
+        try {
+            if ("gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)) {
+                stream = new GZIPInputStream(wire, 8192);
+            } else if ("deflate".equalsIgnoreCase(encoding)) {
+                final PushbackInputStream pushback = new PushbackInputStream(wire, 2);
+                inflater = new Inflater(!hasZlibHeader(pushback));
+                stream = new InflaterInputStream(pushback, inflater, 8192);
+            } else if (encoding != null && !"identity".equalsIgnoreCase(encoding)) {
+                throw new IOException("Unsupported content encoding: " + encoding);
+            }
+
+            body = new CountingInputStream(stream, CONTENT_PREFIX_SIZE);
+
+            final JsonParser jsonParser = isUnicode(charset)
+                    ? objectMapper().getJsonFactory().createJsonParser(body)
+                    : objectMapper().getJsonFactory().createJsonParser(new InputStreamReader(body, charset));
+
+            final Object deserializationEvent = FeedEvents.beginDeserialization();
+            T value = null;
+
+            try {
+
+                //An empty body is no error
+                value = jsonParser.nextToken() != null ? parser.parse(jsonParser) : null;
+
+                return FeedResponse.parsed(statusLine.getStatusCode(), value, body, charset);
+            } catch (JsonProcessingException ex) {
+                body.fillPrefix();
+                return FeedResponse.failed(statusLine.getStatusCode(), ex, body, charset);
+            } catch (IOException ex) {
+
+                //The connection failed
+                throw ex;
+            } catch (Exception ex) {
+                body.fillPrefix();
+                return FeedResponse.failed(statusLine.getStatusCode(), ex, body, charset);
+            } finally {
+                FeedEvents.endDeserialization(deserializationEvent, feedType, value, body.getCount());
+            }
+        } finally {
+            final long contentBytes = body != null ? body.getCount() : 0;
+
+            metrics.recordResponse(feedType, stream != wire, wire.getCount(), contentBytes);
+            FeedEvents.responseReceived(requestEvent, statusLine.getStatusCode(), stream != wire, wire.getCount(), contentBytes);
+
+            //Releases the connection and the native memory of the inflater
+            stream.close();
+
+            if (inflater != null)
+                inflater.end();
+        }
+    }
+
+    private static Charset charsetOf(HttpEntity entity) {
+        try {
+            final ContentType contentType = entity != null ? ContentType.get(entity) : null;
+
+            if (contentType != null && contentType.getCharset() != null)
+                return contentType.getCharset();
+        } catch (Exception ex) {
+            logger.debug("Invalid content type - assuming UTF-8: " + ex.getMessage());
+        }
+
+        return UTF8;
+    }
+
+    //Jackson detects the UTF encodings itself and decodes them faster than a Reader
+    private static boolean isUnicode(Charset charset) {
+        return charset.name().startsWith("UTF-");
+    }
+
+    //"deflate" should be zlib-wrapped, but some servers send raw deflate data
+    private static boolean hasZlibHeader(PushbackInputStream input) throws IOException {
+        final int first = input.read();
+
+        if (first < 0)
+            return true;
+
+        final int second = input.read();
+
+        if (second >= 0)
+            input.unread(second);
+
+        input.unread(first);
+
+        return second >= 0 && (first & 0x0f) == 8 && ((first << 8) | second) % 31 == 0;
+    }
+
+    public static boolean isShortenedUrl(String url) {
+        return url != null && url.contains(URL_SHORTENED_SNIPPET);
+    }
+
     public static String expandShortenedUrl(String shortenedUrl, String userAgent) throws IOException {
+        return expandShortenedUrl(shortenedUrl, userAgent, null);
+    }
+
+    /**
+     * Like {@link #expandShortenedUrl(String, String)}, but connecting and reading give up when the deadline
+     * passes, and cancelling it disconnects.
+     *
+     * @throws InterruptedIOException if the deadline passed or was cancelled
+     */
+    static String expandShortenedUrl(String shortenedUrl, String userAgent, Deadline deadline) throws IOException {
 
         if (shortenedUrl == null || shortenedUrl.isEmpty())
             return shortenedUrl;
@@ -358,6 +1214,20 @@ final class DeliciousUtil {
         final URL url = new URL(shortenedUrl);
 
         final HttpURLConnection connection = (HttpURLConnection) url.openConnection(Proxy.NO_PROXY);
+        final Runnable disconnect = deadline != null ? disconnectOnCancel(connection) : null;
+
+        if (deadline != null) {
+            if (deadline.isExpired())
+                throw new InterruptedIOException("Deadline expired before expanding shortened url: " + shortenedUrl);
+
+            if (deadline.hasTimeLimit()) {
+                final int millis = (int) Math.max(1, Math.min(Integer.MAX_VALUE, deadline.remaining(TimeUnit.MILLISECONDS)));
+                connection.setConnectTimeout(millis);
+                connection.setReadTimeout(millis);
+            }
+
+            deadline.addCancelListener(disconnect);
+        }
 
         try {
             connection.setInstanceFollowRedirects(false);
@@ -378,11 +1248,29 @@ final class DeliciousUtil {
                 }
             }
         } catch (Exception ex) {
+            if (deadline != null && deadline.isExpired())
+                throw (InterruptedIOException) new InterruptedIOException("Deadline expired while expanding shortened url: " + shortenedUrl).initCause(ex);
+
             logger.debug("Error while trying to expand shortened url: " + shortenedUrl, ex);
         } finally {
-            connection.getInputStream().close();
+            if (deadline != null)
+                deadline.removeCancelListener(disconnect);
+
+            if (deadline != null && deadline.isExpired())
+                connection.disconnect();
+            else
+                connection.getInputStream().close();
         }
 
         return shortenedUrl;
     }
+
+    private static Runnable disconnectOnCancel(final HttpURLConnection connection) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                connection.disconnect();
+            }
+        };
+    }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J;
+
+import com.delicious.deliciousfeeds4J.ratelimit.RateLimiter;
+
+/**
+ * Emits the Java Flight Recorder events of the client: requests, waiting for the rate limiter,
+ * deserialization, url expansion and bans. The {@code begin*}-methods return the event to pass to the
+ * matching {@code end*}-method.
+ * <p/>
+ * This is the variant for Java 6 to 10, which has no JFR - all methods do nothing. The multi-release jar
+ * contains the variant for Java 11+ in {@code META-INF/versions/11}.
+ *
+ * @author Patrick Meier
+ */
+final class FeedEvents {
+
+    private FeedEvents() {
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    static Object beginRequest() {
+        return null;
+    }
+
+    static void responseReceived(Object event, int statusCode, boolean compressed, long wireBytes, long contentBytes) {
+    }
+
+    static void endRequest(Object event, FeedType feedType, String url) {
+    }
+
+    static Object beginRateLimitWait() {
+        return null;
+    }
+
+    static void endRateLimitWait(Object event, RateLimiter rateLimiter) {
+    }
+
+    static Object beginDeserialization() {
+        return null;
+    }
+
+    static void endDeserialization(Object event, FeedType feedType, Object value, long contentBytes) {
+    }
+
+    static Object beginUrlExpansion() {
+        return null;
+    }
+
+    static void endUrlExpansion(Object event, int bookmarks, int expandedUrls) {
+    }
+
+    static void banned(FeedType feedType, int statusCode) {
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J;
+
+import java.nio.charset.Charset;
+
+/**
+ * The result of a request whose body was streamed into a parser. Parse errors and error statuses are kept
+ * instead of thrown, so callers can handle them together with their own post-processing errors. The first
+ * bytes of the body are kept to detect error results.
+ *
+ * @author Patrick Meier
+ */
+final class FeedResponse<T> {
+
+    private final int statusCode;
+
+    private final String reasonPhrase;
+
+    private final T value;
+
+    private final Exception error;
+
+    //Decoded only if needed
+    private final CountingInputStream body;
+
+    private final Charset charset;
+
+    private FeedResponse(int statusCode, String reasonPhrase, T value, Exception error, CountingInputStream body,
+                         Charset charset) {
+        this.statusCode = statusCode;
+        this.reasonPhrase = reasonPhrase;
+        this.value = value;
+        this.error = error;
+        this.body = body;
+        this.charset = charset;
+    }
+
+    static <T> FeedResponse<T> parsed(int statusCode, T value, CountingInputStream body, Charset charset) {
+        return new FeedResponse<T>(statusCode, null, value, null, body, charset);
+    }
+
+    static <T> FeedResponse<T> failed(int statusCode, Exception error, CountingInputStream body, Charset charset) {
+        return new FeedResponse<T>(statusCode, null, null, error, body, charset);
+    }
+
+    //The body of error statuses is not read
+    static <T> FeedResponse<T> status(int statusCode, String reasonPhrase) {
+        return new FeedResponse<T>(statusCode, reasonPhrase, null, null, null, null);
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets whether the status code tells the request was successful.
+     *
+     * @return true for status codes below 300
+     */
+    boolean isSuccessful() {
+        return statusCode < 300;
+    }
+
+    int getStatusCode() {
+        return statusCode;
+    }
+
+    String getReasonPhrase() {
+        return reasonPhrase;
+    }
+
+    /**
+     * Gets the parsed value.
+     *
+     * @return the value, null if the body was empty
+     * @throws Exception if parsing failed
+     */
+    T getValue() throws Exception {
+        if (error != null)
+            throw error;
+
+        return value;
+    }
+
+    /**
+     * Gets the beginning of the body - the whole body if it is small, like error results are.
+     *
+     * @return the beginning of the body
+     */
+    String getContent() {
+        if (body == null)
+            return null;
+
+        return body.getPrefix(charset);
+    }
+}
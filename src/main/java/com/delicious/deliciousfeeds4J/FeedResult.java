@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J;
+
+import com.delicious.deliciousfeeds4J.beans.ErrorResult;
+import com.delicious.deliciousfeeds4J.exceptions.DeliciousFeedsException;
+import com.delicious.deliciousfeeds4J.exceptions.ErrorCode;
+import com.delicious.deliciousfeeds4J.exceptions.YouGotBannedException;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.client.HttpResponseException;
+
+import java.util.Collection;
+
+/**
+ * The outcome of a {@code tryFind*}-call of {@link DeliciousFeeds}: either the found value or the reason it
+ * failed. Failures are returned without building an exception or its message, which is much cheaper when
+ * many calls fail - e.g. private feeds with expired keys or deleted users. {@link #getOrThrow()} turns a
+ * failure into the exception the {@code find*}-methods throw.
+ *
+ * @author Patrick Meier
+ */
+public final class FeedResult<T> {
+
+    private final T value;
+
+    private final ErrorCode errorCode;
+
+    private final int statusCode;
+
+    private final String reasonPhrase;
+
+    private final ErrorResult errorResult;
+
+    private final Exception cause;
+
+    //Only needed to build the message - so it is built lazily
+    private final String url;
+
+    private final String message;
+
+    private final Object[] context;
+
+    private FeedResult(T value, ErrorCode errorCode, int statusCode, String reasonPhrase, ErrorResult errorResult,
+                       Exception cause, String url, String message, Object[] context) {
+        this.value = value;
+        this.errorCode = errorCode;
+        this.statusCode = statusCode;
+        this.reasonPhrase = reasonPhrase;
+        this.errorResult = errorResult;
+        this.cause = cause;
+        this.url = url;
+        this.message = message;
+        this.context = context;
+    }
+
+    /**
+     * Creates a successful result.
+     *
+     * @param value the value, may be null if nothing was found
+     * @return the result
+     */
+    public static <T> FeedResult<T> success(T value) {
+        return new FeedResult<T>(value, null, 0, null, null, null, null, null, null);
+    }
+
+    /**
+     * Creates a failed result from an exception, e.g. one thrown by a {@code find*}-method.
+     *
+     * @param exception the exception
+     * @return the result
+     * @throws IllegalArgumentException if exception is null
+     */
+    public static <T> FeedResult<T> failure(DeliciousFeedsException exception) {
+        if (exception == null)
+            throw new IllegalArgumentException("Exception must not be null!");
+
+        return new FeedResult<T>(null, exception.getErrorCode(), 0, null, null, exception, null, null, null);
+    }
+
+    /**
+     * Creates the result of a response.
+     *
+     * @param response the response
+     * @param url      the requested url
+     * @param message  the message of the exception if it failed
+     * @param context  alternating names and values describing the call - only formatted if needed
+     */
+    static <T> FeedResult<T> of(FeedResponse<T> response, String url, String message, Object... context) {
+
+        if (response.isSuccessful() == false) {
+            final ErrorCode errorCode = response.getStatusCode() == 503 ? ErrorCode.BANNED : ErrorCode.HTTP_ERROR;
+            return new FeedResult<T>(null, errorCode, response.getStatusCode(), response.getReasonPhrase(), null, null,
+                    url, message, context);
+        }
+
+        try {
+            return success(response.getValue());
+        } catch (Exception ex) {
+            return failure(ex, response.getContent(), url, message, context);
+        }
+    }
+
+    /**
+     * Creates a failed result from an exception which occured while handling a response.
+     *
+     * @param cause   the exception
+     * @param content the beginning of the response - it may be an error result
+     * @param url     the requested url
+     * @param message the message of the exception if it failed
+     * @param context alternating names and values describing the call - only formatted if needed
+     */
+    static <T> FeedResult<T> failure(Exception cause, String content, String url, String message, Object... context) {
+        final ErrorResult errorResult = DeliciousUtil.deserializeErrorResult(content);
+
+        if (errorResult != null)
+            return new FeedResult<T>(null, ErrorCode.ERROR_RESULT, 0, null, errorResult, null, url, message, context);
+
+        return new FeedResult<T>(null, DeliciousUtil.errorCodeOf(cause), 0, null, null, cause, url, message, context);
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets the value or throws the failure.
+     *
+     * @return the value, null if nothing found
+     * @throws DeliciousFeedsException if the call failed
+     */
+    public T getOrThrow() throws DeliciousFeedsException {
+        if (isSuccess())
+            return value;
+
+        throw toException();
+    }
+
+    /**
+     * Builds the exception the {@code find*}-methods throw for this failure.
+     *
+     * @return the exception, null if the call was successful
+     */
+    public DeliciousFeedsException toException() {
+        if (isSuccess())
+            return null;
+
+        if (cause instanceof DeliciousFeedsException)
+            return (DeliciousFeedsException) cause;
+
+        if (errorCode == ErrorCode.BANNED)
+            return new YouGotBannedException(new StatusException(statusCode, reasonPhrase));
+
+        if (errorCode == ErrorCode.HTTP_ERROR)
+            return new DeliciousFeedsException(errorCode, "Error occured while executing GET-Request to url: " + url,
+                    new StatusException(statusCode, reasonPhrase));
+
+        return DeliciousUtil.buildException(cause, errorResult, message, formatContext());
+    }
+
+    private String[] formatContext() {
+        final String[] args = new String[context.length / 2];
+
+        for (int i = 0; i < args.length; i++) {
+            final Object contextValue = context[2 * i + 1];
+
+            final String formatted = contextValue instanceof Object[]
+                    ? StringUtils.join((Object[]) contextValue, ", ")
+                    : contextValue instanceof Collection
+                    ? StringUtils.join((Collection<?>) contextValue, ", ")
+                    : contextValue != null ? contextValue.toString() : null;
+
+            args[i] = DeliciousUtil.buildPair((String) context[2 * i], formatted);
+        }
+
+        return args;
+    }
+
+    @Override
+    public String toString() {
+        if (isSuccess())
+            return "FeedResult{value=" + value + '}';
+
+        return "FeedResult{" +
+                "errorCode=" + errorCode +
+                (statusCode != 0 ? ", statusCode=" + statusCode : "") +
+                (errorResult != null ? ", errorResult=" + errorResult : "") +
+                '}';
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public boolean isSuccess() {
+        return errorCode == null;
+    }
+
+    /**
+     * Gets the value of a successful call.
+     *
+     * @return the value, null if nothing found or the call failed
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * Gets why the call failed.
+     *
+     * @return the error code, null if the call was successful
+     */
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * Gets the HTTP status of a failed call.
+     *
+     * @return the status for {@link ErrorCode#BANNED} and {@link ErrorCode#HTTP_ERROR}, 0 otherwise
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Gets the error result delicious answered with.
+     *
+     * @return the error result for {@link ErrorCode#ERROR_RESULT}, null otherwise
+     */
+    public ErrorResult getErrorResult() {
+        return errorResult;
+    }
+
+    /**
+     * Gets the exception which made the call fail.
+     *
+     * @return the exception or null if there was none - e.g. for an error result
+     */
+    public Exception getCause() {
+        return cause;
+    }
+
+    //---------------------------------------------------------------------------
+    // Helper classes
+    //---------------------------------------------------------------------------
+
+    //The status of a failed response as cause - without a stack trace, like the DeliciousFeedsException
+    private static final class StatusException extends HttpResponseException {
+
+        StatusException(int statusCode, String reasonPhrase) {
+            super(statusCode, reasonPhrase);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            if (DeliciousFeedsException.isStackTraceEnabled())
+                return super.fillInStackTrace();
+
+            return this;
+        }
+    }
+}
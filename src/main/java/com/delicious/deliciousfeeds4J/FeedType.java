@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J;
+
+import com.delicious.deliciousfeeds4J.request.RequestTemplate;
+
+/**
+ * The feeds of the delicious API, one per kind of request {@link DeliciousFeeds} sends. Each one knows the
+ * template of its url and is used to break down metrics by feed.
+ *
+ * @author Patrick Meier
+ */
+public enum FeedType {
+
+    RECENT_BOOKMARKS("recent?count={count}"),
+    POPULAR_BOOKMARKS("popular?count={count}"),
+    TAG_BOOKMARKS("tag/{tags}?count={count}"),
+    POPULAR_TAG_BOOKMARKS("popular/{tags}?count={count}"),
+    USER_BOOKMARKS("{username}?count={count}"),
+    PRIVATE_USER_BOOKMARKS("{username}?private={key}&count={count}"),
+    USER_TAG_BOOKMARKS("{username}/{tags}?count={count}"),
+    PRIVATE_USER_TAG_BOOKMARKS("{username}/{tags}?private={key}&count={count}"),
+    USER_SUMMARY("userinfo/{username}"),
+    USER_TAGS("tags/{username}"),
+    RELATED_USER_TAGS("tags/{username}/{tags}"),
+    INBOX_BOOKMARKS("inbox/{username}?private={key}&count={count}"),
+    NETWORK_BOOKMARKS("network/{username}?count={count}"),
+    NETWORK_TAG_BOOKMARKS("network/{username}/{tags}?count={count}"),
+    NETWORK_MEMBERS("networkmembers/{username}"),
+    URL_BOOKMARKS("url/{hash}?count={count}"),
+    URL_INFO("urlinfo/{hash}");
+
+    private final RequestTemplate requestTemplate;
+
+    private FeedType(String pattern) {
+        this.requestTemplate = RequestTemplate.compile(pattern);
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets the template of the url of this feed, relative to the API endpoint.
+     *
+     * @return the template
+     */
+    public RequestTemplate getRequestTemplate() {
+        return requestTemplate;
+    }
+}
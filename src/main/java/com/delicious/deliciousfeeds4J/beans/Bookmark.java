@@ -16,7 +16,9 @@
 
 package com.delicious.deliciousfeeds4J.beans;
 
+import com.delicious.deliciousfeeds4J.json.JacksonDateDeserializer;
 import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.annotate.JsonDeserialize;
 
 import java.io.Serializable;
 import java.util.Date;
@@ -45,6 +47,7 @@ public class Bookmark implements Serializable {
     private Set<String> tags;
 
     @JsonProperty(value = "dt")
+    @JsonDeserialize(using = JacksonDateDeserializer.class)
     private Date lastUpdatedDate;
 
     @JsonProperty(value = "md5")
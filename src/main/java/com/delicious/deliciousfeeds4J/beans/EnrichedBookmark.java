@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.beans;
+
+import java.io.Serializable;
+
+/**
+ * A simple bean class for holding a bookmark together with the information about its url.
+ *
+ * @author Patrick Meier
+ */
+public class EnrichedBookmark implements Serializable {
+
+    private Bookmark bookmark;
+
+    private UrlInfo urlInfo;
+
+    public EnrichedBookmark() {
+    }
+
+    public EnrichedBookmark(Bookmark bookmark, UrlInfo urlInfo) {
+        this.bookmark = bookmark;
+        this.urlInfo = urlInfo;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        EnrichedBookmark that = (EnrichedBookmark) o;
+
+        if (bookmark != null ? !bookmark.equals(that.bookmark) : that.bookmark != null) return false;
+        if (urlInfo != null ? !urlInfo.equals(that.urlInfo) : that.urlInfo != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = bookmark != null ? bookmark.hashCode() : 0;
+        result = 31 * result + (urlInfo != null ? urlInfo.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "EnrichedBookmark{" +
+                "bookmark=" + bookmark +
+                ", urlInfo=" + urlInfo +
+                '}';
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public Bookmark getBookmark() {
+        return bookmark;
+    }
+
+    public void setBookmark(Bookmark bookmark) {
+        this.bookmark = bookmark;
+    }
+
+    public UrlInfo getUrlInfo() {
+        return urlInfo;
+    }
+
+    public void setUrlInfo(UrlInfo urlInfo) {
+        this.urlInfo = urlInfo;
+    }
+}
@@ -16,7 +16,9 @@
 
 package com.delicious.deliciousfeeds4J.beans;
 
+import com.delicious.deliciousfeeds4J.json.JacksonDateDeserializer;
 import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.annotate.JsonDeserialize;
 
 import java.io.Serializable;
 import java.util.Date;
@@ -31,6 +33,7 @@ public class User implements Serializable {
     private String user;
 
     @JsonProperty(value = "dt")
+    @JsonDeserialize(using = JacksonDateDeserializer.class)
     private Date addedDate;
 
     //---------------------------------------------------------------------------
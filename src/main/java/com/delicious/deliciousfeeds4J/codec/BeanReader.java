@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.codec;
+
+import com.delicious.deliciousfeeds4J.beans.*;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static com.delicious.deliciousfeeds4J.codec.CodecFormat.*;
+import static com.delicious.deliciousfeeds4J.codec.Varints.*;
+
+/**
+ * Reads beans written by {@link BeanWriter} from a {@link ByteBuffer} - heap, direct or memory-mapped.
+ * The reader consumes the buffer from its current position.
+ * <p/>
+ * This class is not thread-safe.
+ *
+ * @author Patrick Meier
+ */
+public class BeanReader {
+
+    private final ByteBuffer buffer;
+
+    private final List<String> dictionary = new ArrayList<String>();
+
+    private long lastTimestamp;
+
+    private String lastUrl = "";
+
+    //Reused for strings of direct buffers
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Creates a new instance and reads the header of the stream.
+     *
+     * @param buffer the buffer to read from
+     * @throws IllegalArgumentException  if buffer is null
+     * @throws StreamCorruptedException if the header is missing or the version is not supported
+     */
+    public BeanReader(ByteBuffer buffer) throws IOException {
+        if (buffer == null)
+            throw new IllegalArgumentException("Buffer must not be null!");
+
+        this.buffer = buffer;
+
+        if (buffer.remaining() < MAGIC.length + 1)
+            throw new StreamCorruptedException("Stream is too short for a header!");
+
+        for (byte magic : MAGIC)
+            if (buffer.get() != magic)
+                throw new StreamCorruptedException("Stream was not written by a BeanWriter!");
+
+        final int version = buffer.get();
+
+        if (version != VERSION)
+            throw new StreamCorruptedException("Unsupported version " + version + " - expected " + VERSION + "!");
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets whether there are more records.
+     *
+     * @return true if there is another record
+     */
+    public boolean hasNext() {
+        return buffer.hasRemaining();
+    }
+
+    /**
+     * Gets the type of the next record without reading it.
+     *
+     * @return the type
+     * @throws EOFException              if there are no more records
+     * @throws StreamCorruptedException if the type is unknown
+     */
+    public BeanType peekType() throws IOException {
+        if (buffer.hasRemaining() == false)
+            throw new EOFException("No more records!");
+
+        final BeanType type = BeanType.fromId(buffer.get(buffer.position()));
+
+        if (type == null)
+            throw new StreamCorruptedException("Unknown record type: " + buffer.get(buffer.position()));
+
+        return type;
+    }
+
+    /**
+     * Reads the next record, whatever type it is.
+     *
+     * @return a {@link Bookmark}, {@link UrlInfo}, {@link UserInfo}, {@link Tag} or {@link User}
+     * @throws IOException if there are no more records or the stream is corrupted
+     */
+    public Object read() throws IOException {
+        return readRecord(peekType());
+    }
+
+    /**
+     * Reads all remaining records.
+     *
+     * @return the beans in the order they were written
+     * @throws IOException if the stream is corrupted
+     */
+    public List<Object> readAll() throws IOException {
+        final List<Object> beans = new ArrayList<Object>();
+
+        while (hasNext())
+            beans.add(read());
+
+        return beans;
+    }
+
+    public Bookmark readBookmark() throws IOException {
+        return (Bookmark) readRecord(BeanType.BOOKMARK);
+    }
+
+    public UrlInfo readUrlInfo() throws IOException {
+        return (UrlInfo) readRecord(BeanType.URL_INFO);
+    }
+
+    public UserInfo readUserInfo() throws IOException {
+        return (UserInfo) readRecord(BeanType.USER_INFO);
+    }
+
+    public Tag readTag() throws IOException {
+        return (Tag) readRecord(BeanType.TAG);
+    }
+
+    public User readUser() throws IOException {
+        return (User) readRecord(BeanType.USER);
+    }
+
+    private Object readRecord(BeanType expected) throws IOException {
+        final BeanType type = peekType();
+
+        if (type != expected)
+            throw new StreamCorruptedException("Expected a record of type " + expected + " but found " + type + "!");
+
+        try {
+            buffer.get();
+
+            switch (type) {
+                case BOOKMARK:
+                    return getBookmark();
+                case URL_INFO:
+                    return getUrlInfo();
+                case USER_INFO:
+                    return getUserInfo();
+                case TAG:
+                    return getTag();
+                default:
+                    return getUser();
+            }
+        } catch (BufferUnderflowException ex) {
+            throw (EOFException) new EOFException("Record of type " + type + " is truncated!").initCause(ex);
+        } catch (IndexOutOfBoundsException ex) {
+            throw (StreamCorruptedException) new StreamCorruptedException("Invalid dictionary index!").initCause(ex);
+        } catch (IllegalStateException ex) {
+            throw (StreamCorruptedException) new StreamCorruptedException(ex.getMessage()).initCause(ex);
+        }
+    }
+
+    private Bookmark getBookmark() throws IOException {
+        final int fields = getVarInt(buffer);
+
+        final Bookmark bookmark = new Bookmark();
+
+        if ((fields & BOOKMARK_USER) != 0) bookmark.setUser(getDictionaryString());
+        if ((fields & BOOKMARK_TITLE) != 0) bookmark.setTitle(getString());
+        if ((fields & BOOKMARK_DESCRIPTION) != 0) bookmark.setDescription(getString());
+        if ((fields & BOOKMARK_URL) != 0) bookmark.setUrl(getUrl());
+
+        if ((fields & BOOKMARK_TAGS) != 0) {
+            final int count = getCount();
+            final Set<String> tags = new LinkedHashSet<String>(count * 2);
+
+            for (int i = 0; i < count; i++)
+                tags.add(getDictionaryString());
+
+            bookmark.setTags(tags);
+        }
+
+        if ((fields & BOOKMARK_DATE) != 0) bookmark.setLastUpdatedDate(getDate());
+        if ((fields & BOOKMARK_MD5) != 0) bookmark.setMd5(getMd5());
+
+        return bookmark;
+    }
+
+    private UrlInfo getUrlInfo() throws IOException {
+        final int fields = getVarInt(buffer);
+
+        final UrlInfo urlInfo = new UrlInfo();
+        urlInfo.setTotalPosts(unZigZag(getVarLong(buffer)));
+
+        if ((fields & URL_INFO_TITLE) != 0) urlInfo.setTitle(getString());
+        if ((fields & URL_INFO_URL) != 0) urlInfo.setUrl(getUrl());
+        if ((fields & URL_INFO_HASH) != 0) urlInfo.setHash(getMd5());
+
+        if ((fields & URL_INFO_TOP_TAGS) != 0) {
+            final int count = getCount();
+            final Set<Tag> topTags = new TreeSet<Tag>();
+
+            for (int i = 0; i < count; i++)
+                topTags.add(getTag());
+
+            urlInfo.setTopTags(topTags);
+        }
+
+        return urlInfo;
+    }
+
+    private UserInfo getUserInfo() throws IOException {
+        final int fields = getVarInt(buffer);
+
+        final UserInfo userInfo = new UserInfo();
+
+        if ((fields & USER_INFO_USER) != 0) userInfo.setUser(getDictionaryString());
+
+        userInfo.setItems(unZigZag(getVarInt(buffer)));
+        userInfo.setFollowing(unZigZag(getVarInt(buffer)));
+        userInfo.setFollowers(unZigZag(getVarInt(buffer)));
+
+        if ((fields & USER_INFO_DETAILS) != 0) {
+            final int count = getCount();
+            final Set<UserInfoDetail> details = new HashSet<UserInfoDetail>(count * 2);
+
+            for (int i = 0; i < count; i++) {
+                final int detailFields = getVarInt(buffer);
+
+                final UserInfoDetail detail = new UserInfoDetail();
+                detail.setCount(unZigZag(getVarInt(buffer)));
+
+                if ((detailFields & DETAIL_ID) != 0) detail.setId(getDictionaryString());
+                if ((detailFields & DETAIL_DESCRIPTION) != 0) detail.setDescription(getDictionaryString());
+
+                details.add(detail);
+            }
+
+            userInfo.setUserInfoDetailSet(details);
+        } else {
+            userInfo.setUserInfoDetailSet(null);
+        }
+
+        return userInfo;
+    }
+
+    private Tag getTag() throws IOException {
+        final int fields = getVarInt(buffer);
+
+        final Tag tag = new Tag();
+        tag.setCount(unZigZag(getVarInt(buffer)));
+
+        if ((fields & TAG_NAME) != 0) tag.setName(getDictionaryString());
+
+        return tag;
+    }
+
+    private User getUser() throws IOException {
+        final int fields = getVarInt(buffer);
+
+        final User user = new User();
+
+        if ((fields & USER_USER) != 0) user.setUser(getDictionaryString());
+        if ((fields & USER_DATE) != 0) user.setAddedDate(getDate());
+
+        return user;
+    }
+
+    private int getCount() throws IOException {
+        final int count = getVarInt(buffer);
+
+        //Every element needs at least one byte - protects against huge allocations from corrupted streams
+        if (count < 0 || count > buffer.remaining())
+            throw new StreamCorruptedException("Invalid element count: " + count);
+
+        return count;
+    }
+
+    private Date getDate() {
+        lastTimestamp += unZigZag(getVarLong(buffer));
+        return new Date(lastTimestamp);
+    }
+
+    private String getMd5() throws IOException {
+        final int code = buffer.get();
+
+        if (code == MD5_BINARY)
+            return new UrlKey(buffer.getLong(), buffer.getLong()).toHex();
+
+        if (code == MD5_STRING)
+            return getString();
+
+        throw new StreamCorruptedException("Unknown md5 code: " + code);
+    }
+
+    private String getDictionaryString() throws IOException {
+        final int code = getVarInt(buffer);
+
+        if (code >= DICTIONARY_INDEX_OFFSET)
+            return dictionary.get(code - DICTIONARY_INDEX_OFFSET);
+
+        final String value = getString();
+
+        if (code == DICTIONARY_LITERAL_ADDED)
+            dictionary.add(value);
+
+        return value;
+    }
+
+    private String getUrl() throws IOException {
+        final int prefix = getVarInt(buffer);
+
+        if (prefix < 0 || prefix > lastUrl.length())
+            throw new StreamCorruptedException("Invalid url prefix: " + prefix);
+
+        final String suffix = getString();
+
+        lastUrl = prefix == 0 ? suffix : lastUrl.substring(0, prefix).concat(suffix);
+
+        return lastUrl;
+    }
+
+    private String getString() throws IOException {
+        final int length = getVarInt(buffer);
+
+        if (length < 0 || length > buffer.remaining())
+            throw new EOFException("String of " + length + " bytes is truncated!");
+
+        final byte[] bytes;
+        final int offset;
+
+        if (buffer.hasArray()) {
+            bytes = buffer.array();
+            offset = buffer.arrayOffset() + buffer.position();
+            buffer.position(buffer.position() + length);
+        } else {
+            if (scratch.length < length)
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+
+            buffer.get(scratch, 0, length);
+            bytes = scratch;
+            offset = 0;
+        }
+
+        //Plain ASCII is copied byte by byte without a decoder
+        final char[] chars = new char[length];
+
+        for (int i = 0; i < length; i++) {
+            final byte b = bytes[offset + i];
+
+            if (b < 0)
+                return new String(bytes, offset, length, UTF8);
+
+            chars[i] = (char) b;
+        }
+
+        return new String(chars);
+    }
+}
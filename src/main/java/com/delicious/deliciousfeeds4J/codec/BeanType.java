@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.codec;
+
+/**
+ * The types of records in a stream written by {@link BeanWriter}. Every record starts with the id of
+ * its type.
+ *
+ * @author Patrick Meier
+ */
+public enum BeanType {
+
+    BOOKMARK(1),
+
+    URL_INFO(2),
+
+    USER_INFO(3),
+
+    TAG(4),
+
+    USER(5);
+
+    private final int id;
+
+    private BeanType(int id) {
+        this.id = id;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets the type with the given id.
+     *
+     * @param id the id
+     * @return the type or null if there is no type with this id
+     */
+    public static BeanType fromId(int id) {
+        for (BeanType type : values())
+            if (type.id == id)
+                return type;
+
+        return null;
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public int getId() {
+        return id;
+    }
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.codec;
+
+import com.delicious.deliciousfeeds4J.beans.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.delicious.deliciousfeeds4J.codec.CodecFormat.*;
+import static com.delicious.deliciousfeeds4J.codec.Varints.*;
+
+/**
+ * Writes beans in a compact binary format (see {@link CodecFormat}) to a growing buffer. The
+ * written records can be taken with {@link #toByteBuffer()} or streamed to a channel with
+ * {@link #writeTo(WritableByteChannel)} - the dictionary stays, so everything written by one writer
+ * forms one stream and has to be read by one {@link BeanReader}.
+ * <p/>
+ * This class is not thread-safe.
+ *
+ * @author Patrick Meier
+ */
+public class BeanWriter {
+
+    public static final int DEFAULT_INITIAL_CAPACITY = 4096;
+
+    public static final int DEFAULT_MAX_DICTIONARY_SIZE = 64 * 1024;
+
+    //Value of every lowercase hex digit, -1 for all other chars
+    private static final byte[] HEX_VALUES = new byte['f' + 1];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+
+        for (int i = 0; i < 16; i++)
+            HEX_VALUES["0123456789abcdef".charAt(i)] = (byte) i;
+    }
+
+    //Plain array instead of a ByteBuffer - saves the bounds checks of every single put
+    private byte[] bytes;
+
+    private int position;
+
+    private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+
+    private final int maxDictionarySize;
+
+    private long lastTimestamp;
+
+    private String lastUrl = "";
+
+    //Strings are copied here in bulk - cheaper than charAt for every single char
+    private char[] chars = new char[256];
+
+    /**
+     * Creates a new instance with the default capacity and dictionary size.
+     */
+    public BeanWriter() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_DICTIONARY_SIZE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param initialCapacity   the initial capacity of the buffer in bytes
+     * @param maxDictionarySize how many distinct users and tags are dictionary-coded - later ones are
+     *                          written as literals
+     * @throws IllegalArgumentException if initialCapacity is smaller than 16 or maxDictionarySize is negative
+     */
+    public BeanWriter(int initialCapacity, int maxDictionarySize) {
+        if (initialCapacity < 16)
+            throw new IllegalArgumentException("InitialCapacity has to be at least 16!");
+
+        if (maxDictionarySize < 0)
+            throw new IllegalArgumentException("MaxDictionarySize must not be negative!");
+
+        this.bytes = new byte[initialCapacity];
+        this.maxDictionarySize = maxDictionarySize;
+
+        System.arraycopy(MAGIC, 0, bytes, 0, MAGIC.length);
+        bytes[MAGIC.length] = (byte) VERSION;
+        position = MAGIC.length + 1;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Writes the given bean.
+     *
+     * @param bean a {@link Bookmark}, {@link UrlInfo}, {@link UserInfo}, {@link Tag} or {@link User}
+     * @throws IllegalArgumentException if bean is null or of another type
+     */
+    public void write(Object bean) {
+        if (bean instanceof Bookmark)
+            writeBookmark((Bookmark) bean);
+        else if (bean instanceof UrlInfo)
+            writeUrlInfo((UrlInfo) bean);
+        else if (bean instanceof UserInfo)
+            writeUserInfo((UserInfo) bean);
+        else if (bean instanceof Tag)
+            writeTag((Tag) bean);
+        else if (bean instanceof User)
+            writeUser((User) bean);
+        else
+            throw new IllegalArgumentException("Bean must be a Bookmark, UrlInfo, UserInfo, Tag or User!");
+    }
+
+    /**
+     * Writes all given beans.
+     *
+     * @param beans the beans - see {@link #write(Object)}
+     * @throws IllegalArgumentException if beans is null or contains beans of other types
+     */
+    public void writeAll(Collection<?> beans) {
+        if (beans == null)
+            throw new IllegalArgumentException("Beans must not be null!");
+
+        for (Object bean : beans)
+            write(bean);
+    }
+
+    public void writeBookmark(Bookmark bookmark) {
+        if (bookmark == null)
+            throw new IllegalArgumentException("Bookmark must not be null!");
+
+        final Set<String> tags = bookmark.getTags();
+
+        int fields = 0;
+
+        if (bookmark.getUser() != null) fields |= BOOKMARK_USER;
+        if (bookmark.getTitle() != null) fields |= BOOKMARK_TITLE;
+        if (bookmark.getDescription() != null) fields |= BOOKMARK_DESCRIPTION;
+        if (bookmark.getUrl() != null) fields |= BOOKMARK_URL;
+        if (tags != null) fields |= BOOKMARK_TAGS;
+        if (bookmark.getLastUpdatedDate() != null) fields |= BOOKMARK_DATE;
+        if (bookmark.getMd5() != null) fields |= BOOKMARK_MD5;
+
+        startRecord(BeanType.BOOKMARK, fields);
+
+        if ((fields & BOOKMARK_USER) != 0) putDictionaryString(bookmark.getUser());
+        if ((fields & BOOKMARK_TITLE) != 0) putString(bookmark.getTitle());
+        if ((fields & BOOKMARK_DESCRIPTION) != 0) putString(bookmark.getDescription());
+        if ((fields & BOOKMARK_URL) != 0) putUrl(bookmark.getUrl());
+
+        if ((fields & BOOKMARK_TAGS) != 0) {
+            ensureCapacity(5);
+            position = putVarInt(bytes, position, tags.size());
+
+            for (String tag : tags)
+                putDictionaryString(tag);
+        }
+
+        if ((fields & BOOKMARK_DATE) != 0) putDate(bookmark.getLastUpdatedDate());
+        if ((fields & BOOKMARK_MD5) != 0) putMd5(bookmark.getMd5());
+    }
+
+    public void writeUrlInfo(UrlInfo urlInfo) {
+        if (urlInfo == null)
+            throw new IllegalArgumentException("UrlInfo must not be null!");
+
+        final Set<Tag> topTags = urlInfo.getTopTags();
+
+        int fields = 0;
+
+        if (urlInfo.getTitle() != null) fields |= URL_INFO_TITLE;
+        if (urlInfo.getUrl() != null) fields |= URL_INFO_URL;
+        if (urlInfo.getHash() != null) fields |= URL_INFO_HASH;
+        if (topTags != null) fields |= URL_INFO_TOP_TAGS;
+
+        startRecord(BeanType.URL_INFO, fields);
+
+        ensureCapacity(10);
+        position = putVarLong(bytes, position, zigZag(urlInfo.getTotalPosts()));
+
+        if ((fields & URL_INFO_TITLE) != 0) putString(urlInfo.getTitle());
+        if ((fields & URL_INFO_URL) != 0) putUrl(urlInfo.getUrl());
+        if ((fields & URL_INFO_HASH) != 0) putMd5(urlInfo.getHash());
+
+        if ((fields & URL_INFO_TOP_TAGS) != 0) {
+            ensureCapacity(5);
+            position = putVarInt(bytes, position, topTags.size());
+
+            for (Tag tag : topTags)
+                putTagFields(tag);
+        }
+    }
+
+    public void writeUserInfo(UserInfo userInfo) {
+        if (userInfo == null)
+            throw new IllegalArgumentException("UserInfo must not be null!");
+
+        final Set<UserInfoDetail> details = userInfo.getUserInfoDetailSet();
+
+        int fields = 0;
+
+        if (userInfo.getUser() != null) fields |= USER_INFO_USER;
+        if (details != null) fields |= USER_INFO_DETAILS;
+
+        startRecord(BeanType.USER_INFO, fields);
+
+        if ((fields & USER_INFO_USER) != 0) putDictionaryString(userInfo.getUser());
+
+        ensureCapacity(15);
+        position = putVarInt(bytes, position, zigZag(userInfo.getItems()));
+        position = putVarInt(bytes, position, zigZag(userInfo.getFollowing()));
+        position = putVarInt(bytes, position, zigZag(userInfo.getFollowers()));
+
+        if ((fields & USER_INFO_DETAILS) != 0) {
+            ensureCapacity(5);
+            position = putVarInt(bytes, position, details.size());
+
+            for (UserInfoDetail detail : details) {
+                int detailFields = 0;
+
+                if (detail.getId() != null) detailFields |= DETAIL_ID;
+                if (detail.getDescription() != null) detailFields |= DETAIL_DESCRIPTION;
+
+                ensureCapacity(10);
+                position = putVarInt(bytes, position, detailFields);
+                position = putVarInt(bytes, position, zigZag(detail.getCount()));
+
+                //Ids and descriptions repeat for every user, so both are dictionary-coded
+                if ((detailFields & DETAIL_ID) != 0) putDictionaryString(detail.getId());
+                if ((detailFields & DETAIL_DESCRIPTION) != 0) putDictionaryString(detail.getDescription());
+            }
+        }
+    }
+
+    public void writeTag(Tag tag) {
+        if (tag == null)
+            throw new IllegalArgumentException("Tag must not be null!");
+
+        ensureCapacity(1);
+        bytes[position++] = (byte) BeanType.TAG.getId();
+
+        putTagFields(tag);
+    }
+
+    public void writeUser(User user) {
+        if (user == null)
+            throw new IllegalArgumentException("User must not be null!");
+
+        int fields = 0;
+
+        if (user.getUser() != null) fields |= USER_USER;
+        if (user.getAddedDate() != null) fields |= USER_DATE;
+
+        startRecord(BeanType.USER, fields);
+
+        if ((fields & USER_USER) != 0) putDictionaryString(user.getUser());
+        if ((fields & USER_DATE) != 0) putDate(user.getAddedDate());
+    }
+
+    /**
+     * Gets the written bytes - including the header - as a buffer ready to read. The buffer shares the
+     * content with this writer and is only valid until the next write.
+     *
+     * @return the written bytes
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, position);
+    }
+
+    /**
+     * Gets the number of bytes written and not yet streamed with {@link #writeTo(WritableByteChannel)}.
+     *
+     * @return the number of bytes
+     */
+    public int size() {
+        return position;
+    }
+
+    /**
+     * Writes the buffered bytes to the given channel and clears the buffer. Further records continue the
+     * same stream (e.g. they use the same dictionary).
+     *
+     * @param channel the channel to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        if (channel == null)
+            throw new IllegalArgumentException("Channel must not be null!");
+
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, position);
+
+        try {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        } finally {
+            System.arraycopy(bytes, buffer.position(), bytes, 0, buffer.remaining());
+            position = buffer.remaining();
+        }
+    }
+
+    private void startRecord(BeanType type, int fields) {
+        ensureCapacity(6);
+        bytes[position++] = (byte) type.getId();
+        position = putVarInt(bytes, position, fields);
+    }
+
+    private void putTagFields(Tag tag) {
+        final int fields = tag.getName() != null ? TAG_NAME : 0;
+
+        ensureCapacity(10);
+        position = putVarInt(bytes, position, fields);
+        position = putVarInt(bytes, position, zigZag(tag.getCount()));
+
+        if ((fields & TAG_NAME) != 0) putDictionaryString(tag.getName());
+    }
+
+    private void putDate(Date date) {
+        final long timestamp = date.getTime();
+
+        ensureCapacity(10);
+        position = putVarLong(bytes, position, zigZag(timestamp - lastTimestamp));
+
+        lastTimestamp = timestamp;
+    }
+
+    private void putMd5(String md5) {
+        ensureCapacity(17);
+
+        //Only lowercase hex survives the round trip as binary - everything else is kept as string
+        if (md5.length() == 32) {
+            final char[] chars = charsOf(md5, 0);
+
+            long high = 0;
+            long low = 0;
+
+            //Any invalid char makes this negative - checked once at the end instead of branching per char
+            int invalid = 0;
+
+            for (int i = 0; i < 16; i++) {
+                final int highNibble = hexValue(chars[i]);
+                final int lowNibble = hexValue(chars[i + 16]);
+
+                invalid |= highNibble | lowNibble;
+
+                high = (high << 4) | (highNibble & 0xF);
+                low = (low << 4) | (lowNibble & 0xF);
+            }
+
+            if (invalid >= 0) {
+                bytes[position++] = (byte) MD5_BINARY;
+                putLong(high);
+                putLong(low);
+                return;
+            }
+        }
+
+        bytes[position++] = (byte) MD5_STRING;
+        putString(md5, 0);
+    }
+
+    private void putDictionaryString(String value) {
+        final Integer index = dictionary.get(value);
+
+        if (index != null) {
+            ensureCapacity(5);
+            position = putVarInt(bytes, position, index + DICTIONARY_INDEX_OFFSET);
+            return;
+        }
+
+        ensureCapacity(1);
+
+        if (dictionary.size() < maxDictionarySize) {
+            dictionary.put(value, dictionary.size());
+            bytes[position++] = (byte) DICTIONARY_LITERAL_ADDED;
+        } else {
+            bytes[position++] = (byte) DICTIONARY_LITERAL;
+        }
+
+        putString(value);
+    }
+
+    private void putUrl(String url) {
+
+        //Urls often share a prefix with the previous one (scheme, host, path), so only the rest is written
+        final int max = Math.min(url.length(), lastUrl.length());
+
+        int prefix = 0;
+
+        while (prefix < max && url.charAt(prefix) == lastUrl.charAt(prefix))
+            prefix++;
+
+        //Never split a surrogate pair
+        if (prefix > 0 && prefix < url.length() && Character.isLowSurrogate(url.charAt(prefix)))
+            prefix--;
+
+        ensureCapacity(5);
+        position = putVarInt(bytes, position, prefix);
+
+        putString(url, prefix);
+
+        lastUrl = url;
+    }
+
+    private void putString(String value) {
+        putString(value, 0);
+    }
+
+    private void putString(String value, int from) {
+        final int length = value.length() - from;
+
+        ensureCapacity(5 + length);
+
+        //Most values are plain ASCII - those are copied char by char without an encoder
+        final int start = putVarInt(bytes, position, length);
+        final char[] chars = charsOf(value, from);
+
+        for (int i = 0; i < length; i++) {
+            final char c = chars[i];
+
+            if (c >= 0x80) {
+                putEncodedString(from == 0 ? value : value.substring(from));
+                return;
+            }
+
+            bytes[start + i] = (byte) c;
+        }
+
+        position = start + length;
+    }
+
+    private void putEncodedString(String value) {
+        final byte[] encoded = value.getBytes(UTF8);
+
+        ensureCapacity(5 + encoded.length);
+        position = putVarInt(bytes, position, encoded.length);
+
+        System.arraycopy(encoded, 0, bytes, position, encoded.length);
+        position += encoded.length;
+    }
+
+    private static int hexValue(char c) {
+        return c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+    }
+
+    private char[] charsOf(String value, int from) {
+        final int length = value.length() - from;
+
+        if (chars.length < length)
+            chars = new char[Math.max(length, chars.length * 2)];
+
+        value.getChars(from, value.length(), chars, 0);
+
+        return chars;
+    }
+
+    private void putLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8)
+            bytes[position++] = (byte) (value >>> shift);
+    }
+
+    private void ensureCapacity(int needed) {
+        if (bytes.length - position >= needed)
+            return;
+
+        final byte[] grown = new byte[Math.max(bytes.length * 2, position + needed)];
+        System.arraycopy(bytes, 0, grown, 0, position);
+
+        bytes = grown;
+    }
+}
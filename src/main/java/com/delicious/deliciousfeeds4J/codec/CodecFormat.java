@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.codec;
+
+import java.nio.charset.Charset;
+
+/**
+ * Constants of the binary format shared by {@link BeanWriter} and {@link BeanReader}.
+ * <p/>
+ * A stream starts with the magic bytes "DF4J" and the format version. Then records follow, each starting
+ * with the id of its {@link BeanType} and a varint bitmap of the fields which are not null. Ints and longs
+ * are zig-zag varints, timestamps are stored as the difference to the previous timestamp in the stream.
+ * Users and tags are dictionary-coded: the first occurrence is written as literal, later ones as index.
+ * Urls only store what differs from the previous url and md5 hashes are stored as 16 raw bytes.
+ *
+ * @author Patrick Meier
+ */
+final class CodecFormat {
+
+    static final byte[] MAGIC = {'D', 'F', '4', 'J'};
+
+    static final int VERSION = 1;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    //Codes of dictionary-coded strings - higher codes are dictionary indexes
+    static final int DICTIONARY_LITERAL_ADDED = 0;
+
+    static final int DICTIONARY_LITERAL = 1;
+
+    static final int DICTIONARY_INDEX_OFFSET = 2;
+
+    //Codes of md5 hashes
+    static final int MD5_BINARY = 0;
+
+    static final int MD5_STRING = 1;
+
+    //Field bits of a bookmark
+    static final int BOOKMARK_USER = 1;
+
+    static final int BOOKMARK_TITLE = 1 << 1;
+
+    static final int BOOKMARK_DESCRIPTION = 1 << 2;
+
+    static final int BOOKMARK_URL = 1 << 3;
+
+    static final int BOOKMARK_TAGS = 1 << 4;
+
+    static final int BOOKMARK_DATE = 1 << 5;
+
+    static final int BOOKMARK_MD5 = 1 << 6;
+
+    //Field bits of a urlinfo
+    static final int URL_INFO_TITLE = 1;
+
+    static final int URL_INFO_URL = 1 << 1;
+
+    static final int URL_INFO_HASH = 1 << 2;
+
+    static final int URL_INFO_TOP_TAGS = 1 << 3;
+
+    //Field bits of a userinfo and its details
+    static final int USER_INFO_USER = 1;
+
+    static final int USER_INFO_DETAILS = 1 << 1;
+
+    static final int DETAIL_ID = 1;
+
+    static final int DETAIL_DESCRIPTION = 1 << 1;
+
+    //Field bits of a tag
+    static final int TAG_NAME = 1;
+
+    //Field bits of a user
+    static final int USER_USER = 1;
+
+    static final int USER_DATE = 1 << 1;
+
+    private CodecFormat() {
+    }
+}
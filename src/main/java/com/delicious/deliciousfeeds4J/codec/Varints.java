@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-length encoding of ints and longs: 7 bits per byte, the highest bit marks that another byte
+ * follows. Small values need a single byte. Signed values should be zig-zag encoded first, so small
+ * negative values are short too.
+ *
+ * @author Patrick Meier
+ */
+public final class Varints {
+
+    private Varints() {
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    public static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    public static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Gets how many bytes the given value needs.
+     *
+     * @param value the value (treated as unsigned)
+     * @return the number of bytes - 1 to 5
+     */
+    public static int sizeOf(int value) {
+        int size = 1;
+
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+
+        return size;
+    }
+
+    public static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        buffer.put((byte) value);
+    }
+
+    public static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        buffer.put((byte) value);
+    }
+
+    public static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+
+            if (b >= 0)
+                return value;
+        }
+
+        throw new IllegalStateException("Malformed varint - more than 5 bytes!");
+    }
+
+    public static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+
+        for (int shift = 0; shift < 70; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+
+            if (b >= 0)
+                return value;
+        }
+
+        throw new IllegalStateException("Malformed varint - more than 10 bytes!");
+    }
+
+    /**
+     * Writes the value to the array.
+     *
+     * @param bytes  the array - has to have room for 5 bytes
+     * @param offset where to write
+     * @param value  the value (treated as unsigned)
+     * @return the offset after the value
+     */
+    public static int putVarInt(byte[] bytes, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        bytes[offset++] = (byte) value;
+
+        return offset;
+    }
+
+    /**
+     * Writes the value to the array.
+     *
+     * @param bytes  the array - has to have room for 10 bytes
+     * @param offset where to write
+     * @param value  the value (treated as unsigned)
+     * @return the offset after the value
+     */
+    public static int putVarLong(byte[] bytes, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        bytes[offset++] = (byte) value;
+
+        return offset;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The time budget of a call, which can also be cancelled from another thread. Every step of a request -
+ * waiting for the rate limiter, leasing a connection, reading the response, expanding urls - only waits as
+ * long as the deadline has time left, and cancelling aborts the step running right now.
+ * <p/>
+ * Steps which can be aborted register a listener with {@link #addCancelListener(Runnable)} while they run.
+ *
+ * @author Patrick Meier
+ */
+public final class Deadline {
+
+    private final long deadlineNanos;
+
+    private final boolean bounded;
+
+    //Listeners run while holding the lock, so a removed listener never runs afterwards
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final List<Runnable> cancelListeners = new ArrayList<Runnable>(2);
+
+    private volatile boolean cancelled;
+
+    private Deadline(long deadlineNanos, boolean bounded) {
+        this.deadlineNanos = deadlineNanos;
+        this.bounded = bounded;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Creates a deadline the given time from now.
+     *
+     * @param timeout the time budget
+     * @param unit    the unit of the timeout
+     * @return the new deadline
+     * @throws IllegalArgumentException if timeout is negative or unit is null
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Timeout must not be negative!");
+
+        if (unit == null)
+            throw new IllegalArgumentException("Unit must not be null!");
+
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout), true);
+    }
+
+    /**
+     * Creates a deadline without a time limit, which can only be cancelled.
+     *
+     * @return the new deadline
+     */
+    public static Deadline cancellable() {
+        return new Deadline(0, false);
+    }
+
+    /**
+     * Gets the time left.
+     *
+     * @param unit the unit to convert the time to
+     * @return the time left, 0 if the deadline expired or was cancelled, {@link Long#MAX_VALUE} if there is no
+     *         time limit
+     */
+    public long remaining(TimeUnit unit) {
+        if (cancelled)
+            return 0;
+
+        if (bounded == false)
+            return Long.MAX_VALUE;
+
+        return unit.convert(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean hasTimeLimit() {
+        return bounded;
+    }
+
+    /**
+     * Gets whether there is no time left - because the deadline passed or it was cancelled.
+     *
+     * @return true if calls should not be continued
+     */
+    public boolean isExpired() {
+        return cancelled || (bounded && deadlineNanos - System.nanoTime() <= 0);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancels the deadline and runs all registered listeners, which abort what is running right now.
+     * Cancelling twice does nothing.
+     */
+    public void cancel() {
+        lock.lock();
+        try {
+            if (cancelled)
+                return;
+
+            cancelled = true;
+
+            for (Runnable listener : cancelListeners)
+                listener.run();
+
+            cancelListeners.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers a listener which is run when the deadline is cancelled - right away, if it already was.
+     * Listeners must be quick and must not block.
+     *
+     * @param listener the listener
+     */
+    public void addCancelListener(Runnable listener) {
+        lock.lock();
+        try {
+            if (cancelled == false) {
+                cancelListeners.add(listener);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        listener.run();
+    }
+
+    /**
+     * Removes a listener. Once this returns, the listener is not run anymore.
+     *
+     * @param listener the listener
+     */
+    public void removeCancelListener(Runnable listener) {
+        lock.lock();
+        try {
+            cancelListeners.remove(listener);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (cancelled)
+            return "Deadline{cancelled}";
+
+        if (bounded == false)
+            return "Deadline{none}";
+
+        return "Deadline{remainingMillis=" + remaining(TimeUnit.MILLISECONDS) + '}';
+    }
+}
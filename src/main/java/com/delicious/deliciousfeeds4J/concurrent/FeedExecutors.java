@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.concurrent;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory for the executors used to run blocking feed calls (batch fetching, url expansion).
+ * <p/>
+ * This is the variant for Java 6 to 20: every task gets a pooled platform thread. The multi-release jar
+ * contains a variant for Java 21+ in {@code META-INF/versions/21} which starts a virtual thread per task
+ * instead.
+ *
+ * @author Patrick Meier
+ */
+public final class FeedExecutors {
+
+    private static final String THREAD_NAME_PREFIX = "deliciousfeeds4j-worker-";
+
+    //Platform threads are expensive - the shared executor does not start more than this
+    private static final int DEFAULT_MAX_THREADS = 32;
+
+    private FeedExecutors() {
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets whether the executors of this class run tasks on virtual threads.
+     *
+     * @return true on Java 21+, false otherwise
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return false;
+    }
+
+    /**
+     * Creates a new executor which runs every task on a thread of its own. Idle threads are reused for
+     * 60 seconds and are daemon threads, so the executor does not have to be shut down.
+     *
+     * @return the new executor
+     */
+    public static ExecutorService newPerRequestExecutor() {
+        return Executors.newCachedThreadPool(new DaemonThreadFactory());
+    }
+
+    /**
+     * Gets the shared executor. It is created on first use and runs at most 32 tasks at once on daemon
+     * threads - further tasks are queued.
+     *
+     * @return the shared executor
+     */
+    public static ExecutorService getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    //Lazy initialization without locking
+    private static final class DefaultHolder {
+        private static final ExecutorService INSTANCE;
+
+        static {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_MAX_THREADS, DEFAULT_MAX_THREADS,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+
+            INSTANCE = executor;
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.concurrent;
+
+import com.delicious.deliciousfeeds4J.FeedType;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides when a slow request gets a duplicate ("hedge") sent on another connection, whichever answers first
+ * wins. The delay is a percentile of the recent latencies of the same feed, so only the slowest requests are
+ * hedged, and the hedges are capped to a share of all requests, so a slow server does not get twice the load.
+ * <p/>
+ * The latencies of the last 128 requests per feed are kept. Until 20 of them are known, requests of that
+ * feed are not hedged. One instance can be shared by several {@code DeliciousFeeds} instances.
+ *
+ * @author Patrick Meier
+ */
+public class HedgePolicy {
+
+    public static final double DEFAULT_PERCENTILE = 95;
+
+    public static final double DEFAULT_MAX_HEDGE_RATIO = 0.05;
+
+    private static final int WINDOW = 128;
+
+    private static final int MIN_SAMPLES = 20;
+
+    //The percentile is computed again after this many new latencies
+    private static final int RECOMPUTE_INTERVAL = 16;
+
+    //The credit is counted in millionths of a hedge
+    private static final long ONE_HEDGE = 1000000L;
+
+    //How many unused hedges can be saved up for a burst of slow requests
+    private static final long MAX_CREDIT = 10 * ONE_HEDGE;
+
+    private final double percentile;
+
+    //Hedges per request, in millionths
+    private final long creditPerRequest;
+
+    private volatile long minDelayNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    //Guarded by the lock - a ring buffer of latencies per feed
+    private final long[][] latencies = new long[FeedType.values().length][WINDOW];
+
+    private final int[] sampleCounts = new int[FeedType.values().length];
+
+    //Read without locking, -1 until enough latencies are known
+    private final AtomicLong[] delays = new AtomicLong[FeedType.values().length];
+
+    //In millionths of a hedge
+    private final AtomicLong credit = new AtomicLong(ONE_HEDGE);
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong hedges = new AtomicLong();
+
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * Creates a new instance which hedges requests slower than 95% of the recent ones, but at most 5% of all
+     * requests.
+     */
+    public HedgePolicy() {
+        this(DEFAULT_PERCENTILE, DEFAULT_MAX_HEDGE_RATIO);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param percentile    requests still running after this percentile of the recent latencies get a hedge
+     * @param maxHedgeRatio how many hedges may be sent per request, e.g. 0.05 for 5%
+     * @throws IllegalArgumentException if percentile is not between 0 and 100 or maxHedgeRatio is not
+     *                                  between 0 and 1
+     */
+    public HedgePolicy(double percentile, double maxHedgeRatio) {
+        if (percentile <= 0 || percentile >= 100)
+            throw new IllegalArgumentException("Percentile must be between 0 and 100!");
+
+        if (maxHedgeRatio <= 0 || maxHedgeRatio > 1)
+            throw new IllegalArgumentException("MaxHedgeRatio must be between 0 and 1!");
+
+        this.percentile = percentile;
+        this.creditPerRequest = Math.round(maxHedgeRatio * ONE_HEDGE);
+
+        for (int i = 0; i < delays.length; i++)
+            delays[i] = new AtomicLong(-1);
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Counts a request, which also earns a share of a hedge.
+     */
+    public void recordRequest() {
+        requests.incrementAndGet();
+
+        while (true) {
+            final long current = credit.get();
+            final long next = Math.min(MAX_CREDIT, current + creditPerRequest);
+
+            if (current == next || credit.compareAndSet(current, next))
+                return;
+        }
+    }
+
+    /**
+     * Records the latency of a finished request.
+     *
+     * @param feedType the feed of the request
+     * @param nanos    the latency in nanoseconds
+     */
+    public void recordLatency(FeedType feedType, long nanos) {
+        final int feed = feedType.ordinal();
+
+        lock.lock();
+        try {
+            final int count = ++sampleCounts[feed];
+            latencies[feed][(count - 1) % WINDOW] = nanos;
+
+            if (count >= MIN_SAMPLES && (count == MIN_SAMPLES || count % RECOMPUTE_INTERVAL == 0)) {
+                final long[] sorted = Arrays.copyOf(latencies[feed], Math.min(count, WINDOW));
+                Arrays.sort(sorted);
+
+                final int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1);
+                delays[feed].set(sorted[Math.max(0, index)]);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets how long a request of the given feed runs before it gets a hedge.
+     *
+     * @param feedType the feed
+     * @param unit     the unit to convert the delay to
+     * @return the delay, at least the minimum delay - or -1 if too few latencies are known yet
+     */
+    public long getDelay(FeedType feedType, TimeUnit unit) {
+        final long delay = delays[feedType.ordinal()].get();
+
+        if (delay < 0)
+            return -1;
+
+        return unit.convert(Math.max(delay, minDelayNanos), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Takes a hedge from the budget.
+     *
+     * @return true if a hedge may be sent, false if the share of hedges is used up
+     */
+    public boolean tryHedge() {
+        while (true) {
+            final long current = credit.get();
+
+            if (current < ONE_HEDGE)
+                return false;
+
+            if (credit.compareAndSet(current, current - ONE_HEDGE)) {
+                hedges.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a hedge taken with {@link #tryHedge()} which was not sent after all, e.g. because there was
+     * no rate permit for it.
+     */
+    public void refundHedge() {
+        hedges.decrementAndGet();
+
+        while (true) {
+            final long current = credit.get();
+            final long next = Math.min(MAX_CREDIT, current + ONE_HEDGE);
+
+            if (current == next || credit.compareAndSet(current, next))
+                return;
+        }
+    }
+
+    /**
+     * Counts a hedge which answered before the original request.
+     */
+    public void recordHedgeWin() {
+        hedgeWins.incrementAndGet();
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public double getMaxHedgeRatio() {
+        return creditPerRequest / (double) ONE_HEDGE;
+    }
+
+    public long getMinDelay(TimeUnit unit) {
+        return unit.convert(minDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the shortest delay before a hedge is sent, even if the recent requests were faster. Default is 10
+     * milliseconds.
+     *
+     * @param minDelay the minimum delay
+     * @param unit     the unit of the delay
+     * @throws IllegalArgumentException if minDelay is negative or unit is null
+     */
+    public void setMinDelay(long minDelay, TimeUnit unit) {
+        if (minDelay < 0)
+            throw new IllegalArgumentException("MinDelay must not be negative!");
+
+        if (unit == null)
+            throw new IllegalArgumentException("Unit must not be null!");
+
+        this.minDelayNanos = unit.toNanos(minDelay);
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    @Override
+    public String toString() {
+        return "HedgePolicy{percentile=" + percentile + ", maxHedgeRatio=" + getMaxHedgeRatio() + ", requests="
+                + getRequestCount() + ", hedges=" + getHedgeCount() + ", hedgeWins=" + getHedgeWinCount() + '}';
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.concurrent;
+
+/**
+ * The lane a request is scheduled in by {@link RequestLanes}.
+ *
+ * @author Patrick Meier
+ */
+public enum Priority {
+
+    /**
+     * Requests someone is waiting for, e.g. from a web page. They get reserved connections and are admitted
+     * before any waiting bulk request.
+     */
+    INTERACTIVE,
+
+    /**
+     * Requests of batch jobs. They only get the connections and rate permits interactive requests leave over.
+     */
+    BULK
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.concurrent;
+
+import com.delicious.deliciousfeeds4J.ratelimit.RateLimiter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Schedules requests of different {@link Priority priorities} which share the same connections and rate
+ * limit, so interactive requests do not queue behind bulk ones:
+ * <ul>
+ * <li>At most {@code maxConcurrent} requests run at once, and bulk requests never take the last
+ * {@code reservedInteractive} of these slots.</li>
+ * <li>Waiting interactive requests are always admitted first - bulk requests only get a slot or a permit of
+ * the shared rate limiter while no interactive request is waiting.</li>
+ * <li>A lane can get a rate limiter of its own on top of the shared one. To reserve a fifth of a budget of
+ * one request per second for interactive requests, limit the bulk lane to 0.8 requests per second:
+ * {@code lanes.setRateLimiter(Priority.BULK, new IntervalRateLimiter(1250, TimeUnit.MILLISECONDS))}. The
+ * permit of the lane is only taken once the request got a slot.</li>
+ * </ul>
+ * Every lane counts its waiting, running and admitted requests and the time they spent queueing.
+ * <p/>
+ * Only one request at a time waits for a permit of the shared rate limiter, the others wait in their lane -
+ * so a request arriving in a higher lane gets the next permit. No lock is held while waiting for a permit.
+ *
+ * @author Patrick Meier
+ */
+public class RequestLanes {
+
+    //Matches the connections per host of the client's connection pool
+    public static final int DEFAULT_MAX_CONCURRENT = 100;
+
+    public static final int DEFAULT_RESERVED_INTERACTIVE = 20;
+
+    private static final int LANES = Priority.values().length;
+
+    private final int maxConcurrent;
+
+    private final int reservedInteractive;
+
+    private final AtomicReferenceArray<RateLimiter> rateLimiters = new AtomicReferenceArray<RateLimiter>(LANES);
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    //Requests waiting for a slot only, and those waiting to dispatch a permit of the shared rate limiter
+    private final Condition[] admission = new Condition[LANES];
+
+    private final Condition[] dispatchAdmission = new Condition[LANES];
+
+    //Requests which already got a slot and the permit of their lane, waiting to dispatch
+    private final Condition[] slotDispatchAdmission = new Condition[LANES];
+
+    //The following fields are guarded by the lock
+    private final int[] waiting = new int[LANES];
+
+    private final int[] waitingToDispatch = new int[LANES];
+
+    private final int[] waitingWithSlot = new int[LANES];
+
+    private final int[] running = new int[LANES];
+
+    private final long[] admitted = new long[LANES];
+
+    private final long[] waitNanos = new long[LANES];
+
+    private final long[] maxWaitNanos = new long[LANES];
+
+    //Whether a request is waiting for a permit of the shared rate limiter
+    private boolean dispatching;
+
+    /**
+     * Creates a new instance with 100 concurrent requests, 20 of them reserved for interactive requests.
+     */
+    public RequestLanes() {
+        this(DEFAULT_MAX_CONCURRENT, DEFAULT_RESERVED_INTERACTIVE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxConcurrent       how many requests may run at once
+     * @param reservedInteractive how many of them bulk requests must leave free for interactive ones
+     * @throws IllegalArgumentException if maxConcurrent is not positive or reservedInteractive is negative or
+     *                                  not less than maxConcurrent
+     */
+    public RequestLanes(int maxConcurrent, int reservedInteractive) {
+        if (maxConcurrent <= 0)
+            throw new IllegalArgumentException("MaxConcurrent must be positive!");
+
+        if (reservedInteractive < 0 || reservedInteractive >= maxConcurrent)
+            throw new IllegalArgumentException("ReservedInteractive must be between 0 and maxConcurrent - 1!");
+
+        this.maxConcurrent = maxConcurrent;
+        this.reservedInteractive = reservedInteractive;
+
+        for (int i = 0; i < LANES; i++) {
+            admission[i] = lock.newCondition();
+            dispatchAdmission[i] = lock.newCondition();
+            slotDispatchAdmission[i] = lock.newCondition();
+        }
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Waits until a request of the given priority may run and then for a permit of the lane's and the shared
+     * rate limiter. Every successful call must be followed by {@link #release(Priority)}.
+     *
+     * @param priority    the lane of the request
+     * @param rateLimiter the rate limiter shared by all lanes, may be null
+     * @throws InterruptedException if the current thread was interrupted while waiting - nothing has to be
+     *                              released then
+     */
+    public void acquire(Priority priority, RateLimiter rateLimiter) throws InterruptedException {
+        tryAcquire(priority, rateLimiter, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Like {@link #acquire(Priority, RateLimiter)}, but gives up when the timeout elapses first. Every
+     * successful call must be followed by {@link #release(Priority)}.
+     *
+     * @param priority    the lane of the request
+     * @param rateLimiter the rate limiter shared by all lanes, may be null
+     * @param timeout     the maximum time to wait, {@link Long#MAX_VALUE} nanoseconds to wait as long as necessary
+     * @param unit        the unit of the timeout
+     * @return true if the request may run, false if the timeout elapsed - nothing has to be released then
+     * @throws InterruptedException if the current thread was interrupted while waiting - nothing has to be
+     *                              released then
+     */
+    public boolean tryAcquire(Priority priority, RateLimiter rateLimiter, long timeout, TimeUnit unit) throws InterruptedException {
+        final int lane = priority.ordinal();
+        final long start = System.nanoTime();
+        final long timeoutNanos = unit.toNanos(timeout);
+
+        final RateLimiter laneRateLimiter = rateLimiters.get(lane);
+        final boolean dispatch = rateLimiter != null;
+
+        //The permit of the lane is taken between getting the slot and the turn to dispatch, so it is not
+        //spent on a request which never runs - and waiting for it does not hold up other lanes
+        if (awaitSlot(lane, dispatch && laneRateLimiter == null, start, timeoutNanos) == false)
+            return false;
+
+        if (laneRateLimiter != null) {
+            boolean acquired = false;
+
+            try {
+                acquired = acquirePermit(laneRateLimiter, remaining(start, timeoutNanos))
+                        && (dispatch == false || awaitDispatch(lane, start, timeoutNanos));
+            } finally {
+                if (acquired == false)
+                    release(priority);
+            }
+
+            if (acquired == false)
+                return false;
+        }
+
+        if (dispatch) {
+            boolean acquired = false;
+
+            try {
+                acquired = acquirePermit(rateLimiter, remaining(start, timeoutNanos));
+            } finally {
+                lock.lock();
+                try {
+                    dispatching = false;
+
+                    if (acquired == false)
+                        running[lane]--;
+
+                    signalNext();
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            if (acquired == false)
+                return false;
+        }
+
+        final long waited = System.nanoTime() - start;
+
+        lock.lock();
+        try {
+            admitted[lane]++;
+            waitNanos[lane] += waited;
+            maxWaitNanos[lane] = Math.max(maxWaitNanos[lane], waited);
+        } finally {
+            lock.unlock();
+        }
+
+        return true;
+    }
+
+    /**
+     * Frees the slot of a finished request.
+     *
+     * @param priority the lane the request was acquired in
+     */
+    public void release(Priority priority) {
+        lock.lock();
+        try {
+            running[priority.ordinal()]--;
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Takes a slot - and the turn to dispatch as well if asked to
+    private boolean awaitSlot(int lane, boolean dispatch, long start, long timeoutNanos) throws InterruptedException {
+        final Condition condition = dispatch ? dispatchAdmission[lane] : admission[lane];
+
+        lock.lockInterruptibly();
+        try {
+            waiting[lane]++;
+
+            if (dispatch)
+                waitingToDispatch[lane]++;
+
+            try {
+                while (canRun(lane, dispatch) == false) {
+                    final long remaining = remaining(start, timeoutNanos);
+
+                    if (remaining <= 0)
+                        return false;
+
+                    condition.awaitNanos(remaining);
+                }
+            } finally {
+                waiting[lane]--;
+
+                if (dispatch)
+                    waitingToDispatch[lane]--;
+            }
+
+            running[lane]++;
+
+            if (dispatch)
+                dispatching = true;
+
+            return true;
+        } finally {
+
+            //Another request may run as well - or this one gave up and passes on its signal
+            signalNext();
+            lock.unlock();
+        }
+    }
+
+    //Takes the turn to dispatch for a request which already has a slot
+    private boolean awaitDispatch(int lane, long start, long timeoutNanos) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            waitingWithSlot[lane]++;
+
+            try {
+                while (canDispatch(lane) == false) {
+                    final long remaining = remaining(start, timeoutNanos);
+
+                    if (remaining <= 0)
+                        return false;
+
+                    slotDispatchAdmission[lane].awaitNanos(remaining);
+                }
+            } finally {
+                waitingWithSlot[lane]--;
+            }
+
+            dispatching = true;
+            return true;
+        } finally {
+            signalNext();
+            lock.unlock();
+        }
+    }
+
+    private static long remaining(long start, long timeoutNanos) {
+        if (timeoutNanos == Long.MAX_VALUE)
+            return Long.MAX_VALUE;
+
+        return timeoutNanos - (System.nanoTime() - start);
+    }
+
+    private static boolean acquirePermit(RateLimiter rateLimiter, long timeoutNanos) throws InterruptedException {
+        if (timeoutNanos == Long.MAX_VALUE) {
+            rateLimiter.acquire();
+            return true;
+        }
+
+        //Even if the time is up, a permit which is free right away is taken
+        return rateLimiter.tryAcquire(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+    }
+
+    private boolean canRun(int lane, boolean dispatch) {
+        if (dispatch && dispatching)
+            return false;
+
+        if (running[Priority.INTERACTIVE.ordinal()] + running[Priority.BULK.ordinal()] >= maxConcurrent)
+            return false;
+
+        if (lane == Priority.BULK.ordinal()) {
+            final int interactive = Priority.INTERACTIVE.ordinal();
+
+            return waiting[interactive] == 0 && (dispatch == false || waitingWithSlot[interactive] == 0)
+                    && running[lane] < maxConcurrent - reservedInteractive;
+        }
+
+        return true;
+    }
+
+    private boolean canDispatch(int lane) {
+        if (dispatching)
+            return false;
+
+        if (lane == Priority.BULK.ordinal())
+            return waiting[Priority.INTERACTIVE.ordinal()] == 0 && waitingWithSlot[Priority.INTERACTIVE.ordinal()] == 0;
+
+        return true;
+    }
+
+    //Wakes the first waiter of the highest waiting lane - it checks for itself whether it can run. Waiters
+    //which have to dispatch are only woken while nobody dispatches, so they never swallow the signal of a
+    //waiter which could run. Those already holding a slot get the turn to dispatch first.
+    private void signalNext() {
+        for (int lane = 0; lane < LANES; lane++) {
+            final boolean slotDispatch = waitingWithSlot[lane] > 0 && dispatching == false;
+
+            if (slotDispatch)
+                slotDispatchAdmission[lane].signal();
+
+            if (waiting[lane] > 0) {
+                if (waiting[lane] > waitingToDispatch[lane])
+                    admission[lane].signal();
+
+                if (waitingToDispatch[lane] > 0 && dispatching == false && slotDispatch == false)
+                    dispatchAdmission[lane].signal();
+
+                return;
+            }
+
+            if (slotDispatch)
+                return;
+        }
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getReservedInteractive() {
+        return reservedInteractive;
+    }
+
+    /**
+     * Gets the rate limiter of a lane.
+     *
+     * @param priority the lane
+     * @return the rate limiter, null if the lane only uses the shared one
+     */
+    public RateLimiter getRateLimiter(Priority priority) {
+        return rateLimiters.get(priority.ordinal());
+    }
+
+    /**
+     * Sets a rate limiter the requests of a lane have to pass in addition to the shared one.
+     *
+     * @param priority    the lane
+     * @param rateLimiter the rate limiter, null to only use the shared one
+     */
+    public void setRateLimiter(Priority priority, RateLimiter rateLimiter) {
+        rateLimiters.set(priority.ordinal(), rateLimiter);
+    }
+
+    /**
+     * Gets how many requests of a lane are waiting for a slot right now.
+     *
+     * @param priority the lane
+     * @return the queued requests
+     */
+    public int getQueued(Priority priority) {
+        lock.lock();
+        try {
+            return waiting[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets how many requests of a lane are running right now.
+     *
+     * @param priority the lane
+     * @return the running requests
+     */
+    public int getRunning(Priority priority) {
+        lock.lock();
+        try {
+            return running[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets how many requests of a lane have been admitted so far.
+     *
+     * @param priority the lane
+     * @return the admitted requests
+     */
+    public long getAdmittedCount(Priority priority) {
+        lock.lock();
+        try {
+            return admitted[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the average time the admitted requests of a lane waited, including the rate limiters.
+     *
+     * @param priority the lane
+     * @param unit     the unit to convert the time to
+     * @return the average wait, 0 if nothing was admitted yet
+     */
+    public long getMeanWait(Priority priority, TimeUnit unit) {
+        lock.lock();
+        try {
+            final int lane = priority.ordinal();
+            return admitted[lane] > 0 ? unit.convert(waitNanos[lane] / admitted[lane], TimeUnit.NANOSECONDS) : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the longest time an admitted request of a lane waited, including the rate limiters.
+     *
+     * @param priority the lane
+     * @param unit     the unit to convert the time to
+     * @return the longest wait
+     */
+    public long getMaxWait(Priority priority, TimeUnit unit) {
+        lock.lock();
+        try {
+            return unit.convert(maxWaitNanos[priority.ordinal()], TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder("RequestLanes{");
+
+        for (Priority priority : Priority.values()) {
+            if (priority.ordinal() > 0)
+                buffer.append(", ");
+
+            buffer.append(priority).append("=[queued=").append(getQueued(priority))
+                    .append(", running=").append(getRunning(priority))
+                    .append(", admitted=").append(getAdmittedCount(priority))
+                    .append(", meanWaitMillis=").append(getMeanWait(priority, TimeUnit.MILLISECONDS))
+                    .append(", maxWaitMillis=").append(getMaxWait(priority, TimeUnit.MILLISECONDS)).append(']');
+        }
+
+        return buffer.append('}').toString();
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.dedup;
+
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, thread-safe Bloom filter for md5 hashes. The bits are set with CAS, so any number of threads
+ * can add and query at the same time. The k bit positions are derived from the two halves of the md5 with
+ * double hashing - md5 bits are evenly distributed already, so no further hashing is needed.
+ * <p/>
+ * The filter may report a key as contained although it was never added (with the configured false
+ * positive probability), but never the other way round. Use {@link ScalableBloomFilter} if the number of
+ * keys is not known up front.
+ *
+ * @author Patrick Meier
+ */
+public class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private static final int MAX_HASHES = 30;
+
+    private final int numHashes;
+
+    private final long mask;
+
+    private final AtomicLongArray bits;
+
+    /**
+     * Creates a new filter sized for the given number of keys.
+     *
+     * @param expectedInsertions the number of keys to be added
+     * @param fpp                the false positive probability when that many keys were added, e.g. 0.01
+     * @throws IllegalArgumentException if expectedInsertions is not positive or fpp is not between 0 and 1
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0)
+            throw new IllegalArgumentException("ExpectedInsertions has to be positive!");
+
+        if (fpp <= 0 || fpp >= 1)
+            throw new IllegalArgumentException("Fpp has to be a value between 0 and 1!");
+
+        final double optimalBits = -expectedInsertions * Math.log(fpp) / (LN2 * LN2);
+
+        //A power of two, so positions can be masked - at least one word, at most 2^30 words (8 GB)
+        long bitCount = 64;
+        while (bitCount < optimalBits && bitCount < (1L << 36))
+            bitCount <<= 1;
+
+        this.numHashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round((double) bitCount / expectedInsertions * LN2)));
+        this.mask = bitCount - 1;
+        this.bits = new AtomicLongArray((int) (bitCount >>> 6));
+    }
+
+    private BloomFilter(int numHashes, AtomicLongArray bits) {
+        this.numHashes = numHashes;
+        this.mask = ((long) bits.length() << 6) - 1;
+        this.bits = bits;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Adds a key.
+     *
+     * @param key the md5 hash
+     * @return true if a bit changed, i.e. the key was definitely not contained before
+     */
+    public boolean put(UrlKey key) {
+        final long hash1 = key.getHigh();
+        final long hash2 = (key.getLow() << 1) | 1;
+
+        boolean changed = false;
+
+        for (int i = 0; i < numHashes; i++) {
+            final long position = (hash1 + i * hash2) & mask;
+            final int index = (int) (position >>> 6);
+            final long bit = 1L << position;
+
+            while (true) {
+                final long word = bits.get(index);
+
+                if ((word & bit) != 0)
+                    break;
+
+                if (bits.compareAndSet(index, word, word | bit)) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Checks if a key might have been added.
+     *
+     * @param key the md5 hash
+     * @return false if the key was definitely never added, true if it probably was
+     */
+    public boolean mightContain(UrlKey key) {
+        final long hash1 = key.getHigh();
+        final long hash2 = (key.getLow() << 1) | 1;
+
+        for (int i = 0; i < numHashes; i++) {
+            final long position = (hash1 + i * hash2) & mask;
+
+            if ((bits.get((int) (position >>> 6)) & (1L << position)) == 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds all keys of another filter, e.g. of another node. Both filters must have been created with the
+     * same parameters.
+     *
+     * @param other the other filter
+     * @throws IllegalArgumentException if the filters are not compatible
+     */
+    public void merge(BloomFilter other) {
+        if (!isCompatible(other))
+            throw new IllegalArgumentException("Filters with different sizes or hash counts can not be merged!");
+
+        for (int i = 0; i < bits.length(); i++) {
+            final long otherWord = other.bits.get(i);
+
+            while (true) {
+                final long word = bits.get(i);
+
+                if ((word | otherWord) == word || bits.compareAndSet(i, word, word | otherWord))
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Checks if another filter has the same size and hash count, so it can be merged.
+     *
+     * @param other the other filter
+     * @return true if both filters are compatible
+     */
+    public boolean isCompatible(BloomFilter other) {
+        return other != null && other.numHashes == numHashes && other.bits.length() == bits.length();
+    }
+
+    /**
+     * Estimates the current false positive probability from the share of set bits.
+     *
+     * @return the estimated probability
+     */
+    public double estimateFpp() {
+        long setBits = 0;
+
+        for (int i = 0; i < bits.length(); i++)
+            setBits += Long.bitCount(bits.get(i));
+
+        return Math.pow((double) setBits / getBitCount(), numHashes);
+    }
+
+    void writeTo(DataOutput output) throws IOException {
+        output.writeInt(numHashes);
+        output.writeInt(bits.length());
+
+        for (int i = 0; i < bits.length(); i++)
+            output.writeLong(bits.get(i));
+    }
+
+    static BloomFilter readFrom(DataInput input) throws IOException {
+        final int numHashes = input.readInt();
+        final int words = input.readInt();
+
+        if (numHashes < 1 || numHashes > MAX_HASHES || words < 1 || Integer.bitCount(words) != 1)
+            throw new IOException("Invalid bloom filter: " + numHashes + " hashes, " + words + " words!");
+
+        final AtomicLongArray bits = new AtomicLongArray(words);
+
+        for (int i = 0; i < words; i++)
+            bits.set(i, input.readLong());
+
+        return new BloomFilter(numHashes, bits);
+    }
+
+    BloomFilter copy() {
+        final AtomicLongArray copy = new AtomicLongArray(bits.length());
+
+        for (int i = 0; i < bits.length(); i++)
+            copy.set(i, bits.get(i));
+
+        return new BloomFilter(numHashes, copy);
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    public long getBitCount() {
+        return mask + 1;
+    }
+}
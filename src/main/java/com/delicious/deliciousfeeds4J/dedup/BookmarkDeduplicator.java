@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.dedup;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.reactive.ItemTransformer;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Drops bookmarks whose md5 was seen before, remembering the md5s in a {@link ScalableBloomFilter} instead
+ * of a set of strings - about 2 bytes per bookmark at a false positive probability of 0.1%. A false positive
+ * drops a new bookmark, so choose the probability according to how many losses are acceptable.
+ * <p/>
+ * Use {@link #filterNew(Collection)} on the results of {@code DeliciousFeeds}, or set it on
+ * {@code ReactiveDeliciousFeeds.setDeduplicator} to drop seen bookmarks before they are published. Bookmarks
+ * without a valid md5 are never dropped. This class is thread-safe.
+ *
+ * @author Patrick Meier
+ */
+public class BookmarkDeduplicator implements ItemTransformer<Bookmark> {
+
+    public static final long DEFAULT_INITIAL_CAPACITY = 1024 * 1024;
+
+    public static final double DEFAULT_FPP = 0.001;
+
+    private final ScalableBloomFilter filter;
+
+    /**
+     * Creates a new instance for one million bookmarks up front and a false positive probability of 0.1%.
+     */
+    public BookmarkDeduplicator() {
+        this(new ScalableBloomFilter(DEFAULT_INITIAL_CAPACITY, DEFAULT_FPP));
+    }
+
+    /**
+     * Creates a new instance, e.g. with a filter loaded with {@link ScalableBloomFilter#readFrom(java.io.InputStream)}.
+     *
+     * @param filter the filter of the seen md5s
+     * @throws IllegalArgumentException if filter is null
+     */
+    public BookmarkDeduplicator(ScalableBloomFilter filter) {
+        if (filter == null)
+            throw new IllegalArgumentException("Filter must not be null!");
+
+        this.filter = filter;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Checks if a bookmark was not seen before and remembers it.
+     *
+     * @param bookmark the bookmark
+     * @return true if the bookmark is new or has no valid md5
+     * @throws IllegalArgumentException if bookmark is null
+     */
+    public boolean isNew(Bookmark bookmark) {
+        if (bookmark == null)
+            throw new IllegalArgumentException("Bookmark must not be null!");
+
+        final UrlKey key = UrlKey.tryFromHex(bookmark.getMd5());
+
+        return key == null || filter.add(key);
+    }
+
+    /**
+     * Gets the bookmarks which were not seen before and remembers them.
+     *
+     * @param bookmarks the bookmarks, may be null
+     * @return the new bookmarks in the given order, null if bookmarks is null
+     */
+    public List<Bookmark> filterNew(Collection<Bookmark> bookmarks) {
+        if (bookmarks == null)
+            return null;
+
+        final List<Bookmark> result = new ArrayList<Bookmark>(bookmarks.size());
+
+        for (Bookmark bookmark : bookmarks) {
+            if (bookmark != null && isNew(bookmark))
+                result.add(bookmark);
+        }
+
+        return result;
+    }
+
+    /**
+     * Drops seen bookmarks from a publisher.
+     *
+     * @param bookmark the bookmark
+     * @return the bookmark if it is new, null to drop it
+     */
+    @Override
+    public Bookmark transform(Bookmark bookmark) {
+        return isNew(bookmark) ? bookmark : null;
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets the filter of the seen md5s - to save it or to merge it with the filters of other nodes.
+     *
+     * @return the filter
+     */
+    public ScalableBloomFilter getFilter() {
+        return filter;
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.dedup;
+
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe Bloom filter that grows with the number of keys. It starts with one {@link BloomFilter}
+ * for the initial capacity. When that is full a new stage with twice the capacity and half the false
+ * positive probability is added - so the overall false positive probability stays below the configured
+ * one, however many keys are added.
+ * <p/>
+ * Filters can be saved with {@link #writeTo(OutputStream)} and loaded with {@link #readFrom(InputStream)},
+ * and filters of several nodes with the same configuration can be combined with {@link #merge(ScalableBloomFilter)}.
+ *
+ * @author Patrick Meier
+ */
+public class ScalableBloomFilter {
+
+    private static final byte[] MAGIC = {'D', 'F', '4', 'B'};
+
+    private static final int VERSION = 1;
+
+    private static final int GROWTH_FACTOR = 2;
+
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private final long initialCapacity;
+
+    private final double fpp;
+
+    //Copy-on-write, the last stage takes new keys
+    private volatile Stage[] stages;
+
+    /**
+     * Creates a new filter.
+     *
+     * @param initialCapacity the number of keys of the first stage
+     * @param fpp             the overall false positive probability, e.g. 0.001
+     * @throws IllegalArgumentException if initialCapacity is not positive or fpp is not between 0 and 1
+     */
+    public ScalableBloomFilter(long initialCapacity, double fpp) {
+        if (initialCapacity <= 0)
+            throw new IllegalArgumentException("InitialCapacity has to be positive!");
+
+        if (fpp <= 0 || fpp >= 1)
+            throw new IllegalArgumentException("Fpp has to be a value between 0 and 1!");
+
+        this.initialCapacity = initialCapacity;
+        this.fpp = fpp;
+        this.stages = new Stage[]{newStage(0)};
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Adds a key unless it is probably contained already. Two threads adding the same new key at the same
+     * time may both get true.
+     *
+     * @param key the md5 hash
+     * @return true if the key was added, false if it was (probably) seen before
+     * @throws IllegalArgumentException if key is null
+     */
+    public boolean add(UrlKey key) {
+        if (key == null)
+            throw new IllegalArgumentException("Key must not be null!");
+
+        final Stage[] current = stages;
+
+        for (Stage stage : current) {
+            if (stage.filter.mightContain(key))
+                return false;
+        }
+
+        final Stage last = current[current.length - 1];
+
+        if (!last.filter.put(key))
+            return false;
+
+        if (last.count.incrementAndGet() >= last.capacity)
+            grow(current.length);
+
+        return true;
+    }
+
+    /**
+     * Checks if a key might have been added.
+     *
+     * @param key the md5 hash
+     * @return false if the key was definitely never added, true if it probably was
+     */
+    public boolean mightContain(UrlKey key) {
+        if (key == null)
+            throw new IllegalArgumentException("Key must not be null!");
+
+        for (Stage stage : stages) {
+            if (stage.filter.mightContain(key))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Adds all keys of another filter, e.g. of another node. Stages both filters have are merged, further
+     * stages of the other filter are copied.
+     *
+     * @param other the other filter
+     * @throws IllegalArgumentException if other is null or was created with another configuration
+     */
+    public synchronized void merge(ScalableBloomFilter other) {
+        if (other == null)
+            throw new IllegalArgumentException("Other must not be null!");
+
+        if (other.initialCapacity != initialCapacity || Double.compare(other.fpp, fpp) != 0)
+            throw new IllegalArgumentException("Filters with different configurations can not be merged!");
+
+        final Stage[] otherStages = other.stages;
+        Stage[] merged = stages;
+
+        for (int i = 0; i < otherStages.length; i++) {
+            if (i < merged.length) {
+                merged[i].filter.merge(otherStages[i].filter);
+                merged[i].count.addAndGet(otherStages[i].count.get());
+            } else {
+                merged = Arrays.copyOf(merged, i + 1);
+                merged[i] = new Stage(otherStages[i].capacity, otherStages[i].filter.copy(), otherStages[i].count.get());
+            }
+        }
+
+        stages = merged;
+
+        //The merged counts may exceed the capacity of the last stage
+        final Stage last = merged[merged.length - 1];
+        if (last.count.get() >= last.capacity)
+            grow(merged.length);
+    }
+
+    /**
+     * Writes the filter to a stream. Concurrent adds may or may not be included.
+     *
+     * @param output the stream - it is not closed
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        if (output == null)
+            throw new IllegalArgumentException("Output must not be null!");
+
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output, 64 * 1024));
+        final Stage[] current = stages;
+
+        data.write(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(initialCapacity);
+        data.writeDouble(fpp);
+        data.writeInt(current.length);
+
+        for (Stage stage : current) {
+            data.writeLong(stage.capacity);
+            data.writeLong(stage.count.get());
+            stage.filter.writeTo(data);
+        }
+
+        data.flush();
+    }
+
+    /**
+     * Reads a filter written with {@link #writeTo(OutputStream)}.
+     *
+     * @param input the stream - it is not closed
+     * @return the filter
+     * @throws IOException if reading fails or the stream holds no valid filter
+     */
+    public static ScalableBloomFilter readFrom(InputStream input) throws IOException {
+        if (input == null)
+            throw new IllegalArgumentException("Input must not be null!");
+
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(input, 64 * 1024));
+
+        final byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+
+        if (!Arrays.equals(magic, MAGIC))
+            throw new StreamCorruptedException("Not a bloom filter - invalid magic bytes!");
+
+        final int version = data.readInt();
+        if (version != VERSION)
+            throw new StreamCorruptedException("Unsupported bloom filter version: " + version);
+
+        final ScalableBloomFilter filter;
+        try {
+            filter = new ScalableBloomFilter(data.readLong(), data.readDouble());
+        } catch (IllegalArgumentException ex) {
+            throw new StreamCorruptedException(ex.getMessage());
+        }
+
+        final int stageCount = data.readInt();
+        if (stageCount < 1)
+            throw new StreamCorruptedException("Invalid stage count: " + stageCount);
+
+        final Stage[] stages = new Stage[stageCount];
+
+        for (int i = 0; i < stageCount; i++) {
+            final long capacity = data.readLong();
+            final long count = data.readLong();
+
+            stages[i] = new Stage(capacity, BloomFilter.readFrom(data), count);
+        }
+
+        filter.stages = stages;
+        return filter;
+    }
+
+    private synchronized void grow(int expectedStages) {
+        final Stage[] current = stages;
+
+        //Another thread was faster
+        if (current.length != expectedStages)
+            return;
+
+        final Stage[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = newStage(current.length);
+
+        stages = grown;
+    }
+
+    private Stage newStage(int index) {
+        double capacity = initialCapacity;
+        double stageFpp = fpp * (1 - TIGHTENING_RATIO);
+
+        for (int i = 0; i < index; i++) {
+            capacity *= GROWTH_FACTOR;
+            stageFpp *= TIGHTENING_RATIO;
+        }
+
+        final long stageCapacity = (long) Math.min(capacity, Long.MAX_VALUE / 2);
+
+        return new Stage(stageCapacity, new BloomFilter(stageCapacity, stageFpp), 0);
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public long getInitialCapacity() {
+        return initialCapacity;
+    }
+
+    public double getFpp() {
+        return fpp;
+    }
+
+    public int getStageCount() {
+        return stages.length;
+    }
+
+    /**
+     * Gets the approximate number of added keys - merged filters count keys both had twice.
+     *
+     * @return the number of keys
+     */
+    public long getApproximateCount() {
+        long count = 0;
+
+        for (Stage stage : stages)
+            count += stage.count.get();
+
+        return count;
+    }
+
+    /**
+     * Gets the memory used by the bits of all stages.
+     *
+     * @return the size in bytes
+     */
+    public long getSizeInBytes() {
+        long bits = 0;
+
+        for (Stage stage : stages)
+            bits += stage.filter.getBitCount();
+
+        return bits / 8;
+    }
+
+    private static final class Stage {
+
+        private final long capacity;
+
+        private final BloomFilter filter;
+
+        private final AtomicLong count;
+
+        private Stage(long capacity, BloomFilter filter, long count) {
+            this.capacity = capacity;
+            this.filter = filter;
+            this.count = new AtomicLong(count);
+        }
+    }
+}
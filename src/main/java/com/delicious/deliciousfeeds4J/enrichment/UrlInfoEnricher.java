@@ -0,0 +1,422 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.enrichment;
+
+import com.delicious.deliciousfeeds4J.DeliciousFeeds;
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.beans.EnrichedBookmark;
+import com.delicious.deliciousfeeds4J.beans.UrlInfo;
+import com.delicious.deliciousfeeds4J.exceptions.DeliciousFeedsException;
+import com.delicious.deliciousfeeds4J.exceptions.YouGotBannedException;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Joins bookmarks with the {@link UrlInfo} of their url. Bookmarks are processed in batches: the urls of a
+ * batch are deduplicated by their md5 and every distinct url is looked up only once. Results (including
+ * urls delicious knows nothing about) are cached for a configurable time-to-live, so bookmarks pointing to
+ * the same url cause only one urlinfo-request per TTL - even across batches and concurrent callers. When
+ * the cache is full, the least recently used UrlInfos are dropped; lookups still running are kept.
+ * <p/>
+ * Failed lookups are logged and not cached; the affected bookmarks are emitted without a UrlInfo. A
+ * {@link YouGotBannedException} is passed on to stop the enrichment.
+ * <p/>
+ * Instances are thread-safe.
+ *
+ * @author Patrick Meier
+ */
+public class UrlInfoEnricher {
+
+    private static final Logger logger = LoggerFactory.getLogger(UrlInfoEnricher.class);
+
+    //Some default values
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    public static final int DEFAULT_MAX_CACHE_SIZE = 100000;
+
+    private final DeliciousFeeds deliciousFeeds;
+
+    //Guarded by the cacheLock - in access order, so the least recently used entries come first
+    private final Map<UrlKey, CacheEntry> cache = new LinkedHashMap<UrlKey, CacheEntry>(16, 0.75f, true);
+
+    private final ReentrantLock cacheLock = new ReentrantLock();
+
+    private final AtomicLong lookupCount = new AtomicLong();
+
+    private final AtomicLong cacheHitCount = new AtomicLong();
+
+    private volatile long ttlMillis = DEFAULT_TTL_MILLIS;
+
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+    private volatile int maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+
+    private volatile ExecutorService executor;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param deliciousFeeds the instance used for the urlinfo-requests
+     * @throws IllegalArgumentException if deliciousFeeds is null
+     */
+    public UrlInfoEnricher(DeliciousFeeds deliciousFeeds) {
+        if (deliciousFeeds == null)
+            throw new IllegalArgumentException("DeliciousFeeds must not be null!");
+
+        this.deliciousFeeds = deliciousFeeds;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Enriches all given bookmarks. The order is preserved.
+     *
+     * @param bookmarks the bookmarks, may be null
+     * @return the enriched bookmarks - an empty list if bookmarks was null
+     * @throws YouGotBannedException if delicious banned the client during the lookups
+     */
+    public List<EnrichedBookmark> enrich(List<Bookmark> bookmarks) {
+        if (bookmarks == null || bookmarks.isEmpty())
+            return new ArrayList<EnrichedBookmark>();
+
+        final List<EnrichedBookmark> result = new ArrayList<EnrichedBookmark>(bookmarks.size());
+
+        for (int from = 0; from < bookmarks.size(); from += batchSize)
+            result.addAll(enrichBatch(bookmarks.subList(from, Math.min(bookmarks.size(), from + batchSize))));
+
+        return result;
+    }
+
+    /**
+     * Lazily enriches a stream of bookmarks. The next batch is only read from the given iterator and
+     * looked up when the enriched bookmarks of the previous batch are consumed.
+     *
+     * @param bookmarks the bookmarks
+     * @return an iterator over the enriched bookmarks
+     * @throws IllegalArgumentException if bookmarks is null
+     */
+    public Iterator<EnrichedBookmark> enrich(final Iterator<Bookmark> bookmarks) {
+        if (bookmarks == null)
+            throw new IllegalArgumentException("Bookmarks must not be null!");
+
+        return new Iterator<EnrichedBookmark>() {
+
+            private Iterator<EnrichedBookmark> current = Collections.<EnrichedBookmark>emptyList().iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (current.hasNext() == false && bookmarks.hasNext()) {
+                    final List<Bookmark> batch = new ArrayList<Bookmark>(batchSize);
+
+                    while (batch.size() < batchSize && bookmarks.hasNext())
+                        batch.add(bookmarks.next());
+
+                    current = enrichBatch(batch).iterator();
+                }
+
+                return current.hasNext();
+            }
+
+            @Override
+            public EnrichedBookmark next() {
+                if (hasNext() == false)
+                    throw new NoSuchElementException();
+
+                return current.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Remove is not supported!");
+            }
+        };
+    }
+
+    /**
+     * Gets the UrlInfo for the given key - from the cache if possible.
+     *
+     * @param urlKey the key of the url
+     * @return the UrlInfo, null if nothing found or the lookup failed
+     * @throws IllegalArgumentException if urlKey is null
+     * @throws YouGotBannedException    if delicious banned the client
+     */
+    public UrlInfo lookup(UrlKey urlKey) {
+        if (urlKey == null)
+            throw new IllegalArgumentException("UrlKey must not be null!");
+
+        final CacheEntry entry = entryFor(urlKey);
+        entry.task.run();
+
+        return await(entry);
+    }
+
+    /**
+     * Removes all cached UrlInfos.
+     */
+    public void clearCache() {
+        cacheLock.lock();
+        try {
+            cache.clear();
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    private List<EnrichedBookmark> enrichBatch(List<Bookmark> batch) {
+
+        //Deduplicate the urls of this batch
+        final Map<UrlKey, CacheEntry> entries = new LinkedHashMap<UrlKey, CacheEntry>();
+        final UrlKey[] keys = new UrlKey[batch.size()];
+
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = keyOf(batch.get(i));
+
+            if (keys[i] != null && entries.containsKey(keys[i]) == false)
+                entries.put(keys[i], entryFor(keys[i]));
+        }
+
+        logger.debug("Enriching {} bookmarks with {} distinct urls...", batch.size(), entries.size());
+
+        //Start all lookups - running a task twice is a no-op, so entries loaded by others are not fetched again
+        final ExecutorService currentExecutor = executor;
+
+        for (CacheEntry entry : entries.values()) {
+            if (entry.task.isDone())
+                continue;
+
+            if (currentExecutor == null) {
+                entry.task.run();
+                continue;
+            }
+
+            try {
+                currentExecutor.execute(entry.task);
+            } catch (RejectedExecutionException ex) {
+                //Saturated or shut down - run it here, so the waiters of the entry do not hang
+                logger.debug("Executor rejected lookup of {} - running it in the calling thread.", entry.urlKey);
+                entry.task.run();
+            }
+        }
+
+        final List<EnrichedBookmark> result = new ArrayList<EnrichedBookmark>(batch.size());
+
+        for (int i = 0; i < keys.length; i++) {
+            final UrlInfo urlInfo = keys[i] != null ? await(entries.get(keys[i])) : null;
+            result.add(new EnrichedBookmark(batch.get(i), urlInfo));
+        }
+
+        return result;
+    }
+
+    private UrlKey keyOf(Bookmark bookmark) {
+        final UrlKey key = UrlKey.tryFromHex(bookmark.getMd5());
+
+        if (key != null)
+            return key;
+
+        if (bookmark.getMd5() != null)
+            logger.debug("Invalid md5 '{}' - falling back to the url.", bookmark.getMd5());
+
+        if (bookmark.getUrl() == null || bookmark.getUrl().isEmpty())
+            return null;
+
+        return deliciousFeeds.getUrlIdentity().keyOf(bookmark.getUrl());
+    }
+
+    private CacheEntry entryFor(final UrlKey urlKey) {
+        cacheLock.lock();
+        try {
+            final CacheEntry existing = cache.get(urlKey);
+
+            if (existing != null && existing.expiresAt > System.currentTimeMillis()) {
+                cacheHitCount.incrementAndGet();
+                return existing;
+            }
+
+            final CacheEntry created = new CacheEntry(urlKey);
+            cache.put(urlKey, created);
+
+            evictIfNecessary();
+            return created;
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    private void removeEntry(CacheEntry entry) {
+        cacheLock.lock();
+        try {
+            if (cache.get(entry.urlKey) == entry)
+                cache.remove(entry.urlKey);
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    private UrlInfo await(CacheEntry entry) {
+        try {
+            return entry.task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DeliciousFeedsException("Interrupted while waiting for urlinfo!", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof YouGotBannedException)
+                throw (YouGotBannedException) ex.getCause();
+
+            logger.warn("Error while finding urlinfo for hash " + entry.urlKey + " - continuing without it.", ex.getCause());
+            return null;
+        }
+    }
+
+    //Called with the cacheLock held - drops the least recently used entries, but none still being loaded
+    private void evictIfNecessary() {
+        for (Iterator<CacheEntry> iterator = cache.values().iterator(); iterator.hasNext() && cache.size() > maxCacheSize; ) {
+            if (iterator.next().task.isDone())
+                iterator.remove();
+        }
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets how many urlinfo-requests were made.
+     *
+     * @return the number of requests
+     */
+    public long getLookupCount() {
+        return lookupCount.get();
+    }
+
+    /**
+     * Gets how many lookups were answered from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getCacheHitCount() {
+        return cacheHitCount.get();
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * Sets how long UrlInfos are cached. By default this is one hour.
+     *
+     * @param ttlMillis the time-to-live in milliseconds
+     * @throws IllegalArgumentException if ttlMillis is negative
+     */
+    public void setTtlMillis(long ttlMillis) {
+        if (ttlMillis < 0)
+            throw new IllegalArgumentException("TtlMillis must not be negative!");
+
+        this.ttlMillis = ttlMillis;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets how many bookmarks are deduplicated and looked up together. By default this is 100.
+     *
+     * @param batchSize the batch size
+     * @throws IllegalArgumentException if batchSize is smaller than 1
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("BatchSize has to be at least 1!");
+
+        this.batchSize = batchSize;
+    }
+
+    public int getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    /**
+     * Sets how many UrlInfos are cached at most. By default this is 100000.
+     *
+     * @param maxCacheSize the maximum cache size
+     * @throws IllegalArgumentException if maxCacheSize is smaller than 1
+     */
+    public void setMaxCacheSize(int maxCacheSize) {
+        if (maxCacheSize < 1)
+            throw new IllegalArgumentException("MaxCacheSize has to be at least 1!");
+
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets an executor to run the lookups of a batch in parallel. By default this is null and the
+     * lookups are made one after another by the calling thread.
+     *
+     * @param executor the executor to use, null for sequential lookups
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    //---------------------------------------------------------------------------
+    // Helper classes
+    //---------------------------------------------------------------------------
+
+    private final class CacheEntry implements Callable<UrlInfo> {
+
+        private final UrlKey urlKey;
+
+        private final FutureTask<UrlInfo> task = new FutureTask<UrlInfo>(this);
+
+        //Entries being loaded never expire
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        private CacheEntry(UrlKey urlKey) {
+            this.urlKey = urlKey;
+        }
+
+        @Override
+        public UrlInfo call() {
+            lookupCount.incrementAndGet();
+
+            try {
+                final UrlInfo urlInfo = deliciousFeeds.findUrlInfoByUrlKey(urlKey);
+                expiresAt = System.currentTimeMillis() + ttlMillis;
+
+                return urlInfo;
+            } catch (RuntimeException ex) {
+                removeEntry(this);
+                throw ex;
+            }
+        }
+    }
+}
@@ -18,16 +18,68 @@ package com.delicious.deliciousfeeds4J.exceptions;
 
 /**
  * An Exception which wraps other exceptions that may occur. So you only have to catch this one.
+ * <p/>
+ * To keep failures cheap when many calls fail, no stack trace is recorded by default - the cause still has
+ * one. Full stack traces can be enabled with {@link #setStackTraceEnabled(boolean)} or the system property
+ * {@code deliciousfeeds4j.stackTraces=true}.
  *
  * @author Patrick Meier
  */
 public class DeliciousFeedsException extends RuntimeException {
 
+    private static volatile boolean stackTraceEnabled = Boolean.getBoolean("deliciousfeeds4j.stackTraces");
+
+    private final ErrorCode errorCode;
+
     public DeliciousFeedsException(String message) {
-        super(message);
+        this(ErrorCode.UNKNOWN, message);
     }
 
     public DeliciousFeedsException(String message, Throwable cause) {
+        this(ErrorCode.UNKNOWN, message, cause);
+    }
+
+    public DeliciousFeedsException(ErrorCode errorCode, String message) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+
+    public DeliciousFeedsException(ErrorCode errorCode, String message, Throwable cause) {
         super(message, cause);
+        this.errorCode = errorCode;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        if (stackTraceEnabled)
+            return super.fillInStackTrace();
+
+        return this;
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    public static boolean isStackTraceEnabled() {
+        return stackTraceEnabled;
+    }
+
+    /**
+     * Sets whether exceptions created from now on record their stack trace. Default is false, unless the
+     * system property {@code deliciousfeeds4j.stackTraces} is true.
+     *
+     * @param stackTraceEnabled true to record stack traces
+     */
+    public static void setStackTraceEnabled(boolean stackTraceEnabled) {
+        DeliciousFeedsException.stackTraceEnabled = stackTraceEnabled;
     }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.exceptions;
+
+/**
+ * Tells what kind of failure a {@link DeliciousFeedsException} or a failed {@code FeedResult} stands for.
+ *
+ * @author Patrick Meier
+ */
+public enum ErrorCode {
+
+    /**
+     * Delicious answered with an error result, e.g. for an invalid private key or an unknown user.
+     */
+    ERROR_RESULT,
+
+    /**
+     * Delicious answered with status 503 - you may got banned.
+     */
+    BANNED,
+
+    /**
+     * Delicious answered with another status than 2xx.
+     */
+    HTTP_ERROR,
+
+    /**
+     * The response could not be parsed.
+     */
+    INVALID_RESPONSE,
+
+    /**
+     * The request failed because of a connection problem.
+     */
+    IO_ERROR,
+
+    /**
+     * The thread was interrupted while waiting for the API limit or the response.
+     */
+    INTERRUPTED,
+
+    /**
+     * The deadline of the call passed, or connecting or reading timed out.
+     */
+    TIMEOUT,
+
+    /**
+     * The deadline of the call was cancelled.
+     */
+    CANCELLED,
+
+    /**
+     * Any other failure.
+     */
+    UNKNOWN
+}
@@ -24,7 +24,7 @@ package com.delicious.deliciousfeeds4J.exceptions;
 public class YouGotBannedException extends DeliciousFeedsException {
 
     public YouGotBannedException(Throwable cause) {
-        super("You may got banned by Delicious. Try sending requests less frequently and " +
+        super(ErrorCode.BANNED, "You may got banned by Delicious. Try sending requests less frequently and " +
                 "remember to set a custom user-agent for the requests!", cause);
     }
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.graph;
+
+import java.util.Map;
+
+/**
+ * An immutable follow-graph stored in compressed sparse row (CSR) format. Every user is mapped to an
+ * int node id and all edges are kept in flat int arrays - one row for the users someone follows (out-edges)
+ * and one row for the followers of a user (in-edges). Every out-edge also carries the timestamp when the
+ * network member was added.
+ * <p/>
+ * Instances are created with the {@link FollowGraphBuilder}.
+ *
+ * @author Patrick Meier
+ */
+public class FollowGraph {
+
+    //Timestamp used for edges without an added date
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final String[] usernames;
+
+    private final Map<String, Integer> nodeIds;
+
+    //Out-edges: the users a node follows
+    private final int[] outOffsets;
+
+    private final int[] outTargets;
+
+    private final long[] outTimestamps;
+
+    //In-edges: the followers of a node
+    private final int[] inOffsets;
+
+    private final int[] inSources;
+
+    FollowGraph(String[] usernames, Map<String, Integer> nodeIds, int[] outOffsets, int[] outTargets,
+                long[] outTimestamps, int[] inOffsets, int[] inSources) {
+        this.usernames = usernames;
+        this.nodeIds = nodeIds;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outTimestamps = outTimestamps;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets the number of users in this graph.
+     *
+     * @return the number of nodes
+     */
+    public int nodeCount() {
+        return usernames.length;
+    }
+
+    /**
+     * Gets the number of follow-relations in this graph.
+     *
+     * @return the number of edges
+     */
+    public int edgeCount() {
+        return outTargets.length;
+    }
+
+    /**
+     * Gets the node id of the given user.
+     *
+     * @param username the username
+     * @return the node id, -1 if the user is not part of this graph
+     */
+    public int nodeOf(String username) {
+        final Integer node = nodeIds.get(username);
+        return node != null ? node : -1;
+    }
+
+    /**
+     * Gets the username of the given node.
+     *
+     * @param node the node id
+     * @return the username
+     */
+    public String usernameOf(int node) {
+        return usernames[node];
+    }
+
+    /**
+     * Gets the number of users the given node follows.
+     *
+     * @param node the node id
+     * @return the out-degree
+     */
+    public int outDegree(int node) {
+        return outOffsets[node + 1] - outOffsets[node];
+    }
+
+    /**
+     * Gets the number of followers of the given node.
+     *
+     * @param node the node id
+     * @return the in-degree
+     */
+    public int inDegree(int node) {
+        return inOffsets[node + 1] - inOffsets[node];
+    }
+
+    /**
+     * Gets the index of the first out-edge of the given node. The out-edges of a node are the
+     * indexes from {@link #outStart(int)} (inclusive) to {@link #outEnd(int)} (exclusive).
+     *
+     * @param node the node id
+     * @return the index of the first out-edge
+     */
+    public int outStart(int node) {
+        return outOffsets[node];
+    }
+
+    /**
+     * Gets the index after the last out-edge of the given node.
+     *
+     * @param node the node id
+     * @return the index after the last out-edge
+     */
+    public int outEnd(int node) {
+        return outOffsets[node + 1];
+    }
+
+    /**
+     * Gets the followed node of the given out-edge.
+     *
+     * @param edge the edge index
+     * @return the node id of the followed user
+     */
+    public int target(int edge) {
+        return outTargets[edge];
+    }
+
+    /**
+     * Gets the timestamp of the given out-edge in epoch millis.
+     *
+     * @param edge the edge index
+     * @return the timestamp, {@link #NO_TIMESTAMP} if unknown
+     */
+    public long timestamp(int edge) {
+        return outTimestamps[edge];
+    }
+
+    /**
+     * Gets the index of the first in-edge of the given node.
+     *
+     * @param node the node id
+     * @return the index of the first in-edge
+     */
+    public int inStart(int node) {
+        return inOffsets[node];
+    }
+
+    /**
+     * Gets the index after the last in-edge of the given node.
+     *
+     * @param node the node id
+     * @return the index after the last in-edge
+     */
+    public int inEnd(int node) {
+        return inOffsets[node + 1];
+    }
+
+    /**
+     * Gets the following node of the given in-edge.
+     *
+     * @param edge the in-edge index
+     * @return the node id of the follower
+     */
+    public int source(int edge) {
+        return inSources[edge];
+    }
+
+    @Override
+    public String toString() {
+        return "FollowGraph{" +
+                "nodes=" + nodeCount() +
+                ", edges=" + edgeCount() +
+                '}';
+    }
+}
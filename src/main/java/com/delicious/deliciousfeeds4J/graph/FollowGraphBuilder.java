@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.graph;
+
+import com.delicious.deliciousfeeds4J.beans.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Collects follow-relations (e.g. the results of {@code DeliciousFeeds.findNetworkMembersByUser}) and builds
+ * a compact {@link FollowGraph} out of them. Edges are buffered in primitive arrays, so no objects are
+ * created per edge. Duplicate edges are merged and keep the latest timestamp.
+ * <p/>
+ * <b>This class is not thread-safe!</b>
+ *
+ * @author Patrick Meier
+ */
+public class FollowGraphBuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(FollowGraphBuilder.class);
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<String, Integer> nodeIds = new HashMap<String, Integer>();
+
+    private final List<String> usernames = new ArrayList<String>();
+
+    private int[] sources = new int[INITIAL_CAPACITY];
+
+    private int[] targets = new int[INITIAL_CAPACITY];
+
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+
+    private int edgeCount;
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Adds a user without any edges. Users are added implicitly when adding edges, so this is only
+     * needed for users who neither follow someone nor have followers.
+     *
+     * @param username the username
+     * @return this builder
+     * @throws IllegalArgumentException if username is null or empty
+     */
+    public FollowGraphBuilder addUser(String username) {
+        nodeFor(username);
+        return this;
+    }
+
+    /**
+     * Adds a single follow-relation.
+     *
+     * @param follower  the user who follows
+     * @param followed  the user who is followed
+     * @param timestamp when the relation was added in epoch millis, {@link FollowGraph#NO_TIMESTAMP} if unknown
+     * @return this builder
+     * @throws IllegalArgumentException if follower or followed is null or empty
+     */
+    public FollowGraphBuilder addFollow(String follower, String followed, long timestamp) {
+        final int source = nodeFor(follower);
+        final int target = nodeFor(followed);
+
+        if (edgeCount == sources.length) {
+            final int capacity = sources.length + (sources.length >> 1);
+            sources = Arrays.copyOf(sources, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+        }
+
+        sources[edgeCount] = source;
+        targets[edgeCount] = target;
+        timestamps[edgeCount] = timestamp;
+        edgeCount++;
+
+        return this;
+    }
+
+    /**
+     * Adds all network members of the given user as returned by {@code DeliciousFeeds.findNetworkMembersByUser}.
+     *
+     * @param follower       the user whose network members are added
+     * @param networkMembers the users the follower follows, may be null
+     * @return this builder
+     * @throws IllegalArgumentException if follower is null or empty
+     */
+    public FollowGraphBuilder addNetworkMembers(String follower, Set<User> networkMembers) {
+        nodeFor(follower);
+
+        if (networkMembers == null)
+            return this;
+
+        for (User member : networkMembers) {
+            final long timestamp = member.getAddedDate() != null ? member.getAddedDate().getTime() : FollowGraph.NO_TIMESTAMP;
+            addFollow(follower, member.getUser(), timestamp);
+        }
+
+        return this;
+    }
+
+    /**
+     * Builds the graph. The builder can be used further afterwards.
+     *
+     * @return the built graph
+     */
+    public FollowGraph build() {
+        final int nodeCount = usernames.size();
+
+        //Counting sort of all edges by their source
+        final int[] rowOffsets = new int[nodeCount + 1];
+
+        for (int i = 0; i < edgeCount; i++)
+            rowOffsets[sources[i] + 1]++;
+
+        for (int i = 0; i < nodeCount; i++)
+            rowOffsets[i + 1] += rowOffsets[i];
+
+        //Key is target in the upper and edge index in the lower half - so sorting a row sorts by target
+        final long[] keys = new long[edgeCount];
+        final int[] positions = Arrays.copyOf(rowOffsets, nodeCount);
+
+        for (int i = 0; i < edgeCount; i++)
+            keys[positions[sources[i]]++] = ((long) targets[i] << 32) | i;
+
+        //Sort every row and drop duplicates
+        final int[] outOffsets = new int[nodeCount + 1];
+        final int[] outTargets = new int[edgeCount];
+        final long[] outTimestamps = new long[edgeCount];
+
+        int outCount = 0;
+
+        for (int node = 0; node < nodeCount; node++) {
+            final int start = rowOffsets[node];
+            final int end = rowOffsets[node + 1];
+
+            Arrays.sort(keys, start, end);
+
+            for (int i = start; i < end; i++) {
+                final int target = (int) (keys[i] >>> 32);
+                final long timestamp = timestamps[(int) keys[i]];
+
+                if (outCount > outOffsets[node] && outTargets[outCount - 1] == target) {
+                    outTimestamps[outCount - 1] = Math.max(outTimestamps[outCount - 1], timestamp);
+                } else {
+                    outTargets[outCount] = target;
+                    outTimestamps[outCount] = timestamp;
+                    outCount++;
+                }
+            }
+
+            outOffsets[node + 1] = outCount;
+        }
+
+        final int[] finalTargets = outCount == edgeCount ? outTargets : Arrays.copyOf(outTargets, outCount);
+        final long[] finalTimestamps = outCount == edgeCount ? outTimestamps : Arrays.copyOf(outTimestamps, outCount);
+
+        //Build the reverse rows
+        final int[] inOffsets = new int[nodeCount + 1];
+
+        for (int i = 0; i < outCount; i++)
+            inOffsets[finalTargets[i] + 1]++;
+
+        for (int i = 0; i < nodeCount; i++)
+            inOffsets[i + 1] += inOffsets[i];
+
+        final int[] inSources = new int[outCount];
+        final int[] inPositions = Arrays.copyOf(inOffsets, nodeCount);
+
+        for (int node = 0; node < nodeCount; node++)
+            for (int edge = outOffsets[node]; edge < outOffsets[node + 1]; edge++)
+                inSources[inPositions[finalTargets[edge]]++] = node;
+
+        logger.info("Successfully built follow-graph with {} nodes and {} edges!", nodeCount, outCount);
+
+        return new FollowGraph(usernames.toArray(new String[nodeCount]), new HashMap<String, Integer>(nodeIds),
+                outOffsets, finalTargets, finalTimestamps, inOffsets, inSources);
+    }
+
+    private int nodeFor(String username) {
+        if (username == null || username.isEmpty())
+            throw new IllegalArgumentException("Username must not be null or empty!");
+
+        Integer node = nodeIds.get(username);
+
+        if (node == null) {
+            node = usernames.size();
+            nodeIds.put(username, node);
+            usernames.add(username);
+        }
+
+        return node;
+    }
+}
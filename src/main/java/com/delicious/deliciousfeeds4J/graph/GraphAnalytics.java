@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.graph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel influence algorithms over a {@link FollowGraph}. Every algorithm splits the node range into
+ * chunks, forks one task per chunk on the given executor and joins the partial results.
+ * <p/>
+ * The executor is not shut down by this class.
+ *
+ * @author Patrick Meier
+ */
+public class GraphAnalytics {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphAnalytics.class);
+
+    //Some default values
+    public static final double DEFAULT_DAMPING = 0.85;
+
+    public static final int DEFAULT_MAX_ITERATIONS = 50;
+
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+
+    //Chunks smaller than this are not worth a task of their own
+    private static final int MIN_CHUNK_SIZE = 4096;
+
+    private final ExecutorService executor;
+
+    private final int parallelism;
+
+    /**
+     * Creates a new instance which uses one chunk per available processor.
+     *
+     * @param executor the executor to run the chunks on
+     */
+    public GraphAnalytics(ExecutorService executor) {
+        this(executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param executor    the executor to run the chunks on
+     * @param parallelism how many chunks should be run in parallel
+     * @throws IllegalArgumentException if executor is null or parallelism is smaller than 1
+     */
+    public GraphAnalytics(ExecutorService executor, int parallelism) {
+        if (executor == null)
+            throw new IllegalArgumentException("Executor must not be null!");
+
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism has to be at least 1!");
+
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Computes the out-degree (number of followed users) of every node.
+     *
+     * @param graph the graph
+     * @return the out-degrees indexed by node id
+     */
+    public int[] outDegrees(FollowGraph graph) {
+        final int[] degrees = new int[graph.nodeCount()];
+
+        for (int node = 0; node < degrees.length; node++)
+            degrees[node] = graph.outDegree(node);
+
+        return degrees;
+    }
+
+    /**
+     * Computes the in-degree (number of followers) of every node.
+     *
+     * @param graph the graph
+     * @return the in-degrees indexed by node id
+     */
+    public int[] inDegrees(FollowGraph graph) {
+        final int[] degrees = new int[graph.nodeCount()];
+
+        for (int node = 0; node < degrees.length; node++)
+            degrees[node] = graph.inDegree(node);
+
+        return degrees;
+    }
+
+    /**
+     * Computes the PageRank of every node with the default values.
+     *
+     * @param graph the graph
+     * @return the PageRank indexed by node id - all values sum up to 1
+     */
+    public double[] pageRank(FollowGraph graph) {
+        return pageRank(graph, DEFAULT_DAMPING, DEFAULT_MAX_ITERATIONS, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Computes the PageRank of every node. Following a user passes rank to that user, so users followed
+     * by influential users get a high score. The rank of users who follow nobody is spread over all nodes.
+     *
+     * @param graph         the graph
+     * @param damping       the damping factor - from 0 to 1
+     * @param maxIterations the maximum number of iterations
+     * @param tolerance     stop if the L1-distance between two iterations gets below this value
+     * @return the PageRank indexed by node id - all values sum up to 1
+     * @throws IllegalArgumentException if damping does not match borders or maxIterations is smaller than 1
+     */
+    public double[] pageRank(final FollowGraph graph, final double damping, int maxIterations, double tolerance) {
+        if (damping < 0 || damping > 1)
+            throw new IllegalArgumentException("Damping has to be a value from minimum 0 to maximum 1!");
+
+        if (maxIterations < 1)
+            throw new IllegalArgumentException("MaxIterations has to be at least 1!");
+
+        final int nodeCount = graph.nodeCount();
+
+        if (nodeCount == 0)
+            return new double[0];
+
+        final double[] rank = new double[nodeCount];
+        final double[] next = new double[nodeCount];
+        final double[] contribution = new double[nodeCount];
+
+        Arrays.fill(rank, 1.0 / nodeCount);
+
+        for (int iteration = 1; iteration <= maxIterations; iteration++) {
+
+            //Step 1: contribution per out-edge and the rank of dangling nodes
+            final double danglingRank = sum(forEachChunk(nodeCount, new ChunkTask() {
+                @Override
+                public double run(int from, int to) {
+                    double dangling = 0;
+
+                    for (int node = from; node < to; node++) {
+                        final int degree = graph.outDegree(node);
+
+                        if (degree == 0) {
+                            contribution[node] = 0;
+                            dangling += rank[node];
+                        } else {
+                            contribution[node] = rank[node] / degree;
+                        }
+                    }
+
+                    return dangling;
+                }
+            }));
+
+            //Step 2: every node pulls the contributions of its followers
+            final double base = (1 - damping) / nodeCount + damping * danglingRank / nodeCount;
+
+            final double delta = sum(forEachChunk(nodeCount, new ChunkTask() {
+                @Override
+                public double run(int from, int to) {
+                    double delta = 0;
+
+                    for (int node = from; node < to; node++) {
+                        double incoming = 0;
+
+                        for (int edge = graph.inStart(node); edge < graph.inEnd(node); edge++)
+                            incoming += contribution[graph.source(edge)];
+
+                        next[node] = base + damping * incoming;
+                        delta += Math.abs(next[node] - rank[node]);
+                    }
+
+                    return delta;
+                }
+            }));
+
+            System.arraycopy(next, 0, rank, 0, nodeCount);
+
+            logger.debug("PageRank iteration {} finished with delta {}", iteration, delta);
+
+            if (delta < tolerance) {
+                logger.info("PageRank converged after {} iterations!", iteration);
+                break;
+            }
+        }
+
+        return rank;
+    }
+
+    /**
+     * Counts the users reachable from the given node by following at most {@code hops} edges. The node
+     * itself is not counted.
+     *
+     * @param graph the graph
+     * @param node  the node id to start from
+     * @param hops  the maximum number of hops
+     * @return the number of reachable nodes
+     * @throws IllegalArgumentException if hops is smaller than 1
+     */
+    public int reach(FollowGraph graph, int node, int hops) {
+        if (hops < 1)
+            throw new IllegalArgumentException("Hops has to be at least 1!");
+
+        return reach(graph, node, hops, new int[graph.nodeCount()], new int[graph.nodeCount()], 1);
+    }
+
+    /**
+     * Counts for every node the users reachable by following at most {@code hops} edges.
+     *
+     * @param graph the graph
+     * @param hops  the maximum number of hops
+     * @return the reach indexed by node id
+     * @throws IllegalArgumentException if hops is smaller than 1
+     */
+    public int[] reachAll(final FollowGraph graph, final int hops) {
+        if (hops < 1)
+            throw new IllegalArgumentException("Hops has to be at least 1!");
+
+        final int nodeCount = graph.nodeCount();
+        final int[] reach = new int[nodeCount];
+
+        forEachChunk(nodeCount, new ChunkTask() {
+            @Override
+            public double run(int from, int to) {
+                //Visited-marks are stamped with a generation, so the arrays never have to be cleared
+                final int[] visited = new int[nodeCount];
+                final int[] queue = new int[nodeCount];
+
+                for (int node = from; node < to; node++)
+                    reach[node] = GraphAnalytics.reach(graph, node, hops, visited, queue, node - from + 1);
+
+                return 0;
+            }
+        });
+
+        return reach;
+    }
+
+    /**
+     * Gets the nodes with the highest scores - e.g. from {@link #pageRank(FollowGraph)}. Nodes with equal
+     * scores are ordered by id.
+     *
+     * @param scores the scores indexed by node id
+     * @param limit  how many nodes should be returned
+     * @return the node ids ordered by descending score
+     * @throws IllegalArgumentException if limit is smaller than 1
+     */
+    public int[] topNodes(double[] scores, int limit) {
+        if (limit < 1)
+            throw new IllegalArgumentException("Limit has to be at least 1!");
+
+        //Min-heap of the best nodes so far - the worst of them on top
+        final int[] heap = new int[Math.min(limit, scores.length)];
+        int size = 0;
+
+        for (int node = 0; node < scores.length; node++) {
+            if (size < heap.length) {
+                heap[size] = node;
+                siftUp(heap, size++, scores);
+            } else if (ranksBefore(node, heap[0], scores)) {
+                heap[0] = node;
+                siftDown(heap, 0, size, scores);
+            }
+        }
+
+        //Take the worst off the heap until it is empty, filling the result from the back
+        final int[] top = new int[size];
+
+        while (size > 0) {
+            top[size - 1] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, 0, size, scores);
+        }
+
+        return top;
+    }
+
+    private static boolean ranksBefore(int node, int other, double[] scores) {
+        final int compare = Double.compare(scores[node], scores[other]);
+        return compare > 0 || (compare == 0 && node < other);
+    }
+
+    private static void siftUp(int[] heap, int index, double[] scores) {
+        final int node = heap[index];
+
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+
+            if (ranksBefore(heap[parent], node, scores) == false)
+                break;
+
+            heap[index] = heap[parent];
+            index = parent;
+        }
+
+        heap[index] = node;
+    }
+
+    private static void siftDown(int[] heap, int index, int size, double[] scores) {
+        final int node = heap[index];
+
+        while (true) {
+            int child = 2 * index + 1;
+
+            if (child >= size)
+                break;
+
+            if (child + 1 < size && ranksBefore(heap[child], heap[child + 1], scores))
+                child++;
+
+            if (ranksBefore(node, heap[child], scores) == false)
+                break;
+
+            heap[index] = heap[child];
+            index = child;
+        }
+
+        heap[index] = node;
+    }
+
+    private static int reach(FollowGraph graph, int start, int hops, int[] visited, int[] queue, int generation) {
+        visited[start] = generation;
+
+        int head = 0;
+        int tail = 0;
+        int reached = 0;
+
+        queue[tail++] = start;
+
+        for (int hop = 0; hop < hops && head < tail; hop++) {
+            final int levelEnd = tail;
+
+            while (head < levelEnd) {
+                final int node = queue[head++];
+
+                for (int edge = graph.outStart(node); edge < graph.outEnd(node); edge++) {
+                    final int target = graph.target(edge);
+
+                    if (visited[target] != generation) {
+                        visited[target] = generation;
+                        queue[tail++] = target;
+                        reached++;
+                    }
+                }
+            }
+        }
+
+        return reached;
+    }
+
+    private List<Double> forEachChunk(int size, final ChunkTask task) {
+        final int chunks = Math.max(1, Math.min(parallelism, size / MIN_CHUNK_SIZE));
+        final int chunkSize = (size + chunks - 1) / chunks;
+
+        final List<Future<Double>> futures = new ArrayList<Future<Double>>(chunks);
+
+        //Fork all chunks but the first one, which is run by the calling thread
+        for (int from = chunkSize; from < size; from += chunkSize) {
+            final int chunkFrom = from;
+            final int chunkTo = Math.min(size, from + chunkSize);
+
+            futures.add(executor.submit(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    return task.run(chunkFrom, chunkTo);
+                }
+            }));
+        }
+
+        final List<Double> results = new ArrayList<Double>(chunks);
+        results.add(task.run(0, Math.min(size, chunkSize)));
+
+        //Join
+        try {
+            for (Future<Double> future : futures)
+                results.add(future.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancelAll(futures);
+            throw new IllegalStateException("Interrupted while waiting for graph computation!", ex);
+        } catch (ExecutionException ex) {
+            cancelAll(futures);
+            throw new IllegalStateException("Error while running graph computation!", ex.getCause());
+        }
+
+        return results;
+    }
+
+    private static void cancelAll(List<Future<Double>> futures) {
+        for (Future<Double> future : futures)
+            future.cancel(true);
+    }
+
+    private static double sum(List<Double> values) {
+        double sum = 0;
+
+        for (Double value : values)
+            sum += value;
+
+        return sum;
+    }
+
+    private interface ChunkTask {
+        double run(int from, int to);
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.json;
+
+/**
+ * A parser for the ISO-8601 timestamps used by the feeds (e.g. "2012-10-22T13:40:31Z"). It works directly on
+ * characters and computes the epoch millis arithmetically - no Calendar, DateFormat or Strings are involved.
+ * <p/>
+ * Accepted is {@code yyyy-MM-dd'T'HH:mm:ss} followed by optional fractional seconds and an optional zone
+ * ({@code Z}, {@code +HH:mm}, {@code +HHmm} or {@code +HH}). Timestamps without zone are read as UTC.
+ *
+ * @author Patrick Meier
+ */
+public final class IsoDateParser {
+
+    //Returned if the input does not match the format
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    private IsoDateParser() {
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Parses the given timestamp. This is a convenience method - the JSON deserializer uses
+     * {@link #parseMillis(char[], int, int)} on the parser's buffer directly.
+     *
+     * @param value the timestamp
+     * @return the epoch millis, {@link #INVALID} if the value does not match the format
+     */
+    public static long parseMillis(String value) {
+        if (value == null)
+            return INVALID;
+
+        return parseMillis(value.toCharArray(), 0, value.length());
+    }
+
+    /**
+     * Parses the timestamp in the given range of characters - e.g. the text buffer of a JSON parser.
+     *
+     * @param chars  the characters
+     * @param offset where the timestamp starts
+     * @param length the length of the timestamp
+     * @return the epoch millis, {@link #INVALID} if the value does not match the format
+     */
+    public static long parseMillis(char[] chars, int offset, int length) {
+        if (length < 19)
+            return INVALID;
+
+        final int end = offset + length;
+
+        final int year = digits(chars, offset, 4);
+        final int month = digits(chars, offset + 5, 2);
+        final int day = digits(chars, offset + 8, 2);
+        final int hour = digits(chars, offset + 11, 2);
+        final int minute = digits(chars, offset + 14, 2);
+        final int second = digits(chars, offset + 17, 2);
+
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60)
+            return INVALID;
+
+        if (chars[offset + 4] != '-' || chars[offset + 7] != '-' || chars[offset + 13] != ':' || chars[offset + 16] != ':')
+            return INVALID;
+
+        final char separator = chars[offset + 10];
+
+        if (separator != 'T' && separator != 't' && separator != ' ')
+            return INVALID;
+
+        int position = offset + 19;
+
+        //Optional fraction - only milliseconds are kept
+        int millis = 0;
+
+        if (position < end && (chars[position] == '.' || chars[position] == ',')) {
+            position++;
+
+            final int fractionStart = position;
+            int scale = 100;
+
+            while (position < end && isDigit(chars[position])) {
+                millis += (chars[position] - '0') * scale;
+                scale /= 10;
+                position++;
+            }
+
+            if (position == fractionStart)
+                return INVALID;
+        }
+
+        //Optional zone
+        long offsetMillis = 0;
+
+        if (position < end) {
+            final char zone = chars[position];
+
+            if ((zone == 'Z' || zone == 'z') && position + 1 == end) {
+                position++;
+            } else if (zone == '+' || zone == '-') {
+                final int zoneLength = end - position - 1;
+                final int zoneHours = digits(chars, position + 1, Math.min(2, zoneLength));
+                int zoneMinutes = 0;
+
+                if (zoneLength == 5 && chars[position + 3] == ':')
+                    zoneMinutes = digits(chars, position + 4, 2);
+                else if (zoneLength == 4)
+                    zoneMinutes = digits(chars, position + 3, 2);
+                else if (zoneLength != 2)
+                    return INVALID;
+
+                if (zoneHours < 0 || zoneHours > 23 || zoneMinutes < 0 || zoneMinutes > 59)
+                    return INVALID;
+
+                offsetMillis = zoneHours * MILLIS_PER_HOUR + zoneMinutes * MILLIS_PER_MINUTE;
+
+                if (zone == '+')
+                    offsetMillis = -offsetMillis;
+
+                position = end;
+            } else {
+                return INVALID;
+            }
+        }
+
+        if (position != end)
+            return INVALID;
+
+        return daysFromCivil(year, month, day) * MILLIS_PER_DAY + hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE
+                + second * MILLIS_PER_SECOND + millis + offsetMillis;
+    }
+
+    //Days since 1970-01-01 in the proleptic gregorian calendar
+    private static long daysFromCivil(int year, int month, int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = (y >= 0 ? y : y - 399) / 400;
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    //Returns -1 if the characters are not all digits
+    private static int digits(char[] chars, int offset, int count) {
+        int value = 0;
+
+        for (int i = offset; i < offset + count; i++) {
+            if (isDigit(chars[i]) == false)
+                return -1;
+
+            value = value * 10 + (chars[i] - '0');
+        }
+
+        return count > 0 ? value : -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
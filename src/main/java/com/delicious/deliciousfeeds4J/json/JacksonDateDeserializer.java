@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.json;
+
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.DeserializationContext;
+import org.codehaus.jackson.map.JsonDeserializer;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * A custom deserializer for the "dt"-timestamps of the feeds! The timestamp is parsed straight from the
+ * parser's text buffer by the {@link IsoDateParser}. Anything it does not understand is handed over to
+ * Jackson's default date handling.
+ *
+ * @author Patrick Meier
+ */
+public class JacksonDateDeserializer extends JsonDeserializer<Date> {
+
+    @Override
+    public Date deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+
+        final JsonToken token = jsonParser.getCurrentToken();
+
+        if (token == JsonToken.VALUE_STRING) {
+            final long millis = IsoDateParser.parseMillis(jsonParser.getTextCharacters(), jsonParser.getTextOffset(),
+                    jsonParser.getTextLength());
+
+            if (millis != IsoDateParser.INVALID)
+                return new Date(millis);
+
+            final String text = jsonParser.getText().trim();
+
+            if (text.length() == 0)
+                return null;
+
+            try {
+                return deserializationContext.parseDate(text);
+            } catch (IllegalArgumentException ex) {
+                throw deserializationContext.weirdStringException(Date.class, "not a valid timestamp: " + ex.getMessage());
+            }
+        }
+
+        if (token == JsonToken.VALUE_NUMBER_INT)
+            return new Date(jsonParser.getLongValue());
+
+        throw deserializationContext.mappingException(Date.class);
+    }
+}
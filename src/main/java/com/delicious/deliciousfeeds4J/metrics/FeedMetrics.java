@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.metrics;
+
+import com.delicious.deliciousfeeds4J.FeedType;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts responses and transferred bytes per {@link FeedType}: the bytes on the wire (compressed if the
+ * server compressed the response) and the bytes of the JSON content after decompression. Updates are
+ * lock-free, so one instance can be shared by all threads and {@code DeliciousFeeds} instances.
+ *
+ * @author Patrick Meier
+ */
+public class FeedMetrics {
+
+    private static final int RESPONSES = 0;
+    private static final int COMPRESSED_RESPONSES = 1;
+    private static final int WIRE_BYTES = 2;
+    private static final int CONTENT_BYTES = 3;
+
+    private static final int FIELD_COUNT = 4;
+
+    private final AtomicLongArray counters = new AtomicLongArray(FeedType.values().length * FIELD_COUNT);
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Records a response.
+     *
+     * @param feedType     the feed of the response
+     * @param compressed   whether the response was compressed
+     * @param wireBytes    the bytes of the body as transferred
+     * @param contentBytes the bytes of the body after decompression
+     */
+    public void recordResponse(FeedType feedType, boolean compressed, long wireBytes, long contentBytes) {
+        final int offset = feedType.ordinal() * FIELD_COUNT;
+
+        counters.incrementAndGet(offset + RESPONSES);
+        counters.addAndGet(offset + WIRE_BYTES, wireBytes);
+        counters.addAndGet(offset + CONTENT_BYTES, contentBytes);
+
+        if (compressed)
+            counters.incrementAndGet(offset + COMPRESSED_RESPONSES);
+    }
+
+    public long getResponseCount(FeedType feedType) {
+        return get(feedType, RESPONSES);
+    }
+
+    public long getCompressedResponseCount(FeedType feedType) {
+        return get(feedType, COMPRESSED_RESPONSES);
+    }
+
+    /**
+     * Gets the bytes transferred for a feed, compressed if the server compressed the responses.
+     *
+     * @param feedType the feed
+     * @return the bytes on the wire
+     */
+    public long getWireBytes(FeedType feedType) {
+        return get(feedType, WIRE_BYTES);
+    }
+
+    /**
+     * Gets the bytes of the JSON content of a feed after decompression.
+     *
+     * @param feedType the feed
+     * @return the uncompressed bytes
+     */
+    public long getContentBytes(FeedType feedType) {
+        return get(feedType, CONTENT_BYTES);
+    }
+
+    public long getTotalWireBytes() {
+        return sum(WIRE_BYTES);
+    }
+
+    public long getTotalContentBytes() {
+        return sum(CONTENT_BYTES);
+    }
+
+    /**
+     * Gets how much smaller the transferred bytes were than the content, over all feeds.
+     *
+     * @return the content bytes divided by the wire bytes, 1 if nothing was transferred yet
+     */
+    public double getCompressionRatio() {
+        final long wireBytes = getTotalWireBytes();
+        return wireBytes > 0 ? (double) getTotalContentBytes() / wireBytes : 1;
+    }
+
+    /**
+     * Resets all counters to zero.
+     */
+    public void reset() {
+        for (int i = 0; i < counters.length(); i++)
+            counters.set(i, 0);
+    }
+
+    private long get(FeedType feedType, int field) {
+        return counters.get(feedType.ordinal() * FIELD_COUNT + field);
+    }
+
+    private long sum(int field) {
+        long sum = 0;
+
+        for (int i = field; i < counters.length(); i += FIELD_COUNT)
+            sum += counters.get(i);
+
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder("FeedMetrics{");
+
+        for (FeedType feedType : FeedType.values()) {
+            final long responses = getResponseCount(feedType);
+
+            if (responses == 0)
+                continue;
+
+            if (buffer.length() > "FeedMetrics{".length())
+                buffer.append(", ");
+
+            buffer.append(feedType).append("=[responses=").append(responses)
+                    .append(", compressed=").append(getCompressedResponseCount(feedType))
+                    .append(", wireBytes=").append(getWireBytes(feedType))
+                    .append(", contentBytes=").append(getContentBytes(feedType)).append(']');
+        }
+
+        return buffer.append('}').toString();
+    }
+}
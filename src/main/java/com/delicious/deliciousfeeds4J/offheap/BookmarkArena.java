@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.offheap;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * An append-only store for large numbers of bookmarks outside of the java heap, so caching them does not
+ * add to garbage collection pauses. Bookmarks are encoded into direct {@link ByteBuffer} chunks and indexed
+ * by their md5 in an open-addressing hash table, which is off-heap as well. Lookups return
+ * {@link BookmarkView} flyweights that decode single fields on demand instead of creating {@link Bookmark}s.
+ * <p/>
+ * One thread may add bookmarks while any number of threads read. A bookmark becomes visible to readers
+ * once {@link #add(Bookmark)} has returned. Bookmarks can not be removed or replaced - drop the arena and
+ * build a new one instead, its memory is freed when it is garbage collected.
+ * <p/>
+ * Record layout: int length, long timestamp ({@link Long#MIN_VALUE} for null), long md5 high, long md5 low,
+ * then user, url, title and description as int length (-1 for null) and UTF-8 bytes, then an int tag count
+ * (-1 for null) followed by the tags in the same encoding.
+ *
+ * @author Patrick Meier
+ */
+public class BookmarkArena {
+
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    //Length, timestamp and md5
+    static final int RECORD_HEADER_SIZE = 4 + 8 + 16;
+
+    //Index entry: md5 high, md5 low, address + 1 (0 marks a free slot)
+    private static final int ENTRY_SIZE = 24;
+
+    private static final int SEGMENT_SHIFT = 22;
+
+    private static final int SEGMENT_SLOTS = 1 << SEGMENT_SHIFT;
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final int chunkSize;
+
+    //Copy-on-write, replaced by the writer when a chunk is added
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+    //Replaced by the writer when the index grows
+    private volatile Index index;
+
+    //End address of the last published record - readers ignore everything at or behind it
+    private volatile long published;
+
+    private volatile int size;
+
+    //Writer state
+    private ByteBuffer currentChunk;
+
+    private long allocatedBytes;
+
+    /**
+     * Creates a new instance with 16 MB chunks.
+     */
+    public BookmarkArena() {
+        this(DEFAULT_CHUNK_SIZE, 1024);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param chunkSize    the size of the direct buffers allocated for records - larger records get a chunk
+     *                     of their own
+     * @param expectedSize the number of bookmarks the index is sized for initially - it grows as needed
+     * @throws IllegalArgumentException if chunkSize is smaller than 1 KB or expectedSize is negative
+     */
+    public BookmarkArena(int chunkSize, int expectedSize) {
+        if (chunkSize < 1024)
+            throw new IllegalArgumentException("ChunkSize has to be at least 1024 bytes!");
+
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("ExpectedSize must not be negative!");
+
+        this.chunkSize = chunkSize;
+
+        int capacity = 16;
+        while (capacity < MAX_CAPACITY && capacity * 0.7 < expectedSize)
+            capacity <<= 1;
+
+        this.index = new Index(capacity);
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Adds a bookmark. Must not be called by more than one thread at the same time.
+     *
+     * @param bookmark the bookmark
+     * @return true if it was added, false if a bookmark with the same md5 is already in the arena
+     * @throws IllegalArgumentException if bookmark is null or has no valid md5
+     * @throws IllegalStateException    if the index can not grow any further
+     */
+    public boolean add(Bookmark bookmark) {
+        if (bookmark == null)
+            throw new IllegalArgumentException("Bookmark must not be null!");
+
+        final UrlKey md5 = UrlKey.fromHex(bookmark.getMd5());
+
+        Index current = index;
+
+        if (current.find(md5.getHigh(), md5.getLow()) >= 0)
+            return false;
+
+        if (size + 1 > current.threshold) {
+            current = current.grow();
+            index = current;
+        }
+
+        final long address = append(bookmark, md5);
+
+        current.insert(md5.getHigh(), md5.getLow(), address);
+
+        //Publishes the record and the index entry to readers - before the size, so a reader that sees
+        //the new size can also find the bookmark
+        published = address + currentChunk.getInt((int) address);
+        size = size + 1;
+
+        return true;
+    }
+
+    /**
+     * Adds all given bookmarks - see {@link #add(Bookmark)}.
+     *
+     * @param bookmarks the bookmarks
+     * @return the number of bookmarks which were added
+     */
+    public int addAll(Iterable<Bookmark> bookmarks) {
+        if (bookmarks == null)
+            throw new IllegalArgumentException("Bookmarks must not be null!");
+
+        int added = 0;
+
+        for (Bookmark bookmark : bookmarks) {
+            if (add(bookmark))
+                added++;
+        }
+
+        return added;
+    }
+
+    /**
+     * Looks up a bookmark by md5.
+     *
+     * @param md5 the md5 of the bookmark
+     * @return a new view of the bookmark or null if it is not in the arena
+     */
+    public BookmarkView get(UrlKey md5) {
+        final BookmarkView view = new BookmarkView();
+        return get(md5, view) ? view : null;
+    }
+
+    /**
+     * Looks up a bookmark by md5 and points the given view to it - reusing a view per thread avoids any
+     * allocation on lookups.
+     *
+     * @param md5  the md5 of the bookmark
+     * @param view the view to point to the bookmark
+     * @return true if the bookmark was found, false if it is not in the arena (the view is left unchanged)
+     */
+    public boolean get(UrlKey md5, BookmarkView view) {
+        if (md5 == null)
+            throw new IllegalArgumentException("Md5 must not be null!");
+
+        if (view == null)
+            throw new IllegalArgumentException("View must not be null!");
+
+        final long address = lookup(md5.getHigh(), md5.getLow());
+
+        if (address < 0)
+            return false;
+
+        view.reset(chunks[(int) (address >>> 32)], (int) address);
+        return true;
+    }
+
+    /**
+     * Checks if a bookmark is in the arena.
+     *
+     * @param md5 the md5 of the bookmark
+     * @return true if the bookmark is in the arena
+     */
+    public boolean contains(UrlKey md5) {
+        if (md5 == null)
+            throw new IllegalArgumentException("Md5 must not be null!");
+
+        return lookup(md5.getHigh(), md5.getLow()) >= 0;
+    }
+
+    private long lookup(long high, long low) {
+        //Read the watermark first, everything below it is completely written
+        final long limit = published;
+        final long address = index.find(high, low);
+
+        return address >= 0 && address < limit ? address : -1;
+    }
+
+    private long append(Bookmark bookmark, UrlKey md5) {
+        final byte[] user = encode(bookmark.getUser());
+        final byte[] url = encode(bookmark.getUrl());
+        final byte[] title = encode(bookmark.getTitle());
+        final byte[] description = encode(bookmark.getDescription());
+
+        final Set<String> tagSet = bookmark.getTags();
+        final byte[][] tags = tagSet != null ? new byte[tagSet.size()][] : null;
+
+        int length = RECORD_HEADER_SIZE + sizeOf(user) + sizeOf(url) + sizeOf(title) + sizeOf(description) + 4;
+
+        if (tags != null) {
+            int i = 0;
+
+            for (String tag : tagSet) {
+                tags[i] = encode(tag);
+                length += sizeOf(tags[i++]);
+            }
+        }
+
+        if (currentChunk == null || currentChunk.remaining() < length)
+            addChunk(length);
+
+        final ByteBuffer chunk = currentChunk;
+        final long address = ((long) (chunks.length - 1) << 32) | chunk.position();
+
+        chunk.putInt(length);
+        chunk.putLong(bookmark.getLastUpdatedDate() != null ? bookmark.getLastUpdatedDate().getTime() : Long.MIN_VALUE);
+        chunk.putLong(md5.getHigh());
+        chunk.putLong(md5.getLow());
+
+        put(chunk, user);
+        put(chunk, url);
+        put(chunk, title);
+        put(chunk, description);
+
+        if (tags == null) {
+            chunk.putInt(-1);
+        } else {
+            chunk.putInt(tags.length);
+
+            for (byte[] tag : tags)
+                put(chunk, tag);
+        }
+
+        return address;
+    }
+
+    private void addChunk(int minSize) {
+        final ByteBuffer chunk = ByteBuffer.allocateDirect(Math.max(chunkSize, minSize));
+
+        final ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+        grown[grown.length - 1] = chunk;
+
+        chunks = grown;
+        currentChunk = chunk;
+        allocatedBytes += chunk.capacity();
+    }
+
+    private static byte[] encode(String value) {
+        return value != null ? value.getBytes(UTF8) : null;
+    }
+
+    private static int sizeOf(byte[] value) {
+        return value != null ? 4 + value.length : 4;
+    }
+
+    private static void put(ByteBuffer chunk, byte[] value) {
+        if (value == null) {
+            chunk.putInt(-1);
+        } else {
+            chunk.putInt(value.length);
+            chunk.put(value);
+        }
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets the number of bookmarks in the arena.
+     *
+     * @return the number of bookmarks
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the off-heap memory allocated for records and the index.
+     *
+     * @return the allocated bytes
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes + index.capacity * (long) ENTRY_SIZE;
+    }
+
+    //Open-addressing hash table with linear probing, split into segments to exceed 2 GB
+    private static final class Index {
+
+        private final ByteBuffer[] segments;
+
+        private final int capacity;
+
+        private final int mask;
+
+        private final int threshold;
+
+        private Index(int capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.threshold = capacity == MAX_CAPACITY ? MAX_CAPACITY - 1 : (int) (capacity * 0.7);
+
+            final int segmentSlots = Math.min(capacity, SEGMENT_SLOTS);
+            this.segments = new ByteBuffer[capacity / segmentSlots];
+
+            for (int i = 0; i < segments.length; i++)
+                segments[i] = ByteBuffer.allocateDirect(segmentSlots * ENTRY_SIZE);
+        }
+
+        //Returns the address or -1
+        private long find(long high, long low) {
+            for (int slot = slotOf(high, low); ; slot = (slot + 1) & mask) {
+                final ByteBuffer segment = segments[slot >>> SEGMENT_SHIFT];
+                final int offset = (slot & (SEGMENT_SLOTS - 1)) * ENTRY_SIZE;
+
+                final long address = segment.getLong(offset + 16);
+
+                if (address == 0)
+                    return -1;
+
+                if (segment.getLong(offset) == high && segment.getLong(offset + 8) == low)
+                    return address - 1;
+            }
+        }
+
+        private void insert(long high, long low, long address) {
+            for (int slot = slotOf(high, low); ; slot = (slot + 1) & mask) {
+                final ByteBuffer segment = segments[slot >>> SEGMENT_SHIFT];
+                final int offset = (slot & (SEGMENT_SLOTS - 1)) * ENTRY_SIZE;
+
+                if (segment.getLong(offset + 16) == 0) {
+                    segment.putLong(offset, high);
+                    segment.putLong(offset + 8, low);
+                    segment.putLong(offset + 16, address + 1);
+                    return;
+                }
+            }
+        }
+
+        private Index grow() {
+            if (capacity == MAX_CAPACITY)
+                throw new IllegalStateException("Index is full - can not hold more than " + threshold + " bookmarks!");
+
+            final Index grown = new Index(capacity << 1);
+
+            for (int slot = 0; slot < capacity; slot++) {
+                final ByteBuffer segment = segments[slot >>> SEGMENT_SHIFT];
+                final int offset = (slot & (SEGMENT_SLOTS - 1)) * ENTRY_SIZE;
+
+                final long address = segment.getLong(offset + 16);
+
+                if (address != 0)
+                    grown.insert(segment.getLong(offset), segment.getLong(offset + 8), address - 1);
+            }
+
+            return grown;
+        }
+
+        private int slotOf(long high, long low) {
+            //The bits of md5 are already evenly distributed
+            return (int) (low ^ (low >>> 32) ^ high) & mask;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.offheap;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static com.delicious.deliciousfeeds4J.offheap.BookmarkArena.RECORD_HEADER_SIZE;
+import static com.delicious.deliciousfeeds4J.offheap.BookmarkArena.UTF8;
+
+/**
+ * A flyweight pointing to a bookmark in a {@link BookmarkArena}. Every getter decodes its field from
+ * off-heap memory when called, nothing is cached - so a view is cheap to reposition with
+ * {@link BookmarkArena#get(UrlKey, BookmarkView)}, but should not be used to read the same field repeatedly.
+ * <p/>
+ * Views are not thread-safe, every thread should use views of its own.
+ *
+ * @author Patrick Meier
+ */
+public class BookmarkView {
+
+    private static final int USER = 0;
+    private static final int URL = 1;
+    private static final int TITLE = 2;
+    private static final int DESCRIPTION = 3;
+    private static final int TAGS = 4;
+
+    private ByteBuffer chunk;
+
+    private int offset;
+
+    /**
+     * Creates a view which does not point to a bookmark yet - see {@link BookmarkArena#get(UrlKey, BookmarkView)}.
+     */
+    public BookmarkView() {
+    }
+
+    void reset(ByteBuffer chunk, int offset) {
+        this.chunk = chunk;
+        this.offset = offset;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets the time of the last update.
+     *
+     * @return the time in milliseconds or {@link Long#MIN_VALUE} if the date is null
+     */
+    public long getTimestamp() {
+        return chunk().getLong(offset + 4);
+    }
+
+    public UrlKey getMd5() {
+        final ByteBuffer chunk = chunk();
+        return new UrlKey(chunk.getLong(offset + 12), chunk.getLong(offset + 20));
+    }
+
+    public String getUser() {
+        return readString(fieldOffset(USER));
+    }
+
+    public String getUrl() {
+        return readString(fieldOffset(URL));
+    }
+
+    public String getTitle() {
+        return readString(fieldOffset(TITLE));
+    }
+
+    public String getDescription() {
+        return readString(fieldOffset(DESCRIPTION));
+    }
+
+    /**
+     * Gets the number of tags.
+     *
+     * @return the number of tags or -1 if the tags are null
+     */
+    public int getTagCount() {
+        return chunk().getInt(fieldOffset(TAGS));
+    }
+
+    public Set<String> getTags() {
+        int position = fieldOffset(TAGS);
+        final int count = chunk.getInt(position);
+
+        if (count < 0)
+            return null;
+
+        final Set<String> tags = new LinkedHashSet<String>(count * 2);
+        position += 4;
+
+        for (int i = 0; i < count; i++) {
+            tags.add(readString(position));
+            position = skip(position);
+        }
+
+        return tags;
+    }
+
+    /**
+     * Copies the bookmark to the heap.
+     *
+     * @return a new bookmark
+     */
+    public Bookmark toBookmark() {
+        final Bookmark bookmark = new Bookmark();
+
+        bookmark.setUser(getUser());
+        bookmark.setUrl(getUrl());
+        bookmark.setTitle(getTitle());
+        bookmark.setDescription(getDescription());
+        bookmark.setTags(getTags());
+        bookmark.setMd5(getMd5().toHex());
+
+        final long timestamp = getTimestamp();
+        if (timestamp != Long.MIN_VALUE)
+            bookmark.setLastUpdatedDate(new Date(timestamp));
+
+        return bookmark;
+    }
+
+    private ByteBuffer chunk() {
+        if (chunk == null)
+            throw new IllegalStateException("View does not point to a bookmark!");
+
+        return chunk;
+    }
+
+    //Skips the variable length fields in front of the requested one
+    private int fieldOffset(int field) {
+        chunk();
+
+        int position = offset + RECORD_HEADER_SIZE;
+
+        for (int i = 0; i < field; i++)
+            position = skip(position);
+
+        return position;
+    }
+
+    private int skip(int position) {
+        final int length = chunk.getInt(position);
+        return position + 4 + Math.max(length, 0);
+    }
+
+    private String readString(int position) {
+        final int length = chunk.getInt(position);
+
+        if (length < 0)
+            return null;
+
+        final byte[] bytes = new byte[length];
+        final ByteBuffer view = chunk.duplicate();
+        view.position(position + 4);
+        view.get(bytes);
+
+        return new String(bytes, UTF8);
+    }
+
+    @Override
+    public String toString() {
+        return chunk != null ? "BookmarkView{md5=" + getMd5() + ", url=" + getUrl() + '}' : "BookmarkView{}";
+    }
+}
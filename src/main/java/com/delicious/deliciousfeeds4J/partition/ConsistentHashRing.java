@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.partition;
+
+import com.delicious.deliciousfeeds4J.codec.Hashes;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+
+import java.util.*;
+
+/**
+ * Assigns keys (usernames, tags, url hashes) to nodes with consistent hashing. Every node is placed on a
+ * 64-bit ring at many points ("virtual nodes"), a key belongs to the node of the next point clockwise.
+ * When a node joins it only takes over keys from the others, when it leaves only its own keys move - on
+ * average 1/n of all keys, instead of nearly all of them with a static modulo assignment.
+ * <p/>
+ * Every node of a cluster has to use the same node ids and virtual node counts to agree on the owners.
+ * Lookups are lock-free, membership changes copy the ring, so this class is thread-safe.
+ *
+ * @author Patrick Meier
+ */
+public class ConsistentHashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    //Upper bound so one node can not blow up the ring
+    private static final int MAX_VIRTUAL_NODES = 65536;
+
+    private final int defaultVirtualNodes;
+
+    //Replaced on every membership change
+    private volatile Ring ring = new Ring(new LinkedHashMap<String, Integer>());
+
+    /**
+     * Creates an empty ring placing every node at 160 points.
+     */
+    public ConsistentHashRing() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Creates an empty ring.
+     *
+     * @param defaultVirtualNodes the number of points of a node added with {@link #addNode(String)} - more
+     *                            points spread the keys more evenly, but make the ring larger
+     * @throws IllegalArgumentException if defaultVirtualNodes is smaller than 1
+     */
+    public ConsistentHashRing(int defaultVirtualNodes) {
+        if (defaultVirtualNodes < 1 || defaultVirtualNodes > MAX_VIRTUAL_NODES)
+            throw new IllegalArgumentException("DefaultVirtualNodes has to be a value from 1 to " + MAX_VIRTUAL_NODES + "!");
+
+        this.defaultVirtualNodes = defaultVirtualNodes;
+    }
+
+    /**
+     * Creates a ring with the given nodes.
+     *
+     * @param nodes the node ids
+     * @return the ring
+     */
+    public static ConsistentHashRing of(String... nodes) {
+        final ConsistentHashRing ring = new ConsistentHashRing();
+
+        for (String node : nodes)
+            ring.addNode(node);
+
+        return ring;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Adds a node with the default number of virtual nodes.
+     *
+     * @param node the node id
+     * @return false if the node was already part of the ring
+     */
+    public boolean addNode(String node) {
+        return addNode(node, defaultVirtualNodes);
+    }
+
+    /**
+     * Adds a node. A node with twice the virtual nodes gets about twice the keys - use it to give more
+     * powerful nodes more work.
+     *
+     * @param node         the node id
+     * @param virtualNodes the number of points of the node on the ring
+     * @return false if the node was already part of the ring (its virtual nodes are not changed)
+     * @throws IllegalArgumentException if node is null or empty or virtualNodes is out of bounds
+     */
+    public synchronized boolean addNode(String node, int virtualNodes) {
+        if (node == null || node.isEmpty())
+            throw new IllegalArgumentException("Node must not be null or empty!");
+
+        if (virtualNodes < 1 || virtualNodes > MAX_VIRTUAL_NODES)
+            throw new IllegalArgumentException("VirtualNodes has to be a value from 1 to " + MAX_VIRTUAL_NODES + "!");
+
+        if (ring.nodes.containsKey(node))
+            return false;
+
+        final Map<String, Integer> nodes = new LinkedHashMap<String, Integer>(ring.nodes);
+        nodes.put(node, virtualNodes);
+
+        ring = new Ring(nodes);
+        return true;
+    }
+
+    /**
+     * Removes a node. Only the keys of this node move to other nodes.
+     *
+     * @param node the node id
+     * @return false if the node was not part of the ring
+     */
+    public synchronized boolean removeNode(String node) {
+        if (!ring.nodes.containsKey(node))
+            return false;
+
+        final Map<String, Integer> nodes = new LinkedHashMap<String, Integer>(ring.nodes);
+        nodes.remove(node);
+
+        ring = new Ring(nodes);
+        return true;
+    }
+
+    /**
+     * Gets the node owning a key, e.g. a username or a tag.
+     *
+     * @param key the key
+     * @return the node id
+     * @throws IllegalArgumentException if key is null
+     * @throws IllegalStateException    if the ring has no nodes
+     */
+    public String ownerOf(String key) {
+        if (key == null)
+            throw new IllegalArgumentException("Key must not be null!");
+
+        return ring.ownerOf(Hashes.hash(key));
+    }
+
+    /**
+     * Gets the node owning an url.
+     *
+     * @param urlKey the md5 of the url
+     * @return the node id
+     * @throws IllegalArgumentException if urlKey is null
+     * @throws IllegalStateException    if the ring has no nodes
+     */
+    public String ownerOf(UrlKey urlKey) {
+        if (urlKey == null)
+            throw new IllegalArgumentException("UrlKey must not be null!");
+
+        //Md5 bits are evenly distributed already
+        return ring.ownerOf(urlKey.getHigh());
+    }
+
+    /**
+     * Groups keys by their owning node.
+     *
+     * @param keys the keys
+     * @return the keys per node in the order of the given keys - nodes owning no key are missing
+     */
+    public Map<String, List<String>> assign(Collection<String> keys) {
+        if (keys == null)
+            throw new IllegalArgumentException("Keys must not be null!");
+
+        final Ring current = ring;
+        final Map<String, List<String>> assignment = new LinkedHashMap<String, List<String>>();
+
+        for (String key : keys) {
+            if (key == null)
+                throw new IllegalArgumentException("Key must not be null!");
+
+            final String owner = current.ownerOf(Hashes.hash(key));
+
+            List<String> owned = assignment.get(owner);
+            if (owned == null)
+                assignment.put(owner, owned = new ArrayList<String>());
+
+            owned.add(key);
+        }
+
+        return assignment;
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets the node ids in the order they were added.
+     *
+     * @return an unmodifiable set of the node ids
+     */
+    public Set<String> getNodes() {
+        return Collections.unmodifiableSet(ring.nodes.keySet());
+    }
+
+    public int getDefaultVirtualNodes() {
+        return defaultVirtualNodes;
+    }
+
+    //An immutable snapshot: the sorted points and the node of every point
+    private static final class Ring {
+
+        private final Map<String, Integer> nodes;
+
+        private final long[] points;
+
+        private final String[] owners;
+
+        private Ring(Map<String, Integer> nodes) {
+            this.nodes = nodes;
+
+            int size = 0;
+            for (int virtualNodes : nodes.values())
+                size += virtualNodes;
+
+            final long[] unsortedPoints = new long[size];
+            final String[] unsortedOwners = new String[size];
+
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : nodes.entrySet()) {
+                for (int j = 0; j < entry.getValue(); j++) {
+                    unsortedPoints[i] = Hashes.hash(entry.getKey() + '#' + j);
+                    unsortedOwners[i++] = entry.getKey();
+                }
+            }
+
+            //Sort the points and keep the owners in line - ties are broken by node id, so all nodes agree
+            final Integer[] order = new Integer[size];
+            for (int j = 0; j < size; j++)
+                order[j] = j;
+
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    final long pointA = unsortedPoints[a];
+                    final long pointB = unsortedPoints[b];
+
+                    if (pointA != pointB)
+                        return pointA < pointB ? -1 : 1;
+
+                    return unsortedOwners[a].compareTo(unsortedOwners[b]);
+                }
+            });
+
+            this.points = new long[size];
+            this.owners = new String[size];
+
+            for (int j = 0; j < size; j++) {
+                points[j] = unsortedPoints[order[j]];
+                owners[j] = unsortedOwners[order[j]];
+            }
+        }
+
+        private String ownerOf(long hash) {
+            if (points.length == 0)
+                throw new IllegalStateException("Ring has no nodes!");
+
+            int index = Arrays.binarySearch(points, hash);
+
+            if (index < 0) {
+                index = -index - 1;
+
+                //Wrap around to the first point
+                if (index == points.length)
+                    index = 0;
+            } else {
+                //Several nodes may share a point - take the first one
+                while (index > 0 && points[index - 1] == hash)
+                    index--;
+            }
+
+            return owners[index];
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.partition;
+
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The share of the keys owned by one node of a {@link ConsistentHashRing}. Set it on
+ * {@code DeliciousFeeds.setPartition} so the batch methods (and everything built on them, like merged
+ * timelines) only fetch the users this node is responsible for.
+ * <p/>
+ * Membership changes of the ring are picked up immediately.
+ *
+ * @author Patrick Meier
+ */
+public class LocalPartition {
+
+    private final ConsistentHashRing ring;
+
+    private final String localNode;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param ring      the ring shared by all nodes
+     * @param localNode the id of this node in the ring
+     * @throws IllegalArgumentException if ring is null or localNode is null or empty
+     */
+    public LocalPartition(ConsistentHashRing ring, String localNode) {
+        if (ring == null)
+            throw new IllegalArgumentException("Ring must not be null!");
+
+        if (localNode == null || localNode.isEmpty())
+            throw new IllegalArgumentException("LocalNode must not be null or empty!");
+
+        this.ring = ring;
+        this.localNode = localNode;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Checks if a key (e.g. a username or tag) is owned by the local node.
+     *
+     * @param key the key
+     * @return true if the local node owns the key
+     */
+    public boolean isLocal(String key) {
+        return localNode.equals(ring.ownerOf(key));
+    }
+
+    /**
+     * Checks if an url is owned by the local node.
+     *
+     * @param urlKey the md5 of the url
+     * @return true if the local node owns the url
+     */
+    public boolean isLocal(UrlKey urlKey) {
+        return localNode.equals(ring.ownerOf(urlKey));
+    }
+
+    /**
+     * Gets the keys owned by the local node.
+     *
+     * @param keys the keys
+     * @return the local keys in the given order
+     * @throws IllegalArgumentException if keys is null
+     */
+    public List<String> filterLocal(Collection<String> keys) {
+        if (keys == null)
+            throw new IllegalArgumentException("Keys must not be null!");
+
+        final List<String> local = new ArrayList<String>();
+
+        for (String key : keys) {
+            if (key != null && isLocal(key))
+                local.add(key);
+        }
+
+        return local;
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    public String getLocalNode() {
+        return localNode;
+    }
+}
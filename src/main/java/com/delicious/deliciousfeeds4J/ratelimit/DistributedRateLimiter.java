@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link RateLimiter} sharing one budget between several processes, e.g. crawler nodes using the same
+ * delicious account or IP range. Permits are leased in batches from a {@link TokenCoordinator} and used up
+ * locally, so the coordinator is only asked once per batch.
+ * <p/>
+ * Only one caller at a time asks the coordinator, without holding the lock - the others wait for its lease
+ * as long as their timeout allows.
+ * <p/>
+ * If the coordinator can not be reached the limiter degrades to a local fallback limiter, which should be
+ * conservative (e.g. the fleet-wide quota divided by the number of nodes), and tries the coordinator again
+ * after a while.
+ *
+ * @author Patrick Meier
+ */
+public class DistributedRateLimiter implements RateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistributedRateLimiter.class);
+
+    public static final long DEFAULT_COORDINATOR_RETRY_MILLIS = 30000;
+
+    private final TokenCoordinator coordinator;
+
+    private final int batchSize;
+
+    private final RateLimiter fallback;
+
+    private long coordinatorRetryNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_COORDINATOR_RETRY_MILLIS);
+
+    //Not a monitor: waiting for a lease must not pin virtual threads
+    private final ReentrantLock lock = new ReentrantLock();
+
+    //Signalled when the lease in flight is done
+    private final Condition leased = lock.newCondition();
+
+    private boolean leasing;
+
+    private int tokens;
+
+    private long tokensExpireAt;
+
+    private volatile boolean degraded;
+
+    private long nextCoordinatorAttempt;
+
+    private long nextLeaseAttempt = System.nanoTime();
+
+    /**
+     * Creates a new instance which falls back to one permit per the given interval.
+     *
+     * @param coordinator      the coordinator to lease permits from
+     * @param batchSize        how many permits to lease at once
+     * @param fallbackInterval the interval between two permits while the coordinator is unreachable
+     * @param unit             the unit of the interval
+     */
+    public DistributedRateLimiter(TokenCoordinator coordinator, int batchSize, long fallbackInterval, TimeUnit unit) {
+        this(coordinator, batchSize, new IntervalRateLimiter(fallbackInterval, unit));
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param coordinator the coordinator to lease permits from
+     * @param batchSize   how many permits to lease at once - larger batches mean less coordination, but
+     *                    allow a node to send that many requests in a burst
+     * @param fallback    the limiter used while the coordinator is unreachable
+     * @throws IllegalArgumentException if coordinator or fallback is null or batchSize is smaller than 1
+     */
+    public DistributedRateLimiter(TokenCoordinator coordinator, int batchSize, RateLimiter fallback) {
+        if (coordinator == null)
+            throw new IllegalArgumentException("Coordinator must not be null!");
+
+        if (batchSize < 1)
+            throw new IllegalArgumentException("BatchSize has to be at least 1!");
+
+        if (fallback == null)
+            throw new IllegalArgumentException("Fallback must not be null!");
+
+        this.coordinator = coordinator;
+        this.batchSize = batchSize;
+        this.fallback = fallback;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    @Override
+    public void acquire() throws InterruptedException {
+        tryAcquire(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        final long timeoutNanos = unit.toNanos(timeout);
+        final long start = System.nanoTime();
+
+        while (true) {
+            final long waitNanos;
+
+            lock.lockInterruptibly();
+            try {
+                final long now = System.nanoTime();
+                final long remainingNanos = timeoutNanos - (now - start);
+
+                if (tokens > 0 && now - tokensExpireAt < 0) {
+                    tokens--;
+                    return true;
+                }
+
+                tokens = 0;
+
+                if (degraded && now - nextCoordinatorAttempt < 0) {
+                    waitNanos = -1;
+                } else if (now - nextLeaseAttempt < 0) {
+                    //The coordinator asked to come back later
+                    waitNanos = nextLeaseAttempt - now;
+                } else if (leasing) {
+                    //Somebody else is asking the coordinator already
+                    if (remainingNanos <= 0)
+                        return false;
+
+                    leased.awaitNanos(remainingNanos);
+                    continue;
+                } else {
+                    waitNanos = lease();
+
+                    if (waitNanos == 0) {
+                        tokens--;
+                        return true;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            final long remainingNanos = timeoutNanos - (System.nanoTime() - start);
+
+            if (waitNanos < 0)
+                return fallback.tryAcquire(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS);
+
+            if (waitNanos > remainingNanos)
+                return false;
+
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    //Asks the coordinator without holding the lock, so the others are not stuck behind the network call.
+    //Returns 0 if permits were leased, -1 if the coordinator is unreachable and the nanos to wait otherwise.
+    private long lease() {
+        leasing = true;
+        lock.unlock();
+
+        TokenLease lease = null;
+        IOException failure = null;
+
+        try {
+            lease = coordinator.lease(batchSize);
+        } catch (IOException ex) {
+            failure = ex;
+        } finally {
+            lock.lock();
+            leasing = false;
+            leased.signalAll();
+        }
+
+        final long now = System.nanoTime();
+
+        if (failure != null) {
+            if (!degraded)
+                logger.warn("Token coordinator is unreachable - using the local fallback limiter: " + failure.getMessage());
+
+            degraded = true;
+            nextCoordinatorAttempt = now + coordinatorRetryNanos;
+
+            return -1;
+        }
+
+        if (degraded) {
+            degraded = false;
+            logger.info("Token coordinator is reachable again - leaving fallback mode.");
+        }
+
+        if (lease.getTokens() > 0) {
+            tokens = lease.getTokens();
+            tokensExpireAt = now + TimeUnit.MILLISECONDS.toNanos(lease.getValidMillis());
+            return 0;
+        }
+
+        final long waitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(lease.getRetryAfterMillis(), 1));
+        nextLeaseAttempt = now + waitNanos;
+
+        return waitNanos;
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets whether the coordinator was unreachable on the last attempt, so the fallback limiter is in use.
+     *
+     * @return true if the fallback limiter is in use
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public RateLimiter getFallback() {
+        return fallback;
+    }
+
+    public long getCoordinatorRetryMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(coordinatorRetryNanos);
+    }
+
+    /**
+     * Sets how long to use the fallback limiter before trying to reach the coordinator again.
+     *
+     * @param coordinatorRetryMillis the delay in milliseconds
+     */
+    public void setCoordinatorRetryMillis(long coordinatorRetryMillis) {
+        this.coordinatorRetryNanos = TimeUnit.MILLISECONDS.toNanos(coordinatorRetryMillis);
+    }
+}
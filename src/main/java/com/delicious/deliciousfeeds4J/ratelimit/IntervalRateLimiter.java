@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link RateLimiter} which keeps a minimum interval between two permits - shared by all threads using
+ * the same instance. Every caller reserves the next free time slot with a CAS and then sleeps until its
+ * slot has come, so no locks or monitors are involved.
+ *
+ * @author Patrick Meier
+ */
+public class IntervalRateLimiter implements RateLimiter {
+
+    private final long intervalNanos;
+
+    //The next time slot (System.nanoTime) that can be handed out
+    private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+    /**
+     * Creates a new instance.
+     *
+     * @param interval the minimum interval between two permits
+     * @param unit     the unit of the interval
+     * @throws IllegalArgumentException if interval is negative or unit is null
+     */
+    public IntervalRateLimiter(long interval, TimeUnit unit) {
+        if (interval < 0)
+            throw new IllegalArgumentException("Interval must not be negative!");
+
+        if (unit == null)
+            throw new IllegalArgumentException("Unit must not be null!");
+
+        this.intervalNanos = unit.toNanos(interval);
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    @Override
+    public void acquire() throws InterruptedException {
+        tryAcquire(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        final long timeoutNanos = unit.toNanos(timeout);
+
+        while (true) {
+            final long now = System.nanoTime();
+            final long next = nextSlot.get();
+
+            final long slot = next - now > 0 ? next : now;
+            final long waitNanos = slot - now;
+
+            if (waitNanos > timeoutNanos)
+                return false;
+
+            if (nextSlot.compareAndSet(next, slot + intervalNanos)) {
+                if (waitNanos > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    } catch (InterruptedException ex) {
+                        //Give the slot back, unless later slots were handed out already - they must keep their spacing
+                        nextSlot.compareAndSet(slot + intervalNanos, slot);
+                        throw ex;
+                    }
+                }
+
+                return true;
+            }
+        }
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets the minimum interval between two permits.
+     *
+     * @param unit the unit to convert the interval to
+     * @return the interval
+     */
+    public long getInterval(TimeUnit unit) {
+        return unit.convert(intervalNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TokenCoordinator} keeping a token bucket in memory: one permit is added per interval, up to
+ * the given burst. Use it directly to share a budget between the clients of one process (e.g. in tests),
+ * or run it in a {@link TokenCoordinatorServer} to share it between processes.
+ *
+ * @author Patrick Meier
+ */
+public class LocalTokenCoordinator implements TokenCoordinator {
+
+    public static final long DEFAULT_LEASE_VALIDITY_MILLIS = 10000;
+
+    private final long intervalNanos;
+
+    private final int maxTokens;
+
+    private final long leaseValidityMillis;
+
+    private long tokens;
+
+    //The time (System.nanoTime) the last whole permit was added at
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * Creates a new instance whose leases are valid for 10 seconds.
+     *
+     * @param interval  the interval in which one permit is added
+     * @param unit      the unit of the interval
+     * @param maxTokens the maximum number of stored permits, which is also the largest possible lease
+     */
+    public LocalTokenCoordinator(long interval, TimeUnit unit, int maxTokens) {
+        this(interval, unit, maxTokens, DEFAULT_LEASE_VALIDITY_MILLIS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param interval            the interval in which one permit is added
+     * @param unit                the unit of the interval
+     * @param maxTokens           the maximum number of stored permits, which is also the largest possible lease
+     * @param leaseValidityMillis how long leased permits can be used
+     * @throws IllegalArgumentException if interval is not positive, unit is null or maxTokens is smaller than 1
+     */
+    public LocalTokenCoordinator(long interval, TimeUnit unit, int maxTokens, long leaseValidityMillis) {
+        if (interval <= 0)
+            throw new IllegalArgumentException("Interval has to be positive!");
+
+        if (unit == null)
+            throw new IllegalArgumentException("Unit must not be null!");
+
+        if (maxTokens < 1)
+            throw new IllegalArgumentException("MaxTokens has to be at least 1!");
+
+        this.intervalNanos = unit.toNanos(interval);
+        this.maxTokens = maxTokens;
+        this.leaseValidityMillis = leaseValidityMillis;
+        this.tokens = maxTokens;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    @Override
+    public synchronized TokenLease lease(int requested) {
+        if (requested < 1)
+            throw new IllegalArgumentException("Requested has to be at least 1!");
+
+        final long now = System.nanoTime();
+        refill(now);
+
+        if (tokens == 0) {
+            final long waitNanos = lastRefill + intervalNanos - now;
+            return new TokenLease(0, 0, Math.max(TimeUnit.NANOSECONDS.toMillis(waitNanos), 1));
+        }
+
+        final int granted = (int) Math.min(requested, tokens);
+        tokens -= granted;
+
+        return new TokenLease(granted, leaseValidityMillis, 0);
+    }
+
+    private void refill(long now) {
+        final long intervals = (now - lastRefill) / intervalNanos;
+
+        if (intervals <= 0)
+            return;
+
+        if (tokens + intervals >= maxTokens) {
+            tokens = maxTokens;
+            lastRefill = now;
+        } else {
+            tokens += intervals;
+            lastRefill += intervals * intervalNanos;
+        }
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public long getLeaseValidityMillis() {
+        return leaseValidityMillis;
+    }
+}
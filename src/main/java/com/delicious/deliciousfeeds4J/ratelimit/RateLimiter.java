@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how often requests are sent to delicious. A permit has to be acquired before every request.
+ * <p/>
+ * Implementations have to be thread-safe and must not block while holding a monitor, so waiting
+ * virtual threads do not pin their carrier thread.
+ *
+ * @author Patrick Meier
+ */
+public interface RateLimiter {
+
+    /**
+     * Acquires a permit and waits as long as necessary.
+     *
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     */
+    void acquire() throws InterruptedException;
+
+    /**
+     * Acquires a permit if it is available within the given timeout.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @return true if a permit was acquired, false if the timeout elapsed first
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     */
+    boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException;
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.ratelimit;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link TokenCoordinator} leasing permits from a {@link TokenCoordinatorServer} in another process.
+ * One connection is kept open and reused - it is reopened on the next lease after a failure.
+ *
+ * @author Patrick Meier
+ */
+public class RemoteTokenCoordinator implements TokenCoordinator, Closeable {
+
+    public static final int DEFAULT_TIMEOUT_MILLIS = 2000;
+
+    private final InetSocketAddress address;
+
+    private final int timeoutMillis;
+
+    //Not a monitor: leasing blocks on the network and must not pin virtual threads
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private Socket socket;
+
+    private DataInputStream input;
+
+    private DataOutputStream output;
+
+    /**
+     * Creates a new instance with a connect and read timeout of 2 seconds.
+     *
+     * @param host the host of the server
+     * @param port the port of the server
+     */
+    public RemoteTokenCoordinator(String host, int port) {
+        this(new InetSocketAddress(host, port), DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param address       the address of the server
+     * @param timeoutMillis the connect and read timeout - keep it short, a slow coordinator stalls all
+     *                      requests of this process
+     * @throws IllegalArgumentException if address is null or timeoutMillis is not positive
+     */
+    public RemoteTokenCoordinator(InetSocketAddress address, int timeoutMillis) {
+        if (address == null)
+            throw new IllegalArgumentException("Address must not be null!");
+
+        if (timeoutMillis <= 0)
+            throw new IllegalArgumentException("TimeoutMillis has to be positive!");
+
+        this.address = address;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    @Override
+    public TokenLease lease(int requested) throws IOException {
+        if (requested < 1)
+            throw new IllegalArgumentException("Requested has to be at least 1!");
+
+        lock.lock();
+        try {
+            if (socket == null)
+                connect();
+
+            try {
+                output.writeInt(requested);
+                output.flush();
+
+                final int tokens = input.readInt();
+                final long validMillis = input.readLong();
+                final long retryAfterMillis = input.readLong();
+
+                //A reply out of bounds means the stream is out of step - the connection is closed below
+                if (tokens < 0 || tokens > requested || validMillis < 0 || retryAfterMillis < 0)
+                    throw new StreamCorruptedException("Invalid lease from " + address + ": " + tokens + " tokens, "
+                            + validMillis + " ms valid, retry after " + retryAfterMillis + " ms");
+
+                return new TokenLease(tokens, validMillis, retryAfterMillis);
+            } catch (IOException ex) {
+                disconnect();
+                throw ex;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            disconnect();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void connect() throws IOException {
+        final Socket newSocket = new Socket();
+
+        try {
+            newSocket.connect(address, timeoutMillis);
+            newSocket.setSoTimeout(timeoutMillis);
+            newSocket.setTcpNoDelay(true);
+
+            input = new DataInputStream(new BufferedInputStream(newSocket.getInputStream()));
+            output = new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream()));
+            socket = newSocket;
+        } catch (IOException ex) {
+            newSocket.close();
+            throw ex;
+        }
+    }
+
+    private void disconnect() {
+        if (socket == null)
+            return;
+
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            //Already broken
+        }
+
+        socket = null;
+        input = null;
+        output = null;
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.ratelimit;
+
+import java.io.IOException;
+
+/**
+ * Hands out permits from a budget shared by several processes - the backend of a
+ * {@link DistributedRateLimiter}. {@link LocalTokenCoordinator} keeps the budget in memory and can be
+ * shared over the network with {@link TokenCoordinatorServer} and {@link RemoteTokenCoordinator}. Other
+ * backends (e.g. a shared database or cache) can be plugged in by implementing this interface.
+ * <p/>
+ * Implementations have to be thread-safe.
+ *
+ * @author Patrick Meier
+ */
+public interface TokenCoordinator {
+
+    /**
+     * Leases a batch of permits. Must not wait for permits to become available - return a lease without
+     * tokens and a retry delay instead.
+     *
+     * @param requested the number of permits wanted, at least 1
+     * @return the lease, which may contain fewer permits than requested
+     * @throws IOException if the coordinator can not be reached
+     */
+    TokenLease lease(int requested) throws IOException;
+}
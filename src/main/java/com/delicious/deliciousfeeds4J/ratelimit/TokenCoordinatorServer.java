@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves a {@link TokenCoordinator} (usually a {@link LocalTokenCoordinator}) over TCP to the
+ * {@link RemoteTokenCoordinator}s of other processes. Every connection is handled by a daemon thread of its
+ * own, which is fine for the handful of crawler nodes sharing one budget.
+ * <p/>
+ * Protocol, all values big-endian: the client sends the requested permits as int, the server answers with
+ * the granted permits as int, the validity in milliseconds as long and the retry delay in milliseconds as
+ * long. A connection can be used for any number of leases.
+ *
+ * @author Patrick Meier
+ */
+public class TokenCoordinatorServer implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenCoordinatorServer.class);
+
+    private static final String THREAD_NAME_PREFIX = "deliciousfeeds4j-coordinator-";
+
+    private final TokenCoordinator coordinator;
+
+    private final ServerSocket serverSocket;
+
+    private final Set<Socket> connections = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a new server listening on the loopback interface only - the protocol is not authenticated, so
+     * serving other hosts needs an explicit address, see
+     * {@link #TokenCoordinatorServer(TokenCoordinator, InetSocketAddress)}. Call {@link #start()} to accept
+     * connections.
+     *
+     * @param coordinator the coordinator to serve
+     * @param port        the port to listen on, 0 picks a free port (see {@link #getPort()})
+     * @throws IOException if the port can not be bound
+     */
+    public TokenCoordinatorServer(TokenCoordinator coordinator, int port) throws IOException {
+        //The loopback address - getLoopbackAddress() needs Java 7
+        this(coordinator, new InetSocketAddress(InetAddress.getByName(null), port));
+    }
+
+    /**
+     * Creates a new server. Call {@link #start()} to accept connections.
+     *
+     * @param coordinator the coordinator to serve
+     * @param address     the address to listen on
+     * @throws IllegalArgumentException if coordinator or address is null
+     * @throws IOException              if the address can not be bound
+     */
+    public TokenCoordinatorServer(TokenCoordinator coordinator, InetSocketAddress address) throws IOException {
+        if (coordinator == null)
+            throw new IllegalArgumentException("Coordinator must not be null!");
+
+        if (address == null)
+            throw new IllegalArgumentException("Address must not be null!");
+
+        this.coordinator = coordinator;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(address);
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Starts accepting connections on a daemon thread.
+     *
+     * @return this server
+     */
+    public TokenCoordinatorServer start() {
+        startThread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        });
+
+        logger.info("Token coordinator listening on port {}.", getPort());
+
+        return this;
+    }
+
+    /**
+     * Stops accepting connections and closes all open ones.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+
+        for (Socket connection : connections)
+            closeQuietly(connection);
+    }
+
+    private void acceptConnections() {
+        while (!closed) {
+            try {
+                final Socket connection = serverSocket.accept();
+                connection.setTcpNoDelay(true);
+                connections.add(connection);
+
+                startThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(connection);
+                    }
+                });
+            } catch (IOException ex) {
+                if (!closed)
+                    logger.warn("Could not accept connection: " + ex.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket connection) {
+        try {
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+
+            while (!closed) {
+                final int requested = input.readInt();
+
+                final TokenLease lease = requested > 0 ? coordinator.lease(requested) : new TokenLease(0, 0, 0);
+
+                output.writeInt(lease.getTokens());
+                output.writeLong(lease.getValidMillis());
+                output.writeLong(lease.getRetryAfterMillis());
+                output.flush();
+            }
+        } catch (EOFException ex) {
+            logger.debug("Client disconnected: {}", connection.getRemoteSocketAddress());
+        } catch (IOException ex) {
+            if (!closed)
+                logger.warn("Connection to " + connection.getRemoteSocketAddress() + " failed: " + ex.getMessage());
+        } finally {
+            connections.remove(connection);
+            closeQuietly(connection);
+        }
+    }
+
+    private void startThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            logger.debug("Could not close socket: " + ex.getMessage());
+        }
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public InetAddress getAddress() {
+        return serverSocket.getInetAddress();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.ratelimit;
+
+import java.io.Serializable;
+
+/**
+ * A batch of permits handed out by a {@link TokenCoordinator}. The permits have to be used within the
+ * validity of the lease - unused permits are dropped afterwards, so a node can not hoard them.
+ *
+ * @author Patrick Meier
+ */
+public final class TokenLease implements Serializable {
+
+    private final int tokens;
+
+    private final long validMillis;
+
+    private final long retryAfterMillis;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param tokens           the number of granted permits, may be 0
+     * @param validMillis      how long the permits may be used
+     * @param retryAfterMillis if no permits were granted: how long to wait before asking again
+     */
+    public TokenLease(int tokens, long validMillis, long retryAfterMillis) {
+        if (tokens < 0)
+            throw new IllegalArgumentException("Tokens must not be negative!");
+
+        this.tokens = tokens;
+        this.validMillis = Math.max(validMillis, 0);
+        this.retryAfterMillis = Math.max(retryAfterMillis, 0);
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public int getTokens() {
+        return tokens;
+    }
+
+    public long getValidMillis() {
+        return validMillis;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenLease{" +
+                "tokens=" + tokens +
+                ", validMillis=" + validMillis +
+                ", retryAfterMillis=" + retryAfterMillis +
+                '}';
+    }
+}
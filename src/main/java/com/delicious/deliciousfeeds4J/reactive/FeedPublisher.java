@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.reactive;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cold {@link Publisher} which emits the items of one or more feed pages - one after another, in order.
+ * Every subscriber starts from the first page again.
+ * <p/>
+ * A page is only fetched when the subscriber requested more items than the already fetched pages hold, and
+ * the {@link ItemTransformer} is only applied to items which were requested. So slow consumers pause the
+ * fetching instead of buffering everything - at most one page is held per subscription.
+ * <p/>
+ * Pages are fetched and all signals are sent from the given executor. Errors while fetching (including
+ * invalid arguments) are signalled via onError. A page of null (nothing found) is simply skipped.
+ *
+ * @author Patrick Meier
+ */
+public class FeedPublisher<T> implements Publisher<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeedPublisher.class);
+
+    private final List<Callable<? extends Collection<T>>> pages;
+
+    private final ItemTransformer<T> transformer;
+
+    private final Executor executor;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param pages       the pages to emit in order
+     * @param transformer transforms every item before it is emitted, may be null
+     * @param executor    the executor to fetch pages and send signals on
+     * @throws IllegalArgumentException if pages or executor is null
+     */
+    public FeedPublisher(List<? extends Callable<? extends Collection<T>>> pages, ItemTransformer<T> transformer,
+                         Executor executor) {
+        if (pages == null)
+            throw new IllegalArgumentException("Pages must not be null!");
+
+        if (executor == null)
+            throw new IllegalArgumentException("Executor must not be null!");
+
+        this.pages = new ArrayList<Callable<? extends Collection<T>>>(pages);
+        this.transformer = transformer;
+        this.executor = executor;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null)
+            throw new NullPointerException("Subscriber must not be null!");
+
+        subscriber.onSubscribe(new FeedSubscription(subscriber));
+    }
+
+    private final class FeedSubscription implements Subscription, Runnable {
+
+        private final Subscriber<? super T> subscriber;
+
+        private final AtomicLong requested = new AtomicLong();
+
+        //Number of pending drain-requests - only the one raising it from 0 starts draining
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+
+        private volatile Throwable invalidRequest;
+
+        //Only touched while draining
+        private Iterator<T> current;
+
+        private int nextPage;
+
+        private FeedSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0)
+                invalidRequest = new IllegalArgumentException("Requested items must be positive (Rule 3.9), got: " + n);
+            else
+                addRequested(n);
+
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void addRequested(long n) {
+            while (true) {
+                final long current = requested.get();
+
+                if (current == Long.MAX_VALUE)
+                    return;
+
+                final long next = current + n < 0 ? Long.MAX_VALUE : current + n;
+
+                if (requested.compareAndSet(current, next))
+                    return;
+            }
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() != 0)
+                return;
+
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException ex) {
+                cancelled = true;
+                subscriber.onError(ex);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+
+            do {
+                drain();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            while (cancelled == false) {
+
+                if (invalidRequest != null) {
+                    fail(invalidRequest);
+                    return;
+                }
+
+                if (requested.get() == 0)
+                    return;
+
+                if (current != null && current.hasNext()) {
+                    T item = current.next();
+
+                    if (item == null)
+                        continue;
+
+                    try {
+                        if (transformer != null)
+                            item = transformer.transform(item);
+                    } catch (Exception ex) {
+                        fail(ex);
+                        return;
+                    }
+
+                    //Dropped by the transformer
+                    if (item == null)
+                        continue;
+
+                    if (requested.get() != Long.MAX_VALUE)
+                        requested.decrementAndGet();
+
+                    try {
+                        subscriber.onNext(item);
+                    } catch (RuntimeException ex) {
+                        //Subscribers must not throw (Rule 2.13) - so this subscription is over
+                        logger.error("Subscriber threw an exception in onNext - cancelling subscription!", ex);
+                        release();
+                        return;
+                    }
+
+                } else if (nextPage < pages.size()) {
+                    final Collection<T> page;
+
+                    try {
+                        page = pages.get(nextPage++).call();
+                    } catch (Exception ex) {
+                        fail(ex);
+                        return;
+                    }
+
+                    current = page != null ? page.iterator() : null;
+
+                } else {
+                    release();
+                    subscriber.onComplete();
+                    return;
+                }
+            }
+
+            release();
+        }
+
+        private void fail(Throwable cause) {
+            release();
+            subscriber.onError(cause);
+        }
+
+        private void release() {
+            cancelled = true;
+            current = null;
+        }
+    }
+}
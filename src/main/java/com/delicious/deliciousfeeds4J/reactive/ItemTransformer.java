@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.reactive;
+
+/**
+ * Transforms a single item right before a {@link FeedPublisher} emits it - so the work is only done for
+ * items a subscriber actually requested (e.g. expanding shortened urls). Dropped items do not count
+ * against the demand of the subscriber.
+ *
+ * @author Patrick Meier
+ */
+public interface ItemTransformer<T> {
+
+    /**
+     * Transforms the given item.
+     *
+     * @param item the item, never null
+     * @return the transformed item, or null to drop the item (e.g. a duplicate)
+     * @throws Exception if the transformation fails - the subscriber gets it via onError
+     */
+    T transform(T item) throws Exception;
+}
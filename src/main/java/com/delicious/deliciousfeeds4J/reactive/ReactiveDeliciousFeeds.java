@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.reactive;
+
+import com.delicious.deliciousfeeds4J.DeliciousFeeds;
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.beans.User;
+import com.delicious.deliciousfeeds4J.dedup.BookmarkDeduplicator;
+import com.delicious.deliciousfeeds4J.partition.LocalPartition;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+import org.reactivestreams.Publisher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Offers the bookmark feeds of {@link DeliciousFeeds} as Reactive Streams {@link Publisher}s. Nothing is
+ * fetched before a subscriber requests items, and pages of batch methods are fetched one after another as
+ * the demand requires. All signals are sent from the executor of the wrapped {@link DeliciousFeeds}.
+ * <p/>
+ * Shortened urls are expanded lazily for every emitted bookmark if {@link #setExpandUrls(boolean)} is set.
+ * Leave {@link DeliciousFeeds#setExpandUrls(boolean)} off on the wrapped instance - otherwise whole pages
+ * are expanded right after fetching.
+ *
+ * @author Patrick Meier
+ */
+public class ReactiveDeliciousFeeds {
+
+    private final DeliciousFeeds deliciousFeeds;
+
+    private boolean expandUrls = DeliciousFeeds.DEFAULT_EXPAND_URLS;
+
+    private BookmarkDeduplicator deduplicator;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param deliciousFeeds the DeliciousFeeds to fetch the pages with
+     * @throws IllegalArgumentException if deliciousFeeds is null
+     */
+    public ReactiveDeliciousFeeds(DeliciousFeeds deliciousFeeds) {
+        if (deliciousFeeds == null)
+            throw new IllegalArgumentException("DeliciousFeeds must not be null!");
+
+        this.deliciousFeeds = deliciousFeeds;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    private Publisher<Bookmark> publishBookmarks(List<Callable<List<Bookmark>>> pages) {
+        final boolean expand = expandUrls;
+        final BookmarkDeduplicator dedup = deduplicator;
+
+        final ItemTransformer<Bookmark> transformer = expand || dedup != null ? new ItemTransformer<Bookmark>() {
+            @Override
+            public Bookmark transform(Bookmark bookmark) throws Exception {
+
+                //Drop seen bookmarks first, so they are not expanded for nothing
+                if (dedup != null && !dedup.isNew(bookmark))
+                    return null;
+
+                if (expand)
+                    bookmark.setUrl(deliciousFeeds.expandUrl(bookmark.getUrl()));
+
+                return bookmark;
+            }
+        } : null;
+
+        return new FeedPublisher<Bookmark>(pages, transformer, deliciousFeeds.getExecutor());
+    }
+
+    private Publisher<Bookmark> publishBookmarks(Callable<List<Bookmark>> page) {
+        return publishBookmarks(Collections.singletonList(page));
+    }
+
+    private Collection<String> checkUsernames(Collection<String> usernames) {
+        if (usernames == null || usernames.isEmpty())
+            throw new IllegalArgumentException("Usernames must not be null or empty!");
+
+        //Users owned by other nodes are published there
+        final LocalPartition partition = deliciousFeeds.getPartition();
+
+        return partition != null ? partition.filterLocal(usernames) : new ArrayList<String>(usernames);
+    }
+
+    /**
+     * Publishes the most recent bookmarks on delicious from all users.
+     *
+     * @param count how many entries should be published - from 1 to 100
+     * @return a publisher of the most recent bookmarks
+     * @see DeliciousFeeds#findBookmarks(int)
+     */
+    public Publisher<Bookmark> findBookmarks(final int count) {
+        return publishBookmarks(new Callable<List<Bookmark>>() {
+            @Override
+            public List<Bookmark> call() throws Exception {
+                return deliciousFeeds.findBookmarks(count);
+            }
+        });
+    }
+
+    /**
+     * Publishes the most popular bookmarks on delicious from all users.
+     *
+     * @param count how many entries should be published - from 1 to 100
+     * @return a publisher of the most popular bookmarks
+     * @see DeliciousFeeds#findPopularBookmarks(int)
+     */
+    public Publisher<Bookmark> findPopularBookmarks(final int count) {
+        return publishBookmarks(new Callable<List<Bookmark>>() {
+            @Override
+            public List<Bookmark> call() throws Exception {
+                return deliciousFeeds.findPopularBookmarks(count);
+            }
+        });
+    }
+
+    /**
+     * Publishes the most recent bookmarks on delicious from all users by the given tags.
+     *
+     * @param count how many entries should be published - from 1 to 100
+     * @param tags  the tags to use (minimum 1!)
+     * @return a publisher of the most recent bookmarks
+     * @see DeliciousFeeds#findBookmarksByTags(int, String...)
+     */
+    public Publisher<Bookmark> findBookmarksByTags(final int count, final String... tags) {
+        return publishBookmarks(new Callable<List<Bookmark>>() {
+            @Override
+            public List<Bookmark> call() throws Exception {
+                return deliciousFeeds.findBookmarksByTags(count, tags);
+            }
+        });
+    }
+
+    /**
+     * Publishes the most popular bookmarks on delicious from all users by the given tags.
+     *
+     * @param count how many entries should be published - from 1 to 100
+     * @param tags  the tags to use (minimum 1!)
+     * @return a publisher of the most popular bookmarks
+     * @see DeliciousFeeds#findPopularBookmarksByTags(int, String...)
+     */
+    public Publisher<Bookmark> findPopularBookmarksByTags(final int count, final String... tags) {
+        return publishBookmarks(new Callable<List<Bookmark>>() {
+            @Override
+            public List<Bookmark> call() throws Exception {
+                return deliciousFeeds.findPopularBookmarksByTags(count, tags);
+            }
+        });
+    }
+
+    /**
+     * Publishes the most recent bookmarks on delicious from a specific user.
+     *
+     * @param count    how many entries should be published - from 1 to 100
+     * @param username the username
+     * @return a publisher of the most recent bookmarks from this user
+     * @see DeliciousFeeds#findBookmarksByUser(int, String)
+     */
+    public Publisher<Bookmark> findBookmarksByUser(final int count, final String username) {
+        return publishBookmarks(new Callable<List<Bookmark>>() {
+            @Override
+            public List<Bookmark> call() throws Exception {
+                return deliciousFeeds.findBookmarksByUser(count, username);
+            }
+        });
+    }
+
+    /**
+     * Publishes the most recent private bookmarks on delicious from a specific user.
+     *
+     * @param count    how many entries should be published - from 1 to 100
+     * @param username the username
+     * @param key      the key to retrieve private bookmarks (can be obtained on delicious.com)
+     * @return a publisher of the most recent bookmarks from this user
+     * @see DeliciousFeeds#findPrivateBookmarksByUser(int, String, String)
+     */
+    public Publisher<Bookmark> findPrivateBookmarksByUser(final int count, final String username, final String key) {
+        return publishBookmarks(new Callable<List<Bookmark>>() {
+            @Override
+            public List<Bookmark> call() throws Exception {
+                return deliciousFeeds.findPrivateBookmarksByUser(count, username, key);
+            }
+        });
+    }
+
+    /**
+     * Publishes the most recent bookmarks on delicious from a specific user with the given tags.
+     *
+     * @param count    how many entries should be published - from 1 to 100
+     * @param username the username
+     * @param tags     the tags to use (minimum 1!)
+     * @return a publisher of the most recent bookmarks from this user
+     * @see DeliciousFeeds#findBookmarksByUserAndTags(int, String, String...)
+     */
+    public Publisher<Bookmark> findBookmarksByUserAndTags(final int count, final String username, final String... tags) {
+        return publishBookmarks(new Callable<List<Bookmark>>() {
+            @Override
+            public List<Bookmark> call() throws Exception {
+                return deliciousFeeds.findBookmarksByUserAndTags(count, username, tags);
+            }
+        });
+    }
+
+    /**
+     * Publishes the most recent private bookmarks on delicious from a specific user with the given tags.
+     *
+     * @param count    how many entries should be published - from 1 to 100
+     * @param username the username
+     * @param key      the key to retrieve private bookmarks (can be obtained on delicious.com)
+     * @param tags     the tags to use (minimum 1!)
+     * @return a publisher of the most recent bookmarks from this user
+     * @see DeliciousFeeds#findPrivateBookmarksByUserAndTags(int, String, String, String...)
+     */
+    public Publisher<Bookmark> findPrivateBookmarksByUserAndTags(final int count, final String username, final String key,
+                                                                 final String... tags) {
+        return publishBookmarks(new Callable<List<Bookmark>>() {
+            @Override
+            public List<Bookmark> call() throws Exception {
+                return deliciousFeeds.findPrivateBookmarksByUserAndTags(count, username, key, tags);
+            }
+        });
+    }
+
+    /**
+     * Publishes the most recent private inbox bookmarks on delicious from a specific user.
+     *
+     * @param count    how many entries should be published - from 1 to 100
+     * @param username the username
+     * @param key      the key to retrieve private bookmarks (can be obtained on delicious.com)
+     * @return a publisher of the most recent inbox bookmarks from this user
+     * @see DeliciousFeeds#findPrivateInboxBookmarksByUser(int, String, String)
+     */
+    public Publisher<Bookmark> findPrivateInboxBookmarksByUser(final int count, final String username, final String key) {
+        return publishBookmarks(new Callable<List<Bookmark>>() {
+            @Override
+            public List<Bookmark> call() throws Exception {
+                return deliciousFeeds.findPrivateInboxBookmarksByUser(count, username, key);
+            }
+        });
+    }
+
+    /**
+     * Publishes the most recent bookmarks from the network of a specific user.
+     *
+     * @param count    how many entries should be published - from 1 to 100
+     * @param username the username
+     * @return a publisher of the most recent network bookmarks
+     * @see DeliciousFeeds#findNetworkBookmarksByUser(int, String)
+     */
+    public Publisher<Bookmark> findNetworkBookmarksByUser(final int count, final String username) {
+        return publishBookmarks(new Callable<List<Bookmark>>() {
+            @Override
+            public List<Bookmark> call() throws Exception {
+                return deliciousFeeds.findNetworkBookmarksByUser(count, username);
+            }
+        });
+    }
+
+    /**
+     * Publishes the most recent bookmarks from the network of a specific user with the given tags.
+     *
+     * @param count    how many entries should be published - from 1 to 100
+     * @param username the username
+     * @param tags     the tags to use (minimum 1!)
+     * @return a publisher of the most recent network bookmarks
+     * @see DeliciousFeeds#findNetworkBookmarksByUserAndTags(int, String, String...)
+     */
+    public Publisher<Bookmark> findNetworkBookmarksByUserAndTags(final int count, final String username, final String... tags) {
+        return publishBookmarks(new Callable<List<Bookmark>>() {
+            @Override
+            public List<Bookmark> call() throws Exception {
+                return deliciousFeeds.findNetworkBookmarksByUserAndTags(count, username, tags);
+            }
+        });
+    }
+
+    /**
+     * Publishes bookmarks on delicious for a specific url.
+     *
+     * @param count how many entries should be published (value is multiplied by 10!) - from 1 to 100
+     * @param url   the url
+     * @return a publisher of bookmarks for this url
+     * @see DeliciousFeeds#findBookmarksByUrl(int, String)
+     */
+    public Publisher<Bookmark> findBookmarksByUrl(final int count, final String url) {
+        return publishBookmarks(new Callable<List<Bookmark>>() {
+            @Override
+            public List<Bookmark> call() throws Exception {
+                return deliciousFeeds.findBookmarksByUrl(count, url);
+            }
+        });
+    }
+
+    /**
+     * Publishes bookmarks on delicious for a url identified by its key.
+     *
+     * @param count  how many entries should be published (value is multiplied by 10!) - from 1 to 100
+     * @param urlKey the key of the url
+     * @return a publisher of bookmarks for this url
+     * @see DeliciousFeeds#findBookmarksByUrlKey(int, UrlKey)
+     */
+    public Publisher<Bookmark> findBookmarksByUrlKey(final int count, final UrlKey urlKey) {
+        return publishBookmarks(new Callable<List<Bookmark>>() {
+            @Override
+            public List<Bookmark> call() throws Exception {
+                return deliciousFeeds.findBookmarksByUrlKey(count, urlKey);
+            }
+        });
+    }
+
+    /**
+     * Publishes the most recent bookmarks of several users - all bookmarks of the first user, then all of
+     * the second one and so on. The feed of a user is only fetched once the subscriber requested more
+     * bookmarks than the previous users had.
+     *
+     * @param count     how many entries should be published per user - from 1 to 100
+     * @param usernames the usernames
+     * @return a publisher of the most recent bookmarks of all users
+     * @throws IllegalArgumentException if usernames are null or empty
+     */
+    public Publisher<Bookmark> findBookmarksByUsers(final int count, Collection<String> usernames) {
+        final List<Callable<List<Bookmark>>> pages = new ArrayList<Callable<List<Bookmark>>>();
+
+        for (final String username : checkUsernames(usernames)) {
+            pages.add(new Callable<List<Bookmark>>() {
+                @Override
+                public List<Bookmark> call() throws Exception {
+                    return deliciousFeeds.findBookmarksByUser(count, username);
+                }
+            });
+        }
+
+        return publishBookmarks(pages);
+    }
+
+    /**
+     * Publishes the network members of several users - all members of the first user, then all of the
+     * second one and so on. The members of a user are only fetched once the subscriber requested more
+     * than the previous users had.
+     *
+     * @param usernames the usernames
+     * @return a publisher of the network members of all users
+     * @throws IllegalArgumentException if usernames are null or empty
+     */
+    public Publisher<User> findNetworkMembersByUsers(Collection<String> usernames) {
+        final List<Callable<Set<User>>> pages = new ArrayList<Callable<Set<User>>>();
+
+        for (final String username : checkUsernames(usernames)) {
+            pages.add(new Callable<Set<User>>() {
+                @Override
+                public Set<User> call() throws Exception {
+                    return deliciousFeeds.findNetworkMembersByUser(username);
+                }
+            });
+        }
+
+        return new FeedPublisher<User>(pages, null, deliciousFeeds.getExecutor());
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets the wrapped DeliciousFeeds.
+     *
+     * @return the wrapped DeliciousFeeds
+     */
+    public DeliciousFeeds getDeliciousFeeds() {
+        return deliciousFeeds;
+    }
+
+    /**
+     * Gets whether shortened urls are expanded for every published bookmark. By default this is false.
+     *
+     * @return if shortened urls should be expanded
+     */
+    public boolean isExpandUrls() {
+        return expandUrls;
+    }
+
+    /**
+     * Sets whether shortened urls are expanded for every published bookmark. Only requested bookmarks are
+     * expanded, right before they are published. Applies to publishers created afterwards.
+     *
+     * @param expandUrls if shortened urls should be expanded
+     */
+    public void setExpandUrls(boolean expandUrls) {
+        this.expandUrls = expandUrls;
+    }
+
+    /**
+     * Gets the deduplicator dropping bookmarks which were published before.
+     *
+     * @return the deduplicator or null if all bookmarks are published
+     */
+    public BookmarkDeduplicator getDeduplicator() {
+        return deduplicator;
+    }
+
+    /**
+     * Sets a deduplicator dropping bookmarks which were published before - by any publisher using the same
+     * deduplicator. Dropped bookmarks do not count against the demand. Applies to publishers created
+     * afterwards.
+     *
+     * @param deduplicator the deduplicator or null to publish all bookmarks
+     */
+    public void setDeduplicator(BookmarkDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.request;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A precompiled url of a feed like {@code "{username}/{tags}?private={key}&count={count}"}. The pattern is
+ * split into literals and variables once, so expanding it only appends to a reused buffer - values are
+ * percent-encoded as UTF-8 on the way, without creating intermediate strings or byte arrays.
+ * <p/>
+ * Known variables are {@code {username}} and {@code {hash}} (the path segment naming the subject of the
+ * feed), {@code {key}}, {@code {count}} and {@code {tags}} (joined with '+'). Instances are immutable and
+ * thread-safe.
+ *
+ * @author Patrick Meier
+ */
+public final class RequestTemplate {
+
+    private static final int LITERAL = 0;
+
+    private static final int SUBJECT = 1;
+
+    private static final int KEY = 2;
+
+    private static final int COUNT = 3;
+
+    private static final int TAGS = 4;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    //Unreserved characters of RFC 3986 - all others are encoded, also in path segments
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++)
+            UNRESERVED[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++)
+            UNRESERVED[c] = true;
+        for (char c = '0'; c <= '9'; c++)
+            UNRESERVED[c] = true;
+
+        UNRESERVED['-'] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['_'] = true;
+        UNRESERVED['~'] = true;
+    }
+
+    //Buffers larger than this are not kept, so one huge request does not pin its memory
+    private static final int MAX_BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private final String pattern;
+
+    //Parallel arrays: the kind of every part and the text of the literals
+    private final int[] kinds;
+
+    private final String[] literals;
+
+    private RequestTemplate(String pattern, int[] kinds, String[] literals) {
+        this.pattern = pattern;
+        this.kinds = kinds;
+        this.literals = literals;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Compiles a pattern. Everything outside of braces is taken as it is.
+     *
+     * @param pattern the pattern, relative to the API endpoint
+     * @return the template
+     * @throws IllegalArgumentException if pattern is null, contains an unknown variable or unbalanced braces
+     */
+    public static RequestTemplate compile(String pattern) {
+        if (pattern == null)
+            throw new IllegalArgumentException("Pattern must not be null!");
+
+        final List<Integer> kinds = new ArrayList<Integer>();
+        final List<String> literals = new ArrayList<String>();
+
+        int position = 0;
+
+        while (position < pattern.length()) {
+            final int open = pattern.indexOf('{', position);
+
+            if (open < 0) {
+                kinds.add(LITERAL);
+                literals.add(pattern.substring(position));
+                break;
+            }
+
+            final int close = pattern.indexOf('}', open);
+
+            if (close < 0)
+                throw new IllegalArgumentException("Unbalanced braces in pattern: " + pattern);
+
+            if (open > position) {
+                kinds.add(LITERAL);
+                literals.add(pattern.substring(position, open));
+            }
+
+            kinds.add(kindOf(pattern.substring(open + 1, close), pattern));
+            literals.add(null);
+
+            position = close + 1;
+        }
+
+        final int[] kindArray = new int[kinds.size()];
+
+        for (int i = 0; i < kindArray.length; i++)
+            kindArray[i] = kinds.get(i);
+
+        return new RequestTemplate(pattern, kindArray, literals.toArray(new String[literals.size()]));
+    }
+
+    private static int kindOf(String variable, String pattern) {
+        if ("username".equals(variable) || "hash".equals(variable))
+            return SUBJECT;
+        if ("key".equals(variable))
+            return KEY;
+        if ("count".equals(variable))
+            return COUNT;
+        if ("tags".equals(variable))
+            return TAGS;
+
+        throw new IllegalArgumentException("Unknown variable '" + variable + "' in pattern: " + pattern);
+    }
+
+    /**
+     * Builds the url of a request. Values of variables the pattern does not use are ignored.
+     *
+     * @param endpoint the API endpoint the pattern is relative to, taken as it is
+     * @param subject  the value of {@code {username}} or {@code {hash}}
+     * @param key      the value of {@code {key}}
+     * @param count    the value of {@code {count}}
+     * @param tags     the values of {@code {tags}}
+     * @return the url
+     * @throws IllegalArgumentException if a used variable is null (or tags are empty)
+     */
+    public String expand(String endpoint, String subject, String key, int count, String[] tags) {
+        final StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+
+        buffer.append(endpoint);
+
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case LITERAL:
+                    buffer.append(literals[i]);
+                    break;
+                case SUBJECT:
+                    appendEncoded(buffer, required(subject, "Subject"));
+                    break;
+                case KEY:
+                    appendEncoded(buffer, required(key, "Key"));
+                    break;
+                case COUNT:
+                    buffer.append(count);
+                    break;
+                case TAGS:
+                    if (tags == null || tags.length == 0)
+                        throw new IllegalArgumentException("Tags must not be null or empty!");
+
+                    for (int t = 0; t < tags.length; t++) {
+                        if (t > 0)
+                            buffer.append('+');
+
+                        appendEncoded(buffer, required(tags[t], "Tag"));
+                    }
+                    break;
+            }
+        }
+
+        final String url = buffer.toString();
+
+        if (buffer.capacity() > MAX_BUFFER_SIZE)
+            BUFFER.remove();
+
+        return url;
+    }
+
+    private static String required(String value, String name) {
+        if (value == null)
+            throw new IllegalArgumentException(name + " must not be null!");
+
+        return value;
+    }
+
+    /**
+     * Appends the value percent-encoded as UTF-8. Only the unreserved characters of RFC 3986 are kept, so the
+     * result is safe as path segment and as query value.
+     *
+     * @param buffer the buffer to append to
+     * @param value  the value to encode
+     */
+    public static void appendEncoded(StringBuilder buffer, CharSequence value) {
+        final int length = value.length();
+
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+
+            if (c < 0x80) {
+                if (UNRESERVED[c])
+                    buffer.append(c);
+                else
+                    appendByte(buffer, c);
+            } else if (c < 0x800) {
+                appendByte(buffer, 0xc0 | (c >> 6));
+                appendByte(buffer, 0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendByte(buffer, 0xf0 | (codePoint >> 18));
+                appendByte(buffer, 0x80 | ((codePoint >> 12) & 0x3f));
+                appendByte(buffer, 0x80 | ((codePoint >> 6) & 0x3f));
+                appendByte(buffer, 0x80 | (codePoint & 0x3f));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+
+                //Unpaired surrogates become '?' like in String.getBytes
+                appendByte(buffer, '?');
+            } else {
+                appendByte(buffer, 0xe0 | (c >> 12));
+                appendByte(buffer, 0x80 | ((c >> 6) & 0x3f));
+                appendByte(buffer, 0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private static void appendByte(StringBuilder buffer, int value) {
+        buffer.append('%');
+        buffer.append(HEX_DIGITS[(value >> 4) & 0x0f]);
+        buffer.append(HEX_DIGITS[value & 0x0f]);
+    }
+
+    @Override
+    public String toString() {
+        return "RequestTemplate{" + pattern + '}';
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public String getPattern() {
+        return pattern;
+    }
+}
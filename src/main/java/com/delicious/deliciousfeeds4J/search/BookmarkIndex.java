@@ -0,0 +1,632 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.search;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.codec.Varints;
+import com.delicious.deliciousfeeds4J.reactive.ItemTransformer;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An inverted full-text index of the titles and descriptions of bookmarks, e.g. of all bookmarks a user
+ * fetched. Searches rank the bookmarks containing any of the words with BM25 - words in the title count
+ * twice - and can be restricted to bookmarks with certain tags.
+ * <p/>
+ * For every word and tag the ids of the bookmarks containing it are stored in ascending order as
+ * varint-encoded deltas, mostly a byte or two per occurrence. Searches walk the lists of all query words
+ * side by side and keep only the best hits in a heap, so no score is kept per bookmark. The lists are split
+ * into blocks of 128 entries which remember their highest score, so blocks without a chance to make it into
+ * the heap are skipped without decoding them - common words cost little more than rare ones.
+ * <p/>
+ * Use {@link #addAll(Collection)} on the results of {@code DeliciousFeeds}, or pass it as
+ * {@link ItemTransformer} to a {@code FeedPublisher} to index every published bookmark. Every added bookmark
+ * is a new entry - put a {@code BookmarkDeduplicator} in front if the same bookmarks may come again. This
+ * class is thread-safe: searches run in parallel, adding waits for them.
+ *
+ * @author Patrick Meier
+ */
+public class BookmarkIndex implements ItemTransformer<Bookmark> {
+
+    //The usual BM25 parameters: how fast repeated words saturate and how much long texts are penalized
+    private static final double K1 = 1.2;
+
+    private static final double B = 0.75;
+
+    private static final int TITLE_WEIGHT = 2;
+
+    private static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    //128 entries per block of a list
+    private static final int BLOCK_SHIFT = 7;
+
+    private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //Guarded by the lock
+    private final List<Bookmark> bookmarks = new ArrayList<Bookmark>();
+
+    //The weighted number of words of every bookmark
+    private int[] lengths = new int[1024];
+
+    private long totalLength;
+
+    private final Map<String, Postings> terms = new HashMap<String, Postings>();
+
+    private final Map<String, Postings> tags = new HashMap<String, Postings>();
+
+    private long postingBytes;
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Adds a bookmark.
+     *
+     * @param bookmark the bookmark
+     * @throws IllegalArgumentException if bookmark is null
+     */
+    public void add(Bookmark bookmark) {
+        if (bookmark == null)
+            throw new IllegalArgumentException("Bookmark must not be null!");
+
+        //Tokenized before locking, so searches are not held up by it
+        final List<String> titleWords = new ArrayList<String>();
+        final List<String> descriptionWords = new ArrayList<String>();
+
+        Tokenizer.tokenize(bookmark.getTitle(), titleWords);
+        Tokenizer.tokenize(bookmark.getDescription(), descriptionWords);
+
+        final Map<String, int[]> frequencies = new HashMap<String, int[]>();
+        count(titleWords, TITLE_WEIGHT, frequencies);
+        count(descriptionWords, 1, frequencies);
+
+        final int length = titleWords.size() * TITLE_WEIGHT + descriptionWords.size();
+
+        lock.writeLock().lock();
+        try {
+            final int doc = bookmarks.size();
+
+            bookmarks.add(bookmark);
+
+            if (doc == lengths.length)
+                lengths = Arrays.copyOf(lengths, doc * 2);
+
+            lengths[doc] = length;
+            totalLength += length;
+
+            final double averageLength = averageLength();
+
+            for (Map.Entry<String, int[]> frequency : frequencies.entrySet()) {
+                final int count = frequency.getValue()[0];
+
+                postingBytes += postingsOf(terms, frequency.getKey(), true)
+                        .add(doc, count, weight(count, length, averageLength), averageLength);
+            }
+
+            if (bookmark.getTags() != null) {
+                for (String tag : bookmark.getTags()) {
+                    if (tag != null && tag.length() > 0)
+                        postingBytes += postingsOf(tags, tag, false).add(doc);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds all bookmarks.
+     *
+     * @param bookmarks the bookmarks, may be null
+     */
+    public void addAll(Collection<Bookmark> bookmarks) {
+        if (bookmarks == null)
+            return;
+
+        for (Bookmark bookmark : bookmarks) {
+            if (bookmark != null)
+                add(bookmark);
+        }
+    }
+
+    /**
+     * Adds a bookmark of a publisher and passes it on unchanged.
+     *
+     * @param bookmark the bookmark
+     * @return the given bookmark
+     */
+    @Override
+    public Bookmark transform(Bookmark bookmark) {
+        add(bookmark);
+        return bookmark;
+    }
+
+    /**
+     * Finds the bookmarks most relevant for the words of the query. Bookmarks containing any of the words
+     * are ranked with BM25, so rare words and bookmarks containing several of the words come first. Without
+     * words in the query, the bookmarks with the tags added last come first.
+     *
+     * @param query the words to search for, in any case - may be null if tags are given
+     * @param limit the maximum number of hits
+     * @param tags  the tags all hits must have
+     * @return the hits, most relevant first
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    public List<SearchHit> search(String query, int limit, String... tags) {
+        if (limit < 1)
+            throw new IllegalArgumentException("Limit has to be positive!");
+
+        final Set<String> words = new LinkedHashSet<String>();
+        Tokenizer.tokenize(query, words);
+
+        final boolean filtered = tags != null && tags.length > 0;
+
+        if (words.isEmpty() && filtered == false)
+            return Collections.emptyList();
+
+        lock.readLock().lock();
+        try {
+            final PostingIterator[] filters = filtered ? tagIterators(tags) : new PostingIterator[0];
+
+            //A tag nobody used
+            if (filters == null)
+                return Collections.emptyList();
+
+            if (words.isEmpty())
+                return latest(filters, limit);
+
+            final List<PostingIterator> iterators = new ArrayList<PostingIterator>(words.size());
+            final double documentCount = bookmarks.size();
+
+            for (String word : words) {
+                final Postings postings = terms.get(word);
+
+                if (postings != null) {
+                    final double idf = Math.log(1 + (documentCount - postings.count + 0.5) / (postings.count + 0.5));
+                    iterators.add(new PostingIterator(postings, idf));
+                }
+            }
+
+            if (iterators.isEmpty())
+                return Collections.emptyList();
+
+            return rank(iterators.toArray(new PostingIterator[iterators.size()]), filters, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Walks all lists side by side - every bookmark is scored once, with all words it contains. Once there are
+    //enough hits, stretches of bookmarks which can not beat the worst of them are skipped block by block.
+    private List<SearchHit> rank(PostingIterator[] iterators, PostingIterator[] filters, int limit) {
+        final double averageLength = averageLength();
+        final PriorityQueue<ScoredDoc> best = new PriorityQueue<ScoredDoc>(Math.min(limit, bookmarks.size()) + 1);
+
+        for (PostingIterator iterator : iterators)
+            iterator.next();
+
+        int doc = minDoc(iterators);
+        int checkedUntil = -1;
+
+        while (doc != NO_MORE_DOCS) {
+            if (doc > checkedUntil && best.size() == limit) {
+                //Up to the first block end, no bookmark scores more than the sum of the block maxima of the
+                //words found there
+                int windowEnd = NO_MORE_DOCS;
+
+                for (PostingIterator iterator : iterators) {
+                    if (iterator.doc != NO_MORE_DOCS)
+                        windowEnd = Math.min(windowEnd, iterator.blockLastDoc());
+                }
+
+                double maxScore = 0;
+
+                for (PostingIterator iterator : iterators) {
+                    if (iterator.doc <= windowEnd)
+                        maxScore += iterator.blockMaxScore(averageLength);
+                }
+
+                //Equal scores would still win, as later bookmarks come first
+                if (maxScore < best.peek().score) {
+                    for (PostingIterator iterator : iterators)
+                        iterator.advance(windowEnd + 1);
+
+                    doc = minDoc(iterators);
+                    continue;
+                }
+
+                checkedUntil = windowEnd;
+            }
+
+            final int allowed = advanceFilters(filters, doc);
+
+            if (allowed != doc) {
+                //Skip the bookmarks without the tags
+                if (allowed == NO_MORE_DOCS)
+                    break;
+
+                for (PostingIterator iterator : iterators)
+                    iterator.advance(allowed);
+
+                doc = minDoc(iterators);
+                continue;
+            }
+
+            double score = 0;
+
+            for (PostingIterator iterator : iterators) {
+                if (iterator.doc == doc) {
+                    score += iterator.idf * weight(iterator.frequency, lengths[doc], averageLength);
+                    iterator.next();
+                }
+            }
+
+            if (best.size() < limit) {
+                best.add(new ScoredDoc(doc, score));
+            } else if (score >= best.peek().score) {
+                best.poll();
+                best.add(new ScoredDoc(doc, score));
+            }
+
+            doc = minDoc(iterators);
+        }
+
+        return toHits(best);
+    }
+
+    private double averageLength() {
+        return Math.max(1, (double) totalLength / bookmarks.size());
+    }
+
+    //The BM25 score of a word for a bookmark, without the idf
+    private static double weight(int frequency, int length, double averageLength) {
+        return frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+    }
+
+    //The bookmarks with all tags, added last first
+    private List<SearchHit> latest(PostingIterator[] filters, int limit) {
+        final PriorityQueue<ScoredDoc> best = new PriorityQueue<ScoredDoc>(Math.min(limit, bookmarks.size()) + 1);
+
+        int doc = advanceFilters(filters, 0);
+
+        while (doc != NO_MORE_DOCS) {
+            best.add(new ScoredDoc(doc, 0));
+
+            if (best.size() > limit)
+                best.poll();
+
+            doc = advanceFilters(filters, doc + 1);
+        }
+
+        return toHits(best);
+    }
+
+    private List<SearchHit> toHits(PriorityQueue<ScoredDoc> best) {
+        final SearchHit[] hits = new SearchHit[best.size()];
+
+        for (int i = hits.length - 1; i >= 0; i--) {
+            final ScoredDoc scoredDoc = best.poll();
+            hits[i] = new SearchHit(bookmarks.get(scoredDoc.doc), scoredDoc.score);
+        }
+
+        return Arrays.asList(hits);
+    }
+
+    //Null if a tag was never used
+    private PostingIterator[] tagIterators(String[] tagNames) {
+        final PostingIterator[] iterators = new PostingIterator[tagNames.length];
+
+        for (int i = 0; i < tagNames.length; i++) {
+            final Postings postings = tagNames[i] != null ? tags.get(tagNames[i]) : null;
+
+            if (postings == null)
+                return null;
+
+            iterators[i] = new PostingIterator(postings, 0);
+        }
+
+        //The rarest tag skips the most
+        Arrays.sort(iterators, new Comparator<PostingIterator>() {
+            @Override
+            public int compare(PostingIterator first, PostingIterator second) {
+                return first.postings.count - second.postings.count;
+            }
+        });
+
+        return iterators;
+    }
+
+    //Moves all filters to the first bookmark from the given one on which has all tags
+    private static int advanceFilters(PostingIterator[] filters, int doc) {
+        int target = doc;
+        int i = 0;
+
+        while (i < filters.length) {
+            final int filterDoc = filters[i].advance(target);
+
+            if (filterDoc == NO_MORE_DOCS)
+                return NO_MORE_DOCS;
+
+            if (filterDoc > target) {
+                //Start over with the new target
+                target = filterDoc;
+                i = filters[0].doc == target ? 1 : 0;
+                continue;
+            }
+
+            i++;
+        }
+
+        return target;
+    }
+
+    private static int minDoc(PostingIterator[] iterators) {
+        int min = NO_MORE_DOCS;
+
+        for (PostingIterator iterator : iterators)
+            min = Math.min(min, iterator.doc);
+
+        return min;
+    }
+
+    private static void count(List<String> words, int weight, Map<String, int[]> frequencies) {
+        for (String word : words) {
+            final int[] frequency = frequencies.get(word);
+
+            if (frequency == null)
+                frequencies.put(word, new int[]{weight});
+            else
+                frequency[0] += weight;
+        }
+    }
+
+    private static Postings postingsOf(Map<String, Postings> map, String key, boolean withFrequency) {
+        Postings postings = map.get(key);
+
+        if (postings == null) {
+            postings = new Postings(withFrequency);
+            map.put(key, postings);
+        }
+
+        return postings;
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public int getBookmarkCount() {
+        lock.readLock().lock();
+        try {
+            return bookmarks.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getWordCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets how many bytes the encoded lists of bookmarks per word and tag take.
+     *
+     * @return the size of all lists
+     */
+    public long getPostingBytes() {
+        lock.readLock().lock();
+        try {
+            return postingBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //The ids of the bookmarks containing a word or tag: varint deltas, each followed by the frequency for
+    //words. Every 128 entries start a block, whose bounds allow to skip it without decoding.
+    private static final class Postings {
+
+        private byte[] bytes = new byte[8];
+
+        private int length;
+
+        private int lastDoc = -1;
+
+        private int count;
+
+        private final boolean withFrequency;
+
+        //Per block: where it starts in the bytes and its last doc
+        private int[] blockOffsets = new int[1];
+
+        private int[] blockLastDocs = new int[1];
+
+        //Per block of a word: the highest weight and the lowest average length it was computed with
+        private float[] blockMaxWeights;
+
+        private float[] blockAverageLengths;
+
+        Postings(boolean withFrequency) {
+            this.withFrequency = withFrequency;
+
+            if (withFrequency) {
+                blockMaxWeights = new float[1];
+                blockAverageLengths = new float[1];
+            }
+        }
+
+        //The number of bytes added
+        int add(int doc) {
+            return add(doc, 1, 0, 0);
+        }
+
+        int add(int doc, int frequency, double weight, double averageLength) {
+            final int block = count >>> BLOCK_SHIFT;
+
+            if ((count & BLOCK_MASK) == 0)
+                startBlock(block);
+
+            if (bytes.length - length < 10)
+                bytes = Arrays.copyOf(bytes, bytes.length + (bytes.length >> 1) + 10);
+
+            final int start = length;
+
+            length = Varints.putVarInt(bytes, length, doc - lastDoc);
+            blockLastDocs[block] = doc;
+
+            if (withFrequency) {
+                length = Varints.putVarInt(bytes, length, frequency);
+
+                //Rounded so the bounds never fall below the exact values
+                blockMaxWeights[block] = Math.max(blockMaxWeights[block], Math.nextUp((float) weight));
+                blockAverageLengths[block] = Math.min(blockAverageLengths[block],
+                        Math.nextAfter((float) averageLength, Double.NEGATIVE_INFINITY));
+            }
+
+            lastDoc = doc;
+            count++;
+
+            return length - start;
+        }
+
+        private void startBlock(int block) {
+            if (block == blockOffsets.length) {
+                blockOffsets = Arrays.copyOf(blockOffsets, block * 2);
+                blockLastDocs = Arrays.copyOf(blockLastDocs, block * 2);
+
+                if (withFrequency) {
+                    blockMaxWeights = Arrays.copyOf(blockMaxWeights, block * 2);
+                    blockAverageLengths = Arrays.copyOf(blockAverageLengths, block * 2);
+                }
+            }
+
+            blockOffsets[block] = length;
+
+            if (withFrequency) {
+                blockMaxWeights[block] = 0;
+                blockAverageLengths[block] = Float.MAX_VALUE;
+            }
+        }
+    }
+
+    private static final class PostingIterator {
+
+        private final Postings postings;
+
+        private final ByteBuffer buffer;
+
+        private final double idf;
+
+        private int read;
+
+        private int doc = -1;
+
+        private int frequency;
+
+        PostingIterator(Postings postings, double idf) {
+            this.postings = postings;
+            this.buffer = ByteBuffer.wrap(postings.bytes, 0, postings.length);
+            this.idf = idf;
+        }
+
+        int next() {
+            if (read == postings.count)
+                return doc = NO_MORE_DOCS;
+
+            doc += Varints.getVarInt(buffer);
+
+            if (postings.withFrequency)
+                frequency = Varints.getVarInt(buffer);
+
+            read++;
+            return doc;
+        }
+
+        //The first doc from target on - blocks ending before the target are skipped without decoding them
+        int advance(int target) {
+            if (doc >= target)
+                return doc;
+
+            int block = read == 0 ? 0 : (read - 1) >>> BLOCK_SHIFT;
+            final int blocks = ((postings.count - 1) >>> BLOCK_SHIFT) + 1;
+
+            if (postings.blockLastDocs[block] < target) {
+                do {
+                    block++;
+                } while (block < blocks && postings.blockLastDocs[block] < target);
+
+                if (block == blocks) {
+                    read = postings.count;
+                    return doc = NO_MORE_DOCS;
+                }
+
+                buffer.position(postings.blockOffsets[block]);
+                doc = postings.blockLastDocs[block - 1];
+                read = block << BLOCK_SHIFT;
+            }
+
+            while (doc < target)
+                next();
+
+            return doc;
+        }
+
+        int blockLastDoc() {
+            return postings.blockLastDocs[(read - 1) >>> BLOCK_SHIFT];
+        }
+
+        //No bookmark of the current block can score more. A weight grows at most in proportion to the
+        //average length, so the bound still holds after the average grew.
+        double blockMaxScore(double averageLength) {
+            final int block = (read - 1) >>> BLOCK_SHIFT;
+            final double growth = Math.max(1, averageLength / postings.blockAverageLengths[block]);
+
+            return idf * postings.blockMaxWeights[block] * growth;
+        }
+    }
+
+    private static final class ScoredDoc implements Comparable<ScoredDoc> {
+
+        private final int doc;
+
+        private final double score;
+
+        ScoredDoc(int doc, double score) {
+            this.doc = doc;
+            this.score = score;
+        }
+
+        //The worst first - lower scores, and the older bookmark of equal scores
+        @Override
+        public int compareTo(ScoredDoc other) {
+            if (score != other.score)
+                return score < other.score ? -1 : 1;
+
+            return doc < other.doc ? -1 : (doc == other.doc ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.search;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+
+/**
+ * A bookmark found by a {@link BookmarkIndex} search, together with its relevance.
+ *
+ * @author Patrick Meier
+ */
+public final class SearchHit {
+
+    private final Bookmark bookmark;
+
+    private final double score;
+
+    SearchHit(Bookmark bookmark, double score) {
+        this.bookmark = bookmark;
+        this.score = score;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+        return "SearchHit{" +
+                "score=" + score +
+                ", bookmark=" + bookmark +
+                '}';
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public Bookmark getBookmark() {
+        return bookmark;
+    }
+
+    /**
+     * Gets the BM25 score - higher is more relevant. Only comparable with the scores of the same search.
+     *
+     * @return the score, 0 if the search had no words
+     */
+    public double getScore() {
+        return score;
+    }
+}
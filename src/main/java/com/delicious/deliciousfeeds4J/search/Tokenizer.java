@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.search;
+
+import java.util.Collection;
+
+/**
+ * Splits text into lowercase words of letters and digits. Everything else separates words, so
+ * {@code "Java's Virtual-Machine"} becomes {@code java}, {@code s}, {@code virtual} and {@code machine},
+ * of which the single letter is dropped.
+ *
+ * @author Patrick Meier
+ */
+final class Tokenizer {
+
+    private static final int MIN_LENGTH = 2;
+
+    //Longer words are hardly searched for - e.g. urls or hashes in a description
+    private static final int MAX_LENGTH = 40;
+
+    private Tokenizer() {
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Adds the words of the text to the given collection.
+     *
+     * @param text   the text, may be null
+     * @param tokens the collection to add the words to
+     * @return the number of words added
+     */
+    static int tokenize(String text, Collection<String> tokens) {
+        if (text == null)
+            return 0;
+
+        int added = 0;
+        int start = -1;
+
+        for (int i = 0; i <= text.length(); i++) {
+            final boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (wordChar == false && start >= 0) {
+                if (i - start >= MIN_LENGTH && i - start <= MAX_LENGTH && tokens.add(lowerCase(text, start, i)))
+                    added++;
+
+                start = -1;
+            }
+        }
+
+        return added;
+    }
+
+    //Independent of the default locale - e.g. "I" is not lowercased to a dotless i in Turkey
+    private static String lowerCase(String text, int start, int end) {
+        final char[] chars = new char[end - start];
+
+        for (int i = start; i < end; i++)
+            chars[i - start] = Character.toLowerCase(text.charAt(i));
+
+        return new String(chars);
+    }
+}
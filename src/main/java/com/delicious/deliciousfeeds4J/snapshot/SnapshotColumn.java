@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.snapshot;
+
+/**
+ * The columns of a snapshot file. Every row group stores its columns one after another, so reading a
+ * single column only touches the bytes of that column.
+ * <p/>
+ * Layout per row group with n rows:
+ * <ul>
+ * <li>{@link #USER}: n ints - index into the user dictionary, -1 for null</li>
+ * <li>{@link #TIMESTAMP}: n longs - epoch millis, {@link Long#MIN_VALUE} for null</li>
+ * <li>{@link #MD5}: n times 16 bytes - all zero for null</li>
+ * <li>{@link #URL}, {@link #TITLE}, {@link #DESCRIPTION}: null bitmap (longs), n + 1 int offsets, UTF-8 bytes</li>
+ * <li>{@link #TAGS}: null bitmap (longs), n + 1 int offsets, ints - indexes into the tag dictionary</li>
+ * </ul>
+ *
+ * @author Patrick Meier
+ */
+public enum SnapshotColumn {
+
+    USER,
+
+    TIMESTAMP,
+
+    MD5,
+
+    URL,
+
+    TITLE,
+
+    DESCRIPTION,
+
+    TAGS
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.snapshot;
+
+import java.nio.charset.Charset;
+
+/**
+ * Constants of the snapshot file format shared by {@link SnapshotWriter} and {@link SnapshotReader}.
+ * <p/>
+ * A file starts with the magic bytes "DF4S" and the format version, followed by the row groups (see
+ * {@link SnapshotColumn}). The footer holds the user and tag dictionaries and the offset and length of
+ * every column of every row group. The file ends with the offset of the footer and the magic bytes again.
+ *
+ * @author Patrick Meier
+ */
+final class SnapshotFormat {
+
+    static final byte[] MAGIC = {'D', 'F', '4', 'S'};
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = MAGIC.length + 4;
+
+    //Footer offset and magic
+    static final int TRAILER_SIZE = 8 + MAGIC.length;
+
+    static final int MD5_SIZE = 16;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private SnapshotFormat() {
+    }
+
+    static int bitmapLongs(int rows) {
+        return (rows + 63) >>> 6;
+    }
+}
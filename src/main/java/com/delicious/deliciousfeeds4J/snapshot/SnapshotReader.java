@@ -0,0 +1,508 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.snapshot;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.delicious.deliciousfeeds4J.snapshot.SnapshotFormat.*;
+
+/**
+ * Reads snapshot files written by {@link SnapshotWriter}. Only the footer is read on open - every column of
+ * a row group is memory-mapped on first access and read in place, so a scan over e.g. timestamps and md5s
+ * never touches the pages of the text columns.
+ * <p/>
+ * Instances are thread-safe for reading. The mapped columns stay valid after {@link #close()} until they
+ * are garbage collected.
+ *
+ * @author Patrick Meier
+ */
+public class SnapshotReader implements Closeable, Iterable<Bookmark> {
+
+    private static final int COLUMN_COUNT = SnapshotColumn.values().length;
+
+    private final RandomAccessFile file;
+
+    private final FileChannel channel;
+
+    private final String[] users;
+
+    private final String[] tags;
+
+    private final RowGroup[] rowGroups;
+
+    private final long rowCount;
+
+    private Map<String, Integer> userIds;
+
+    private Map<String, Integer> tagIds;
+
+    /**
+     * Opens a snapshot file.
+     *
+     * @param file the snapshot file
+     * @throws IllegalArgumentException if file is null
+     * @throws IOException              if the file can not be read or is no valid snapshot
+     */
+    public SnapshotReader(File file) throws IOException {
+        if (file == null)
+            throw new IllegalArgumentException("File must not be null!");
+
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+
+        try {
+            final long size = channel.size();
+
+            if (size < HEADER_SIZE + TRAILER_SIZE)
+                throw new StreamCorruptedException("File is too short for a snapshot: " + file);
+
+            final ByteBuffer header = read(0, HEADER_SIZE);
+            checkMagic(header);
+
+            final int version = header.getInt();
+            if (version != VERSION)
+                throw new StreamCorruptedException("Unsupported snapshot version: " + version);
+
+            final ByteBuffer trailer = read(size - TRAILER_SIZE, TRAILER_SIZE);
+            final long footerOffset = trailer.getLong();
+            checkMagic(trailer);
+
+            if (footerOffset < HEADER_SIZE || footerOffset > size - TRAILER_SIZE)
+                throw new StreamCorruptedException("Invalid footer offset: " + footerOffset);
+
+            final ByteBuffer footer = read(footerOffset, (int) (size - TRAILER_SIZE - footerOffset));
+
+            this.users = readStrings(footer);
+            this.tags = readStrings(footer);
+
+            this.rowGroups = new RowGroup[footer.getInt()];
+
+            long rows = 0;
+
+            for (int i = 0; i < rowGroups.length; i++) {
+                final int rowCount = footer.getInt();
+                final long[] columns = new long[COLUMN_COUNT * 2];
+
+                for (int j = 0; j < columns.length; j += 2) {
+                    columns[j] = footer.getLong();
+                    columns[j + 1] = footer.getLong();
+
+                    if (columns[j] < HEADER_SIZE || columns[j] + columns[j + 1] > footerOffset)
+                        throw new StreamCorruptedException("Column out of bounds in row group " + i);
+                }
+
+                rowGroups[i] = new RowGroup(rowCount, columns);
+                rows += rowCount;
+            }
+
+            this.rowCount = rows;
+        } catch (RuntimeException ex) {
+            this.file.close();
+            final StreamCorruptedException corrupted = new StreamCorruptedException("Invalid snapshot file: " + ex);
+            corrupted.initCause(ex);
+            throw corrupted;
+        } catch (IOException ex) {
+            this.file.close();
+            throw ex;
+        }
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets a row group.
+     *
+     * @param index the index of the row group
+     * @return the row group
+     * @throws IndexOutOfBoundsException if there is no such row group
+     */
+    public RowGroup rowGroup(int index) {
+        return rowGroups[index];
+    }
+
+    /**
+     * Gets the id of a user in the user dictionary - compare it with {@link RowGroup#userId(int)} to
+     * filter by user without decoding strings.
+     *
+     * @param user the user
+     * @return the id or -1 if the snapshot contains no bookmark of the user
+     */
+    public synchronized int userIdOf(String user) {
+        if (userIds == null)
+            userIds = index(users);
+
+        return idOf(userIds, user);
+    }
+
+    /**
+     * Gets the id of a tag in the tag dictionary - compare it with {@link RowGroup#tagId(int, int)}.
+     *
+     * @param tag the tag
+     * @return the id or -1 if the snapshot contains no bookmark with the tag
+     */
+    public synchronized int tagIdOf(String tag) {
+        if (tagIds == null)
+            tagIds = index(tags);
+
+        return idOf(tagIds, tag);
+    }
+
+    /**
+     * Gets a user of the user dictionary.
+     *
+     * @param id the id of the user
+     * @return the user
+     */
+    public String getUser(int id) {
+        return users[id];
+    }
+
+    /**
+     * Gets a tag of the tag dictionary.
+     *
+     * @param id the id of the tag
+     * @return the tag
+     */
+    public String getTag(int id) {
+        return tags[id];
+    }
+
+    /**
+     * Gets an iterator materializing every bookmark of the snapshot in order.
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<Bookmark> iterator() {
+        return new Iterator<Bookmark>() {
+
+            private int group;
+
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                while (group < rowGroups.length && row >= rowGroups[group].getRowCount()) {
+                    group++;
+                    row = 0;
+                }
+
+                return group < rowGroups.length;
+            }
+
+            @Override
+            public Bookmark next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                return rowGroups[group].toBookmark(row++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Unexpected end of snapshot file!");
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void checkMagic(ByteBuffer buffer) throws StreamCorruptedException {
+        for (byte value : MAGIC) {
+            if (buffer.get() != value)
+                throw new StreamCorruptedException("Not a snapshot file - invalid magic bytes!");
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer buffer) {
+        final String[] values = new String[buffer.getInt()];
+
+        for (int i = 0; i < values.length; i++) {
+            final byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            values[i] = new String(bytes, UTF8);
+        }
+
+        return values;
+    }
+
+    private static Map<String, Integer> index(String[] values) {
+        final Map<String, Integer> ids = new HashMap<String, Integer>(values.length * 2);
+
+        for (int i = 0; i < values.length; i++)
+            ids.put(values[i], i);
+
+        return ids;
+    }
+
+    private static int idOf(Map<String, Integer> ids, String value) {
+        final Integer id = ids.get(value);
+        return id != null ? id : -1;
+    }
+
+    private static boolean isNull(ByteBuffer column, int row) {
+        return (column.getLong((row >>> 6) * 8) & (1L << row)) != 0;
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public int getRowGroupCount() {
+        return rowGroups.length;
+    }
+
+    public int getUserCount() {
+        return users.length;
+    }
+
+    public int getTagCount() {
+        return tags.length;
+    }
+
+    /**
+     * A row group of the snapshot. All accessors read the mapped columns in place - only the string and
+     * bookmark accessors allocate.
+     */
+    public final class RowGroup {
+
+        private final int rowCount;
+
+        private final long[] columns;
+
+        //Mapped on first access - read without locking, as mapping a column twice does no harm
+        private final AtomicReferenceArray<ByteBuffer> mapped = new AtomicReferenceArray<ByteBuffer>(COLUMN_COUNT);
+
+        private RowGroup(int rowCount, long[] columns) {
+            this.rowCount = rowCount;
+            this.columns = columns;
+        }
+
+        //---------------------------------------------------------------------------
+        // Methods
+        //---------------------------------------------------------------------------
+
+        /**
+         * Gets the id of the user of a bookmark - see {@link SnapshotReader#getUser(int)}.
+         *
+         * @param row the row
+         * @return the id or -1 if the user is null
+         */
+        public int userId(int row) {
+            checkRow(row);
+            return column(SnapshotColumn.USER).getInt(row * 4);
+        }
+
+        public String user(int row) {
+            final int id = userId(row);
+            return id >= 0 ? users[id] : null;
+        }
+
+        /**
+         * Gets the timestamp of a bookmark.
+         *
+         * @param row the row
+         * @return the time in milliseconds or {@link Long#MIN_VALUE} if the date is null
+         */
+        public long timestamp(int row) {
+            checkRow(row);
+            return column(SnapshotColumn.TIMESTAMP).getLong(row * 8);
+        }
+
+        public UrlKey md5(int row) {
+            checkRow(row);
+
+            final ByteBuffer column = column(SnapshotColumn.MD5);
+            final long high = column.getLong(row * MD5_SIZE);
+            final long low = column.getLong(row * MD5_SIZE + 8);
+
+            return high != 0 || low != 0 ? new UrlKey(high, low) : null;
+        }
+
+        public String url(int row) {
+            return string(SnapshotColumn.URL, row);
+        }
+
+        public String title(int row) {
+            return string(SnapshotColumn.TITLE, row);
+        }
+
+        public String description(int row) {
+            return string(SnapshotColumn.DESCRIPTION, row);
+        }
+
+        /**
+         * Gets the number of tags of a bookmark.
+         *
+         * @param row the row
+         * @return the number of tags or -1 if the tags are null
+         */
+        public int tagCount(int row) {
+            checkRow(row);
+
+            final ByteBuffer column = column(SnapshotColumn.TAGS);
+
+            if (isNull(column, row))
+                return -1;
+
+            final int offsets = bitmapLongs(rowCount) * 8;
+            return column.getInt(offsets + (row + 1) * 4) - column.getInt(offsets + row * 4);
+        }
+
+        /**
+         * Gets the id of a tag of a bookmark - see {@link SnapshotReader#getTag(int)}.
+         *
+         * @param row   the row
+         * @param index the index of the tag, smaller than {@link #tagCount(int)}
+         * @return the id of the tag
+         */
+        public int tagId(int row, int index) {
+            final int count = tagCount(row);
+
+            if (index < 0 || index >= count)
+                throw new IndexOutOfBoundsException("Tag index: " + index + ", tag count: " + count);
+
+            final ByteBuffer column = column(SnapshotColumn.TAGS);
+            final int offsets = bitmapLongs(rowCount) * 8;
+            final int values = offsets + (rowCount + 1) * 4;
+
+            return column.getInt(values + (column.getInt(offsets + row * 4) + index) * 4);
+        }
+
+        public Set<String> tags(int row) {
+            final int count = tagCount(row);
+
+            if (count < 0)
+                return null;
+
+            final Set<String> result = new LinkedHashSet<String>(count * 2);
+
+            for (int i = 0; i < count; i++)
+                result.add(tags[tagId(row, i)]);
+
+            return result;
+        }
+
+        /**
+         * Materializes a bookmark.
+         *
+         * @param row the row
+         * @return the bookmark
+         */
+        public Bookmark toBookmark(int row) {
+            final Bookmark bookmark = new Bookmark();
+
+            bookmark.setUser(user(row));
+            bookmark.setUrl(url(row));
+            bookmark.setTitle(title(row));
+            bookmark.setDescription(description(row));
+            bookmark.setTags(tags(row));
+
+            final long timestamp = timestamp(row);
+            if (timestamp != Long.MIN_VALUE)
+                bookmark.setLastUpdatedDate(new Date(timestamp));
+
+            final UrlKey md5 = md5(row);
+            if (md5 != null)
+                bookmark.setMd5(md5.toHex());
+
+            return bookmark;
+        }
+
+        private String string(SnapshotColumn type, int row) {
+            checkRow(row);
+
+            final ByteBuffer column = column(type);
+
+            if (isNull(column, row))
+                return null;
+
+            final int offsets = bitmapLongs(rowCount) * 8;
+            final int values = offsets + (rowCount + 1) * 4;
+
+            final int start = column.getInt(offsets + row * 4);
+            final int length = column.getInt(offsets + (row + 1) * 4) - start;
+
+            final byte[] bytes = new byte[length];
+            final ByteBuffer view = column.duplicate();
+            view.position(values + start);
+            view.get(bytes);
+
+            return new String(bytes, UTF8);
+        }
+
+        private void checkRow(int row) {
+            if (row < 0 || row >= rowCount)
+                throw new IndexOutOfBoundsException("Row: " + row + ", row count: " + rowCount);
+        }
+
+        private ByteBuffer column(SnapshotColumn type) {
+            final int index = type.ordinal();
+
+            final ByteBuffer existing = mapped.get(index);
+
+            if (existing != null)
+                return existing;
+
+            try {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, columns[index * 2], columns[index * 2 + 1]);
+
+                //Keep the buffer of a thread which was faster
+                return mapped.compareAndSet(index, null, buffer) ? buffer : mapped.get(index);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Could not map column " + type + ": " + ex.getMessage(), ex);
+            }
+        }
+
+        //---------------------------------------------------------------------------
+        // Getters & Setters
+        //---------------------------------------------------------------------------
+
+        public int getRowCount() {
+            return rowCount;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.snapshot;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+import static com.delicious.deliciousfeeds4J.snapshot.SnapshotFormat.*;
+
+/**
+ * Writes bookmarks to a columnar snapshot file which can be read with {@link SnapshotReader}. Bookmarks
+ * are buffered in memory until a row group is full, then every column of the group is written as one
+ * contiguous block. Users and tags are dictionary-encoded, the dictionaries are written on {@link #close()}.
+ * <p/>
+ * Md5 hashes are stored as 16 bytes - values which are no valid hex string are stored as null.
+ * <p/>
+ * This class is not thread-safe.
+ *
+ * @author Patrick Meier
+ */
+public class SnapshotWriter implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotWriter.class);
+
+    public static final int DEFAULT_ROW_GROUP_SIZE = 64 * 1024;
+
+    private final FileOutputStream output;
+
+    private final FileChannel channel;
+
+    private final int rowGroupSize;
+
+    private final Map<String, Integer> userIds = new HashMap<String, Integer>();
+
+    private final List<String> users = new ArrayList<String>();
+
+    private final Map<String, Integer> tagIds = new HashMap<String, Integer>();
+
+    private final List<String> tags = new ArrayList<String>();
+
+    //Offsets and lengths of the columns of every written row group
+    private final List<long[]> rowGroups = new ArrayList<long[]>();
+
+    private final List<Integer> rowGroupSizes = new ArrayList<Integer>();
+
+    //Columns of the current row group
+    private int rows;
+
+    private int[] userColumn;
+
+    private long[] timestampColumn;
+
+    private long[] md5Column;
+
+    private final StringColumn urlColumn;
+
+    private final StringColumn titleColumn;
+
+    private final StringColumn descriptionColumn;
+
+    private final long[] tagNulls;
+
+    private final int[] tagOffsets;
+
+    private int[] tagColumn = new int[1024];
+
+    private long rowCount;
+
+    private boolean closed;
+
+    /**
+     * Creates a new instance with the default row group size. An existing file is overwritten.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file can not be created
+     */
+    public SnapshotWriter(File file) throws IOException {
+        this(file, DEFAULT_ROW_GROUP_SIZE);
+    }
+
+    /**
+     * Creates a new instance. An existing file is overwritten.
+     *
+     * @param file         the file to write to
+     * @param rowGroupSize how many bookmarks are buffered and written as one row group
+     * @throws IllegalArgumentException if file is null or rowGroupSize is smaller than 1
+     * @throws IOException              if the file can not be created
+     */
+    public SnapshotWriter(File file, int rowGroupSize) throws IOException {
+        if (file == null)
+            throw new IllegalArgumentException("File must not be null!");
+
+        if (rowGroupSize < 1)
+            throw new IllegalArgumentException("RowGroupSize has to be at least 1!");
+
+        this.rowGroupSize = rowGroupSize;
+
+        this.userColumn = new int[rowGroupSize];
+        this.timestampColumn = new long[rowGroupSize];
+        this.md5Column = new long[rowGroupSize * 2];
+        this.urlColumn = new StringColumn(rowGroupSize);
+        this.titleColumn = new StringColumn(rowGroupSize);
+        this.descriptionColumn = new StringColumn(rowGroupSize);
+        this.tagNulls = new long[bitmapLongs(rowGroupSize)];
+        this.tagOffsets = new int[rowGroupSize + 1];
+
+        this.output = new FileOutputStream(file);
+        this.channel = output.getChannel();
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+
+        writeFully(header);
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Adds a bookmark to the snapshot.
+     *
+     * @param bookmark the bookmark
+     * @throws IllegalArgumentException if bookmark is null
+     * @throws IOException              if a full row group can not be written
+     */
+    public void add(Bookmark bookmark) throws IOException {
+        if (bookmark == null)
+            throw new IllegalArgumentException("Bookmark must not be null!");
+
+        if (closed)
+            throw new IOException("Writer is already closed!");
+
+        userColumn[rows] = bookmark.getUser() != null ? idOf(bookmark.getUser(), userIds, users) : -1;
+        timestampColumn[rows] = bookmark.getLastUpdatedDate() != null ? bookmark.getLastUpdatedDate().getTime() : Long.MIN_VALUE;
+
+        final UrlKey md5 = parseMd5(bookmark.getMd5());
+        md5Column[rows * 2] = md5 != null ? md5.getHigh() : 0;
+        md5Column[rows * 2 + 1] = md5 != null ? md5.getLow() : 0;
+
+        urlColumn.add(rows, bookmark.getUrl());
+        titleColumn.add(rows, bookmark.getTitle());
+        descriptionColumn.add(rows, bookmark.getDescription());
+
+        addTags(bookmark.getTags());
+
+        rows++;
+        rowCount++;
+
+        if (rows == rowGroupSize)
+            flushRowGroup();
+    }
+
+    /**
+     * Adds all given bookmarks to the snapshot - e.g. a page returned by {@code DeliciousFeeds}.
+     *
+     * @param bookmarks the bookmarks, null is treated as empty
+     * @throws IOException if a full row group can not be written
+     */
+    public void addAll(Iterable<Bookmark> bookmarks) throws IOException {
+        if (bookmarks != null)
+            addAll(bookmarks.iterator());
+    }
+
+    /**
+     * Adds all bookmarks of the given iterator to the snapshot - e.g. a lazily enriched or merged stream.
+     * Only one row group is held in memory at a time.
+     *
+     * @param bookmarks the bookmarks
+     * @throws IllegalArgumentException if bookmarks is null
+     * @throws IOException              if a full row group can not be written
+     */
+    public void addAll(Iterator<Bookmark> bookmarks) throws IOException {
+        if (bookmarks == null)
+            throw new IllegalArgumentException("Bookmarks must not be null!");
+
+        while (bookmarks.hasNext())
+            add(bookmarks.next());
+    }
+
+    /**
+     * Writes the last row group and the footer and closes the file.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+
+        try {
+            if (rows > 0)
+                flushRowGroup();
+
+            writeFooter();
+
+            logger.info("Successfully wrote snapshot with {} bookmarks in {} row groups!", rowCount, rowGroups.size());
+        } finally {
+            output.close();
+        }
+    }
+
+    private static int idOf(String value, Map<String, Integer> ids, List<String> values) {
+        final Integer id = ids.get(value);
+
+        if (id != null)
+            return id;
+
+        ids.put(value, values.size());
+        values.add(value);
+
+        return values.size() - 1;
+    }
+
+    private static UrlKey parseMd5(String md5) {
+        final UrlKey key = UrlKey.tryFromHex(md5);
+
+        if (key == null && md5 != null)
+            logger.debug("Invalid md5 is stored as null: {}", md5);
+
+        return key;
+    }
+
+    private void addTags(Set<String> bookmarkTags) {
+        int offset = tagOffsets[rows];
+
+        if (bookmarkTags == null) {
+            tagNulls[rows >>> 6] |= 1L << rows;
+        } else {
+            if (tagColumn.length < offset + bookmarkTags.size())
+                tagColumn = Arrays.copyOf(tagColumn, Math.max(tagColumn.length * 2, offset + bookmarkTags.size()));
+
+            for (String tag : bookmarkTags)
+                tagColumn[offset++] = idOf(tag, tagIds, tags);
+        }
+
+        tagOffsets[rows + 1] = offset;
+    }
+
+    private void flushRowGroup() throws IOException {
+        final long[] columns = new long[SnapshotColumn.values().length * 2];
+
+        writeColumn(columns, SnapshotColumn.USER, intsToBuffer(userColumn, rows));
+
+        final ByteBuffer timestamps = ByteBuffer.allocate(rows * 8);
+        timestamps.asLongBuffer().put(timestampColumn, 0, rows);
+        writeColumn(columns, SnapshotColumn.TIMESTAMP, timestamps);
+
+        final ByteBuffer md5s = ByteBuffer.allocate(rows * MD5_SIZE);
+        md5s.asLongBuffer().put(md5Column, 0, rows * 2);
+        writeColumn(columns, SnapshotColumn.MD5, md5s);
+
+        writeColumn(columns, SnapshotColumn.URL, urlColumn.toBuffer(rows));
+        writeColumn(columns, SnapshotColumn.TITLE, titleColumn.toBuffer(rows));
+        writeColumn(columns, SnapshotColumn.DESCRIPTION, descriptionColumn.toBuffer(rows));
+
+        final int tagCount = tagOffsets[rows];
+        final int bitmapLongs = bitmapLongs(rows);
+
+        final ByteBuffer tagBuffer = ByteBuffer.allocate(bitmapLongs * 8 + (rows + 1) * 4 + tagCount * 4);
+        tagBuffer.asLongBuffer().put(tagNulls, 0, bitmapLongs);
+        tagBuffer.position(bitmapLongs * 8);
+        tagBuffer.asIntBuffer().put(tagOffsets, 0, rows + 1).put(tagColumn, 0, tagCount);
+        tagBuffer.position(0);
+        writeColumn(columns, SnapshotColumn.TAGS, tagBuffer);
+
+        rowGroups.add(columns);
+        rowGroupSizes.add(rows);
+
+        logger.debug("Wrote row group {} with {} bookmarks.", rowGroups.size(), rows);
+
+        //Reset for the next row group
+        rows = 0;
+        urlColumn.clear();
+        titleColumn.clear();
+        descriptionColumn.clear();
+        Arrays.fill(tagNulls, 0);
+        tagOffsets[0] = 0;
+    }
+
+    private void writeColumn(long[] columns, SnapshotColumn column, ByteBuffer data) throws IOException {
+        columns[column.ordinal() * 2] = channel.position();
+        columns[column.ordinal() * 2 + 1] = data.remaining();
+
+        writeFully(data);
+    }
+
+    private void writeFooter() throws IOException {
+        final long footerOffset = channel.position();
+
+        final List<byte[]> encodedUsers = encode(users);
+        final List<byte[]> encodedTags = encode(tags);
+
+        int size = 12 + rowGroups.size() * (4 + SnapshotColumn.values().length * 16) + TRAILER_SIZE;
+
+        for (byte[] bytes : encodedUsers)
+            size += 4 + bytes.length;
+
+        for (byte[] bytes : encodedTags)
+            size += 4 + bytes.length;
+
+        final ByteBuffer footer = ByteBuffer.allocate(size);
+
+        putStrings(footer, encodedUsers);
+        putStrings(footer, encodedTags);
+
+        footer.putInt(rowGroups.size());
+
+        for (int i = 0; i < rowGroups.size(); i++) {
+            footer.putInt(rowGroupSizes.get(i));
+
+            for (long value : rowGroups.get(i))
+                footer.putLong(value);
+        }
+
+        footer.putLong(footerOffset);
+        footer.put(MAGIC);
+        footer.flip();
+
+        writeFully(footer);
+    }
+
+    private static List<byte[]> encode(List<String> values) {
+        final List<byte[]> encoded = new ArrayList<byte[]>(values.size());
+
+        for (String value : values)
+            encoded.add(value.getBytes(UTF8));
+
+        return encoded;
+    }
+
+    private static void putStrings(ByteBuffer buffer, List<byte[]> values) {
+        buffer.putInt(values.size());
+
+        for (byte[] value : values) {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+    }
+
+    private static ByteBuffer intsToBuffer(int[] values, int length) {
+        final ByteBuffer buffer = ByteBuffer.allocate(length * 4);
+        buffer.asIntBuffer().put(values, 0, length);
+        return buffer;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    //A string column of the current row group: null bitmap, offsets and UTF-8 bytes
+    private static final class StringColumn {
+
+        private final long[] nulls;
+
+        private final int[] offsets;
+
+        private byte[] bytes = new byte[4096];
+
+        private StringColumn(int rowGroupSize) {
+            this.nulls = new long[bitmapLongs(rowGroupSize)];
+            this.offsets = new int[rowGroupSize + 1];
+        }
+
+        private void add(int row, String value) {
+            int offset = offsets[row];
+
+            if (value == null) {
+                nulls[row >>> 6] |= 1L << row;
+            } else {
+                final byte[] encoded = value.getBytes(UTF8);
+
+                if (bytes.length < offset + encoded.length)
+                    bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, offset + encoded.length));
+
+                System.arraycopy(encoded, 0, bytes, offset, encoded.length);
+                offset += encoded.length;
+            }
+
+            offsets[row + 1] = offset;
+        }
+
+        private ByteBuffer toBuffer(int rows) {
+            final int bitmapLongs = bitmapLongs(rows);
+            final int length = offsets[rows];
+
+            final ByteBuffer buffer = ByteBuffer.allocate(bitmapLongs * 8 + (rows + 1) * 4 + length);
+            buffer.asLongBuffer().put(nulls, 0, bitmapLongs);
+            buffer.position(bitmapLongs * 8);
+            buffer.asIntBuffer().put(offsets, 0, rows + 1);
+            buffer.position(bitmapLongs * 8 + (rows + 1) * 4);
+            buffer.put(bytes, 0, length);
+            buffer.flip();
+
+            return buffer;
+        }
+
+        private void clear() {
+            Arrays.fill(nulls, 0);
+            offsets[0] = 0;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.timeline;
+
+import com.delicious.deliciousfeeds4J.DeliciousFeeds;
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.exceptions.DeliciousFeedsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * A combined timeline of several users: their bookmarks merged by {@code lastUpdatedDate}, newest first,
+ * and deduplicated by md5 (a url bookmarked by several users only shows up once - with the newest bookmark).
+ * <p/>
+ * The feeds are fetched lazily. The first call fetches a small page of every user (in parallel, see
+ * {@link DeliciousFeeds#findBookmarksByUsers(int, java.util.Collection)}), and the pages are k-way merged
+ * with a heap. Once a page is used up the user stays in the heap with the timestamp of its last bookmark
+ * as an upper bound - its feed is only fetched again (with a bigger count, skipping what was already
+ * consumed) when that bound is the newest in the heap. So the first page of a big timeline only costs one
+ * small request per user plus a few refetches for the most active users.
+ * <p/>
+ * Feeds have to be ordered newest first, as delicious delivers them. This class is not thread-safe.
+ *
+ * @author Patrick Meier
+ */
+public class MergedTimeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(MergedTimeline.class);
+
+    public static final int DEFAULT_INITIAL_COUNT = 10;
+
+    //The maximum count of the feeds - a source is exhausted once a page with this count is used up
+    private static final int MAX_COUNT = 100;
+
+    private static final int COUNT_GROWTH_FACTOR = 4;
+
+    private final DeliciousFeeds deliciousFeeds;
+
+    private final List<String> usernames;
+
+    private int initialCount = DEFAULT_INITIAL_COUNT;
+
+    //Null until the first bookmark is needed
+    private PriorityQueue<Source> heap;
+
+    private final Set<String> seenMd5s = new HashSet<String>();
+
+    private Bookmark nextBookmark;
+
+    private int requestCount;
+
+    /**
+     * Creates a new instance. Nothing is fetched yet.
+     *
+     * @param deliciousFeeds the DeliciousFeeds to fetch the feeds with
+     * @param usernames      the users of the timeline
+     * @throws IllegalArgumentException if deliciousFeeds is null or usernames are null or empty
+     */
+    public MergedTimeline(DeliciousFeeds deliciousFeeds, Collection<String> usernames) {
+        if (deliciousFeeds == null)
+            throw new IllegalArgumentException("DeliciousFeeds must not be null!");
+
+        if (usernames == null || usernames.isEmpty())
+            throw new IllegalArgumentException("Usernames must not be null or empty!");
+
+        this.deliciousFeeds = deliciousFeeds;
+        this.usernames = new ArrayList<String>(new LinkedHashSet<String>(usernames));
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets whether there are more bookmarks in the timeline. May fetch feeds.
+     *
+     * @return true if there is another bookmark
+     * @throws DeliciousFeedsException if fetching a feed fails
+     */
+    public boolean hasNext() throws DeliciousFeedsException {
+        if (nextBookmark == null)
+            nextBookmark = advance();
+
+        return nextBookmark != null;
+    }
+
+    /**
+     * Gets the next (older) bookmark of the timeline. May fetch feeds.
+     *
+     * @return the next bookmark
+     * @throws NoSuchElementException  if there are no more bookmarks
+     * @throws DeliciousFeedsException if fetching a feed fails
+     */
+    public Bookmark next() throws DeliciousFeedsException {
+        if (hasNext() == false)
+            throw new NoSuchElementException();
+
+        final Bookmark bookmark = nextBookmark;
+        nextBookmark = null;
+
+        return bookmark;
+    }
+
+    /**
+     * Gets the next bookmarks of the timeline - e.g. a page to render. May fetch feeds.
+     *
+     * @param count the maximum number of bookmarks
+     * @return up to count bookmarks, empty if there are no more
+     * @throws IllegalArgumentException if count is smaller than 1
+     * @throws DeliciousFeedsException  if fetching a feed fails
+     */
+    public List<Bookmark> next(int count) throws DeliciousFeedsException {
+        if (count < 1)
+            throw new IllegalArgumentException("Count has to be at least 1!");
+
+        final List<Bookmark> bookmarks = new ArrayList<Bookmark>(Math.min(count, MAX_COUNT));
+
+        while (bookmarks.size() < count && hasNext())
+            bookmarks.add(next());
+
+        return bookmarks;
+    }
+
+    private Bookmark advance() throws DeliciousFeedsException {
+        if (heap == null)
+            start();
+
+        while (heap.isEmpty() == false) {
+            final Source source = heap.poll();
+
+            //Only an upper bound so far - fetch the real head and compare again
+            if (source.page == null) {
+                if (refill(source))
+                    heap.add(source);
+
+                continue;
+            }
+
+            final Bookmark bookmark = source.page.get(source.position++);
+            source.consumed++;
+            source.lastMd5 = bookmark.getMd5();
+
+            if (source.position < source.page.size()) {
+                source.headTime = timeOf(source.page.get(source.position));
+                heap.add(source);
+            } else if (source.page.size() == source.requestedCount && source.requestedCount < MAX_COUNT) {
+                //There may be more - keep the timestamp of the last bookmark as the bound
+                source.page = null;
+                source.headTime = timeOf(bookmark);
+                heap.add(source);
+            }
+
+            final String md5 = bookmark.getMd5();
+
+            if (md5 == null || seenMd5s.add(md5))
+                return bookmark;
+        }
+
+        return null;
+    }
+
+    private void start() throws DeliciousFeedsException {
+        logger.info("Starting merged timeline for {} users...", usernames.size());
+
+        heap = new PriorityQueue<Source>(usernames.size());
+
+        final Map<String, List<Bookmark>> pages = deliciousFeeds.findBookmarksByUsers(initialCount, usernames);
+        requestCount += pages.size();
+
+        for (Map.Entry<String, List<Bookmark>> entry : pages.entrySet()) {
+            final List<Bookmark> page = entry.getValue();
+
+            if (page == null || page.isEmpty())
+                continue;
+
+            final Source source = new Source(entry.getKey());
+            source.requestedCount = initialCount;
+            source.page = page;
+            source.headTime = timeOf(page.get(0));
+
+            heap.add(source);
+        }
+    }
+
+    private boolean refill(Source source) throws DeliciousFeedsException {
+        while (source.requestedCount < MAX_COUNT) {
+            source.requestedCount = Math.min(source.requestedCount * COUNT_GROWTH_FACTOR, MAX_COUNT);
+
+            logger.debug("Refetching feed of user '{}' with count {}...", source.username, source.requestedCount);
+
+            final List<Bookmark> page = deliciousFeeds.findBookmarksByUser(source.requestedCount, source.username);
+            requestCount++;
+
+            if (page == null)
+                return false;
+
+            final int position = positionAfter(page, source);
+
+            if (position < page.size()) {
+                source.page = page;
+                source.position = position;
+                source.headTime = timeOf(page.get(position));
+                return true;
+            }
+
+            //Nothing new in this page - only worth another try if the page was full
+            if (page.size() < source.requestedCount)
+                return false;
+        }
+
+        return false;
+    }
+
+    private static int positionAfter(List<Bookmark> page, Source source) {
+
+        //New bookmarks may have been added on top meanwhile, so look for the last consumed one first
+        if (source.lastMd5 != null) {
+            for (int i = 0; i < page.size(); i++)
+                if (source.lastMd5.equals(page.get(i).getMd5()))
+                    return i + 1;
+        }
+
+        return source.consumed;
+    }
+
+    private static long timeOf(Bookmark bookmark) {
+        return bookmark.getLastUpdatedDate() != null ? bookmark.getLastUpdatedDate().getTime() : Long.MIN_VALUE;
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets the number of feed requests made so far.
+     *
+     * @return the number of requests
+     */
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Gets the count used for the first request of every user.
+     *
+     * @return the initial count
+     */
+    public int getInitialCount() {
+        return initialCount;
+    }
+
+    /**
+     * Sets the count used for the first request of every user. Smaller values need less memory and
+     * bandwidth up front but lead to more refetches for active users. Must be set before the first
+     * bookmark is fetched. By default this is 10.
+     *
+     * @param initialCount the initial count - from 1 to 100
+     * @throws IllegalArgumentException if initialCount does not match borders
+     */
+    public void setInitialCount(int initialCount) {
+        if (initialCount <= 0 || initialCount > MAX_COUNT)
+            throw new IllegalArgumentException("InitialCount has to be a value from minimum 1 to maximum 100!");
+
+        this.initialCount = initialCount;
+    }
+
+    private static final class Source implements Comparable<Source> {
+
+        private final String username;
+
+        private List<Bookmark> page;
+
+        private int position;
+
+        private int consumed;
+
+        private int requestedCount;
+
+        private String lastMd5;
+
+        //Timestamp of the head - or an upper bound of it, if page is null
+        private long headTime;
+
+        private Source(String username) {
+            this.username = username;
+        }
+
+        @Override
+        public int compareTo(Source other) {
+
+            //Newest first
+            if (headTime != other.headTime)
+                return headTime > other.headTime ? -1 : 1;
+
+            return username.compareTo(other.username);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.trending;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-size, thread-safe count-min sketch: estimates how often a key was added with a few counters
+ * instead of a map entry per key. The counters are updated with atomic adds, so any number of threads can
+ * add and estimate at the same time without locking.
+ * <p/>
+ * Estimates are never too low, and too high by at most {@code e / width} of all added counts with a
+ * probability of {@code 1 - e^-depth}. Keys are given as two 64 bit hashes, from which the counter of
+ * every row is derived with double hashing.
+ *
+ * @author Patrick Meier
+ */
+public class CountMinSketch {
+
+    private final int depth;
+
+    private final int mask;
+
+    //All rows one after another
+    private final AtomicIntegerArray counters;
+
+    private final AtomicLong total = new AtomicLong();
+
+    /**
+     * Creates a new sketch.
+     *
+     * @param depth the number of rows - from 1 to 16
+     * @param width the number of counters per row, rounded up to a power of two - from 1 to 2^24
+     * @throws IllegalArgumentException if depth or width do not match borders
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > 16)
+            throw new IllegalArgumentException("Depth has to be a value from 1 to 16!");
+
+        if (width < 1 || width > (1 << 24))
+            throw new IllegalArgumentException("Width has to be a value from 1 to 16777216!");
+
+        int size = 1;
+        while (size < width)
+            size <<= 1;
+
+        this.depth = depth;
+        this.mask = size - 1;
+        this.counters = new AtomicIntegerArray(depth * size);
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Adds a key.
+     *
+     * @param hash1 the first hash of the key
+     * @param hash2 the second, independent hash of the key
+     * @param count how often the key is added
+     * @throws IllegalArgumentException if count is negative
+     */
+    public void add(long hash1, long hash2, int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("Count must not be negative!");
+
+        final long step = hash2 | 1;
+
+        for (int row = 0; row < depth; row++)
+            counters.getAndAdd(index(row, hash1 + row * step), count);
+
+        total.addAndGet(count);
+    }
+
+    /**
+     * Estimates how often a key was added.
+     *
+     * @param hash1 the first hash of the key
+     * @param hash2 the second, independent hash of the key
+     * @return the estimated count, never lower than the real one
+     */
+    public long estimate(long hash1, long hash2) {
+        final long step = hash2 | 1;
+
+        long min = Long.MAX_VALUE;
+
+        for (int row = 0; row < depth; row++)
+            min = Math.min(min, counters.get(index(row, hash1 + row * step)) & 0xffffffffL);
+
+        return min;
+    }
+
+    //Adds the counters of the key to the sums per row - the minimum of the sums estimates several sketches
+    void addTo(long[] rowSums, long hash1, long hash2) {
+        final long step = hash2 | 1;
+
+        for (int row = 0; row < depth; row++)
+            rowSums[row] += counters.get(index(row, hash1 + row * step)) & 0xffffffffL;
+    }
+
+    /**
+     * Adds all counts of another sketch, e.g. of another node. Both sketches must have the same size.
+     *
+     * @param other the other sketch
+     * @throws IllegalArgumentException if the sketches do not have the same size
+     */
+    public void merge(CountMinSketch other) {
+        if (!isCompatible(other))
+            throw new IllegalArgumentException("Sketches with different sizes can not be merged!");
+
+        for (int i = 0; i < counters.length(); i++) {
+            final int count = other.counters.get(i);
+
+            if (count != 0)
+                counters.getAndAdd(i, count);
+        }
+
+        total.addAndGet(other.getTotal());
+    }
+
+    /**
+     * Checks if another sketch has the same size, so it can be merged.
+     *
+     * @param other the other sketch
+     * @return true if both sketches are compatible
+     */
+    public boolean isCompatible(CountMinSketch other) {
+        return other != null && other.depth == depth && other.mask == mask;
+    }
+
+    /**
+     * Resets all counters. Counts added at the same time may be lost.
+     */
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++)
+            counters.set(i, 0);
+
+        total.set(0);
+    }
+
+    //The high bits of the hash are mixed best
+    private int index(int row, long hash) {
+        return row * (mask + 1) + ((int) (hash >>> 32) & mask);
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return mask + 1;
+    }
+
+    /**
+     * Gets the sum of all added counts.
+     *
+     * @return the total count
+     */
+    public long getTotal() {
+        return total.get();
+    }
+}
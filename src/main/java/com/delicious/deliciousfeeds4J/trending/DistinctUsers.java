@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.trending;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.codec.Hashes;
+import com.delicious.deliciousfeeds4J.reactive.ItemTransformer;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts the distinct users who bookmarked a url (by md5) or used a tag, with a {@link HyperLogLog} per url
+ * and per tag instead of a set of user names. Urls and tags seen by a few users take a few bytes, and no
+ * sketch takes more than about 3 KB with the default precision, no matter how many users there are.
+ * <p/>
+ * Keep one instance per node and time window (e.g. per day) and {@link #merge(DistinctUsers)} them to count
+ * the users of all nodes or of a longer period - a user counted in several of them is still counted once.
+ * Instances can be saved and sent to other nodes with {@link #writeTo(OutputStream)}. This class is
+ * thread-safe: updates of different urls and tags rarely wait for each other.
+ *
+ * @author Patrick Meier
+ */
+public class DistinctUsers implements ItemTransformer<Bookmark> {
+
+    private static final byte[] MAGIC = {'D', 'F', '4', 'H'};
+
+    private static final int VERSION = 1;
+
+    //The sketches are guarded by one of these locks, chosen by the hash of the url or tag
+    private static final int LOCK_STRIPES = 64;
+
+    private final int precision;
+
+    private final ConcurrentMap<UrlKey, HyperLogLog> urls = new ConcurrentHashMap<UrlKey, HyperLogLog>();
+
+    private final ConcurrentMap<String, HyperLogLog> tags = new ConcurrentHashMap<String, HyperLogLog>();
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    /**
+     * Creates a new instance with sketches of the default precision of 12 - a standard error of 1.6%.
+     */
+    public DistinctUsers() {
+        this(HyperLogLog.DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param precision the precision of the sketches - from 4 to 18
+     * @throws IllegalArgumentException if precision does not match borders
+     */
+    public DistinctUsers(int precision) {
+        if (precision < 4 || precision > 18)
+            throw new IllegalArgumentException("Precision has to be a value from 4 to 18!");
+
+        this.precision = precision;
+
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            locks[i] = new ReentrantLock();
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Counts the user of a bookmark for its url and its tags. Bookmarks without a user are ignored,
+     * bookmarks without a valid md5 only count for their tags.
+     *
+     * @param bookmark the bookmark
+     * @throws IllegalArgumentException if bookmark is null
+     */
+    public void record(Bookmark bookmark) {
+        if (bookmark == null)
+            throw new IllegalArgumentException("Bookmark must not be null!");
+
+        final String user = bookmark.getUser();
+
+        if (user == null || user.length() == 0)
+            return;
+
+        final long userHash = Hashes.hash(user);
+        final UrlKey urlKey = UrlKey.tryFromHex(bookmark.getMd5());
+
+        if (urlKey != null)
+            add(urls, urlKey, userHash);
+
+        if (bookmark.getTags() != null) {
+            for (String tag : bookmark.getTags()) {
+                if (tag != null && tag.length() > 0)
+                    add(tags, tag, userHash);
+            }
+        }
+    }
+
+    /**
+     * Counts the users of all bookmarks.
+     *
+     * @param bookmarks the bookmarks, may be null
+     */
+    public void recordAll(Collection<Bookmark> bookmarks) {
+        if (bookmarks == null)
+            return;
+
+        for (Bookmark bookmark : bookmarks) {
+            if (bookmark != null)
+                record(bookmark);
+        }
+    }
+
+    /**
+     * Counts a bookmark of a publisher and passes it on unchanged.
+     *
+     * @param bookmark the bookmark
+     * @return the given bookmark
+     */
+    @Override
+    public Bookmark transform(Bookmark bookmark) {
+        record(bookmark);
+        return bookmark;
+    }
+
+    /**
+     * Estimates how many distinct users bookmarked a url.
+     *
+     * @param urlKey the md5 of the url
+     * @return the estimated number of users, 0 if the url was never seen
+     * @throws IllegalArgumentException if urlKey is null
+     */
+    public long estimateUsersByUrl(UrlKey urlKey) {
+        if (urlKey == null)
+            throw new IllegalArgumentException("UrlKey must not be null!");
+
+        return estimate(urls, urlKey);
+    }
+
+    /**
+     * Estimates how many distinct users used a tag.
+     *
+     * @param tag the tag
+     * @return the estimated number of users, 0 if the tag was never seen
+     * @throws IllegalArgumentException if tag is null or empty
+     */
+    public long estimateUsersByTag(String tag) {
+        if (tag == null || tag.length() == 0)
+            throw new IllegalArgumentException("Tag must not be null or empty!");
+
+        return estimate(tags, tag);
+    }
+
+    /**
+     * Gets a copy of the sketch of a url, e.g. to merge it with sketches from elsewhere.
+     *
+     * @param urlKey the md5 of the url
+     * @return the copy or null if the url was never seen
+     */
+    public HyperLogLog getUrlSketch(UrlKey urlKey) {
+        return copyOf(urls, urlKey);
+    }
+
+    /**
+     * Gets a copy of the sketch of a tag, e.g. to merge it with sketches from elsewhere.
+     *
+     * @param tag the tag
+     * @return the copy or null if the tag was never seen
+     */
+    public HyperLogLog getTagSketch(String tag) {
+        return copyOf(tags, tag);
+    }
+
+    /**
+     * Adds the users of another instance, e.g. of another node or time window. Both must have the same
+     * precision.
+     *
+     * @param other the other instance
+     * @throws IllegalArgumentException if the other instance has another precision
+     */
+    public void merge(DistinctUsers other) {
+        if (other == null || other.precision != precision)
+            throw new IllegalArgumentException("Instances with different precisions can not be merged!");
+
+        mergeAll(urls, other, other.urls);
+        mergeAll(tags, other, other.tags);
+    }
+
+    /**
+     * Writes all sketches to a stream. Concurrent updates may or may not be included.
+     *
+     * @param output the stream - it is not closed
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        if (output == null)
+            throw new IllegalArgumentException("Output must not be null!");
+
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output, 64 * 1024));
+
+        data.write(MAGIC);
+        data.writeInt(VERSION);
+        data.writeByte(precision);
+
+        //The counts have to match the sketches written, so new urls and tags must not get in between
+        final Map<UrlKey, HyperLogLog> urlSketches = snapshotOf(urls);
+        final Map<String, HyperLogLog> tagSketches = snapshotOf(tags);
+
+        data.writeInt(urlSketches.size());
+        for (Map.Entry<UrlKey, HyperLogLog> entry : urlSketches.entrySet()) {
+            data.writeLong(entry.getKey().getHigh());
+            data.writeLong(entry.getKey().getLow());
+            entry.getValue().writeTo(data);
+        }
+
+        data.writeInt(tagSketches.size());
+        for (Map.Entry<String, HyperLogLog> entry : tagSketches.entrySet()) {
+            data.writeUTF(entry.getKey());
+            entry.getValue().writeTo(data);
+        }
+
+        data.flush();
+    }
+
+    /**
+     * Reads an instance written with {@link #writeTo(OutputStream)}.
+     *
+     * @param input the stream - it is not closed
+     * @return the instance
+     * @throws IOException if reading fails or the stream holds no valid instance
+     */
+    public static DistinctUsers readFrom(InputStream input) throws IOException {
+        if (input == null)
+            throw new IllegalArgumentException("Input must not be null!");
+
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(input, 64 * 1024));
+
+        final byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+
+        if (!Arrays.equals(magic, MAGIC))
+            throw new StreamCorruptedException("Not a distinct user count - invalid magic bytes!");
+
+        final int version = data.readInt();
+        if (version != VERSION)
+            throw new StreamCorruptedException("Unsupported distinct user count version: " + version);
+
+        final DistinctUsers distinctUsers;
+        try {
+            distinctUsers = new DistinctUsers(data.readByte());
+        } catch (IllegalArgumentException ex) {
+            throw new StreamCorruptedException(ex.getMessage());
+        }
+
+        final int urlCount = data.readInt();
+        if (urlCount < 0)
+            throw new StreamCorruptedException("Invalid url count: " + urlCount);
+
+        for (int i = 0; i < urlCount; i++)
+            distinctUsers.urls.put(new UrlKey(data.readLong(), data.readLong()), distinctUsers.readSketch(data));
+
+        final int tagCount = data.readInt();
+        if (tagCount < 0)
+            throw new StreamCorruptedException("Invalid tag count: " + tagCount);
+
+        for (int i = 0; i < tagCount; i++)
+            distinctUsers.tags.put(data.readUTF(), distinctUsers.readSketch(data));
+
+        return distinctUsers;
+    }
+
+    private HyperLogLog readSketch(DataInput input) throws IOException {
+        final HyperLogLog sketch = HyperLogLog.readFrom(input);
+
+        if (sketch.getPrecision() != precision)
+            throw new StreamCorruptedException("Invalid sketch precision: " + sketch.getPrecision());
+
+        return sketch;
+    }
+
+    private <K> void add(ConcurrentMap<K, HyperLogLog> sketches, K key, long userHash) {
+        final ReentrantLock lock = lockOf(key);
+
+        lock.lock();
+        try {
+            HyperLogLog sketch = sketches.get(key);
+
+            if (sketch == null) {
+                sketch = new HyperLogLog(precision);
+                sketches.put(key, sketch);
+            }
+
+            sketch.add(userHash);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <K> long estimate(ConcurrentMap<K, HyperLogLog> sketches, K key) {
+        final ReentrantLock lock = lockOf(key);
+
+        lock.lock();
+        try {
+            final HyperLogLog sketch = sketches.get(key);
+            return sketch != null ? sketch.estimate() : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <K> HyperLogLog copyOf(ConcurrentMap<K, HyperLogLog> sketches, K key) {
+        if (key == null)
+            return null;
+
+        final ReentrantLock lock = lockOf(key);
+
+        lock.lock();
+        try {
+            final HyperLogLog sketch = sketches.get(key);
+            return sketch != null ? sketch.copy() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <K> Map<K, HyperLogLog> snapshotOf(ConcurrentMap<K, HyperLogLog> sketches) {
+        final Map<K, HyperLogLog> snapshot = new HashMap<K, HyperLogLog>(sketches.size() * 4 / 3 + 1);
+
+        for (K key : sketches.keySet())
+            snapshot.put(key, copyOf(sketches, key));
+
+        return snapshot;
+    }
+
+    //The sketch of the other instance is copied first, so no thread ever holds the locks of both
+    private <K> void mergeAll(ConcurrentMap<K, HyperLogLog> sketches, DistinctUsers other,
+                              ConcurrentMap<K, HyperLogLog> otherSketches) {
+        for (K key : otherSketches.keySet()) {
+            final HyperLogLog otherSketch = other.copyOf(otherSketches, key);
+
+            if (otherSketch == null)
+                continue;
+
+            final ReentrantLock lock = lockOf(key);
+
+            lock.lock();
+            try {
+                final HyperLogLog sketch = sketches.get(key);
+
+                if (sketch == null)
+                    sketches.put(key, otherSketch);
+                else
+                    sketch.merge(otherSketch);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private ReentrantLock lockOf(Object key) {
+        final int hash = key.hashCode();
+        return locks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Gets the number of urls with a sketch.
+     *
+     * @return the url count
+     */
+    public int getUrlCount() {
+        return urls.size();
+    }
+
+    /**
+     * Gets the number of tags with a sketch.
+     *
+     * @return the tag count
+     */
+    public int getTagCount() {
+        return tags.size();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.trending;
+
+/**
+ * A key which was seen often, together with its estimated count.
+ *
+ * @author Patrick Meier
+ */
+public final class HeavyHitter<K> {
+
+    private final K key;
+
+    private final long count;
+
+    HeavyHitter(K key, long count) {
+        this.key = key;
+        this.count = count;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        HeavyHitter<?> that = (HeavyHitter<?>) o;
+
+        if (count != that.count) return false;
+        if (!key.equals(that.key)) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * key.hashCode() + (int) (count ^ (count >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return key + "=" + count;
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public K getKey() {
+        return key;
+    }
+
+    /**
+     * Gets the estimated count - it may be a bit higher than the real one, but never lower.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+}
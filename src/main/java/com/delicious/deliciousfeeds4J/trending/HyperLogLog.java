@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.trending;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+
+/**
+ * Estimates the number of distinct keys added, e.g. users, in a few KB no matter how many there are. The
+ * standard error is {@code 1.04 / sqrt(2^precision)} - 1.6% with the default precision of 12.
+ * <p/>
+ * The 6 bit registers are packed 10 to a long. As long as only a few registers are set, they are kept in a
+ * sorted int array instead, so the many sketches of rarely seen keys take a few bytes only. Sketches with
+ * the same precision can be merged, e.g. those of other nodes or other time windows. This class is not
+ * thread-safe.
+ *
+ * @author Patrick Meier
+ */
+public final class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 12;
+
+    private static final int REGISTER_BITS = 6;
+
+    private static final int REGISTERS_PER_WORD = 10;
+
+    private static final int REGISTER_MASK = (1 << REGISTER_BITS) - 1;
+
+    private final int precision;
+
+    //(index << 6) | value of every register set, sorted by index - null once the registers are dense
+    private int[] sparse;
+
+    private int sparseSize;
+
+    private long[] dense;
+
+    /**
+     * Creates a new sketch with a precision of 12 (4096 registers).
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates a new sketch.
+     *
+     * @param precision the number of registers is 2^precision - from 4 to 18
+     * @throws IllegalArgumentException if precision does not match borders
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18)
+            throw new IllegalArgumentException("Precision has to be a value from 4 to 18!");
+
+        this.precision = precision;
+        this.sparse = new int[4];
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Adds a key by its 64 bit hash. All bits of the hash have to be evenly distributed.
+     *
+     * @param hash the hash of the key
+     * @return true if the estimate may have changed
+     */
+    public boolean add(long hash) {
+        final int index = (int) (hash >>> (64 - precision));
+
+        //The position of the first 1 bit after the index - the guard bit limits it to 65 - precision
+        final int value = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+
+        return setMax(index, value);
+    }
+
+    /**
+     * Estimates the number of distinct keys added.
+     *
+     * @return the estimate
+     */
+    public long estimate() {
+        final int registers = 1 << precision;
+
+        double sum = 0;
+        int zeros = 0;
+
+        if (dense == null) {
+            for (int i = 0; i < sparseSize; i++)
+                sum += 1.0 / (1L << (sparse[i] & REGISTER_MASK));
+
+            zeros = registers - sparseSize;
+            sum += zeros;
+        } else {
+            for (int index = 0; index < registers; index++) {
+                final int value = get(index);
+
+                sum += 1.0 / (1L << value);
+
+                if (value == 0)
+                    zeros++;
+            }
+        }
+
+        final double estimate = alpha(registers) * registers * registers / sum;
+
+        //Small cardinalities are counted better by the share of empty registers
+        if (estimate <= 2.5 * registers && zeros > 0)
+            return Math.round(registers * Math.log((double) registers / zeros));
+
+        return Math.round(estimate);
+    }
+
+    /**
+     * Adds all keys of another sketch, e.g. of another node or time window.
+     *
+     * @param other the other sketch
+     * @throws IllegalArgumentException if the other sketch has another precision
+     */
+    public void merge(HyperLogLog other) {
+        if (other == null || other.precision != precision)
+            throw new IllegalArgumentException("Sketches with different precisions can not be merged!");
+
+        if (other.dense == null) {
+            for (int i = 0; i < other.sparseSize; i++)
+                setMax(other.sparse[i] >>> REGISTER_BITS, other.sparse[i] & REGISTER_MASK);
+            return;
+        }
+
+        if (dense == null)
+            toDense();
+
+        for (int word = 0; word < dense.length; word++) {
+            final long otherWord = other.dense[word];
+
+            if (otherWord == 0 || otherWord == dense[word])
+                continue;
+
+            long merged = 0;
+
+            for (int shift = 0; shift < REGISTERS_PER_WORD * REGISTER_BITS; shift += REGISTER_BITS)
+                merged |= Math.max((dense[word] >>> shift) & REGISTER_MASK, (otherWord >>> shift) & REGISTER_MASK) << shift;
+
+            dense[word] = merged;
+        }
+    }
+
+    /**
+     * Creates an independent copy.
+     *
+     * @return the copy
+     */
+    public HyperLogLog copy() {
+        final HyperLogLog copy = new HyperLogLog(precision);
+
+        if (dense != null) {
+            copy.sparse = null;
+            copy.dense = dense.clone();
+        } else {
+            copy.sparse = Arrays.copyOf(sparse, Math.max(4, sparseSize));
+            copy.sparseSize = sparseSize;
+        }
+
+        return copy;
+    }
+
+    private boolean setMax(int index, int value) {
+        if (dense != null) {
+            if (get(index) >= value)
+                return false;
+
+            set(index, value);
+            return true;
+        }
+
+        final int position = findSparse(index);
+
+        if (position >= 0) {
+            if ((sparse[position] & REGISTER_MASK) >= value)
+                return false;
+
+            sparse[position] = (index << REGISTER_BITS) | value;
+            return true;
+        }
+
+        final int insertAt = -position - 1;
+
+        if (sparseSize == sparse.length)
+            sparse = Arrays.copyOf(sparse, Math.min(sparseSize * 2, wordCount() * 2 + 1));
+
+        System.arraycopy(sparse, insertAt, sparse, insertAt + 1, sparseSize - insertAt);
+        sparse[insertAt] = (index << REGISTER_BITS) | value;
+        sparseSize++;
+
+        //Beyond this the sorted ints take more memory than the packed registers
+        if (sparseSize > wordCount() * 2)
+            toDense();
+
+        return true;
+    }
+
+    //Binary search by index - the position, or -(insertion point) - 1 like Arrays.binarySearch
+    private int findSparse(int index) {
+        int low = 0;
+        int high = sparseSize - 1;
+
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int middleIndex = sparse[middle] >>> REGISTER_BITS;
+
+            if (middleIndex < index)
+                low = middle + 1;
+            else if (middleIndex > index)
+                high = middle - 1;
+            else
+                return middle;
+        }
+
+        return -(low + 1);
+    }
+
+    private void toDense() {
+        dense = new long[wordCount()];
+
+        for (int i = 0; i < sparseSize; i++)
+            set(sparse[i] >>> REGISTER_BITS, sparse[i] & REGISTER_MASK);
+
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    private int get(int index) {
+        return (int) (dense[index / REGISTERS_PER_WORD] >>> (index % REGISTERS_PER_WORD * REGISTER_BITS)) & REGISTER_MASK;
+    }
+
+    private void set(int index, int value) {
+        final int word = index / REGISTERS_PER_WORD;
+        final int shift = index % REGISTERS_PER_WORD * REGISTER_BITS;
+
+        dense[word] = (dense[word] & ~((long) REGISTER_MASK << shift)) | ((long) value << shift);
+    }
+
+    private int wordCount() {
+        return ((1 << precision) + REGISTERS_PER_WORD - 1) / REGISTERS_PER_WORD;
+    }
+
+    private static double alpha(int registers) {
+        switch (registers) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / registers);
+        }
+    }
+
+    void writeTo(DataOutput output) throws IOException {
+        output.writeByte(precision);
+
+        if (dense == null) {
+            output.writeBoolean(false);
+            output.writeInt(sparseSize);
+
+            for (int i = 0; i < sparseSize; i++)
+                output.writeInt(sparse[i]);
+        } else {
+            output.writeBoolean(true);
+
+            for (long word : dense)
+                output.writeLong(word);
+        }
+    }
+
+    static HyperLogLog readFrom(DataInput input) throws IOException {
+        final int precision = input.readByte();
+
+        if (precision < 4 || precision > 18)
+            throw new StreamCorruptedException("Invalid sketch precision: " + precision);
+
+        final HyperLogLog sketch = new HyperLogLog(precision);
+
+        if (input.readBoolean()) {
+            sketch.sparse = null;
+            sketch.dense = new long[sketch.wordCount()];
+
+            for (int i = 0; i < sketch.dense.length; i++)
+                sketch.dense[i] = input.readLong();
+        } else {
+            final int size = input.readInt();
+
+            if (size < 0 || size > sketch.wordCount() * 2)
+                throw new StreamCorruptedException("Invalid sparse sketch size: " + size);
+
+            sketch.sparse = new int[Math.max(4, size)];
+            sketch.sparseSize = size;
+
+            int previousIndex = -1;
+
+            for (int i = 0; i < size; i++) {
+                final int entry = input.readInt();
+                final int index = entry >>> REGISTER_BITS;
+
+                if (index <= previousIndex || index >= 1 << precision || (entry & REGISTER_MASK) == 0)
+                    throw new StreamCorruptedException("Invalid sparse sketch register: " + entry);
+
+                sketch.sparse[i] = entry;
+                previousIndex = index;
+            }
+        }
+
+        return sketch;
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Gets whether the registers are still kept sparse.
+     *
+     * @return true if only a few registers are set
+     */
+    public boolean isSparse() {
+        return dense == null;
+    }
+
+    /**
+     * Gets how many bytes the registers take right now.
+     *
+     * @return the size of the registers
+     */
+    public int getRegisterBytes() {
+        return dense != null ? dense.length * 8 : sparse.length * 4;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.trending;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts keys in a sliding time window and keeps the most frequent ones. The window is split into slices with
+ * a {@link CountMinSketch} each, the oldest slice is cleared and reused when time moves on. Keys whose
+ * estimate beats the weakest candidate are remembered as candidates, so only the candidates have to be
+ * estimated to find the top keys.
+ * <p/>
+ * Adding does not lock: counters are updated atomically, and only one thread at a time drops the weakest
+ * candidates when there are too many - the others do not wait for it. Only a thread adding to a slice which
+ * is being cleared right now spins until it is done.
+ *
+ * @author Patrick Meier
+ */
+final class SlidingTopK<K> {
+
+    //The epoch of a slice which is being cleared right now
+    private static final long CLEARING = Long.MIN_VALUE;
+
+    private static final Comparator<HeavyHitter<?>> BY_COUNT = new Comparator<HeavyHitter<?>>() {
+        @Override
+        public int compare(HeavyHitter<?> first, HeavyHitter<?> second) {
+            return first.getCount() < second.getCount() ? -1 : (first.getCount() == second.getCount() ? 0 : 1);
+        }
+    };
+
+    private final long sliceMillis;
+
+    private final int depth;
+
+    private final CountMinSketch[] slices;
+
+    //The epoch (time / sliceMillis) every slice counts right now
+    private final AtomicLongArray sliceEpochs;
+
+    private final int capacity;
+
+    //The two hashes of every candidate
+    private final ConcurrentMap<K, long[]> candidates = new ConcurrentHashMap<K, long[]>();
+
+    //Keys with a lower estimate are not worth a candidate
+    private volatile long threshold;
+
+    private final ReentrantLock pruneLock = new ReentrantLock();
+
+    SlidingTopK(long windowMillis, int sliceCount, int depth, int width, int capacity) {
+        this.sliceMillis = Math.max(1, windowMillis / sliceCount);
+        this.depth = depth;
+        this.slices = new CountMinSketch[sliceCount];
+        this.sliceEpochs = new AtomicLongArray(sliceCount);
+        this.capacity = capacity;
+
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new CountMinSketch(depth, width);
+            sliceEpochs.set(i, -1);
+        }
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    void add(K key, long hash1, long hash2, long timeMillis) {
+        final CountMinSketch slice = sliceOf(timeMillis / sliceMillis);
+
+        //Older than the window
+        if (slice == null)
+            return;
+
+        slice.add(hash1, hash2, 1);
+
+        if (candidates.containsKey(key))
+            return;
+
+        if (candidates.size() < capacity || estimate(hash1, hash2, timeMillis) > threshold) {
+            candidates.putIfAbsent(key, new long[]{hash1, hash2});
+
+            if (candidates.size() > capacity)
+                prune(timeMillis);
+        }
+    }
+
+    long estimate(long hash1, long hash2, long timeMillis) {
+        final long newest = timeMillis / sliceMillis;
+        final long[] rowSums = new long[depth];
+
+        for (int i = 0; i < slices.length; i++) {
+            final long epoch = sliceEpochs.get(i);
+
+            if (epoch != CLEARING && epoch <= newest && epoch > newest - slices.length)
+                slices[i].addTo(rowSums, hash1, hash2);
+        }
+
+        long min = Long.MAX_VALUE;
+
+        for (long sum : rowSums)
+            min = Math.min(min, sum);
+
+        return min;
+    }
+
+    List<HeavyHitter<K>> top(int k, long timeMillis) {
+        final PriorityQueue<HeavyHitter<K>> heap = new PriorityQueue<HeavyHitter<K>>(k + 1, BY_COUNT);
+
+        long weakest = Long.MAX_VALUE;
+
+        for (Map.Entry<K, long[]> candidate : candidates.entrySet()) {
+            final long[] hashes = candidate.getValue();
+            final long count = estimate(hashes[0], hashes[1], timeMillis);
+
+            //Fell out of the window
+            if (count == 0) {
+                candidates.remove(candidate.getKey(), hashes);
+                continue;
+            }
+
+            weakest = Math.min(weakest, count);
+
+            if (heap.size() < k) {
+                heap.add(new HeavyHitter<K>(candidate.getKey(), count));
+            } else if (count > heap.peek().getCount()) {
+                heap.poll();
+                heap.add(new HeavyHitter<K>(candidate.getKey(), count));
+            }
+        }
+
+        //Counts go down as the window slides, so the bar for new candidates has to follow
+        threshold = candidates.size() < capacity ? 0 : weakest;
+
+        final List<HeavyHitter<K>> result = new ArrayList<HeavyHitter<K>>(heap);
+        Collections.sort(result, Collections.reverseOrder(BY_COUNT));
+        return result;
+    }
+
+    //Drops the weakest candidates down to 3/4 of the capacity, so this is not needed again right away
+    private void prune(long timeMillis) {
+        if (pruneLock.tryLock() == false)
+            return;
+
+        try {
+            if (candidates.size() <= capacity)
+                return;
+
+            final List<HeavyHitter<K>> estimates = new ArrayList<HeavyHitter<K>>(candidates.size());
+
+            for (Map.Entry<K, long[]> candidate : candidates.entrySet()) {
+                final long[] hashes = candidate.getValue();
+                estimates.add(new HeavyHitter<K>(candidate.getKey(), estimate(hashes[0], hashes[1], timeMillis)));
+            }
+
+            Collections.sort(estimates, BY_COUNT);
+
+            final int drop = estimates.size() - capacity * 3 / 4;
+
+            for (int i = 0; i < drop; i++)
+                candidates.remove(estimates.get(i).getKey());
+
+            threshold = estimates.get(drop).getCount();
+        } finally {
+            pruneLock.unlock();
+        }
+    }
+
+    //Gets the slice counting the given epoch - the oldest slice is cleared first if a new epoch starts
+    private CountMinSketch sliceOf(long epoch) {
+        final int index = (int) (epoch % slices.length);
+
+        while (true) {
+            final long current = sliceEpochs.get(index);
+
+            if (current == epoch)
+                return slices[index];
+
+            //Reused by a newer epoch already
+            if (current > epoch)
+                return null;
+
+            if (current == CLEARING) {
+                Thread.yield();
+                continue;
+            }
+
+            if (sliceEpochs.compareAndSet(index, current, CLEARING)) {
+                slices[index].clear();
+                sliceEpochs.set(index, epoch);
+                return slices[index];
+            }
+        }
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    long getWindowMillis() {
+        return sliceMillis * slices.length;
+    }
+
+    int getCandidateCount() {
+        return candidates.size();
+    }
+}
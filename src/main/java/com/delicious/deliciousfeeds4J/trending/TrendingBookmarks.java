@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.trending;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.codec.Hashes;
+import com.delicious.deliciousfeeds4J.reactive.ItemTransformer;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the trending urls and tags of bookmark streams from any feed: counts how often every url (by md5)
+ * and every tag was seen in a sliding time window and keeps the most frequent ones. Counting uses
+ * {@link CountMinSketch}es of a fixed size instead of maps, so the memory does not grow with the number of
+ * distinct urls and tags - about 3 MB with the default settings.
+ * <p/>
+ * Use {@link #recordAll(Collection)} on the results of {@code DeliciousFeeds}, or pass it as
+ * {@link ItemTransformer} to a {@code FeedPublisher} to count every published bookmark. Feeds which are
+ * pulled again and again (e.g. the popular bookmarks) return the same bookmarks several times - put a
+ * {@code BookmarkDeduplicator} in front to count each of them once. This class is thread-safe.
+ *
+ * @author Patrick Meier
+ */
+public class TrendingBookmarks implements ItemTransformer<Bookmark> {
+
+    public static final long DEFAULT_WINDOW_MINUTES = 60;
+
+    public static final int DEFAULT_MAX_K = 100;
+
+    private static final int SLICES = 12;
+
+    private static final int DEPTH = 4;
+
+    private static final int WIDTH = 8192;
+
+    //Candidates per requested key - a few more than needed, so keys on their way up are not missed
+    private static final int CANDIDATES_PER_KEY = 8;
+
+    private final int maxK;
+
+    private final SlidingTopK<UrlKey> urls;
+
+    private final SlidingTopK<String> tags;
+
+    /**
+     * Creates a new instance with a window of one hour, which can be asked for up to the 100 top urls and
+     * tags.
+     */
+    public TrendingBookmarks() {
+        this(DEFAULT_WINDOW_MINUTES, TimeUnit.MINUTES, DEFAULT_MAX_K);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param window the time window in which urls and tags are counted - it moves on in steps of 1/12
+     * @param unit   the unit of the window
+     * @param maxK   the highest number of top urls and tags which can be asked for - from 1 to 10000
+     * @throws IllegalArgumentException if window is shorter than 12 milliseconds, unit is null or maxK
+     *                                  does not match borders
+     */
+    public TrendingBookmarks(long window, TimeUnit unit, int maxK) {
+        if (unit == null)
+            throw new IllegalArgumentException("Unit must not be null!");
+
+        if (unit.toMillis(window) < SLICES)
+            throw new IllegalArgumentException("Window must be at least " + SLICES + " milliseconds!");
+
+        if (maxK < 1 || maxK > 10000)
+            throw new IllegalArgumentException("MaxK has to be a value from 1 to 10000!");
+
+        this.maxK = maxK;
+        this.urls = new SlidingTopK<UrlKey>(unit.toMillis(window), SLICES, DEPTH, WIDTH, maxK * CANDIDATES_PER_KEY);
+        this.tags = new SlidingTopK<String>(unit.toMillis(window), SLICES, DEPTH, WIDTH, maxK * CANDIDATES_PER_KEY);
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Counts the url and the tags of a bookmark as seen right now.
+     *
+     * @param bookmark the bookmark
+     * @throws IllegalArgumentException if bookmark is null
+     */
+    public void record(Bookmark bookmark) {
+        record(bookmark, System.currentTimeMillis());
+    }
+
+    /**
+     * Counts the url and the tags of a bookmark as seen at the given time, e.g. its date when older
+     * bookmarks are loaded. Bookmarks older than the window are ignored. Bookmarks without a valid md5
+     * only count for their tags.
+     *
+     * @param bookmark   the bookmark
+     * @param timeMillis when the bookmark was seen
+     * @throws IllegalArgumentException if bookmark is null
+     */
+    public void record(Bookmark bookmark, long timeMillis) {
+        if (bookmark == null)
+            throw new IllegalArgumentException("Bookmark must not be null!");
+
+        final UrlKey urlKey = UrlKey.tryFromHex(bookmark.getMd5());
+
+        //Md5 bits are evenly distributed already
+        if (urlKey != null)
+            urls.add(urlKey, urlKey.getHigh(), urlKey.getLow(), timeMillis);
+
+        if (bookmark.getTags() != null) {
+            for (String tag : bookmark.getTags()) {
+                if (tag == null || tag.length() == 0)
+                    continue;
+
+                final long hash = Hashes.hash(tag);
+                tags.add(tag, hash, Hashes.rehash(hash), timeMillis);
+            }
+        }
+    }
+
+    /**
+     * Counts the urls and the tags of all bookmarks as seen right now.
+     *
+     * @param bookmarks the bookmarks, may be null
+     */
+    public void recordAll(Collection<Bookmark> bookmarks) {
+        if (bookmarks == null)
+            return;
+
+        final long now = System.currentTimeMillis();
+
+        for (Bookmark bookmark : bookmarks) {
+            if (bookmark != null)
+                record(bookmark, now);
+        }
+    }
+
+    /**
+     * Counts a bookmark of a publisher and passes it on unchanged.
+     *
+     * @param bookmark the bookmark
+     * @return the given bookmark
+     */
+    @Override
+    public Bookmark transform(Bookmark bookmark) {
+        record(bookmark);
+        return bookmark;
+    }
+
+    /**
+     * Gets the urls seen most often in the window up to now.
+     *
+     * @param k how many urls - at most maxK
+     * @return the urls with their estimated counts, most frequent first
+     * @throws IllegalArgumentException if k does not match borders
+     */
+    public List<HeavyHitter<UrlKey>> getTopUrls(int k) {
+        return getTopUrls(k, System.currentTimeMillis());
+    }
+
+    /**
+     * Gets the urls seen most often in the window up to the given time.
+     *
+     * @param k          how many urls - at most maxK
+     * @param timeMillis the end of the window
+     * @return the urls with their estimated counts, most frequent first
+     * @throws IllegalArgumentException if k does not match borders
+     */
+    public List<HeavyHitter<UrlKey>> getTopUrls(int k, long timeMillis) {
+        checkK(k);
+        return urls.top(k, timeMillis);
+    }
+
+    /**
+     * Gets the tags used most often in the window up to now.
+     *
+     * @param k how many tags - at most maxK
+     * @return the tags with their estimated counts, most frequent first
+     * @throws IllegalArgumentException if k does not match borders
+     */
+    public List<HeavyHitter<String>> getTopTags(int k) {
+        return getTopTags(k, System.currentTimeMillis());
+    }
+
+    /**
+     * Gets the tags used most often in the window up to the given time.
+     *
+     * @param k          how many tags - at most maxK
+     * @param timeMillis the end of the window
+     * @return the tags with their estimated counts, most frequent first
+     * @throws IllegalArgumentException if k does not match borders
+     */
+    public List<HeavyHitter<String>> getTopTags(int k, long timeMillis) {
+        checkK(k);
+        return tags.top(k, timeMillis);
+    }
+
+    /**
+     * Estimates how often a url was seen in the window up to now.
+     *
+     * @param urlKey the md5 of the url
+     * @return the estimated count, never lower than the real one
+     * @throws IllegalArgumentException if urlKey is null
+     */
+    public long estimateUrlCount(UrlKey urlKey) {
+        if (urlKey == null)
+            throw new IllegalArgumentException("UrlKey must not be null!");
+
+        return urls.estimate(urlKey.getHigh(), urlKey.getLow(), System.currentTimeMillis());
+    }
+
+    /**
+     * Estimates how often a tag was used in the window up to now.
+     *
+     * @param tag the tag
+     * @return the estimated count, never lower than the real one
+     * @throws IllegalArgumentException if tag is null or empty
+     */
+    public long estimateTagCount(String tag) {
+        if (tag == null || tag.length() == 0)
+            throw new IllegalArgumentException("Tag must not be null or empty!");
+
+        final long hash = Hashes.hash(tag);
+        return tags.estimate(hash, Hashes.rehash(hash), System.currentTimeMillis());
+    }
+
+    private void checkK(int k) {
+        if (k < 1 || k > maxK)
+            throw new IllegalArgumentException("K has to be a value from 1 to " + maxK + "!");
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public int getMaxK() {
+        return maxK;
+    }
+
+    /**
+     * Gets the time window in which urls and tags are counted.
+     *
+     * @param unit the unit to convert the window to
+     * @return the window
+     */
+    public long getWindow(TimeUnit unit) {
+        return unit.convert(urls.getWindowMillis(), TimeUnit.MILLISECONDS);
+    }
+}
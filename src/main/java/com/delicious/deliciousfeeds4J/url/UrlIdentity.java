@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.url;
+
+import java.nio.charset.Charset;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Maps urls to the {@link UrlKey} delicious uses to identify them. Urls are canonicalized first (see
+ * {@link #canonicalize(String)}) and then hashed with a md5 digest that is reused per thread. The
+ * resulting keys are kept in a bounded LRU cache, so hashing the same url again is only a lookup.
+ * <p/>
+ * Instances are thread-safe.
+ *
+ * @author Patrick Meier
+ */
+public class UrlIdentity {
+
+    //Some default values
+    public static final int DEFAULT_CACHE_SIZE = 64 * 1024;
+
+    private static final UrlIdentity DEFAULT_INSTANCE = new UrlIdentity(DEFAULT_CACHE_SIZE);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    //The cache is split into segments to keep lock contention low
+    private static final int SEGMENT_COUNT = 16;
+
+    private static final ThreadLocal<HashState> HASH_STATE = new ThreadLocal<HashState>() {
+        @Override
+        protected HashState initialValue() {
+            return new HashState();
+        }
+    };
+
+    private final CacheSegment[] segments;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param cacheSize how many url to key mappings should be cached - 0 disables caching
+     * @throws IllegalArgumentException if cacheSize is negative
+     */
+    public UrlIdentity(int cacheSize) {
+        if (cacheSize < 0)
+            throw new IllegalArgumentException("CacheSize must not be negative!");
+
+        if (cacheSize == 0) {
+            segments = null;
+        } else {
+            segments = new CacheSegment[SEGMENT_COUNT];
+
+            for (int i = 0; i < SEGMENT_COUNT; i++)
+                segments[i] = new CacheSegment(Math.max(1, cacheSize / SEGMENT_COUNT));
+        }
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets the shared instance with a cache of {@link #DEFAULT_CACHE_SIZE} entries.
+     *
+     * @return the shared instance
+     */
+    public static UrlIdentity getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * Gets the key for the given url. The url is canonicalized before it gets hashed.
+     *
+     * @param url the url
+     * @return the key of the url
+     * @throws IllegalArgumentException if url is null or empty
+     */
+    public UrlKey keyOf(String url) {
+        if (url == null || url.isEmpty())
+            throw new IllegalArgumentException("Url must not be null or empty!");
+
+        if (segments == null)
+            return hash(canonicalize(url));
+
+        final CacheSegment segment = segments[(url.hashCode() & 0x7fffffff) % SEGMENT_COUNT];
+
+        UrlKey key = segment.get(url);
+
+        if (key == null) {
+            key = hash(canonicalize(url));
+            segment.put(url, key);
+        }
+
+        return key;
+    }
+
+    /**
+     * Hashes the given string as it is with md5. This yields the same result as commons-codec's
+     * {@code DigestUtils.md5Hex}, but reuses the digest and buffers of the current thread.
+     *
+     * @param value the string to hash
+     * @return the md5 hash as key
+     */
+    public static UrlKey hash(String value) {
+        final HashState state = HASH_STATE.get();
+
+        try {
+            final int length = state.encode(value);
+
+            state.digest.update(state.input, 0, length);
+            state.digest.digest(state.output, 0, state.output.length);
+
+            return UrlKey.fromBytes(state.output, 0);
+        } catch (DigestException ex) {
+            state.digest.reset();
+            throw new IllegalStateException("Error while hashing value with md5!", ex);
+        }
+    }
+
+    /**
+     * Canonicalizes the given url without changing what it points to: surrounding whitespace is removed,
+     * scheme and host are lowercased and the default port of http and https is dropped. Path, query and
+     * fragment are left untouched.
+     *
+     * @param url the url
+     * @return the canonical url - the same instance if nothing had to be changed
+     * @throws IllegalArgumentException if url is null
+     */
+    public static String canonicalize(String url) {
+        if (url == null)
+            throw new IllegalArgumentException("Url must not be null!");
+
+        final String trimmed = url.trim();
+
+        final int schemeEnd = trimmed.indexOf("://");
+
+        if (schemeEnd <= 0)
+            return trimmed;
+
+        final int authorityStart = schemeEnd + 3;
+        int authorityEnd = authorityStart;
+
+        while (authorityEnd < trimmed.length() && "/?#".indexOf(trimmed.charAt(authorityEnd)) < 0)
+            authorityEnd++;
+
+        final String scheme = trimmed.substring(0, schemeEnd);
+        String authority = trimmed.substring(authorityStart, authorityEnd);
+
+        //Drop the default port, but keep user-info intact
+        final int hostStart = authority.lastIndexOf('@') + 1;
+
+        if ((scheme.equalsIgnoreCase("http") && authority.endsWith(":80"))
+                || (scheme.equalsIgnoreCase("https") && authority.endsWith(":443")))
+            authority = authority.substring(0, authority.lastIndexOf(':'));
+
+        final String canonical = scheme.toLowerCase(Locale.ENGLISH) + "://" + authority.substring(0, hostStart)
+                + authority.substring(hostStart).toLowerCase(Locale.ENGLISH) + trimmed.substring(authorityEnd);
+
+        return canonical.equals(url) ? url : canonical;
+    }
+
+    /**
+     * Removes all cached mappings.
+     */
+    public void clearCache() {
+        if (segments == null)
+            return;
+
+        for (CacheSegment segment : segments)
+            segment.clear();
+    }
+
+    //---------------------------------------------------------------------------
+    // Helper classes
+    //---------------------------------------------------------------------------
+
+    private static final class HashState {
+
+        private final MessageDigest digest;
+
+        private final byte[] output = new byte[16];
+
+        private byte[] input = new byte[256];
+
+        private HashState() {
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException("MD5 is not supported by this JVM!", ex);
+            }
+        }
+
+        //Encodes the value as UTF-8 into the reused input buffer and returns the number of bytes
+        private int encode(String value) {
+            final int length = value.length();
+
+            if (input.length < length)
+                input = new byte[Math.max(length, input.length * 2)];
+
+            for (int i = 0; i < length; i++) {
+                final char c = value.charAt(i);
+
+                if (c >= 0x80) {
+                    //Rare case - let the charset handle multi-byte characters and surrogates
+                    final byte[] bytes = value.getBytes(UTF_8);
+
+                    if (input.length < bytes.length)
+                        input = new byte[bytes.length];
+
+                    System.arraycopy(bytes, 0, input, 0, bytes.length);
+                    return bytes.length;
+                }
+
+                input[i] = (byte) c;
+            }
+
+            return length;
+        }
+    }
+
+    private static final class CacheSegment {
+
+        private final Map<String, UrlKey> entries;
+
+        //No monitor, so virtual threads do not pin their carrier while waiting for a segment
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private CacheSegment(final int capacity) {
+            this.entries = new LinkedHashMap<String, UrlKey>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, UrlKey> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        private UrlKey get(String url) {
+            lock.lock();
+            try {
+                return entries.get(url);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void put(String url, UrlKey key) {
+            lock.lock();
+            try {
+                entries.put(url, key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void clear() {
+            lock.lock();
+            try {
+                entries.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
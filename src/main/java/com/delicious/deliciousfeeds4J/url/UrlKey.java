@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.url;
+
+import java.io.Serializable;
+
+/**
+ * The 128-bit md5 hash which delicious uses to identify a url, stored as two longs instead of a 32 character
+ * hex string. Keys can be created from a url with {@link UrlIdentity#keyOf(String)} or from an already known
+ * hash (e.g. {@code Bookmark.getMd5()}) with {@link #fromHex(String)} or {@link #tryFromHex(String)}.
+ *
+ * @author Patrick Meier
+ */
+public final class UrlKey implements Serializable {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final long high;
+
+    private final long low;
+
+    public UrlKey(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Creates a key from a 32 character hex string as used by delicious (e.g. {@code Bookmark.getMd5()}).
+     *
+     * @param md5 the md5 hash as hex string - upper- or lowercase
+     * @return the key
+     * @throws IllegalArgumentException if md5 is null or not a valid 32 character hex string
+     */
+    public static UrlKey fromHex(String md5) {
+        final UrlKey key = tryFromHex(md5);
+
+        if (key == null)
+            throw new IllegalArgumentException("Md5 has to be a hex string of 32 characters!");
+
+        return key;
+    }
+
+    /**
+     * Like {@link #fromHex(String)}, but for md5s from the feeds which may be missing or broken.
+     *
+     * @param md5 the md5 hash as hex string - upper- or lowercase
+     * @return the key or null if md5 is null or not a valid 32 character hex string
+     */
+    public static UrlKey tryFromHex(String md5) {
+        if (md5 == null || md5.length() != 32)
+            return null;
+
+        for (int i = 0; i < md5.length(); i++) {
+            if (hexDigit(md5.charAt(i)) < 0)
+                return null;
+        }
+
+        return new UrlKey(parseHex(md5, 0), parseHex(md5, 16));
+    }
+
+    /**
+     * Creates a key from the 16 bytes of an md5 digest.
+     *
+     * @param digest the digest
+     * @param offset where the digest starts
+     * @return the key
+     */
+    public static UrlKey fromBytes(byte[] digest, int offset) {
+        return new UrlKey(readLong(digest, offset), readLong(digest, offset + 8));
+    }
+
+    /**
+     * Appends the 32 character lowercase hex representation to the given buffer.
+     *
+     * @param buffer the buffer to append to
+     * @return the given buffer
+     */
+    public StringBuilder appendHex(StringBuilder buffer) {
+        appendHex(buffer, high);
+        appendHex(buffer, low);
+        return buffer;
+    }
+
+    /**
+     * Gets the 32 character lowercase hex representation like it is used by delicious.
+     *
+     * @return the hex string
+     */
+    public String toHex() {
+        return appendHex(new StringBuilder(32)).toString();
+    }
+
+    private static long parseHex(String hex, int offset) {
+        long value = 0;
+
+        for (int i = offset; i < offset + 16; i++)
+            value = (value << 4) | hexDigit(hex.charAt(i));
+
+        return value;
+    }
+
+    //Only ASCII - Character.digit also accepts e.g. fullwidth digits
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9')
+            return c - '0';
+
+        if (c >= 'a' && c <= 'f')
+            return c - 'a' + 10;
+
+        if (c >= 'A' && c <= 'F')
+            return c - 'A' + 10;
+
+        return -1;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+
+        for (int i = offset; i < offset + 8; i++)
+            value = (value << 8) | (bytes[i] & 0xff);
+
+        return value;
+    }
+
+    private static void appendHex(StringBuilder buffer, long value) {
+        for (int shift = 60; shift >= 0; shift -= 4)
+            buffer.append(HEX_DIGITS[(int) (value >>> shift) & 0xf]);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        UrlKey urlKey = (UrlKey) o;
+
+        if (high != urlKey.high) return false;
+        if (low != urlKey.low) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        //The bits are already evenly distributed by md5
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+}
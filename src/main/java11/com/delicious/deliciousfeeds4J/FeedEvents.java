@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J;
+
+import com.delicious.deliciousfeeds4J.ratelimit.RateLimiter;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.Collection;
+
+/**
+ * Emits the Java Flight Recorder events of the client: requests, waiting for the rate limiter,
+ * deserialization, url expansion and bans. The {@code begin*}-methods return the event to pass to the
+ * matching {@code end*}-method.
+ * <p/>
+ * This is the variant for Java 11+ from {@code META-INF/versions/11}. While no recording is running JFR
+ * leaves the event classes uninstrumented, so begin and commit are empty and fields are only set after
+ * {@code shouldCommit()} - near zero cost.
+ *
+ * @author Patrick Meier
+ */
+final class FeedEvents {
+
+    private static final String CATEGORY = "deliciousfeeds4J";
+
+    private FeedEvents() {
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    static Object beginRequest() {
+        final RequestEvent event = new RequestEvent();
+        event.begin();
+        return event;
+    }
+
+    static void responseReceived(Object event, int statusCode, boolean compressed, long wireBytes, long contentBytes) {
+        final RequestEvent requestEvent = (RequestEvent) event;
+
+        if (requestEvent.isEnabled()) {
+            requestEvent.statusCode = statusCode;
+            requestEvent.compressed = compressed;
+            requestEvent.wireBytes = wireBytes;
+            requestEvent.contentBytes = contentBytes;
+        }
+    }
+
+    static void endRequest(Object event, FeedType feedType, String url) {
+        final RequestEvent requestEvent = (RequestEvent) event;
+        requestEvent.end();
+
+        if (requestEvent.shouldCommit()) {
+            requestEvent.feedType = nameOf(feedType);
+            requestEvent.url = url;
+            requestEvent.commit();
+        }
+    }
+
+    static Object beginRateLimitWait() {
+        final RateLimitWaitEvent event = new RateLimitWaitEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endRateLimitWait(Object event, RateLimiter rateLimiter) {
+        final RateLimitWaitEvent waitEvent = (RateLimitWaitEvent) event;
+        waitEvent.end();
+
+        if (waitEvent.shouldCommit()) {
+            waitEvent.rateLimiter = rateLimiter != null ? rateLimiter.getClass().getName() : null;
+            waitEvent.commit();
+        }
+    }
+
+    static Object beginDeserialization() {
+        final DeserializationEvent event = new DeserializationEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endDeserialization(Object event, FeedType feedType, Object value, long contentBytes) {
+        final DeserializationEvent deserializationEvent = (DeserializationEvent) event;
+        deserializationEvent.end();
+
+        if (deserializationEvent.shouldCommit()) {
+            deserializationEvent.feedType = nameOf(feedType);
+            deserializationEvent.contentBytes = contentBytes;
+            deserializationEvent.itemCount = value instanceof Collection ? ((Collection<?>) value).size() : value != null ? 1 : 0;
+            deserializationEvent.commit();
+        }
+    }
+
+    static Object beginUrlExpansion() {
+        final UrlExpansionEvent event = new UrlExpansionEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endUrlExpansion(Object event, int bookmarks, int expandedUrls) {
+        final UrlExpansionEvent expansionEvent = (UrlExpansionEvent) event;
+        expansionEvent.end();
+
+        if (expansionEvent.shouldCommit()) {
+            expansionEvent.bookmarks = bookmarks;
+            expansionEvent.expandedUrls = expandedUrls;
+            expansionEvent.commit();
+        }
+    }
+
+    static void banned(FeedType feedType, int statusCode) {
+        final BanEvent event = new BanEvent();
+
+        if (event.shouldCommit()) {
+            event.feedType = nameOf(feedType);
+            event.statusCode = statusCode;
+            event.commit();
+        }
+    }
+
+    private static String nameOf(FeedType feedType) {
+        return feedType != null ? feedType.name() : null;
+    }
+
+    //---------------------------------------------------------------------------
+    // Events
+    //---------------------------------------------------------------------------
+
+    @Name("deliciousfeeds4J.Request")
+    @Label("Feed Request")
+    @Category(CATEGORY)
+    @Description("A request to the delicious API, from sending it until the body was read")
+    @StackTrace(false)
+    static final class RequestEvent extends Event {
+
+        @Label("Feed Type")
+        String feedType;
+
+        @Label("Url")
+        String url;
+
+        @Label("Status Code")
+        int statusCode;
+
+        @Label("Compressed")
+        boolean compressed;
+
+        @Label("Wire Bytes")
+        @Description("Bytes received, before decompression")
+        @DataAmount
+        long wireBytes;
+
+        @Label("Content Bytes")
+        @Description("Bytes of the decompressed body")
+        @DataAmount
+        long contentBytes;
+    }
+
+    @Name("deliciousfeeds4J.RateLimitWait")
+    @Label("Rate Limit Wait")
+    @Category(CATEGORY)
+    @Description("Waiting for a permit of the rate limiter or for a slot in the request lane before a request")
+    @StackTrace(false)
+    static final class RateLimitWaitEvent extends Event {
+
+        @Label("Rate Limiter")
+        String rateLimiter;
+    }
+
+    @Name("deliciousfeeds4J.Deserialization")
+    @Label("Deserialization")
+    @Category(CATEGORY)
+    @Description("Parsing a response - includes reading the rest of the body, as it is streamed into the parser")
+    @StackTrace(false)
+    static final class DeserializationEvent extends Event {
+
+        @Label("Feed Type")
+        String feedType;
+
+        @Label("Content Bytes")
+        @DataAmount
+        long contentBytes;
+
+        @Label("Item Count")
+        int itemCount;
+    }
+
+    @Name("deliciousfeeds4J.UrlExpansion")
+    @Label("Url Expansion")
+    @Category(CATEGORY)
+    @Description("Expanding the shortened urls of a page of bookmarks")
+    @StackTrace(false)
+    static final class UrlExpansionEvent extends Event {
+
+        @Label("Bookmarks")
+        int bookmarks;
+
+        @Label("Expanded Urls")
+        int expandedUrls;
+    }
+
+    @Name("deliciousfeeds4J.Ban")
+    @Label("Ban Detected")
+    @Category(CATEGORY)
+    @Description("Delicious answered with 503 - the client may got banned")
+    static final class BanEvent extends Event {
+
+        @Label("Feed Type")
+        String feedType;
+
+        @Label("Status Code")
+        int statusCode;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Factory for the executors used to run blocking feed calls (batch fetching, url expansion).
+ * <p/>
+ * This is the variant for Java 21+ from {@code META-INF/versions/21}: every task gets a virtual thread of
+ * its own, so tens of thousands of blocking calls can wait for I/O at the same time.
+ *
+ * @author Patrick Meier
+ */
+public final class FeedExecutors {
+
+    private static final String THREAD_NAME_PREFIX = "deliciousfeeds4j-virtual-";
+
+    private FeedExecutors() {
+    }
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets whether the executors of this class run tasks on virtual threads.
+     *
+     * @return true on Java 21+, false otherwise
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return true;
+    }
+
+    /**
+     * Creates a new executor which starts a virtual thread for every task. Virtual threads are cheap,
+     * so the executor does not have to be shut down.
+     *
+     * @return the new executor
+     */
+    public static ExecutorService newPerRequestExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(THREAD_NAME_PREFIX, 1).factory());
+    }
+
+    /**
+     * Gets the shared executor created with {@link #newPerRequestExecutor()}. It is created on first use.
+     *
+     * @return the shared executor
+     */
+    public static ExecutorService getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    //Lazy initialization without locking
+    private static final class DefaultHolder {
+        private static final ExecutorService INSTANCE = newPerRequestExecutor();
+    }
+}
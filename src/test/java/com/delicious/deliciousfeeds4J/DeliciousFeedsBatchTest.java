@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.beans.User;
+import com.delicious.deliciousfeeds4J.exceptions.DeliciousFeedsException;
+import com.delicious.deliciousfeeds4J.partition.ConsistentHashRing;
+import com.delicious.deliciousfeeds4J.partition.LocalPartition;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class DeliciousFeedsBatchTest {
+
+    @Test
+    public void testFindBookmarksByUsers() throws Exception {
+        final StubDeliciousFeeds deliciousFeeds = new StubDeliciousFeeds();
+
+        final Map<String, List<Bookmark>> result = deliciousFeeds.findBookmarksByUsers(5,
+                Arrays.asList("carol", "alice", "bob", "alice"));
+
+        assertEquals(Arrays.asList("carol", "alice", "bob"), new ArrayList<String>(result.keySet()));
+        assertEquals(5, result.get("alice").size());
+        assertEquals("bob", result.get("bob").get(0).getUser());
+        assertEquals(3, deliciousFeeds.calls);
+    }
+
+    @Test
+    public void testFindNetworkMembersByUsers() throws Exception {
+        final StubDeliciousFeeds deliciousFeeds = new StubDeliciousFeeds();
+
+        final Map<String, Set<User>> result = deliciousFeeds.findNetworkMembersByUsers(Arrays.asList("alice", "nobody"));
+
+        assertEquals(1, result.get("alice").size());
+        assertNull(result.get("nobody"));
+    }
+
+    @Test
+    public void testNestedCallsOnSingleThreadExecutor() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            final StubDeliciousFeeds deliciousFeeds = new StubDeliciousFeeds();
+            deliciousFeeds.setExecutor(executor);
+
+            //The batch task blocks the only thread, so the nested call has to help on its own thread
+            final Map<String, List<Bookmark>> result = executor.submit(new Callable<Map<String, List<Bookmark>>>() {
+                @Override
+                public Map<String, List<Bookmark>> call() throws Exception {
+                    return deliciousFeeds.findBookmarksByUsers(1, Arrays.asList("alice", "bob"));
+                }
+            }).get();
+
+            assertEquals(2, result.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailureIsPropagated() throws Exception {
+        final StubDeliciousFeeds deliciousFeeds = new StubDeliciousFeeds();
+
+        try {
+            deliciousFeeds.findBookmarksByUsers(1, Arrays.asList("alice", "broken"));
+            fail("Exception expected!");
+        } catch (DeliciousFeedsException ex) {
+            assertEquals("broken", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testOnlyLocalUsersAreFetched() throws Exception {
+        final ConsistentHashRing ring = ConsistentHashRing.of("node-1", "node-2", "node-3");
+        final List<String> usernames = new ArrayList<String>();
+
+        for (int i = 0; i < 30; i++)
+            usernames.add("user" + i);
+
+        int total = 0;
+
+        for (String node : ring.getNodes()) {
+            final StubDeliciousFeeds deliciousFeeds = new StubDeliciousFeeds();
+            deliciousFeeds.setPartition(new LocalPartition(ring, node));
+
+            final Map<String, List<Bookmark>> result = deliciousFeeds.findBookmarksByUsers(1, usernames);
+
+            for (String username : result.keySet())
+                assertEquals(node, ring.ownerOf(username));
+
+            assertEquals(result.size(), deliciousFeeds.calls);
+            total += result.size();
+        }
+
+        //Every user is fetched by exactly one node
+        assertEquals(usernames.size(), total);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyUsernames() throws Exception {
+        new StubDeliciousFeeds().findBookmarksByUsers(1, Collections.<String>emptyList());
+    }
+
+    private static class StubDeliciousFeeds extends DeliciousFeeds {
+
+        private volatile int calls;
+
+        @Override
+        public List<Bookmark> findBookmarksByUser(int count, String username) throws DeliciousFeedsException {
+            synchronized (this) {
+                calls++;
+            }
+
+            if (username.equals("broken"))
+                throw new DeliciousFeedsException("broken");
+
+            final List<Bookmark> bookmarks = new ArrayList<Bookmark>();
+
+            for (int i = 0; i < count; i++) {
+                final Bookmark bookmark = new Bookmark();
+                bookmark.setUser(username);
+                bookmarks.add(bookmark);
+            }
+
+            return bookmarks;
+        }
+
+        @Override
+        public Set<User> findNetworkMembersByUser(String username) throws DeliciousFeedsException {
+            if (username.equals("nobody"))
+                return null;
+
+            final User user = new User();
+            user.setUser(username + "-friend");
+
+            return Collections.singleton(user);
+        }
+    }
+}
@@ -17,10 +17,20 @@
 package com.delicious.deliciousfeeds4J;
 
 import com.delicious.deliciousfeeds4J.beans.*;
+import com.delicious.deliciousfeeds4J.concurrent.Deadline;
+import com.delicious.deliciousfeeds4J.exceptions.ErrorCode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 
@@ -344,6 +354,83 @@ public class DeliciousFeedsTest {
         assertFalse(urlInfo.getTitle().isEmpty());
     }
 
+    @Test
+    public void testApiEndpoint() throws Exception {
+        final AtomicReference<String> requested = new AtomicReference<String>();
+
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requested.set(exchange.getRequestURI().toString());
+
+                final byte[] body = "[{\"d\": \"Bookmark\", \"u\": \"http://example.com/\"}]".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        });
+        server.start();
+
+        try {
+            assertEquals(DeliciousFeeds.API_ENDPOINT, deliciousFeeds.getApiEndpoint());
+
+            deliciousFeeds.setApiEndpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/stub/");
+
+            final List<Bookmark> bookmarks = deliciousFeeds.findBookmarksByTags(3, "java");
+
+            assertEquals("/stub/tag/java?count=3", requested.get());
+            assertEquals(1, bookmarks.size());
+            assertEquals("http://example.com/", bookmarks.get(0).getUrl());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testDeadlines() throws Exception {
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+
+                exchange.sendResponseHeaders(200, 2);
+                exchange.getResponseBody().write("[]".getBytes("UTF-8"));
+                exchange.close();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        try {
+            deliciousFeeds.setApiEndpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+
+            final FeedResult<List<Bookmark>> withDeadline = deliciousFeeds.withDeadline(Deadline.after(100, TimeUnit.MILLISECONDS))
+                    .tryFindBookmarks(3);
+            assertEquals(ErrorCode.TIMEOUT, withDeadline.getErrorCode());
+
+            final Deadline cancelled = Deadline.cancellable();
+            cancelled.cancel();
+            assertEquals(ErrorCode.CANCELLED, deliciousFeeds.withDeadline(cancelled).tryFindBookmarks(3).getErrorCode());
+
+            deliciousFeeds.setTimeout(100, TimeUnit.MILLISECONDS);
+            assertEquals(100, deliciousFeeds.getTimeout(TimeUnit.MILLISECONDS));
+            assertEquals(ErrorCode.TIMEOUT, deliciousFeeds.tryFindBookmarksByTags(3, "java").getErrorCode());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testApiEndpointWithoutSlash() throws Exception {
+        deliciousFeeds.setApiEndpoint("http://127.0.0.1/stub");
+    }
+
     private void checkExpanded(List<Bookmark> bookmarks) {
         for (Bookmark bookmark : bookmarks)
             assertFalse(bookmark.getUrl().contains("icio.us/+"));
@@ -17,14 +17,38 @@
 package com.delicious.deliciousfeeds4J;
 
 import com.delicious.deliciousfeeds4J.beans.*;
+import com.delicious.deliciousfeeds4J.concurrent.Deadline;
+import com.delicious.deliciousfeeds4J.concurrent.FeedExecutors;
+import com.delicious.deliciousfeeds4J.concurrent.HedgePolicy;
 import com.delicious.deliciousfeeds4J.exceptions.DeliciousFeedsException;
+import com.delicious.deliciousfeeds4J.exceptions.ErrorCode;
+import com.delicious.deliciousfeeds4J.metrics.FeedMetrics;
+import com.delicious.deliciousfeeds4J.ratelimit.IntervalRateLimiter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 import org.apache.commons.lang.time.DateUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.*;
 
@@ -51,6 +75,339 @@ public class DeliciousUtilTest {
         assertTrue(result.endsWith("}"));
     }
 
+    @Test
+    public void testDoGetRequestWithCompression() throws Exception {
+        final String json = bookmarksJson(200);
+        final FeedMetrics metrics = new FeedMetrics();
+
+        for (String encoding : new String[]{"gzip", "deflate", "raw-deflate", null}) {
+            final HttpServer server = serve(200, json, encoding);
+
+            try {
+                final FeedResponse<List<Bookmark>> response = DeliciousUtil.doGetRequest(urlOf(server), DeliciousFeeds.DEFAULT_USER_AGENT,
+                        null, true, FeedType.RECENT_BOOKMARKS, metrics, DeliciousUtil.BOOKMARK_LIST_PARSER);
+
+                final List<Bookmark> bookmarks = response.getValue();
+                assertEquals(200, bookmarks.size());
+                assertEquals("http://example.com/199", bookmarks.get(199).getUrl());
+            } finally {
+                server.stop(0);
+            }
+        }
+
+        final long contentBytes = json.getBytes("UTF-8").length;
+
+        assertEquals(4, metrics.getResponseCount(FeedType.RECENT_BOOKMARKS));
+        assertEquals(3, metrics.getCompressedResponseCount(FeedType.RECENT_BOOKMARKS));
+        assertEquals(4 * contentBytes, metrics.getContentBytes(FeedType.RECENT_BOOKMARKS));
+        assertTrue(metrics.getWireBytes(FeedType.RECENT_BOOKMARKS) < 2 * contentBytes);
+        assertEquals(0, metrics.getResponseCount(FeedType.POPULAR_BOOKMARKS));
+    }
+
+    @Test
+    public void testDoGetRequestWithErrorResult() throws Exception {
+        final String json = "[{\"result\": {\"code\": \"access denied\"}}]";
+        final HttpServer server = serve(200, json, "gzip");
+
+        try {
+            final FeedResponse<Set<Tag>> response = DeliciousUtil.doGetRequest(urlOf(server), DeliciousFeeds.DEFAULT_USER_AGENT,
+                    null, true, FeedType.USER_TAGS, new FeedMetrics(), DeliciousUtil.TAG_SET_PARSER);
+
+            try {
+                response.getValue();
+                fail("Error result must not be parsed as tags");
+            } catch (Exception ex) {
+                assertEquals(json, response.getContent());
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testDoGetRequestWithEmptyBody() throws Exception {
+        final HttpServer server = serve(200, "", "gzip");
+
+        try {
+            final FeedResponse<List<Bookmark>> response = DeliciousUtil.doGetRequest(urlOf(server), DeliciousFeeds.DEFAULT_USER_AGENT,
+                    null, true, FeedType.RECENT_BOOKMARKS, new FeedMetrics(), DeliciousUtil.BOOKMARK_LIST_PARSER);
+
+            assertNull(response.getValue());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testDoGetRequestWhenBanned() throws Exception {
+        final HttpServer server = serve(503, "banned", null);
+
+        try {
+            final FeedResponse<List<Bookmark>> response = DeliciousUtil.doGetRequest(urlOf(server), DeliciousFeeds.DEFAULT_USER_AGENT,
+                    null, true, FeedType.RECENT_BOOKMARKS, new FeedMetrics(), DeliciousUtil.BOOKMARK_LIST_PARSER);
+
+            assertFalse(response.isSuccessful());
+            assertEquals(503, response.getStatusCode());
+            assertNull(response.getContent());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testDoGetRequestWithDeadline() throws Exception {
+        final HttpServer server = serveSlowly(2000);
+
+        try {
+            final long start = System.nanoTime();
+
+            try {
+                DeliciousUtil.doGetRequest(urlOf(server), DeliciousFeeds.DEFAULT_USER_AGENT, null, null, null,
+                        Deadline.after(200, TimeUnit.MILLISECONDS), true, FeedType.RECENT_BOOKMARKS, new FeedMetrics(),
+                        DeliciousUtil.BOOKMARK_LIST_PARSER);
+                fail("Deadline did not expire!");
+            } catch (DeliciousFeedsException ex) {
+                assertEquals(ErrorCode.TIMEOUT, ex.getErrorCode());
+            }
+
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+            assertEquals(0, DeliciousUtil.getLeasedConnections());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testDoGetRequestCancelled() throws Exception {
+        final HttpServer server = serveSlowly(2000);
+        final Deadline deadline = Deadline.cancellable();
+
+        try {
+            final Thread canceller = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+
+                    deadline.cancel();
+                }
+            };
+            canceller.start();
+
+            final long start = System.nanoTime();
+
+            try {
+                DeliciousUtil.doGetRequest(urlOf(server), DeliciousFeeds.DEFAULT_USER_AGENT, null, null, null,
+                        deadline, true, FeedType.RECENT_BOOKMARKS, new FeedMetrics(), DeliciousUtil.BOOKMARK_LIST_PARSER);
+                fail("Request was not cancelled!");
+            } catch (DeliciousFeedsException ex) {
+                assertEquals(ErrorCode.CANCELLED, ex.getErrorCode());
+            }
+
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+            assertEquals(0, DeliciousUtil.getLeasedConnections());
+            assertFalse(Thread.currentThread().isInterrupted());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testDoGetRequestKeepsInterruptOfCaller() throws Exception {
+        final Deadline deadline = Deadline.cancellable();
+        deadline.cancel();
+
+        //Permit available right away, and permit to wait for
+        for (long interval : new long[]{0, 10000}) {
+            final IntervalRateLimiter rateLimiter = new IntervalRateLimiter(interval, TimeUnit.MILLISECONDS);
+            rateLimiter.acquire();
+
+            Thread.currentThread().interrupt();
+            try {
+                DeliciousUtil.doGetRequest("http://127.0.0.1:1/", DeliciousFeeds.DEFAULT_USER_AGENT, rateLimiter, null, null,
+                        deadline, true, FeedType.RECENT_BOOKMARKS, new FeedMetrics(), DeliciousUtil.BOOKMARK_LIST_PARSER);
+                fail("Request was not cancelled!");
+            } catch (DeliciousFeedsException ex) {
+                assertEquals(ErrorCode.CANCELLED, ex.getErrorCode());
+            } finally {
+                assertTrue(Thread.interrupted());
+            }
+        }
+    }
+
+    @Test
+    public void testDoHedgedGetRequest() throws Exception {
+        //Only the first request is slow
+        final HttpServer server = serveSlowly(2000, 1);
+        final HedgePolicy policy = primedHedgePolicy();
+
+        try {
+            warmUpHttpClient();
+
+            final long start = System.nanoTime();
+
+            final FeedResponse<List<Bookmark>> response = DeliciousUtil.doHedgedGetRequest(urlOf(server),
+                    DeliciousFeeds.DEFAULT_USER_AGENT, null, null, null, null, true, FeedType.RECENT_BOOKMARKS,
+                    new FeedMetrics(), DeliciousUtil.BOOKMARK_LIST_PARSER, policy, FeedExecutors.getDefault());
+
+            assertEquals(1, response.getValue().size());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+            assertEquals(1, policy.getHedgeCount());
+            assertEquals(1, policy.getHedgeWinCount());
+
+            //The slow request is aborted on its own thread
+            for (int i = 0; i < 100 && DeliciousUtil.getLeasedConnections() > 0; i++)
+                Thread.sleep(10);
+
+            assertEquals(0, DeliciousUtil.getLeasedConnections());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testDoHedgedGetRequestWithoutHedge() throws Exception {
+        final HttpServer server = serve(200, bookmarksJson(1), null);
+        final HedgePolicy policy = primedHedgePolicy();
+        policy.setMinDelay(1, TimeUnit.SECONDS);
+
+        try {
+            final FeedResponse<List<Bookmark>> response = DeliciousUtil.doHedgedGetRequest(urlOf(server),
+                    DeliciousFeeds.DEFAULT_USER_AGENT, null, null, null, null, true, FeedType.RECENT_BOOKMARKS,
+                    new FeedMetrics(), DeliciousUtil.BOOKMARK_LIST_PARSER, policy, FeedExecutors.getDefault());
+
+            assertEquals(1, response.getValue().size());
+            assertEquals(0, policy.getHedgeCount());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testDoHedgedGetRequestWithoutRatePermit() throws Exception {
+        final HttpServer server = serveSlowly(300);
+        final HedgePolicy policy = primedHedgePolicy();
+
+        //The request takes the only permit, so there is none left for the hedge
+        final IntervalRateLimiter rateLimiter = new IntervalRateLimiter(10, TimeUnit.SECONDS);
+
+        try {
+            final FeedResponse<List<Bookmark>> response = DeliciousUtil.doHedgedGetRequest(urlOf(server),
+                    DeliciousFeeds.DEFAULT_USER_AGENT, rateLimiter, null, null, null, true, FeedType.RECENT_BOOKMARKS,
+                    new FeedMetrics(), DeliciousUtil.BOOKMARK_LIST_PARSER, policy, FeedExecutors.getDefault());
+
+            assertEquals(1, response.getValue().size());
+            assertEquals(0, policy.getHedgeCount());
+            assertEquals(0, policy.getHedgeWinCount());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testDoHedgedGetRequestWhileRateLimited() throws Exception {
+        final HttpServer server = serve(200, bookmarksJson(1), null);
+        final HedgePolicy policy = primedHedgePolicy();
+
+        //The request waits far longer than the hedge delay before it is sent
+        final IntervalRateLimiter rateLimiter = new IntervalRateLimiter(300, TimeUnit.MILLISECONDS);
+        rateLimiter.acquire();
+
+        try {
+            warmUpHttpClient();
+
+            final FeedResponse<List<Bookmark>> response = DeliciousUtil.doHedgedGetRequest(urlOf(server),
+                    DeliciousFeeds.DEFAULT_USER_AGENT, rateLimiter, null, null, null, true, FeedType.RECENT_BOOKMARKS,
+                    new FeedMetrics(), DeliciousUtil.BOOKMARK_LIST_PARSER, policy, FeedExecutors.getDefault());
+
+            assertEquals(1, response.getValue().size());
+            assertEquals(0, policy.getHedgeCount());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testDoGetRequestWithDeadlineWhileRateLimited() throws Exception {
+        final IntervalRateLimiter rateLimiter = new IntervalRateLimiter(10, TimeUnit.SECONDS);
+        rateLimiter.acquire();
+
+        final long start = System.nanoTime();
+
+        try {
+            //Never sent, so the url does not matter
+            DeliciousUtil.doGetRequest("http://127.0.0.1:1/", DeliciousFeeds.DEFAULT_USER_AGENT, rateLimiter, null, null,
+                    Deadline.after(100, TimeUnit.MILLISECONDS), true, FeedType.RECENT_BOOKMARKS, new FeedMetrics(),
+                    DeliciousUtil.BOOKMARK_LIST_PARSER);
+            fail("Deadline did not expire!");
+        } catch (DeliciousFeedsException ex) {
+            assertEquals(ErrorCode.TIMEOUT, ex.getErrorCode());
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    }
+
+    @Test
+    public void testWarmUpAndClose() throws Exception {
+        final HttpServer server = serve(200, bookmarksJson(1), null);
+
+        try {
+            DeliciousUtil.close();
+            assertEquals(0, DeliciousUtil.getAvailableConnections());
+
+            DeliciousUtil.warmUp(urlOf(server), 3);
+            assertEquals(3, DeliciousUtil.getAvailableConnections());
+
+            //Requests reuse the warm connections
+            final FeedResponse<List<Bookmark>> response = DeliciousUtil.doGetRequest(urlOf(server), DeliciousFeeds.DEFAULT_USER_AGENT,
+                    null, true, FeedType.RECENT_BOOKMARKS, new FeedMetrics(), DeliciousUtil.BOOKMARK_LIST_PARSER);
+            assertEquals(1, response.getValue().size());
+            assertEquals(3, DeliciousUtil.getAvailableConnections());
+
+            DeliciousUtil.close();
+            assertEquals(0, DeliciousUtil.getAvailableConnections());
+
+            //A new client is created after closing
+            final FeedResponse<List<Bookmark>> afterClose = DeliciousUtil.doGetRequest(urlOf(server), DeliciousFeeds.DEFAULT_USER_AGENT,
+                    null, true, FeedType.RECENT_BOOKMARKS, new FeedMetrics(), DeliciousUtil.BOOKMARK_LIST_PARSER);
+            assertEquals(1, afterClose.getValue().size());
+            assertEquals(1, DeliciousUtil.getAvailableConnections());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testWarmUpStopsWhenPoolIsBusy() throws Exception {
+        final HttpServer server = serve(200, bookmarksJson(1), null);
+        DeliciousUtil.close();
+
+        final ClientConnectionManager connectionManager = DeliciousUtil.httpClient().getConnectionManager();
+        final HttpRoute route = new HttpRoute(new HttpHost("127.0.0.1", server.getAddress().getPort()));
+        final List<ManagedClientConnection> busy = new ArrayList<ManagedClientConnection>();
+
+        try {
+            //Real requests hold all connections of the route but two
+            for (int i = 0; i < DeliciousUtil.MAX_CONNECTIONS_PER_ROUTE - 2; i++)
+                busy.add(connectionManager.requestConnection(route, null).getConnection(1, TimeUnit.SECONDS));
+
+            final long start = System.nanoTime();
+            DeliciousUtil.warmUp(urlOf(server), 5);
+
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+            assertEquals(DeliciousUtil.MAX_CONNECTIONS_PER_ROUTE - 2, DeliciousUtil.getLeasedConnections());
+            assertEquals(2, DeliciousUtil.getAvailableConnections());
+        } finally {
+            for (ManagedClientConnection connection : busy)
+                connectionManager.releaseConnection(connection, -1, TimeUnit.MILLISECONDS);
+
+            server.stop(0);
+        }
+    }
+
     @Test
     public void testExpandShortenedUrl() throws Exception {
         final String expanded = DeliciousUtil.expandShortenedUrl("http://icio.us/+a7f570d6d6842", DeliciousFeeds.DEFAULT_USER_AGENT);
@@ -266,4 +623,116 @@ public class DeliciousUtilTest {
         assertTrue(urlInfo.getTopTags().contains(science));
         assertTrue(urlInfo.getTopTags().contains(nlp));
     }
+
+    private static String bookmarksJson(int count) {
+        final StringBuilder json = new StringBuilder("[");
+
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                json.append(", ");
+
+            json.append("{\"a\": \"user").append(i % 10).append("\", \"d\": \"Bookmark ").append(i)
+                    .append("\", \"u\": \"http://example.com/").append(i)
+                    .append("\", \"dt\": \"2012-10-22T13:40:31Z\", \"t\": [\"java\", \"test\"]}");
+        }
+
+        return json.append("]").toString();
+    }
+
+    //Serves the body with the given content encoding ("raw-deflate" sends deflate data without zlib header)
+    private static HttpServer serve(final int status, String body, final String encoding) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream output = bytes;
+
+        if ("gzip".equals(encoding))
+            output = new GZIPOutputStream(bytes);
+        else if ("deflate".equals(encoding))
+            output = new DeflaterOutputStream(bytes);
+        else if ("raw-deflate".equals(encoding))
+            output = new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+        output.write(body.getBytes("UTF-8"));
+        output.close();
+
+        final byte[] content = bytes.toByteArray();
+
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                assertEquals("gzip, deflate", exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+
+                if (encoding != null)
+                    exchange.getResponseHeaders().set("Content-Encoding", encoding.startsWith("raw-") ? "deflate" : encoding);
+
+                exchange.sendResponseHeaders(status, content.length);
+                exchange.getResponseBody().write(content);
+                exchange.close();
+            }
+        });
+        server.start();
+
+        return server;
+    }
+
+    //Answers after the delay - or never, if the server is stopped first
+    private static HttpServer serveSlowly(final long delayMillis) throws IOException {
+        return serveSlowly(delayMillis, Integer.MAX_VALUE);
+    }
+
+    //Only the given number of first requests are answered after the delay
+    private static HttpServer serveSlowly(final long delayMillis, final int slowRequests) throws IOException {
+        final AtomicInteger requests = new AtomicInteger();
+
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    if (requests.incrementAndGet() <= slowRequests)
+                        Thread.sleep(delayMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+
+                final byte[] content = bookmarksJson(1).getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, content.length);
+                exchange.getResponseBody().write(content);
+                exchange.close();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        return server;
+    }
+
+    //So the first request is not slowed down by creating the client, and is sent before its hedge
+    private static void warmUpHttpClient() throws Exception {
+        final HttpServer server = serve(200, bookmarksJson(1), null);
+
+        try {
+            DeliciousUtil.doGetRequest(urlOf(server), DeliciousFeeds.DEFAULT_USER_AGENT, null, true,
+                    FeedType.RECENT_BOOKMARKS, new FeedMetrics(), DeliciousUtil.BOOKMARK_LIST_PARSER);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    //Knows enough latencies of 1 millisecond to hedge every request after 50 milliseconds
+    private static HedgePolicy primedHedgePolicy() {
+        final HedgePolicy policy = new HedgePolicy();
+        policy.setMinDelay(50, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 20; i++)
+            policy.recordLatency(FeedType.RECENT_BOOKMARKS, TimeUnit.MILLISECONDS.toNanos(1));
+
+        return policy;
+    }
+
+    private static String urlOf(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.exceptions.DeliciousFeedsException;
+import com.delicious.deliciousfeeds4J.exceptions.ErrorCode;
+import com.delicious.deliciousfeeds4J.exceptions.YouGotBannedException;
+import org.apache.http.client.HttpResponseException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FeedResultTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testSuccess() throws Exception {
+        final List<Bookmark> bookmarks = Collections.singletonList(new Bookmark());
+        final FeedResult<List<Bookmark>> result = FeedResult.of(FeedResponse.parsed(200, bookmarks, body("[]"), UTF8),
+                "http://localhost/", "Error", "count", 1);
+
+        assertTrue(result.isSuccess());
+        assertNull(result.getErrorCode());
+        assertSame(bookmarks, result.getValue());
+        assertSame(bookmarks, result.getOrThrow());
+        assertNull(result.toException());
+    }
+
+    @Test
+    public void testErrorResult() throws Exception {
+        final String json = "[{\"result\": {\"message\": \"something went wrong\", \"code\": 1000}}]";
+        final FeedResult<List<Bookmark>> result = FeedResult.of(FeedResponse.<List<Bookmark>>failed(200, new IOException("parse"), body(json), UTF8),
+                "http://localhost/", "Test", "count", 10, "tags", new String[]{"a", "b"});
+
+        assertFalse(result.isSuccess());
+        assertEquals(ErrorCode.ERROR_RESULT, result.getErrorCode());
+        assertEquals(1000, result.getErrorResult().getCode());
+        assertNull(result.getCause());
+
+        try {
+            result.getOrThrow();
+            fail("Failure must be thrown");
+        } catch (DeliciousFeedsException ex) {
+            assertEquals(ErrorCode.ERROR_RESULT, ex.getErrorCode());
+            assertEquals("Test: [count -> 10, tags -> a, b, message -> something went wrong, code -> 1000]", ex.getMessage());
+            assertNull(ex.getCause());
+        }
+    }
+
+    @Test
+    public void testInvalidResponse() throws Exception {
+        final Exception cause = new IllegalStateException("broken");
+        final FeedResult<List<Bookmark>> result = FeedResult.of(FeedResponse.<List<Bookmark>>failed(200, cause, body("{}"), UTF8),
+                "http://localhost/", "Test", "tags", Arrays.asList("a", "b"), "key", null);
+
+        assertEquals(ErrorCode.INVALID_RESPONSE, result.getErrorCode());
+        assertSame(cause, result.getCause());
+
+        final DeliciousFeedsException exception = result.toException();
+        assertEquals("Test: [tags -> a, b, key -> null]", exception.getMessage());
+        assertSame(cause, exception.getCause());
+    }
+
+    @Test
+    public void testHttpStatus() throws Exception {
+        final FeedResult<List<Bookmark>> banned = FeedResult.of(FeedResponse.<List<Bookmark>>status(503, "Service Unavailable"),
+                "http://localhost/", "Test");
+
+        assertEquals(ErrorCode.BANNED, banned.getErrorCode());
+        assertEquals(503, banned.getStatusCode());
+        assertTrue(banned.toException() instanceof YouGotBannedException);
+
+        final FeedResult<List<Bookmark>> notFound = FeedResult.of(FeedResponse.<List<Bookmark>>status(404, "Not Found"),
+                "http://localhost/", "Test");
+
+        assertEquals(ErrorCode.HTTP_ERROR, notFound.getErrorCode());
+        assertEquals(404, notFound.getStatusCode());
+        assertEquals(ErrorCode.HTTP_ERROR, notFound.toException().getErrorCode());
+
+        //The status is kept in a stackless cause
+        for (FeedResult<?> result : new FeedResult<?>[]{banned, notFound}) {
+            final HttpResponseException cause = (HttpResponseException) result.toException().getCause();
+
+            assertEquals(result.getStatusCode(), cause.getStatusCode());
+            assertEquals(0, cause.getStackTrace().length);
+        }
+    }
+
+    @Test
+    public void testFailureFromException() throws Exception {
+        final DeliciousFeedsException exception = new DeliciousFeedsException(ErrorCode.IO_ERROR, "connection reset");
+        final FeedResult<Object> result = FeedResult.failure(exception);
+
+        assertEquals(ErrorCode.IO_ERROR, result.getErrorCode());
+        assertSame(exception, result.toException());
+    }
+
+    @Test
+    public void testStackTraces() throws Exception {
+        assertEquals(0, new DeliciousFeedsException("stackless").getStackTrace().length);
+
+        DeliciousFeedsException.setStackTraceEnabled(true);
+        try {
+            assertTrue(new DeliciousFeedsException("full").getStackTrace().length > 0);
+        } finally {
+            DeliciousFeedsException.setStackTraceEnabled(false);
+        }
+    }
+
+    private static CountingInputStream body(String content) throws IOException {
+        final CountingInputStream body = new CountingInputStream(new ByteArrayInputStream(content.getBytes(UTF8)), 4096);
+        body.fillPrefix();
+        return body;
+    }
+}
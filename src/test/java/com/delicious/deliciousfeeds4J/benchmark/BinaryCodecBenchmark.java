@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.benchmark;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.codec.BeanReader;
+import com.delicious.deliciousfeeds4J.codec.BeanWriter;
+import com.delicious.deliciousfeeds4J.url.UrlIdentity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Compares the binary codec with Java serialization - size and throughput for encoding and decoding 1000
+ * bookmarks from 50 users. Run it with the test classpath:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.delicious.deliciousfeeds4J.benchmark.BinaryCodecBenchmark
+ * </pre>
+ *
+ * @author Patrick Meier
+ */
+public class BinaryCodecBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private static final int ITERATIONS = 500;
+
+    private static final int BOOKMARKS = 1000;
+
+    private static final String[] TAGS = {"web", "programming", "java", "design", "tools", "howto", "news", "music"};
+
+    //Volatile sink, so the JIT can not drop the benchmarked code
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        final ArrayList<Bookmark> bookmarks = buildBookmarks(BOOKMARKS);
+
+        final byte[] serialized = serialize(bookmarks);
+        final ByteBuffer encoded = encode(bookmarks);
+
+        System.out.printf("%-40s %10d bytes%n", "Java serialization", serialized.length);
+        System.out.printf("%-40s %10d bytes%n", "BeanWriter", encoded.remaining());
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round + ":");
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++)
+                sink += serialize(bookmarks).length;
+            report("  ObjectOutputStream", System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++)
+                sink += encode(bookmarks).remaining();
+            report("  BeanWriter", System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++)
+                sink += ((List<?>) new ObjectInputStream(new ByteArrayInputStream(serialized)).readObject()).size();
+            report("  ObjectInputStream", System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++)
+                sink += new BeanReader(encoded.duplicate()).readAll().size();
+            report("  BeanReader", System.nanoTime() - start);
+        }
+    }
+
+    private static byte[] serialize(ArrayList<Bookmark> bookmarks) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 * 1024);
+        final ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(bookmarks);
+        output.close();
+        return bytes.toByteArray();
+    }
+
+    private static ByteBuffer encode(List<Bookmark> bookmarks) {
+        final BeanWriter writer = new BeanWriter(128 * 1024, BeanWriter.DEFAULT_MAX_DICTIONARY_SIZE);
+        writer.writeAll(bookmarks);
+        return writer.toByteBuffer();
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.printf("%-40s %10.1f us/%d bookmarks%n", name, nanos / 1000.0 / ITERATIONS, BOOKMARKS);
+    }
+
+    private static ArrayList<Bookmark> buildBookmarks(int size) {
+        final Random random = new Random(42);
+        final ArrayList<Bookmark> bookmarks = new ArrayList<Bookmark>(size);
+
+        long time = 1351000000000L;
+
+        for (int i = 0; i < size; i++) {
+            final Bookmark bookmark = new Bookmark();
+            bookmark.setUser("user" + random.nextInt(50));
+            bookmark.setTitle("A title of bookmark number " + i);
+            bookmark.setDescription(i % 3 == 0 ? "Some longer description of what can be found there." : "");
+            bookmark.setUrl("http://www.example" + random.nextInt(200) + ".com/articles/" + i);
+            bookmark.setMd5(UrlIdentity.hash(bookmark.getUrl()).toHex());
+            bookmark.setLastUpdatedDate(new Date(time -= random.nextInt(600000)));
+
+            final Set<String> tags = new HashSet<String>();
+
+            for (int t = random.nextInt(4); t >= 0; t--)
+                tags.add(TAGS[random.nextInt(TAGS.length)]);
+
+            bookmark.setTags(tags);
+            bookmarks.add(bookmark);
+        }
+
+        return bookmarks;
+    }
+}
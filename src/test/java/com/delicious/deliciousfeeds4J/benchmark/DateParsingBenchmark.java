@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.benchmark;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.json.IsoDateParser;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.util.StdDateFormat;
+import org.codehaus.jackson.type.TypeReference;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compares the {@link IsoDateParser} with Jackson's default date handling - once for the plain timestamp
+ * parsing and once for deserializing a whole page of 100 bookmarks. Run it with the test classpath:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.delicious.deliciousfeeds4J.benchmark.DateParsingBenchmark
+ * </pre>
+ *
+ * @author Patrick Meier
+ */
+public class DateParsingBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private static final int ITERATIONS = 1000000;
+
+    private static final int PAGE_ITERATIONS = 5000;
+
+    private static final String TIMESTAMP = "2012-10-22T13:40:31Z";
+
+    //Volatile sink, so the JIT can not drop the benchmarked code
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        final String page = buildPage(100);
+
+        final ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationConfig.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round + ":");
+
+            report("  StdDateFormat.parse", ITERATIONS, benchmarkStdDateFormat());
+            report("  IsoDateParser.parseMillis", ITERATIONS, benchmarkIsoDateParser());
+            report("  page with default Date", PAGE_ITERATIONS, benchmarkPage(objectMapper, page, new TypeReference<List<DefaultDateBookmark>>() {
+            }));
+            report("  page with JacksonDateDeserializer", PAGE_ITERATIONS, benchmarkPage(objectMapper, page, new TypeReference<List<Bookmark>>() {
+            }));
+        }
+    }
+
+    private static long benchmarkStdDateFormat() throws Exception {
+        final StdDateFormat dateFormat = new StdDateFormat();
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += dateFormat.parse(TIMESTAMP).getTime();
+
+        return System.nanoTime() - start;
+    }
+
+    private static long benchmarkIsoDateParser() {
+        final char[] buffer = TIMESTAMP.toCharArray();
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += IsoDateParser.parseMillis(buffer, 0, buffer.length);
+
+        return System.nanoTime() - start;
+    }
+
+    private static long benchmarkPage(ObjectMapper objectMapper, String page, TypeReference<?> type) throws Exception {
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < PAGE_ITERATIONS; i++)
+            sink += ((List<?>) objectMapper.readValue(page, type)).size();
+
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String name, int iterations, long nanos) {
+        System.out.printf("%-40s %10.1f ns/op%n", name, (double) nanos / iterations);
+    }
+
+    private static String buildPage(int size) {
+        final StringBuilder page = new StringBuilder("[");
+
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                page.append(", ");
+
+            page.append("{\"a\": \"user").append(i).append("\", \"d\": \"Title ").append(i)
+                    .append("\", \"n\": \"\", \"u\": \"http://example.com/").append(i)
+                    .append("\", \"t\": [\"web\", \"programming\"], \"dt\": \"2012-10-22T13:40:")
+                    .append(String.format("%02d", i % 60)).append("Z\", \"md5\": \"4967ef979fca2b4629c3d5ad70f83c01\"}");
+        }
+
+        return page.append("]").toString();
+    }
+
+    //The bookmark as it was before - using Jackson's default Date handling
+    public static class DefaultDateBookmark {
+
+        @JsonProperty(value = "a")
+        public String user;
+
+        @JsonProperty(value = "d")
+        public String title;
+
+        @JsonProperty(value = "n")
+        public String description;
+
+        @JsonProperty(value = "u")
+        public String url;
+
+        @JsonProperty(value = "t")
+        public Set<String> tags;
+
+        @JsonProperty(value = "dt")
+        public Date lastUpdatedDate;
+
+        @JsonProperty(value = "md5")
+        public String md5;
+    }
+}
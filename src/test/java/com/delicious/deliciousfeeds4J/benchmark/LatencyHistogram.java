@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.benchmark;
+
+import java.io.PrintStream;
+
+/**
+ * Histogram of latencies in the spirit of HdrHistogram: values are counted in buckets whose width grows with
+ * the value, so every recorded value is kept with a precision of better than 1% (two significant digits)
+ * over the whole range from 1 to 2^40 - with a fixed size of about 35KB and no allocation while recording.
+ * <p/>
+ * Not thread-safe: every thread records into a histogram of its own and they are merged with
+ * {@link #add(LatencyHistogram)} afterwards.
+ *
+ * @author Patrick Meier
+ */
+public class LatencyHistogram {
+
+    //Values below 256 are counted exactly, every power of two above is split into 128 sub-buckets
+    private static final int SUB_BUCKET_BITS = 8;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+    private static final int MAX_VALUE_BITS = 40;
+
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+    private static final int PERCENTILE_TICKS_PER_HALF_DISTANCE = 5;
+
+    private final long[] counts = new long[indexOf(MAX_VALUE) + 1];
+
+    private long totalCount;
+
+    private long min = Long.MAX_VALUE;
+
+    private long max;
+
+    private double sum;
+
+    private double sumOfSquares;
+
+    //---------------------------------------------------------------------------
+    // Methods
+    //---------------------------------------------------------------------------
+
+    /**
+     * Records a value. Values above 2^40 - 1 are recorded as 2^40 - 1.
+     *
+     * @param value the value to record
+     * @throws IllegalArgumentException if value is negative
+     */
+    public void record(long value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Value must not be negative!");
+
+        final long recorded = value > MAX_VALUE ? MAX_VALUE : value;
+
+        counts[indexOf(recorded)]++;
+        totalCount++;
+        sum += recorded;
+        sumOfSquares += (double) recorded * recorded;
+
+        if (recorded < min)
+            min = recorded;
+
+        if (recorded > max)
+            max = recorded;
+    }
+
+    /**
+     * Adds all values recorded by another histogram to this one.
+     *
+     * @param other the histogram to add
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+
+        totalCount += other.totalCount;
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Gets the value at the given percentile - the highest value equivalent to the bucket which contains it.
+     *
+     * @param percentile the percentile from 0 to 100
+     * @return the value, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0)
+            return 0;
+
+        final long countAtPercentile = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+        long count = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            count += counts[i];
+
+            if (count >= countAtPercentile)
+                return Math.min(highestEquivalentValue(i), max);
+        }
+
+        return max;
+    }
+
+    /**
+     * Prints the percentile distribution in the format of HdrHistogram, so the output of several runs can be
+     * plotted and compared with its tools.
+     *
+     * @param out               the stream to print to
+     * @param valueScalingRatio the recorded values are divided by this, e.g. 1000.0 to print values recorded
+     *                          in microseconds as milliseconds
+     */
+    public void outputPercentileDistribution(PrintStream out, double valueScalingRatio) {
+        out.println("       Value     Percentile TotalCount 1/(1-Percentile)");
+        out.println();
+
+        if (totalCount > 0) {
+            for (int level = 0; ; level++) {
+                final double remaining = 100.0 / (1L << level);
+                boolean done = false;
+
+                for (int tick = 0; tick < PERCENTILE_TICKS_PER_HALF_DISTANCE && done == false; tick++) {
+                    final double percentile = 100.0 - remaining + tick * remaining / 2 / PERCENTILE_TICKS_PER_HALF_DISTANCE;
+                    final long value = getValueAtPercentile(percentile);
+                    final long count = countAtOrBelow(value);
+
+                    out.printf("%12.3f %14.12f %10d %14.2f%n", value / valueScalingRatio, (double) count / totalCount,
+                            count, 1 / (1 - percentile / 100.0));
+
+                    done = count == totalCount;
+                }
+
+                if (done || level >= 62)
+                    break;
+            }
+
+            out.printf("%12.3f %14.12f %10d%n", max / valueScalingRatio, 1.0, totalCount);
+        }
+
+        final double mean = totalCount > 0 ? sum / totalCount : 0;
+        final double deviation = totalCount > 0 ? Math.sqrt(Math.max(0, sumOfSquares / totalCount - mean * mean)) : 0;
+
+        out.printf("#[Mean    = %12.3f, StdDeviation   = %12.3f]%n", mean / valueScalingRatio, deviation / valueScalingRatio);
+        out.printf("#[Max     = %12.3f, Total count    = %12d]%n", max / valueScalingRatio, totalCount);
+        out.printf("#[Buckets = %12d, SubBuckets     = %12d]%n", MAX_VALUE_BITS - SUB_BUCKET_BITS + 1, SUB_BUCKET_COUNT);
+    }
+
+    private long countAtOrBelow(long value) {
+        final int index = indexOf(value);
+        long count = 0;
+
+        for (int i = 0; i <= index; i++)
+            count += counts[i];
+
+        return count;
+    }
+
+    //Bucket 0 holds 0..255 exactly, bucket n > 0 holds [2^(n+7), 2^(n+8)) in steps of 2^n
+    private static int indexOf(long value) {
+        final int bucket = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        final int subBucket = (int) (value >>> bucket);
+
+        if (bucket == 0)
+            return subBucket;
+
+        return SUB_BUCKET_COUNT + (bucket - 1) * SUB_BUCKET_HALF_COUNT + (subBucket - SUB_BUCKET_HALF_COUNT);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+
+        final int bucket = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+        final long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+
+        return ((subBucket + 1) << bucket) - 1;
+    }
+
+    //---------------------------------------------------------------------------
+    // Getters & Setters
+    //---------------------------------------------------------------------------
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public long getMin() {
+        return totalCount > 0 ? min : 0;
+    }
+
+    public double getMean() {
+        return totalCount > 0 ? sum / totalCount : 0;
+    }
+}
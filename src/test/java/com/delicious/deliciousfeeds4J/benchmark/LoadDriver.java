@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.delicious.deliciousfeeds4J.DeliciousFeeds;
+import com.delicious.deliciousfeeds4J.FeedResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Drives a mix of {@link DeliciousFeeds} calls from several threads against a local stub of the delicious
+ * API and reports the sustained throughput, the latency distribution (in the format of HdrHistogram), the
+ * allocation rate of the calling threads and how saturated the connection pool was. Every thread sends its
+ * next request as soon as the last one returned (closed loop), so compare runs with the same number of threads.
+ * <p/>
+ * Configured with system properties:
+ * <ul>
+ * <li>{@code load.threads} - calling threads (default 16)</li>
+ * <li>{@code load.seconds} - measured duration (default 20)</li>
+ * <li>{@code load.warmupSeconds} - unmeasured warm-up before (default 5)</li>
+ * <li>{@code load.latencyMillis} - time the stub waits before answering (default 20)</li>
+ * <li>{@code load.count} - bookmarks per response (default 10)</li>
+ * <li>{@code load.mix} - weights of the calls (default {@code recent=4,tag=2,user=2,network=1,url=1,urlinfo=1})</li>
+ * <li>{@code load.compression} - whether responses are gzip compressed (default true)</li>
+ * </ul>
+ * Run it with the test classpath:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.delicious.deliciousfeeds4J.benchmark.LoadDriver -Dload.threads=64
+ * </pre>
+ *
+ * @author Patrick Meier
+ */
+public class LoadDriver {
+
+    private static final String[] OPERATIONS = {"recent", "tag", "user", "network", "url", "urlinfo"};
+
+    private static final String DEFAULT_MIX = "recent=4,tag=2,user=2,network=1,url=1,urlinfo=1";
+
+    private static final String[] TAGS = {"java", "programming", "webdesign", "tools", "music", "travel"};
+
+    private static final String[] USERS = {"hubert64297", "testuser", "patrick", "anna", "zoe"};
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 10;
+
+    public static void main(String[] args) throws Exception {
+        final int threads = Integer.getInteger("load.threads", 16);
+        final int seconds = Integer.getInteger("load.seconds", 20);
+        final int warmupSeconds = Integer.getInteger("load.warmupSeconds", 5);
+        final int latencyMillis = Integer.getInteger("load.latencyMillis", 20);
+        final int count = Integer.getInteger("load.count", 10);
+        final String mix = System.getProperty("load.mix", DEFAULT_MIX);
+        final boolean compression = Boolean.parseBoolean(System.getProperty("load.compression", "true"));
+
+        //Logging every request would measure the logger
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        final int[] schedule = parseMix(mix);
+        final HttpServer server = startStub(latencyMillis, count);
+
+        try {
+            final DeliciousFeeds deliciousFeeds = new DeliciousFeeds();
+            deliciousFeeds.setApiEndpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/v2/json/");
+            deliciousFeeds.setCompression(compression);
+
+            System.out.printf("Threads: %d, stub latency: %d ms, count: %d, compression: %s, mix: %s%n",
+                    threads, latencyMillis, count, compression, mix);
+            System.out.printf("Warming up for %d s, measuring for %d s...%n", warmupSeconds, seconds);
+
+            final long measureStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            final long measureEnd = measureStart + TimeUnit.SECONDS.toNanos(seconds);
+
+            final List<Worker> workers = new ArrayList<Worker>(threads);
+
+            for (int i = 0; i < threads; i++) {
+                final Worker worker = new Worker(deliciousFeeds, schedule, count, measureStart, measureEnd, i);
+                worker.start();
+                workers.add(worker);
+            }
+
+            final PoolSampler sampler = new PoolSampler(measureStart, measureEnd);
+            sampler.start();
+
+            final LatencyHistogram histogram = new LatencyHistogram();
+            long failures = 0;
+            long allocatedBytes = 0;
+
+            for (Worker worker : workers) {
+                worker.join();
+                histogram.add(worker.histogram);
+                failures += worker.failures;
+                allocatedBytes += worker.allocatedBytes;
+            }
+
+            sampler.join();
+
+            report(histogram, failures, allocatedBytes, seconds, sampler);
+        } finally {
+            DeliciousFeeds.shutdown();
+            server.stop(0);
+        }
+    }
+
+    //Every operation is repeated as often as its weight, so picking a random element follows the mix
+    private static int[] parseMix(String mix) {
+        final List<Integer> schedule = new ArrayList<Integer>();
+
+        for (String entry : mix.split(",")) {
+            final String[] parts = entry.trim().split("=");
+            int operation = -1;
+
+            for (int i = 0; i < OPERATIONS.length; i++)
+                if (OPERATIONS[i].equals(parts[0].trim()))
+                    operation = i;
+
+            if (operation < 0 || parts.length != 2)
+                throw new IllegalArgumentException("Invalid mix entry: " + entry);
+
+            for (int i = Integer.parseInt(parts[1].trim()); i > 0; i--)
+                schedule.add(operation);
+        }
+
+        if (schedule.isEmpty())
+            throw new IllegalArgumentException("Mix must not be empty!");
+
+        final int[] result = new int[schedule.size()];
+
+        for (int i = 0; i < result.length; i++)
+            result[i] = schedule.get(i);
+
+        return result;
+    }
+
+    private static FeedResult<?> call(DeliciousFeeds deliciousFeeds, int operation, int count, Random random) {
+        final String tag = TAGS[random.nextInt(TAGS.length)];
+        final String user = USERS[random.nextInt(USERS.length)];
+        final String url = "http://example.com/" + random.nextInt(1000);
+
+        switch (operation) {
+            case 0:
+                return deliciousFeeds.tryFindBookmarks(count);
+            case 1:
+                return deliciousFeeds.tryFindBookmarksByTags(count, tag);
+            case 2:
+                return deliciousFeeds.tryFindBookmarksByUser(count, user);
+            case 3:
+                return deliciousFeeds.tryFindNetworkBookmarksByUser(count, user);
+            case 4:
+                return deliciousFeeds.tryFindBookmarksByUrl(count, url);
+            default:
+                return deliciousFeeds.tryFindUrlInfoByUrl(url);
+        }
+    }
+
+    private static HttpServer startStub(final int latencyMillis, int count) throws IOException {
+        final byte[] bookmarks = bookmarksJson(count).getBytes("UTF-8");
+        final byte[] gzippedBookmarks = gzip(bookmarks);
+        final byte[] urlInfo = ("[{\"url\": \"http://example.com/\", \"total_posts\": 5849, \"top_tags\": {\"java\": 12, " +
+                "\"tools\": 3}, \"hash\": \"80e661f28a8f9fb62b4003af90fad6ed\", \"title\": \"Example\"}]").getBytes("UTF-8");
+        final byte[] gzippedUrlInfo = gzip(urlInfo);
+
+        //Otherwise Nagle and delayed ACKs add 40 ms to every response of the stub
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+
+        server.createContext("/v2/json/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+
+                final boolean isUrlInfo = exchange.getRequestURI().getPath().startsWith("/v2/json/urlinfo/");
+                final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                final boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+                final byte[] body = isUrlInfo ? (gzip ? gzippedUrlInfo : urlInfo) : (gzip ? gzippedBookmarks : bookmarks);
+
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+
+                if (gzip)
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+
+                exchange.sendResponseHeaders(200, body.length);
+
+                final OutputStream output = exchange.getResponseBody();
+                output.write(body);
+                output.close();
+            }
+        });
+
+        //The stub must not be the bottleneck, every request gets a thread
+        final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "stub");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        server.setExecutor(executor);
+        server.start();
+
+        return server;
+    }
+
+    private static String bookmarksJson(int count) {
+        final StringBuilder json = new StringBuilder("[");
+
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                json.append(", ");
+
+            json.append("{\"a\": \"user").append(i % 10).append("\", \"d\": \"Bookmark ").append(i)
+                    .append("\", \"u\": \"http://example.com/").append(i)
+                    .append("\", \"n\": \"Some notes about bookmark ").append(i)
+                    .append("\", \"dt\": \"2012-10-22T13:40:31Z\", \"t\": [\"java\", \"programming\", \"tools\"]}");
+        }
+
+        return json.append("]").toString();
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final GZIPOutputStream gzip = new GZIPOutputStream(output);
+        gzip.write(bytes);
+        gzip.close();
+        return output.toByteArray();
+    }
+
+    private static long allocatedBytes() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        return -1;
+    }
+
+    private static void report(LatencyHistogram histogram, long failures, long allocatedBytes, int seconds,
+                               PoolSampler sampler) {
+        final long requests = histogram.getTotalCount();
+
+        System.out.println();
+        System.out.printf("%-14s %d (%d failed)%n", "Requests:", requests, failures);
+        System.out.printf("%-14s %.1f requests/s%n", "Throughput:", (double) requests / seconds);
+        System.out.printf("%-14s p50 %.3f, p99 %.3f, p99.9 %.3f, max %.3f%n", "Latency (ms):",
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMax() / 1000.0);
+
+        if (allocatedBytes >= 0 && requests > 0)
+            System.out.printf("%-14s %.1f MB/s, %d bytes/request%n", "Allocation:",
+                    allocatedBytes / (1024.0 * 1024.0) / seconds, allocatedBytes / requests);
+
+        System.out.printf("%-14s max %d of %d leased, mean %.1f, max %d pending, saturated %.1f%% of the time%n",
+                "Connections:", sampler.maxLeased, DeliciousFeeds.MAX_CONNECTIONS_PER_HOST, sampler.getMeanLeased(),
+                sampler.maxPending, sampler.getSaturation() * 100);
+
+        System.out.println();
+        histogram.outputPercentileDistribution(System.out, 1000.0);
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        final long nanos = nanoTime - System.nanoTime();
+
+        if (nanos > 0)
+            TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+
+    private static final class Worker extends Thread {
+
+        private final DeliciousFeeds deliciousFeeds;
+
+        private final int[] schedule;
+
+        private final int count;
+
+        private final long measureStart;
+
+        private final long measureEnd;
+
+        private final Random random;
+
+        //Latencies in microseconds
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private long failures;
+
+        private long allocatedBytes = -1;
+
+        private Worker(DeliciousFeeds deliciousFeeds, int[] schedule, int count, long measureStart, long measureEnd, int index) {
+            super("load-" + index);
+            this.deliciousFeeds = deliciousFeeds;
+            this.schedule = schedule;
+            this.count = count;
+            this.measureStart = measureStart;
+            this.measureEnd = measureEnd;
+            this.random = new Random(index);
+        }
+
+        @Override
+        public void run() {
+            while (System.nanoTime() < measureStart)
+                call(deliciousFeeds, schedule[random.nextInt(schedule.length)], count, random);
+
+            final long bytes = allocatedBytes();
+
+            while (true) {
+                final long start = System.nanoTime();
+
+                if (start >= measureEnd)
+                    break;
+
+                final FeedResult<?> result = call(deliciousFeeds, schedule[random.nextInt(schedule.length)], count, random);
+
+                histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+
+                if (result.isSuccess() == false)
+                    failures++;
+            }
+
+            if (bytes >= 0)
+                allocatedBytes = allocatedBytes() - bytes;
+        }
+    }
+
+    private static final class PoolSampler extends Thread {
+
+        private final long measureStart;
+
+        private final long measureEnd;
+
+        private int maxLeased;
+
+        private int maxPending;
+
+        private long leasedSum;
+
+        private long saturatedSamples;
+
+        private long samples;
+
+        private PoolSampler(long measureStart, long measureEnd) {
+            super("load-sampler");
+            this.measureStart = measureStart;
+            this.measureEnd = measureEnd;
+        }
+
+        @Override
+        public void run() {
+            try {
+                sleepUntil(measureStart);
+
+                while (System.nanoTime() < measureEnd) {
+                    final int leased = DeliciousFeeds.getLeasedConnections();
+                    final int pending = DeliciousFeeds.getPendingConnections();
+
+                    maxLeased = Math.max(maxLeased, leased);
+                    maxPending = Math.max(maxPending, pending);
+                    leasedSum += leased;
+                    samples++;
+
+                    if (pending > 0)
+                        saturatedSamples++;
+
+                    Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private double getMeanLeased() {
+            return samples > 0 ? (double) leasedSum / samples : 0;
+        }
+
+        private double getSaturation() {
+            return samples > 0 ? (double) saturatedSamples / samples : 0;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.benchmark;
+
+import com.delicious.deliciousfeeds4J.FeedType;
+import com.delicious.deliciousfeeds4J.request.RequestTemplate;
+import org.apache.commons.lang.StringUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URLEncoder;
+
+/**
+ * Compares building the url of a private tag feed with a {@link RequestTemplate} against string
+ * concatenation - once the way it used to be done (joining the tags for the url, the log line and the
+ * message, without encoding) and once encoding every value with {@link URLEncoder}. Reports the time and,
+ * on HotSpot, the allocated bytes per request. Run it with the test classpath:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.delicious.deliciousfeeds4J.benchmark.RequestTemplateBenchmark
+ * </pre>
+ *
+ * @author Patrick Meier
+ */
+public class RequestTemplateBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private static final int ITERATIONS = 1000000;
+
+    private static final String ENDPOINT = "http://feeds.delicious.com/v2/json/";
+
+    private static final String USERNAME = "hubert64297";
+
+    private static final String KEY = "x2Ua8sBbd2Ka2bY7uFf5PQ";
+
+    private static final String[] TAGS = {"programming", "java", "webdesign", "tools"};
+
+    private static final String[] NON_ASCII_TAGS = {"programmierung", "b\u00fccher", "\u6771\u4eac", "c++"};
+
+    //Volatile sink, so the JIT can not drop the benchmarked code
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        final RequestTemplate template = FeedType.PRIVATE_USER_TAG_BOOKMARKS.getRequestTemplate();
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round + ":");
+
+            benchmarkConcatenation();
+            benchmarkUrlEncoder(TAGS, "  URLEncoder");
+            benchmarkUrlEncoder(NON_ASCII_TAGS, "  URLEncoder, non-ASCII");
+            benchmarkTemplate(template, TAGS, "  RequestTemplate");
+            benchmarkTemplate(template, NON_ASCII_TAGS, "  RequestTemplate, non-ASCII");
+        }
+    }
+
+    private static void benchmarkConcatenation() {
+        final long bytes = allocatedBytes();
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            final String log = StringUtils.join(TAGS, ", ");
+            final String url = ENDPOINT + USERNAME + "/" + StringUtils.join(TAGS, "+") + "?private=" + KEY + "&count=" + (i & 63);
+            final String message = "tags -> " + StringUtils.join(TAGS, ", ");
+            sink += log.length() + url.length() + message.length();
+        }
+
+        report("  concatenation (old)", System.nanoTime() - start, allocatedBytes() - bytes);
+    }
+
+    private static void benchmarkUrlEncoder(String[] tags, String name) throws Exception {
+        final long bytes = allocatedBytes();
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            final StringBuilder url = new StringBuilder(ENDPOINT).append(URLEncoder.encode(USERNAME, "UTF-8")).append('/');
+
+            for (int t = 0; t < tags.length; t++) {
+                if (t > 0)
+                    url.append('+');
+
+                url.append(URLEncoder.encode(tags[t], "UTF-8"));
+            }
+
+            url.append("?private=").append(URLEncoder.encode(KEY, "UTF-8")).append("&count=").append(i & 63);
+            sink += url.toString().length();
+        }
+
+        report(name, System.nanoTime() - start, allocatedBytes() - bytes);
+    }
+
+    private static void benchmarkTemplate(RequestTemplate template, String[] tags, String name) {
+        final long bytes = allocatedBytes();
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += template.expand(ENDPOINT, USERNAME, KEY, i & 63, tags).length();
+
+        report(name, System.nanoTime() - start, allocatedBytes() - bytes);
+    }
+
+    private static long allocatedBytes() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        return -1;
+    }
+
+    private static void report(String name, long nanos, long bytes) {
+        if (bytes >= 0)
+            System.out.printf("%-40s %10.1f ns/op %8d bytes/op%n", name, (double) nanos / ITERATIONS, bytes / ITERATIONS);
+        else
+            System.out.printf("%-40s %10.1f ns/op%n", name, (double) nanos / ITERATIONS);
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.codec;
+
+import com.delicious.deliciousfeeds4J.beans.*;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BeanCodecTest {
+
+    @Test
+    public void testBookmarkRoundTrip() throws Exception {
+        final BeanWriter writer = new BeanWriter();
+
+        final Bookmark full = bookmark("patrick", "http://example.com/ä", 1351000000000L, "4967ef979fca2b4629c3d5ad70f83c01", "web", "java");
+        full.setTitle("Tïtle");
+        full.setDescription("");
+
+        final Bookmark empty = new Bookmark();
+
+        //Md5 which does not survive as binary - kept as string
+        final Bookmark upperCase = bookmark("patrick", "http://example.com/", 1000L, "4967EF979FCA2B4629C3D5AD70F83C01");
+
+        writer.writeBookmark(full);
+        writer.writeBookmark(empty);
+        writer.writeBookmark(upperCase);
+
+        final BeanReader reader = new BeanReader(writer.toByteBuffer());
+
+        assertEquals(full, reader.readBookmark());
+        assertEquals(empty, reader.readBookmark());
+        assertEquals(upperCase, reader.readBookmark());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void testAllTypesRoundTrip() throws Exception {
+        final UrlInfo urlInfo = new UrlInfo();
+        urlInfo.setTitle("Example");
+        urlInfo.setUrl("http://example.com/");
+        urlInfo.setHash("4967ef979fca2b4629c3d5ad70f83c01");
+        urlInfo.setTotalPosts(123456789012L);
+        urlInfo.setTopTags(new TreeSet<Tag>(Arrays.asList(tag("web", 10), tag("java", 3))));
+
+        final UserInfo userInfo = new UserInfo();
+        userInfo.setUser("patrick");
+        userInfo.setItems(42);
+        userInfo.setFollowing(-1);
+        userInfo.setFollowers(7);
+        userInfo.getUserInfoDetailSet().add(detail(UserInfoDetail.ITEMS_ID, "items", 42));
+        userInfo.getUserInfoDetailSet().add(detail(UserInfoDetail.FOLLOWERS_ID, null, 7));
+
+        final User user = new User();
+        user.setUser("friend");
+        user.setAddedDate(new Date(-5000L));
+
+        final List<Object> beans = Arrays.<Object>asList(bookmark("patrick", "http://example.com/", 2000L, null, "web"),
+                urlInfo, userInfo, tag("web", 5), user, new Tag(), new UrlInfo(), new User());
+
+        final BeanWriter writer = new BeanWriter();
+        writer.writeAll(beans);
+
+        final BeanReader reader = new BeanReader(writer.toByteBuffer());
+
+        assertEquals(BeanType.BOOKMARK, reader.peekType());
+        assertEquals(beans, reader.readAll());
+    }
+
+    @Test
+    public void testDictionaryMakesRepeatedValuesSmall() throws Exception {
+        final BeanWriter writer = new BeanWriter();
+
+        writer.writeBookmark(bookmark("someverylongusername", "u", 1000L, null, "programming", "javascript"));
+        final int first = writer.size();
+
+        writer.writeBookmark(bookmark("someverylongusername", "u", 2000L, null, "programming", "javascript"));
+        final int second = writer.size() - first;
+
+        assertTrue(second < 12);
+    }
+
+    @Test
+    public void testMaxDictionarySize() throws Exception {
+        final BeanWriter writer = new BeanWriter(16, 1);
+
+        for (int i = 0; i < 100; i++)
+            writer.writeBookmark(bookmark("user" + (i % 3), "http://example.com/" + i, i * 1000L, null, "tag" + (i % 5)));
+
+        final BeanReader reader = new BeanReader(writer.toByteBuffer());
+
+        for (int i = 0; i < 100; i++)
+            assertEquals(bookmark("user" + (i % 3), "http://example.com/" + i, i * 1000L, null, "tag" + (i % 5)), reader.readBookmark());
+    }
+
+    @Test
+    public void testStreamingToChannelAndDirectBuffer() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final BeanWriter writer = new BeanWriter();
+
+        for (int i = 0; i < 1000; i++) {
+            writer.writeBookmark(bookmark("user" + (i % 10), "http://example.com/" + i, i * 60000L, null, "web"));
+
+            if (i % 100 == 99)
+                writer.writeTo(Channels.newChannel(output));
+        }
+
+        assertEquals(0, writer.size());
+
+        final byte[] bytes = output.toByteArray();
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+
+        final BeanReader reader = new BeanReader(direct);
+
+        for (int i = 0; i < 1000; i++)
+            assertEquals("http://example.com/" + i, reader.readBookmark().getUrl());
+
+        assertFalse(reader.hasNext());
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testInvalidHeader() throws Exception {
+        new BeanReader(ByteBuffer.wrap("JSON[]".getBytes("UTF-8")));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedRecord() throws Exception {
+        final BeanWriter writer = new BeanWriter();
+        writer.writeBookmark(bookmark("patrick", "http://example.com/", 1000L, null));
+
+        final ByteBuffer buffer = writer.toByteBuffer();
+        buffer.limit(buffer.limit() - 3);
+
+        new BeanReader(buffer).readBookmark();
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testWrongType() throws Exception {
+        final BeanWriter writer = new BeanWriter();
+        writer.writeTag(tag("web", 1));
+
+        new BeanReader(writer.toByteBuffer()).readBookmark();
+    }
+
+    @Test
+    public void testVarints() throws Exception {
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        for (long value : new long[]{0, 1, -1, 127, 128, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            buffer.clear();
+            Varints.putVarLong(buffer, Varints.zigZag(value));
+            buffer.flip();
+            assertEquals(value, Varints.unZigZag(Varints.getVarLong(buffer)));
+        }
+
+        for (int value : new int[]{0, 300, -300, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+            buffer.clear();
+            Varints.putVarInt(buffer, Varints.zigZag(value));
+            assertEquals(Varints.sizeOf(Varints.zigZag(value)), buffer.position());
+            buffer.flip();
+            assertEquals(value, Varints.unZigZag(Varints.getVarInt(buffer)));
+        }
+    }
+
+    static Bookmark bookmark(String user, String url, long time, String md5, String... tags) {
+        final Bookmark bookmark = new Bookmark();
+        bookmark.setUser(user);
+        bookmark.setUrl(url);
+        bookmark.setLastUpdatedDate(new Date(time));
+        bookmark.setMd5(md5);
+        bookmark.setTags(new LinkedHashSet<String>(Arrays.asList(tags)));
+        return bookmark;
+    }
+
+    private static Tag tag(String name, int count) {
+        final Tag tag = new Tag();
+        tag.setName(name);
+        tag.setCount(count);
+        return tag;
+    }
+
+    private static UserInfoDetail detail(String id, String description, int count) {
+        final UserInfoDetail detail = new UserInfoDetail();
+        detail.setId(id);
+        detail.setDescription(description);
+        detail.setCount(count);
+        return detail;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.concurrent;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DeadlineTest {
+
+    @Test
+    public void testRemaining() throws Exception {
+        final Deadline deadline = Deadline.after(1, TimeUnit.SECONDS);
+
+        assertTrue(deadline.hasTimeLimit());
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.remaining(TimeUnit.MILLISECONDS) > 500);
+        assertTrue(deadline.remaining(TimeUnit.MILLISECONDS) <= 1000);
+
+        final Deadline expired = Deadline.after(0, TimeUnit.SECONDS);
+
+        assertTrue(expired.isExpired());
+        assertEquals(0, expired.remaining(TimeUnit.NANOSECONDS));
+        assertFalse(expired.isCancelled());
+    }
+
+    @Test
+    public void testCancellable() throws Exception {
+        final Deadline deadline = Deadline.cancellable();
+
+        assertFalse(deadline.hasTimeLimit());
+        assertFalse(deadline.isExpired());
+        assertEquals(Long.MAX_VALUE, deadline.remaining(TimeUnit.NANOSECONDS));
+
+        deadline.cancel();
+
+        assertTrue(deadline.isExpired());
+        assertTrue(deadline.isCancelled());
+        assertEquals(0, deadline.remaining(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testCancelListeners() throws Exception {
+        final Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+        final AtomicInteger runs = new AtomicInteger();
+
+        final Runnable listener = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+
+        final Runnable removed = new Runnable() {
+            @Override
+            public void run() {
+                runs.addAndGet(100);
+            }
+        };
+
+        deadline.addCancelListener(listener);
+        deadline.addCancelListener(removed);
+        deadline.removeCancelListener(removed);
+
+        deadline.cancel();
+        deadline.cancel();
+        assertEquals(1, runs.get());
+
+        //Runs right away once cancelled
+        deadline.addCancelListener(listener);
+        assertEquals(2, runs.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeTimeout() throws Exception {
+        Deadline.after(-1, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.concurrent;
+
+import com.delicious.deliciousfeeds4J.FeedType;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HedgePolicyTest {
+
+    @Test
+    public void testDelay() throws Exception {
+        final HedgePolicy policy = new HedgePolicy(90, 0.05);
+        policy.setMinDelay(0, TimeUnit.MILLISECONDS);
+
+        //Too few latencies known
+        for (int i = 1; i < 20; i++)
+            policy.recordLatency(FeedType.RECENT_BOOKMARKS, TimeUnit.MILLISECONDS.toNanos(i));
+
+        assertEquals(-1, policy.getDelay(FeedType.RECENT_BOOKMARKS, TimeUnit.MILLISECONDS));
+
+        policy.recordLatency(FeedType.RECENT_BOOKMARKS, TimeUnit.MILLISECONDS.toNanos(20));
+
+        assertEquals(18, policy.getDelay(FeedType.RECENT_BOOKMARKS, TimeUnit.MILLISECONDS));
+
+        //Every feed has its own latencies
+        assertEquals(-1, policy.getDelay(FeedType.URL_INFO, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testMinDelay() throws Exception {
+        final HedgePolicy policy = new HedgePolicy();
+        policy.setMinDelay(50, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 20; i++)
+            policy.recordLatency(FeedType.RECENT_BOOKMARKS, TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertEquals(50, policy.getDelay(FeedType.RECENT_BOOKMARKS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testOnlyRecentLatenciesCount() throws Exception {
+        final HedgePolicy policy = new HedgePolicy(50, 0.05);
+        policy.setMinDelay(0, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 128; i++)
+            policy.recordLatency(FeedType.RECENT_BOOKMARKS, TimeUnit.SECONDS.toNanos(1));
+
+        for (int i = 0; i < 128; i++)
+            policy.recordLatency(FeedType.RECENT_BOOKMARKS, TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertEquals(10, policy.getDelay(FeedType.RECENT_BOOKMARKS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testHedgeBudget() throws Exception {
+        final HedgePolicy policy = new HedgePolicy(95, 0.1);
+
+        //One hedge is allowed from the start
+        assertTrue(policy.tryHedge());
+        assertFalse(policy.tryHedge());
+
+        for (int i = 0; i < 9; i++)
+            policy.recordRequest();
+
+        assertFalse(policy.tryHedge());
+
+        policy.recordRequest();
+
+        assertTrue(policy.tryHedge());
+        assertFalse(policy.tryHedge());
+
+        //Unused hedges are saved up only to a limit
+        for (int i = 0; i < 1000; i++)
+            policy.recordRequest();
+
+        int hedges = 0;
+        while (policy.tryHedge())
+            hedges++;
+
+        assertEquals(10, hedges);
+        assertEquals(1010, policy.getRequestCount());
+        assertEquals(12, policy.getHedgeCount());
+    }
+
+    @Test
+    public void testRefundHedge() throws Exception {
+        final HedgePolicy policy = new HedgePolicy(95, 0.1);
+
+        assertTrue(policy.tryHedge());
+        assertFalse(policy.tryHedge());
+
+        //A hedge which was not sent is neither counted nor spent
+        policy.refundHedge();
+
+        assertEquals(0, policy.getHedgeCount());
+        assertTrue(policy.tryHedge());
+        assertEquals(1, policy.getHedgeCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() throws Exception {
+        new HedgePolicy(100, 0.05);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxHedgeRatio() throws Exception {
+        new HedgePolicy(95, 0);
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.concurrent;
+
+import com.delicious.deliciousfeeds4J.ratelimit.IntervalRateLimiter;
+import com.delicious.deliciousfeeds4J.ratelimit.RateLimiter;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RequestLanesTest {
+
+    @Test
+    public void testBulkLeavesReservedSlots() throws Exception {
+        final RequestLanes lanes = new RequestLanes(3, 1);
+
+        lanes.acquire(Priority.BULK, null);
+        lanes.acquire(Priority.BULK, null);
+
+        final Thread bulk = start(lanes, Priority.BULK, null, null);
+        awaitQueued(lanes, Priority.BULK, 1);
+
+        //The reserved slot is still free
+        lanes.acquire(Priority.INTERACTIVE, null);
+        assertEquals(1, lanes.getRunning(Priority.INTERACTIVE));
+        assertEquals(2, lanes.getRunning(Priority.BULK));
+
+        lanes.release(Priority.BULK);
+        bulk.join(1000);
+
+        assertFalse(bulk.isAlive());
+        assertEquals(0, lanes.getQueued(Priority.BULK));
+        assertEquals(3, lanes.getAdmittedCount(Priority.BULK));
+        assertEquals(1, lanes.getAdmittedCount(Priority.INTERACTIVE));
+    }
+
+    @Test
+    public void testInteractiveJumpsTheQueue() throws Exception {
+        final RequestLanes lanes = new RequestLanes(1, 0);
+        final List<Priority> order = new CopyOnWriteArrayList<Priority>();
+
+        lanes.acquire(Priority.BULK, null);
+
+        final Thread bulk = start(lanes, Priority.BULK, null, order);
+        awaitQueued(lanes, Priority.BULK, 1);
+
+        final Thread interactive = start(lanes, Priority.INTERACTIVE, null, order);
+        awaitQueued(lanes, Priority.INTERACTIVE, 1);
+
+        lanes.release(Priority.BULK);
+        interactive.join(1000);
+
+        assertEquals(1, order.size());
+        assertEquals(Priority.INTERACTIVE, order.get(0));
+        assertEquals(1, lanes.getQueued(Priority.BULK));
+
+        lanes.release(Priority.INTERACTIVE);
+        bulk.join(1000);
+
+        assertEquals(2, order.size());
+        assertEquals(Priority.BULK, order.get(1));
+        assertTrue(lanes.getMaxWait(Priority.BULK, TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    public void testRatePermitsInLaneOrder() throws Exception {
+        final RequestLanes lanes = new RequestLanes(10, 0);
+        final List<Priority> order = new CopyOnWriteArrayList<Priority>();
+
+        final Semaphore permits = new Semaphore(0);
+        final RateLimiter rateLimiter = new RateLimiter() {
+            @Override
+            public void acquire() throws InterruptedException {
+                permits.acquire();
+            }
+
+            @Override
+            public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+                return permits.tryAcquire(timeout, unit);
+            }
+        };
+
+        //Waits for the first permit, the others wait in their lanes
+        final Thread first = start(lanes, Priority.BULK, rateLimiter, order);
+        awaitRunning(lanes, Priority.BULK, 1);
+
+        final Thread bulk = start(lanes, Priority.BULK, rateLimiter, order);
+        awaitQueued(lanes, Priority.BULK, 1);
+
+        final Thread interactive = start(lanes, Priority.INTERACTIVE, rateLimiter, order);
+        awaitQueued(lanes, Priority.INTERACTIVE, 1);
+
+        permits.release();
+        first.join(1000);
+
+        permits.release();
+        interactive.join(1000);
+
+        assertEquals(2, order.size());
+        assertEquals(Priority.INTERACTIVE, order.get(1));
+        assertTrue(bulk.isAlive());
+
+        permits.release();
+        bulk.join(1000);
+
+        assertEquals(3, order.size());
+    }
+
+    @Test
+    public void testWaiterWithoutDispatchIsNotStalled() throws Exception {
+        final RequestLanes lanes = new RequestLanes(2, 0);
+        final List<Priority> order = new CopyOnWriteArrayList<Priority>();
+
+        final Semaphore permits = new Semaphore(0);
+        final RateLimiter rateLimiter = new RateLimiter() {
+            @Override
+            public void acquire() throws InterruptedException {
+                permits.acquire();
+            }
+
+            @Override
+            public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+                return permits.tryAcquire(timeout, unit);
+            }
+        };
+
+        lanes.acquire(Priority.INTERACTIVE, null);
+
+        //Takes the second slot and waits for a permit
+        final Thread dispatching = start(lanes, Priority.INTERACTIVE, rateLimiter, order);
+        awaitRunning(lanes, Priority.INTERACTIVE, 2);
+
+        //Queued first, but can not run before the other one got its permit
+        final Thread dispatchingNext = start(lanes, Priority.INTERACTIVE, rateLimiter, order);
+        awaitQueued(lanes, Priority.INTERACTIVE, 1);
+
+        final Thread withoutDispatch = start(lanes, Priority.INTERACTIVE, null, order);
+        awaitQueued(lanes, Priority.INTERACTIVE, 2);
+
+        lanes.release(Priority.INTERACTIVE);
+        withoutDispatch.join(1000);
+
+        assertFalse(withoutDispatch.isAlive());
+        assertEquals(1, order.size());
+
+        permits.release(2);
+        dispatching.join(1000);
+
+        lanes.release(Priority.INTERACTIVE);
+        dispatchingNext.join(1000);
+
+        assertEquals(3, order.size());
+    }
+
+    @Test
+    public void testInterruptedWhileQueued() throws Exception {
+        final RequestLanes lanes = new RequestLanes(1, 0);
+        lanes.acquire(Priority.INTERACTIVE, null);
+
+        final Thread waiting = start(lanes, Priority.INTERACTIVE, null, null);
+        awaitQueued(lanes, Priority.INTERACTIVE, 1);
+
+        waiting.interrupt();
+        waiting.join(1000);
+
+        assertEquals(0, lanes.getQueued(Priority.INTERACTIVE));
+        assertEquals(1, lanes.getRunning(Priority.INTERACTIVE));
+
+        lanes.release(Priority.INTERACTIVE);
+        lanes.acquire(Priority.BULK, null);
+        assertEquals(1, lanes.getRunning(Priority.BULK));
+    }
+
+    @Test
+    public void testTryAcquireTimesOut() throws Exception {
+        final RequestLanes lanes = new RequestLanes(1, 0);
+        lanes.acquire(Priority.BULK, null);
+
+        assertFalse(lanes.tryAcquire(Priority.INTERACTIVE, null, 50, TimeUnit.MILLISECONDS));
+        assertEquals(0, lanes.getQueued(Priority.INTERACTIVE));
+        assertEquals(0, lanes.getRunning(Priority.INTERACTIVE));
+
+        lanes.release(Priority.BULK);
+        assertTrue(lanes.tryAcquire(Priority.INTERACTIVE, null, 0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testLanePermitIsOnlyTakenWithASlot() throws Exception {
+        final RequestLanes lanes = new RequestLanes(1, 0);
+        lanes.setRateLimiter(Priority.BULK, new IntervalRateLimiter(10, TimeUnit.SECONDS));
+        lanes.acquire(Priority.INTERACTIVE, null);
+
+        //Gets no slot, so the only permit of the lane is left
+        assertFalse(lanes.tryAcquire(Priority.BULK, null, 50, TimeUnit.MILLISECONDS));
+
+        lanes.release(Priority.INTERACTIVE);
+        assertTrue(lanes.tryAcquire(Priority.BULK, null, 0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testLanePermitDoesNotHoldUpDispatch() throws Exception {
+        final RequestLanes lanes = new RequestLanes(2, 0);
+        final List<Priority> order = new CopyOnWriteArrayList<Priority>();
+
+        final Semaphore lanePermits = new Semaphore(0);
+        lanes.setRateLimiter(Priority.BULK, new RateLimiter() {
+            @Override
+            public void acquire() throws InterruptedException {
+                lanePermits.acquire();
+            }
+
+            @Override
+            public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+                return lanePermits.tryAcquire(timeout, unit);
+            }
+        });
+
+        final RateLimiter rateLimiter = new IntervalRateLimiter(0, TimeUnit.MILLISECONDS);
+
+        //Holds a slot while it waits for the permit of its lane
+        final Thread bulk = start(lanes, Priority.BULK, rateLimiter, order);
+        awaitRunning(lanes, Priority.BULK, 1);
+
+        assertTrue(lanes.tryAcquire(Priority.INTERACTIVE, rateLimiter, 1, TimeUnit.SECONDS));
+        assertTrue(order.isEmpty());
+
+        lanePermits.release();
+        bulk.join(1000);
+
+        assertEquals(1, order.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReservedMustLeaveASlot() throws Exception {
+        new RequestLanes(2, 2);
+    }
+
+    //Acquires in a new thread and records the priority once admitted
+    private static Thread start(final RequestLanes lanes, final Priority priority, final RateLimiter rateLimiter,
+                                final List<Priority> order) {
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    lanes.acquire(priority, rateLimiter);
+
+                    if (order != null)
+                        order.add(priority);
+                } catch (InterruptedException ex) {
+                    //Expected by testInterruptedWhileQueued
+                }
+            }
+        };
+
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitQueued(RequestLanes lanes, Priority priority, int queued) throws InterruptedException {
+        for (int i = 0; i < 200 && lanes.getQueued(priority) != queued; i++)
+            Thread.sleep(5);
+
+        assertEquals(queued, lanes.getQueued(priority));
+    }
+
+    private static void awaitRunning(RequestLanes lanes, Priority priority, int running) throws InterruptedException {
+        for (int i = 0; i < 200 && lanes.getRunning(priority) != running; i++)
+            Thread.sleep(5);
+
+        assertEquals(running, lanes.getRunning(priority));
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.dedup;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testNoFalseNegatives() throws Exception {
+        final BloomFilter filter = new BloomFilter(10000, 0.01);
+
+        assertFalse(filter.mightContain(key(0)));
+        assertTrue(filter.put(key(0)));
+        assertFalse(filter.put(key(0)));
+
+        for (int i = 1; i < 10000; i++)
+            filter.put(key(i));
+
+        for (int i = 0; i < 10000; i++)
+            assertTrue(filter.mightContain(key(i)));
+    }
+
+    @Test
+    public void testFalsePositiveRate() throws Exception {
+        final BloomFilter filter = new BloomFilter(10000, 0.01);
+
+        for (int i = 0; i < 10000; i++)
+            filter.put(key(i));
+
+        assertEquals(0.01, falsePositiveRate(filter), 0.01);
+        assertTrue(filter.estimateFpp() < 0.02);
+    }
+
+    @Test
+    public void testScalableFilterGrows() throws Exception {
+        final ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+
+        int added = 0;
+        for (int i = 0; i < 50000; i++) {
+            if (filter.add(key(i)))
+                added++;
+        }
+
+        //Only false positives are rejected
+        assertTrue(added > 50000 * 0.99);
+        assertTrue(filter.getStageCount() > 1);
+        assertEquals(added, filter.getApproximateCount());
+
+        for (int i = 0; i < 50000; i++)
+            assertFalse(filter.add(key(i)));
+
+        int falsePositives = 0;
+        for (int i = 50000; i < 150000; i++) {
+            if (filter.mightContain(key(i)))
+                falsePositives++;
+        }
+
+        //Stays below the configured probability although 50 times the initial capacity was added
+        assertTrue("False positives: " + falsePositives, falsePositives / 100000.0 < 0.01);
+    }
+
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        final ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.001);
+        final AtomicInteger added = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(4);
+
+        for (int t = 0; t < 4; t++) {
+            final int offset = t * 20000;
+
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = offset; i < offset + 20000; i++) {
+                        if (filter.add(key(i)))
+                            added.incrementAndGet();
+                    }
+
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        done.await();
+
+        for (int i = 0; i < 80000; i++)
+            assertTrue(filter.mightContain(key(i)));
+
+        //Only false positives may be missing
+        assertTrue(added.get() > 80000 * 0.99);
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+
+        for (int i = 0; i < 5000; i++)
+            filter.add(key(i));
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        filter.writeTo(output);
+
+        final ScalableBloomFilter read = ScalableBloomFilter.readFrom(new ByteArrayInputStream(output.toByteArray()));
+
+        assertEquals(filter.getStageCount(), read.getStageCount());
+        assertEquals(filter.getApproximateCount(), read.getApproximateCount());
+
+        for (int i = 0; i < 5000; i++)
+            assertTrue(read.mightContain(key(i)));
+
+        for (int i = 5000; i < 10000; i++)
+            assertEquals(filter.mightContain(key(i)), read.mightContain(key(i)));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testReadInvalidData() throws Exception {
+        ScalableBloomFilter.readFrom(new ByteArrayInputStream("no filter at all".getBytes("UTF-8")));
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        final ScalableBloomFilter first = new ScalableBloomFilter(1000, 0.01);
+        final ScalableBloomFilter second = new ScalableBloomFilter(1000, 0.01);
+
+        for (int i = 0; i < 500; i++)
+            first.add(key(i));
+
+        //The second node saw more and has more stages
+        for (int i = 500; i < 5000; i++)
+            second.add(key(i));
+
+        first.merge(second);
+
+        assertEquals(second.getStageCount(), first.getStageCount());
+
+        for (int i = 0; i < 5000; i++)
+            assertTrue(first.mightContain(key(i)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeIncompatible() throws Exception {
+        new ScalableBloomFilter(1000, 0.01).merge(new ScalableBloomFilter(2000, 0.01));
+    }
+
+    @Test
+    public void testBookmarkDeduplicator() throws Exception {
+        final BookmarkDeduplicator deduplicator = new BookmarkDeduplicator();
+
+        final List<Bookmark> first = Arrays.asList(bookmark(1), bookmark(2), bookmark(1));
+        assertEquals(Arrays.asList(first.get(0), first.get(1)), deduplicator.filterNew(first));
+
+        final Bookmark withoutMd5 = new Bookmark();
+        final List<Bookmark> second = Arrays.asList(bookmark(2), bookmark(3), withoutMd5, withoutMd5);
+        assertEquals(Arrays.asList(second.get(1), withoutMd5, withoutMd5), deduplicator.filterNew(second));
+
+        assertNull(deduplicator.transform(bookmark(3)));
+        assertNotNull(deduplicator.transform(bookmark(4)));
+        assertNull(deduplicator.filterNew(null));
+    }
+
+    private static UrlKey key(int i) {
+        //Spread like real md5 hashes
+        long high = i * 0x9e3779b97f4a7c15L;
+        high ^= high >>> 31;
+        return new UrlKey(high * 0xbf58476d1ce4e5b9L, (high ^ (high >>> 29)) * 0x94d049bb133111ebL);
+    }
+
+    private static Bookmark bookmark(int i) {
+        final Bookmark bookmark = new Bookmark();
+        bookmark.setMd5(key(i).toHex());
+        return bookmark;
+    }
+
+    private static double falsePositiveRate(BloomFilter filter) {
+        int falsePositives = 0;
+
+        for (int i = 1000000; i < 1100000; i++) {
+            if (filter.mightContain(key(i)))
+                falsePositives++;
+        }
+
+        return falsePositives / 100000.0;
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.enrichment;
+
+import com.delicious.deliciousfeeds4J.DeliciousFeeds;
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.beans.EnrichedBookmark;
+import com.delicious.deliciousfeeds4J.beans.UrlInfo;
+import com.delicious.deliciousfeeds4J.exceptions.DeliciousFeedsException;
+import com.delicious.deliciousfeeds4J.exceptions.YouGotBannedException;
+import com.delicious.deliciousfeeds4J.url.UrlIdentity;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class UrlInfoEnricherTest {
+
+    private final CountingDeliciousFeeds deliciousFeeds = new CountingDeliciousFeeds();
+
+    private final UrlInfoEnricher enricher = new UrlInfoEnricher(deliciousFeeds);
+
+    @Test
+    public void testEnrichDeduplicatesUrls() throws Exception {
+        final List<Bookmark> bookmarks = new ArrayList<Bookmark>();
+
+        for (int i = 0; i < 10; i++)
+            bookmarks.add(bookmark("user" + i, "http://example.com/" + (i % 3)));
+
+        final List<EnrichedBookmark> enriched = enricher.enrich(bookmarks);
+
+        assertEquals(10, enriched.size());
+        assertEquals(3, deliciousFeeds.calls.get());
+        assertEquals(3, enricher.getLookupCount());
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(bookmarks.get(i), enriched.get(i).getBookmark());
+            assertEquals(UrlIdentity.hash("http://example.com/" + (i % 3)).toHex(), enriched.get(i).getUrlInfo().getHash());
+        }
+    }
+
+    @Test
+    public void testEnrichUsesCacheAcrossBatches() throws Exception {
+        enricher.setBatchSize(2);
+
+        final List<Bookmark> bookmarks = new ArrayList<Bookmark>();
+
+        for (int i = 0; i < 6; i++)
+            bookmarks.add(bookmark("user" + i, "http://example.com/same"));
+
+        enricher.enrich(bookmarks);
+        enricher.enrich(bookmarks);
+
+        assertEquals(1, deliciousFeeds.calls.get());
+    }
+
+    @Test
+    public void testEnrichAfterTtl() throws Exception {
+        enricher.setTtlMillis(0);
+
+        final Bookmark bookmark = bookmark("user", "http://example.com/");
+
+        enricher.enrich(Collections.singletonList(bookmark));
+        enricher.enrich(Collections.singletonList(bookmark));
+
+        assertEquals(2, deliciousFeeds.calls.get());
+    }
+
+    @Test
+    public void testEnrichIterator() throws Exception {
+        enricher.setBatchSize(3);
+
+        final List<Bookmark> bookmarks = new ArrayList<Bookmark>();
+
+        for (int i = 0; i < 7; i++)
+            bookmarks.add(bookmark("user" + i, "http://example.com/" + i));
+
+        final Iterator<EnrichedBookmark> iterator = enricher.enrich(bookmarks.iterator());
+
+        assertTrue(iterator.hasNext());
+        assertEquals(3, deliciousFeeds.calls.get());
+
+        int count = 0;
+
+        while (iterator.hasNext()) {
+            assertSame(bookmarks.get(count), iterator.next().getBookmark());
+            count++;
+        }
+
+        assertEquals(7, count);
+        assertEquals(7, deliciousFeeds.calls.get());
+    }
+
+    @Test
+    public void testEnrichWithExecutor() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            enricher.setExecutor(executor);
+
+            final List<Bookmark> bookmarks = new ArrayList<Bookmark>();
+
+            for (int i = 0; i < 50; i++)
+                bookmarks.add(bookmark("user" + i, "http://example.com/" + (i % 10)));
+
+            final List<EnrichedBookmark> enriched = enricher.enrich(bookmarks);
+
+            assertEquals(50, enriched.size());
+            assertEquals(10, deliciousFeeds.calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testEnrichWithShutDownExecutor() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+
+        enricher.setExecutor(executor);
+
+        final List<Bookmark> bookmarks = new ArrayList<Bookmark>();
+
+        for (int i = 0; i < 6; i++)
+            bookmarks.add(bookmark("user" + i, "http://example.com/" + (i % 3)));
+
+        //Rejected lookups run in the calling thread instead of hanging
+        final List<EnrichedBookmark> enriched = enricher.enrich(bookmarks);
+
+        assertEquals(6, enriched.size());
+        assertNotNull(enriched.get(5).getUrlInfo());
+        assertEquals(3, deliciousFeeds.calls.get());
+    }
+
+    @Test
+    public void testEnrichWithFailedLookup() throws Exception {
+        deliciousFeeds.failure = new DeliciousFeedsException("failed");
+
+        final List<EnrichedBookmark> enriched = enricher.enrich(Collections.singletonList(bookmark("user", "http://example.com/")));
+
+        assertEquals(1, enriched.size());
+        assertNull(enriched.get(0).getUrlInfo());
+
+        //Failures are not cached
+        deliciousFeeds.failure = null;
+        assertNotNull(enricher.lookup(UrlIdentity.hash("http://example.com/")));
+    }
+
+    @Test
+    public void testCacheEvictsLeastRecentlyUsed() throws Exception {
+        enricher.setMaxCacheSize(2);
+
+        final UrlKey first = UrlIdentity.hash("http://example.com/1");
+        final UrlKey second = UrlIdentity.hash("http://example.com/2");
+
+        enricher.lookup(first);
+        enricher.lookup(second);
+        enricher.lookup(first);
+        enricher.lookup(UrlIdentity.hash("http://example.com/3"));
+
+        assertEquals(3, deliciousFeeds.calls.get());
+
+        //The second url was used least recently
+        enricher.lookup(first);
+        assertEquals(3, deliciousFeeds.calls.get());
+
+        enricher.lookup(second);
+        assertEquals(4, deliciousFeeds.calls.get());
+    }
+
+    @Test
+    public void testCacheKeepsRunningLookups() throws Exception {
+        enricher.setMaxCacheSize(1);
+
+        final UrlKey slow = UrlIdentity.hash("http://example.com/slow");
+        deliciousFeeds.slowKey = slow;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            final Future<UrlInfo> running = executor.submit(lookupOf(slow));
+            assertTrue(deliciousFeeds.slowStarted.await(5, TimeUnit.SECONDS));
+
+            //Overfills the cache while the slow lookup is still running
+            for (int i = 0; i < 100; i++)
+                enricher.lookup(UrlIdentity.hash("http://example.com/fast" + i));
+
+            final Future<UrlInfo> waiting = executor.submit(lookupOf(slow));
+            deliciousFeeds.slowReleased.countDown();
+
+            assertNotNull(running.get(5, TimeUnit.SECONDS));
+            assertNotNull(waiting.get(5, TimeUnit.SECONDS));
+            assertEquals(101, deliciousFeeds.calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = YouGotBannedException.class)
+    public void testEnrichWhenBanned() throws Exception {
+        deliciousFeeds.failure = new YouGotBannedException(null);
+
+        enricher.enrich(Collections.singletonList(bookmark("user", "http://example.com/")));
+    }
+
+    private Callable<UrlInfo> lookupOf(final UrlKey urlKey) {
+        return new Callable<UrlInfo>() {
+            @Override
+            public UrlInfo call() {
+                return enricher.lookup(urlKey);
+            }
+        };
+    }
+
+    private static Bookmark bookmark(String user, String url) {
+        final Bookmark bookmark = new Bookmark();
+        bookmark.setUser(user);
+        bookmark.setUrl(url);
+        bookmark.setMd5(UrlIdentity.hash(url).toHex());
+        return bookmark;
+    }
+
+    private static class CountingDeliciousFeeds extends DeliciousFeeds {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private volatile RuntimeException failure;
+
+        //Lookups of this key wait until they are released
+        private volatile UrlKey slowKey;
+
+        private final CountDownLatch slowStarted = new CountDownLatch(1);
+
+        private final CountDownLatch slowReleased = new CountDownLatch(1);
+
+        @Override
+        public UrlInfo findUrlInfoByUrlKey(UrlKey urlKey) {
+            calls.incrementAndGet();
+
+            if (urlKey.equals(slowKey)) {
+                slowStarted.countDown();
+
+                try {
+                    slowReleased.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if (failure != null)
+                throw failure;
+
+            final UrlInfo urlInfo = new UrlInfo();
+            urlInfo.setHash(urlKey.toHex());
+            urlInfo.setTotalPosts(42);
+            return urlInfo;
+        }
+    }
+}
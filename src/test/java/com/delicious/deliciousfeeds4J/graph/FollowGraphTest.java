@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.graph;
+
+import com.delicious.deliciousfeeds4J.beans.User;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class FollowGraphTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private final GraphAnalytics analytics = new GraphAnalytics(executor, 2);
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testBuild() throws Exception {
+        final FollowGraph graph = new FollowGraphBuilder()
+                .addFollow("alice", "bob", 1000)
+                .addFollow("alice", "carol", 2000)
+                .addFollow("alice", "bob", 3000)
+                .addFollow("bob", "carol", 4000)
+                .addUser("dave")
+                .build();
+
+        assertEquals(4, graph.nodeCount());
+        assertEquals(3, graph.edgeCount());
+
+        final int alice = graph.nodeOf("alice");
+        final int bob = graph.nodeOf("bob");
+        final int carol = graph.nodeOf("carol");
+
+        assertEquals("alice", graph.usernameOf(alice));
+        assertEquals(-1, graph.nodeOf("unknown"));
+
+        assertEquals(2, graph.outDegree(alice));
+        assertEquals(0, graph.inDegree(alice));
+        assertEquals(2, graph.inDegree(carol));
+        assertEquals(0, graph.outDegree(graph.nodeOf("dave")));
+
+        //The duplicate edge keeps the latest timestamp
+        assertEquals(bob, graph.target(graph.outStart(alice)));
+        assertEquals(3000, graph.timestamp(graph.outStart(alice)));
+    }
+
+    @Test
+    public void testAddNetworkMembers() throws Exception {
+        final User bob = new User();
+        bob.setUser("bob");
+        bob.setAddedDate(new Date(5000));
+
+        final User carol = new User();
+        carol.setUser("carol");
+
+        final Set<User> members = new HashSet<User>();
+        members.add(bob);
+        members.add(carol);
+
+        final FollowGraph graph = new FollowGraphBuilder().addNetworkMembers("alice", members).build();
+
+        assertEquals(3, graph.nodeCount());
+        assertEquals(2, graph.outDegree(graph.nodeOf("alice")));
+
+        final int alice = graph.nodeOf("alice");
+
+        for (int edge = graph.outStart(alice); edge < graph.outEnd(alice); edge++) {
+            if (graph.target(edge) == graph.nodeOf("bob"))
+                assertEquals(5000, graph.timestamp(edge));
+            else
+                assertEquals(FollowGraph.NO_TIMESTAMP, graph.timestamp(edge));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddFollowWithoutUsername() throws Exception {
+        new FollowGraphBuilder().addFollow("alice", "", 0);
+    }
+
+    @Test
+    public void testPageRank() throws Exception {
+        final FollowGraph graph = new FollowGraphBuilder()
+                .addFollow("alice", "carol", 0)
+                .addFollow("bob", "carol", 0)
+                .addFollow("dave", "carol", 0)
+                .addFollow("carol", "alice", 0)
+                .build();
+
+        final double[] rank = analytics.pageRank(graph);
+
+        double sum = 0;
+
+        for (double value : rank)
+            sum += value;
+
+        assertEquals(1.0, sum, 1e-6);
+
+        final int[] top = analytics.topNodes(rank, 2);
+
+        assertEquals(2, top.length);
+        assertEquals("carol", graph.usernameOf(top[0]));
+        assertEquals("alice", graph.usernameOf(top[1]));
+    }
+
+    @Test
+    public void testPageRankOfLargeGraph() throws Exception {
+        final FollowGraphBuilder builder = new FollowGraphBuilder();
+
+        //A ring of users who all follow "hub" as well - enough nodes to be split into chunks
+        for (int i = 0; i < 20000; i++) {
+            builder.addFollow("user" + i, "user" + ((i + 1) % 20000), 0);
+            builder.addFollow("user" + i, "hub", 0);
+        }
+
+        final FollowGraph graph = builder.build();
+        final double[] rank = analytics.pageRank(graph);
+
+        assertEquals(graph.nodeOf("hub"), analytics.topNodes(rank, 1)[0]);
+    }
+
+    @Test
+    public void testTopNodes() throws Exception {
+        final double[] scores = {0.5, 2.0, 1.0, 2.0, 0.1, 1.0};
+
+        assertArrayEquals(new int[]{1, 3, 2}, analytics.topNodes(scores, 3));
+        assertArrayEquals(new int[]{1, 3, 2, 5, 0, 4}, analytics.topNodes(scores, 10));
+        assertEquals(0, analytics.topNodes(new double[0], 5).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTopNodesWithInvalidLimit() throws Exception {
+        analytics.topNodes(new double[]{1.0}, 0);
+    }
+
+    @Test
+    public void testDegrees() throws Exception {
+        final FollowGraph graph = new FollowGraphBuilder()
+                .addFollow("alice", "bob", 0)
+                .addFollow("alice", "carol", 0)
+                .addFollow("bob", "carol", 0)
+                .build();
+
+        final int[] out = analytics.outDegrees(graph);
+        final int[] in = analytics.inDegrees(graph);
+
+        assertEquals(2, out[graph.nodeOf("alice")]);
+        assertEquals(2, in[graph.nodeOf("carol")]);
+        assertEquals(0, out[graph.nodeOf("carol")]);
+    }
+
+    @Test
+    public void testReach() throws Exception {
+        final FollowGraph graph = new FollowGraphBuilder()
+                .addFollow("a", "b", 0)
+                .addFollow("b", "c", 0)
+                .addFollow("c", "d", 0)
+                .addFollow("d", "a", 0)
+                .build();
+
+        assertEquals(1, analytics.reach(graph, graph.nodeOf("a"), 1));
+        assertEquals(2, analytics.reach(graph, graph.nodeOf("a"), 2));
+        assertEquals(3, analytics.reach(graph, graph.nodeOf("a"), 10));
+
+        final int[] reach = analytics.reachAll(graph, 2);
+
+        for (int value : reach)
+            assertEquals(2, value);
+    }
+}
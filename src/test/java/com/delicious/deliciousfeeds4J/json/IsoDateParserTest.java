@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.json;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.util.StdDateFormat;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class IsoDateParserTest {
+
+    @Test
+    public void testParseMillis() throws Exception {
+        assertEquals(0L, IsoDateParser.parseMillis("1970-01-01T00:00:00Z"));
+        assertEquals(utc(2012, Calendar.OCTOBER, 22, 13, 40, 31, 0), IsoDateParser.parseMillis("2012-10-22T13:40:31Z"));
+        assertEquals(utc(2012, Calendar.OCTOBER, 22, 13, 40, 31, 0), IsoDateParser.parseMillis("2012-10-22T13:40:31"));
+        assertEquals(utc(2000, Calendar.FEBRUARY, 29, 23, 59, 59, 123), IsoDateParser.parseMillis("2000-02-29T23:59:59.123Z"));
+        assertEquals(utc(1969, Calendar.DECEMBER, 31, 23, 59, 59, 0), IsoDateParser.parseMillis("1969-12-31T23:59:59Z"));
+    }
+
+    @Test
+    public void testParseMillisWithOffset() throws Exception {
+        final long expected = utc(2012, Calendar.OCTOBER, 22, 11, 40, 31, 0);
+
+        assertEquals(expected, IsoDateParser.parseMillis("2012-10-22T13:40:31+02:00"));
+        assertEquals(expected, IsoDateParser.parseMillis("2012-10-22T13:40:31+0200"));
+        assertEquals(expected, IsoDateParser.parseMillis("2012-10-22T13:40:31+02"));
+        assertEquals(expected, IsoDateParser.parseMillis("2012-10-22T09:10:31-02:30"));
+    }
+
+    @Test
+    public void testParseMillisMatchesJackson() throws Exception {
+        final StdDateFormat dateFormat = new StdDateFormat();
+
+        for (String value : new String[]{"2012-10-29T12:42:29Z", "2013-01-01T00:00:00.500Z", "2012-02-29T06:07:08+0100"})
+            assertEquals(dateFormat.parse(value).getTime(), IsoDateParser.parseMillis(value));
+    }
+
+    @Test
+    public void testParseMillisWithInvalidValues() throws Exception {
+        assertEquals(IsoDateParser.INVALID, IsoDateParser.parseMillis((String) null));
+        assertEquals(IsoDateParser.INVALID, IsoDateParser.parseMillis(""));
+        assertEquals(IsoDateParser.INVALID, IsoDateParser.parseMillis("2012-10-22"));
+        assertEquals(IsoDateParser.INVALID, IsoDateParser.parseMillis("2012-13-22T13:40:31Z"));
+        assertEquals(IsoDateParser.INVALID, IsoDateParser.parseMillis("2013-02-29T13:40:31Z"));
+        assertEquals(IsoDateParser.INVALID, IsoDateParser.parseMillis("2012-10-22X13:40:31Z"));
+        assertEquals(IsoDateParser.INVALID, IsoDateParser.parseMillis("2012-10-22T13:40:31Zx"));
+        assertEquals(IsoDateParser.INVALID, IsoDateParser.parseMillis("2012-10-22T13:40:31+2"));
+        assertEquals(IsoDateParser.INVALID, IsoDateParser.parseMillis("2012-10-22T13:40:31."));
+    }
+
+    @Test
+    public void testParseMillisFromBuffer() throws Exception {
+        final char[] buffer = "xx\"2012-10-22T13:40:31Z\"xx".toCharArray();
+
+        assertEquals(utc(2012, Calendar.OCTOBER, 22, 13, 40, 31, 0), IsoDateParser.parseMillis(buffer, 3, 20));
+    }
+
+    @Test
+    public void testDeserializer() throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+
+        final Bookmark bookmark = objectMapper.readValue("{\"dt\": \"2012-10-22T13:40:31Z\"}", Bookmark.class);
+        assertEquals(utc(2012, Calendar.OCTOBER, 22, 13, 40, 31, 0), bookmark.getLastUpdatedDate().getTime());
+
+        //Falls back to Jackson for other formats
+        final Bookmark fallback = objectMapper.readValue("{\"dt\": \"Mon, 22 Oct 2012 13:40:31 GMT\"}", Bookmark.class);
+        assertEquals(utc(2012, Calendar.OCTOBER, 22, 13, 40, 31, 0), fallback.getLastUpdatedDate().getTime());
+
+        final Bookmark numeric = objectMapper.readValue("{\"dt\": 1000}", Bookmark.class);
+        assertEquals(1000L, numeric.getLastUpdatedDate().getTime());
+
+        final Bookmark empty = objectMapper.readValue("{\"dt\": null}", Bookmark.class);
+        assertNull(empty.getLastUpdatedDate());
+    }
+
+    private static long utc(int year, int month, int day, int hour, int minute, int second, int millis) {
+        final Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute, second);
+        calendar.set(Calendar.MILLISECOND, millis);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.offheap;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class BookmarkArenaTest {
+
+    @Test
+    public void testAddAndGet() throws Exception {
+        final BookmarkArena arena = new BookmarkArena();
+        final Bookmark bookmark = createBookmark(1);
+
+        assertTrue(arena.add(bookmark));
+        assertEquals(1, arena.size());
+
+        final BookmarkView view = arena.get(UrlKey.fromHex(bookmark.getMd5()));
+
+        assertNotNull(view);
+        assertEquals(bookmark.getUser(), view.getUser());
+        assertEquals(bookmark.getUrl(), view.getUrl());
+        assertEquals(bookmark.getTitle(), view.getTitle());
+        assertEquals(bookmark.getDescription(), view.getDescription());
+        assertEquals(bookmark.getTags(), view.getTags());
+        assertEquals(bookmark.getTags().size(), view.getTagCount());
+        assertEquals(bookmark.getLastUpdatedDate().getTime(), view.getTimestamp());
+        assertEquals(bookmark.getMd5(), view.getMd5().toHex());
+
+        assertBookmarkEquals(bookmark, view.toBookmark());
+    }
+
+    @Test
+    public void testNullFields() throws Exception {
+        final BookmarkArena arena = new BookmarkArena();
+
+        final Bookmark bookmark = new Bookmark();
+        bookmark.setMd5(md5(42));
+
+        assertTrue(arena.add(bookmark));
+
+        final BookmarkView view = arena.get(UrlKey.fromHex(md5(42)));
+
+        assertNull(view.getUser());
+        assertNull(view.getUrl());
+        assertNull(view.getTitle());
+        assertNull(view.getDescription());
+        assertNull(view.getTags());
+        assertEquals(-1, view.getTagCount());
+        assertEquals(Long.MIN_VALUE, view.getTimestamp());
+        assertBookmarkEquals(bookmark, view.toBookmark());
+    }
+
+    @Test
+    public void testDuplicatesAndMisses() throws Exception {
+        final BookmarkArena arena = new BookmarkArena();
+
+        assertTrue(arena.add(createBookmark(1)));
+        assertFalse(arena.add(createBookmark(1)));
+        assertEquals(1, arena.size());
+
+        assertTrue(arena.contains(UrlKey.fromHex(md5(1))));
+        assertFalse(arena.contains(UrlKey.fromHex(md5(2))));
+        assertNull(arena.get(UrlKey.fromHex(md5(2))));
+
+        final BookmarkView view = new BookmarkView();
+        assertFalse(arena.get(UrlKey.fromHex(md5(2)), view));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddWithoutMd5() throws Exception {
+        new BookmarkArena().add(new Bookmark());
+    }
+
+    @Test
+    public void testGrowsChunksAndIndex() throws Exception {
+        final BookmarkArena arena = new BookmarkArena(4096, 0);
+        final List<Bookmark> bookmarks = new ArrayList<Bookmark>();
+
+        for (int i = 0; i < 5000; i++)
+            bookmarks.add(createBookmark(i));
+
+        assertEquals(5000, arena.addAll(bookmarks));
+
+        //A record larger than a chunk gets a chunk of its own
+        final Bookmark large = createBookmark(5000);
+        final char[] description = new char[10000];
+        Arrays.fill(description, 'x');
+        large.setDescription(new String(description));
+        assertTrue(arena.add(large));
+
+        assertEquals(5001, arena.size());
+        assertTrue(arena.getAllocatedBytes() > 5000 * 64);
+
+        final BookmarkView view = new BookmarkView();
+
+        for (Bookmark bookmark : bookmarks) {
+            assertTrue(arena.get(UrlKey.fromHex(bookmark.getMd5()), view));
+            assertBookmarkEquals(bookmark, view.toBookmark());
+        }
+
+        assertTrue(arena.get(UrlKey.fromHex(large.getMd5()), view));
+        assertEquals(large.getDescription(), view.getDescription());
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        final BookmarkArena arena = new BookmarkArena(8192, 0);
+        final int count = 20000;
+
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch finished = new CountDownLatch(4);
+
+        for (int t = 0; t < 4; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final BookmarkView view = new BookmarkView();
+                    final Random random = new Random();
+
+                    try {
+                        while (!done.get()) {
+                            final int size = arena.size();
+
+                            if (size == 0)
+                                continue;
+
+                            //Everything up to the size read before must be visible and complete
+                            final int i = random.nextInt(size);
+
+                            if (!arena.get(UrlKey.fromHex(md5(i)), view))
+                                throw new AssertionError("Bookmark " + i + " is missing!");
+
+                            assertEquals("http://www.example.com/" + i, view.getUrl());
+                        }
+                    } catch (Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        for (int i = 0; i < count; i++)
+            arena.add(createBookmark(i));
+
+        done.set(true);
+        finished.await();
+
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+
+        assertEquals(count, arena.size());
+    }
+
+    private static String md5(int i) {
+        return String.format("%032x", 0x5eedL * 1000003L + i * 0x9e3779b97f4a7c15L);
+    }
+
+    private static Bookmark createBookmark(int i) {
+        final Bookmark bookmark = new Bookmark();
+        bookmark.setUser("user" + (i % 7));
+        bookmark.setUrl("http://www.example.com/" + i);
+        bookmark.setTitle("Titel " + i + " äöü");
+        bookmark.setDescription(i % 3 == 0 ? null : "Description " + i);
+        bookmark.setLastUpdatedDate(new Date(1350000000000L + i));
+        bookmark.setMd5(md5(i));
+        bookmark.setTags(new LinkedHashSet<String>(Arrays.asList("tag" + (i % 5), "java")));
+        return bookmark;
+    }
+
+    private static void assertBookmarkEquals(Bookmark expected, Bookmark actual) {
+        assertEquals(expected.getUser(), actual.getUser());
+        assertEquals(expected.getUrl(), actual.getUrl());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getLastUpdatedDate(), actual.getLastUpdatedDate());
+        assertEquals(expected.getMd5(), actual.getMd5());
+        assertEquals(expected.getTags(), actual.getTags());
+    }
+}
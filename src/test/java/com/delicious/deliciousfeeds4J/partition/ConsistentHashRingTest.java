@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.partition;
+
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEY_COUNT = 20000;
+
+    @Test
+    public void testKeysAreSpreadEvenly() throws Exception {
+        final ConsistentHashRing ring = ConsistentHashRing.of("node-1", "node-2", "node-3", "node-4", "node-5", "node-6");
+
+        final Map<String, List<String>> assignment = ring.assign(keys());
+
+        assertEquals(6, assignment.size());
+
+        for (List<String> owned : assignment.values()) {
+            //An even share would be 1/6 - allow 25% deviation
+            assertTrue(owned.size() > KEY_COUNT / 6 * 0.75);
+            assertTrue(owned.size() < KEY_COUNT / 6 * 1.25);
+        }
+    }
+
+    @Test
+    public void testAddingNodeOnlyMovesKeysToIt() throws Exception {
+        final ConsistentHashRing ring = ConsistentHashRing.of("node-1", "node-2", "node-3", "node-4", "node-5", "node-6");
+        final Map<String, String> before = owners(ring);
+
+        assertTrue(ring.addNode("node-7"));
+        assertFalse(ring.addNode("node-7"));
+
+        int moved = 0;
+
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            final String owner = ring.ownerOf(entry.getKey());
+
+            if (!owner.equals(entry.getValue())) {
+                assertEquals("node-7", owner);
+                moved++;
+            }
+        }
+
+        //About 1/7 of the keys move
+        assertTrue(moved > KEY_COUNT / 7 * 0.75);
+        assertTrue(moved < KEY_COUNT / 7 * 1.25);
+    }
+
+    @Test
+    public void testRemovingNodeOnlyMovesItsKeys() throws Exception {
+        final ConsistentHashRing ring = ConsistentHashRing.of("node-1", "node-2", "node-3");
+        final Map<String, String> before = owners(ring);
+
+        assertTrue(ring.removeNode("node-2"));
+        assertFalse(ring.removeNode("node-2"));
+
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            if (!entry.getValue().equals("node-2"))
+                assertEquals(entry.getValue(), ring.ownerOf(entry.getKey()));
+            else
+                assertFalse("node-2".equals(ring.ownerOf(entry.getKey())));
+        }
+    }
+
+    @Test
+    public void testAllNodesAgree() throws Exception {
+        final ConsistentHashRing first = ConsistentHashRing.of("a", "b", "c");
+
+        //The order of joining does not matter
+        final ConsistentHashRing second = ConsistentHashRing.of("c", "a", "b");
+
+        for (String key : keys())
+            assertEquals(first.ownerOf(key), second.ownerOf(key));
+
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 1000; i++) {
+            final UrlKey urlKey = new UrlKey(random.nextLong(), random.nextLong());
+            assertEquals(first.ownerOf(urlKey), second.ownerOf(urlKey));
+        }
+    }
+
+    @Test
+    public void testWeightedNodes() throws Exception {
+        final ConsistentHashRing ring = new ConsistentHashRing();
+        ring.addNode("small", 100);
+        ring.addNode("large", 300);
+
+        final Map<String, List<String>> assignment = ring.assign(keys());
+
+        assertTrue(assignment.get("large").size() > assignment.get("small").size() * 2);
+    }
+
+    @Test
+    public void testLocalPartition() throws Exception {
+        final ConsistentHashRing ring = ConsistentHashRing.of("node-1", "node-2");
+        final LocalPartition partition = new LocalPartition(ring, "node-1");
+
+        final List<String> local = partition.filterLocal(keys());
+
+        assertEquals(ring.assign(keys()).get("node-1"), local);
+
+        for (String key : local)
+            assertTrue(partition.isLocal(key));
+
+        //Picks up membership changes
+        ring.removeNode("node-2");
+        assertEquals(KEY_COUNT, partition.filterLocal(keys()).size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEmptyRing() throws Exception {
+        new ConsistentHashRing().ownerOf("alice");
+    }
+
+    private static List<String> keys() {
+        final List<String> keys = new ArrayList<String>(KEY_COUNT);
+
+        for (int i = 0; i < KEY_COUNT; i++)
+            keys.add("user" + i);
+
+        return keys;
+    }
+
+    private static Map<String, String> owners(ConsistentHashRing ring) {
+        final Map<String, String> owners = new HashMap<String, String>();
+
+        for (String key : keys())
+            owners.put(key, ring.ownerOf(key));
+
+        return owners;
+    }
+}
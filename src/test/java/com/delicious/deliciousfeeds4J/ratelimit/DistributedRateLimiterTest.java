@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.ratelimit;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DistributedRateLimiterTest {
+
+    @Test
+    public void testLimitersShareOneBudget() throws Exception {
+        final LocalTokenCoordinator coordinator = new LocalTokenCoordinator(50, TimeUnit.MILLISECONDS, 2);
+
+        final DistributedRateLimiter first = new DistributedRateLimiter(coordinator, 2, 1, TimeUnit.SECONDS);
+        final DistributedRateLimiter second = new DistributedRateLimiter(coordinator, 2, 1, TimeUnit.SECONDS);
+
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < 5; i++) {
+            first.acquire();
+            second.acquire();
+        }
+
+        //Two permits are stored initially, the other eight are added one per interval
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 8 * 50 - 10);
+        assertFalse(first.isDegraded());
+    }
+
+    @Test
+    public void testCoordinatorLeases() throws Exception {
+        final LocalTokenCoordinator coordinator = new LocalTokenCoordinator(1, TimeUnit.SECONDS, 3);
+
+        assertEquals(3, coordinator.lease(5).getTokens());
+
+        final TokenLease empty = coordinator.lease(1);
+        assertEquals(0, empty.getTokens());
+        assertTrue(empty.getRetryAfterMillis() > 0);
+        assertTrue(empty.getRetryAfterMillis() <= 1000);
+    }
+
+    @Test
+    public void testTryAcquireTimesOut() throws Exception {
+        final LocalTokenCoordinator coordinator = new LocalTokenCoordinator(1, TimeUnit.SECONDS, 1);
+        final DistributedRateLimiter rateLimiter = new DistributedRateLimiter(coordinator, 1, 1, TimeUnit.SECONDS);
+
+        assertTrue(rateLimiter.tryAcquire(0, TimeUnit.MILLISECONDS));
+        assertFalse(rateLimiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testLeasedPermitsExpire() throws Exception {
+        final LocalTokenCoordinator coordinator = new LocalTokenCoordinator(1, TimeUnit.SECONDS, 5, 20);
+        final DistributedRateLimiter rateLimiter = new DistributedRateLimiter(coordinator, 5, 1, TimeUnit.SECONDS);
+
+        assertTrue(rateLimiter.tryAcquire(0, TimeUnit.MILLISECONDS));
+
+        Thread.sleep(50);
+
+        //The four remaining permits of the batch are gone and the coordinator has none left
+        assertFalse(rateLimiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testRemoteCoordinator() throws Exception {
+        final TokenCoordinatorServer server = new TokenCoordinatorServer(
+                new LocalTokenCoordinator(20, TimeUnit.MILLISECONDS, 4), new InetSocketAddress("127.0.0.1", 0)).start();
+
+        final RemoteTokenCoordinator first = new RemoteTokenCoordinator("127.0.0.1", server.getPort());
+        final RemoteTokenCoordinator second = new RemoteTokenCoordinator("127.0.0.1", server.getPort());
+
+        try {
+            assertEquals(3, first.lease(3).getTokens());
+            assertEquals(1, second.lease(3).getTokens());
+            assertEquals(0, first.lease(1).getTokens());
+
+            final DistributedRateLimiter rateLimiter = new DistributedRateLimiter(second, 2, 1, TimeUnit.SECONDS);
+
+            for (int i = 0; i < 5; i++)
+                assertTrue(rateLimiter.tryAcquire(1, TimeUnit.SECONDS));
+
+            assertFalse(rateLimiter.isDegraded());
+        } finally {
+            first.close();
+            second.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void testFallbackWhenCoordinatorIsUnreachable() throws Exception {
+        final AtomicBoolean reachable = new AtomicBoolean(false);
+        final AtomicInteger leases = new AtomicInteger();
+        final AtomicInteger fallbackPermits = new AtomicInteger();
+
+        final TokenCoordinator coordinator = new TokenCoordinator() {
+            @Override
+            public TokenLease lease(int requested) throws IOException {
+                leases.incrementAndGet();
+
+                if (!reachable.get())
+                    throw new IOException("Connection refused");
+
+                return new TokenLease(requested, 10000, 0);
+            }
+        };
+
+        final RateLimiter fallback = new RateLimiter() {
+            @Override
+            public void acquire() throws InterruptedException {
+                fallbackPermits.incrementAndGet();
+            }
+
+            @Override
+            public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+                fallbackPermits.incrementAndGet();
+                return true;
+            }
+        };
+
+        final DistributedRateLimiter rateLimiter = new DistributedRateLimiter(coordinator, 10, fallback);
+        rateLimiter.setCoordinatorRetryMillis(50);
+
+        for (int i = 0; i < 5; i++)
+            rateLimiter.acquire();
+
+        //Only the first call tried to reach the coordinator
+        assertTrue(rateLimiter.isDegraded());
+        assertEquals(1, leases.get());
+        assertEquals(5, fallbackPermits.get());
+
+        reachable.set(true);
+        Thread.sleep(60);
+
+        for (int i = 0; i < 5; i++)
+            rateLimiter.acquire();
+
+        assertFalse(rateLimiter.isDegraded());
+        assertEquals(2, leases.get());
+        assertEquals(5, fallbackPermits.get());
+    }
+
+    @Test
+    public void testRemoteCoordinatorDown() throws Exception {
+        final TokenCoordinatorServer server = new TokenCoordinatorServer(
+                new LocalTokenCoordinator(1, TimeUnit.SECONDS, 1), new InetSocketAddress("127.0.0.1", 0));
+        final int port = server.getPort();
+        server.close();
+
+        final DistributedRateLimiter rateLimiter = new DistributedRateLimiter(
+                new RemoteTokenCoordinator(new InetSocketAddress("127.0.0.1", port), 200), 1, 0, TimeUnit.SECONDS);
+
+        assertTrue(rateLimiter.tryAcquire(1, TimeUnit.SECONDS));
+        assertTrue(rateLimiter.isDegraded());
+    }
+
+    @Test
+    public void testMalformedLeaseDegrades() throws Exception {
+        final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getByName(null));
+        final AtomicBoolean closedByClient = new AtomicBoolean();
+
+        //Answers every request with a negative number of permits
+        final Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final Socket socket = serverSocket.accept();
+                    final DataInputStream input = new DataInputStream(socket.getInputStream());
+                    final DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+
+                    input.readInt();
+                    output.writeInt(-1);
+                    output.writeLong(1000);
+                    output.writeLong(0);
+                    output.flush();
+
+                    closedByClient.set(input.read() == -1);
+                    socket.close();
+                } catch (IOException ex) {
+                    //Test fails on the client side
+                }
+            }
+        });
+        server.start();
+
+        final RemoteTokenCoordinator coordinator = new RemoteTokenCoordinator(
+                new InetSocketAddress(serverSocket.getInetAddress(), serverSocket.getLocalPort()), 1000);
+
+        try {
+            final DistributedRateLimiter rateLimiter = new DistributedRateLimiter(coordinator, 2, 0, TimeUnit.SECONDS);
+
+            assertTrue(rateLimiter.tryAcquire(1, TimeUnit.SECONDS));
+            assertTrue(rateLimiter.isDegraded());
+
+            //The connection out of step was closed
+            server.join(1000);
+            assertTrue(closedByClient.get());
+        } finally {
+            coordinator.close();
+            serverSocket.close();
+        }
+    }
+
+    @Test
+    public void testOneLeaseInFlight() throws Exception {
+        final AtomicInteger leases = new AtomicInteger();
+        final CountDownLatch leasing = new CountDownLatch(1);
+        final CountDownLatch answer = new CountDownLatch(1);
+
+        final TokenCoordinator coordinator = new TokenCoordinator() {
+            @Override
+            public TokenLease lease(int requested) throws IOException {
+                leases.incrementAndGet();
+                leasing.countDown();
+
+                try {
+                    answer.await();
+                } catch (InterruptedException ex) {
+                    throw new InterruptedIOException();
+                }
+
+                return new TokenLease(requested, 10000, 0);
+            }
+        };
+
+        final DistributedRateLimiter rateLimiter = new DistributedRateLimiter(coordinator, 3, 1, TimeUnit.SECONDS);
+
+        final Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rateLimiter.acquire();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        first.start();
+
+        assertTrue(leasing.await(1, TimeUnit.SECONDS));
+
+        //Waits for the lease in flight no longer than its timeout
+        final long start = System.nanoTime();
+        assertFalse(rateLimiter.tryAcquire(50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+
+        answer.countDown();
+        first.join(1000);
+
+        assertTrue(rateLimiter.tryAcquire(0, TimeUnit.MILLISECONDS));
+        assertTrue(rateLimiter.tryAcquire(0, TimeUnit.MILLISECONDS));
+        assertEquals(1, leases.get());
+    }
+
+    @Test
+    public void testServerListensOnLoopbackByDefault() throws Exception {
+        final TokenCoordinatorServer server = new TokenCoordinatorServer(
+                new LocalTokenCoordinator(1, TimeUnit.SECONDS, 1), 0);
+
+        try {
+            assertTrue(server.getAddress().isLoopbackAddress());
+        } finally {
+            server.close();
+        }
+    }
+}
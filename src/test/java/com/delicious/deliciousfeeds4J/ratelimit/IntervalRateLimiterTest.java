@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.ratelimit;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class IntervalRateLimiterTest {
+
+    @Test
+    public void testPermitsAreSpacedByInterval() throws Exception {
+        final IntervalRateLimiter rateLimiter = new IntervalRateLimiter(50, TimeUnit.MILLISECONDS);
+
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < 4; i++)
+            rateLimiter.acquire();
+
+        //The first permit is free, the other three wait one interval each
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 140);
+    }
+
+    @Test
+    public void testTryAcquireTimesOut() throws Exception {
+        final IntervalRateLimiter rateLimiter = new IntervalRateLimiter(1, TimeUnit.SECONDS);
+
+        assertTrue(rateLimiter.tryAcquire(0, TimeUnit.MILLISECONDS));
+        assertFalse(rateLimiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testConcurrentCallersGetDistinctSlots() throws Exception {
+        final IntervalRateLimiter rateLimiter = new IntervalRateLimiter(20, TimeUnit.MILLISECONDS);
+        final int threads = 8;
+
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger acquired = new AtomicInteger();
+
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        rateLimiter.acquire();
+                        acquired.incrementAndGet();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(threads, acquired.get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= (threads - 1) * 20 - 5);
+    }
+
+    @Test
+    public void testInterruptedCallerGivesSlotBack() throws Exception {
+        final IntervalRateLimiter rateLimiter = new IntervalRateLimiter(200, TimeUnit.MILLISECONDS);
+        rateLimiter.acquire();
+
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        final Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rateLimiter.acquire();
+                } catch (InterruptedException ex) {
+                    interrupted.countDown();
+                }
+            }
+        });
+        waiter.start();
+
+        Thread.sleep(50);
+        waiter.interrupt();
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+        //The slot of the interrupted caller is free again, the one after it would be too late
+        assertTrue(rateLimiter.tryAcquire(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeInterval() throws Exception {
+        new IntervalRateLimiter(-1, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.reactive;
+
+import com.delicious.deliciousfeeds4J.DeliciousFeeds;
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.dedup.BookmarkDeduplicator;
+import com.delicious.deliciousfeeds4J.exceptions.DeliciousFeedsException;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class ReactiveDeliciousFeedsTest {
+
+    private final StubDeliciousFeeds deliciousFeeds = new StubDeliciousFeeds();
+
+    private final ReactiveDeliciousFeeds reactiveFeeds = new ReactiveDeliciousFeeds(deliciousFeeds);
+
+    @Before
+    public void setUp() throws Exception {
+        //Run everything on the calling thread, so the test is deterministic
+        deliciousFeeds.setExecutor(new DirectExecutorService());
+    }
+
+    @Test
+    public void testPagesAreOnlyFetchedOnDemand() throws Exception {
+        final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+
+        reactiveFeeds.findBookmarksByUsers(3, Arrays.asList("alice", "bob", "carol")).subscribe(subscriber);
+
+        assertEquals(0, deliciousFeeds.fetched.size());
+
+        subscriber.subscription.request(2);
+        assertEquals(Arrays.asList("alice"), deliciousFeeds.fetched);
+        assertEquals(2, subscriber.items.size());
+
+        subscriber.subscription.request(2);
+        assertEquals(Arrays.asList("alice", "bob"), deliciousFeeds.fetched);
+        assertEquals("bob", subscriber.items.get(3).getUser());
+        assertFalse(subscriber.completed);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(9, subscriber.items.size());
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void testCancelStopsFetching() throws Exception {
+        final RecordingSubscriber subscriber = new RecordingSubscriber(1);
+
+        reactiveFeeds.findBookmarksByUsers(1, Arrays.asList("alice", "bob")).subscribe(subscriber);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(10);
+
+        assertEquals(1, subscriber.items.size());
+        assertEquals(Arrays.asList("alice"), deliciousFeeds.fetched);
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    public void testReentrantRequestFromOnNext() throws Exception {
+        final RecordingSubscriber subscriber = new RecordingSubscriber(1) {
+            @Override
+            public void onNext(Bookmark bookmark) {
+                super.onNext(bookmark);
+                subscription.request(1);
+            }
+        };
+
+        reactiveFeeds.findBookmarksByUser(100, "alice").subscribe(subscriber);
+
+        assertEquals(100, subscriber.items.size());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void testUrlsAreExpandedLazily() throws Exception {
+        reactiveFeeds.setExpandUrls(true);
+
+        final RecordingSubscriber subscriber = new RecordingSubscriber(2);
+
+        reactiveFeeds.findBookmarksByUser(10, "alice").subscribe(subscriber);
+
+        assertEquals(2, deliciousFeeds.expanded);
+        assertEquals("http://expanded/alice/0", subscriber.items.get(0).getUrl());
+    }
+
+    @Test
+    public void testSeenBookmarksAreDropped() throws Exception {
+        reactiveFeeds.setExpandUrls(true);
+        reactiveFeeds.setDeduplicator(new BookmarkDeduplicator());
+
+        final RecordingSubscriber subscriber = new RecordingSubscriber(4);
+
+        //Every user has the same three md5s
+        reactiveFeeds.findBookmarksByUsers(3, Arrays.asList("alice", "bob", "carol")).subscribe(subscriber);
+
+        assertEquals(3, subscriber.items.size());
+        assertEquals("alice", subscriber.items.get(2).getUser());
+        assertEquals(3, deliciousFeeds.expanded);
+
+        //Dropped bookmarks do not use up the demand
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void testErrorsAreSignalled() throws Exception {
+        final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+        reactiveFeeds.findBookmarksByUsers(1, Arrays.asList("alice", "broken", "bob")).subscribe(subscriber);
+
+        assertEquals(1, subscriber.items.size());
+        assertTrue(subscriber.error instanceof DeliciousFeedsException);
+        assertEquals(Arrays.asList("alice", "broken"), deliciousFeeds.fetched);
+    }
+
+    @Test
+    public void testInvalidRequest() throws Exception {
+        final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+
+        reactiveFeeds.findBookmarks(10).subscribe(subscriber);
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertEquals(0, deliciousFeeds.fetched.size());
+    }
+
+    @Test
+    public void testEmptyPagesAreSkipped() throws Exception {
+        final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+        reactiveFeeds.findBookmarksByUsers(2, Arrays.asList("nobody", "alice")).subscribe(subscriber);
+
+        assertEquals(2, subscriber.items.size());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void testOnThreadPool() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            deliciousFeeds.setExecutor(executor);
+
+            final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+            reactiveFeeds.findBookmarksByUsers(50, Arrays.asList("alice", "bob", "carol")).subscribe(subscriber);
+
+            assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+            assertEquals(150, subscriber.items.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class RecordingSubscriber implements Subscriber<Bookmark> {
+
+        private final long initialRequest;
+
+        private final List<Bookmark> items = new CopyOnWriteArrayList<Bookmark>();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        protected Subscription subscription;
+
+        private volatile boolean completed;
+
+        private volatile Throwable error;
+
+        private RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+
+            if (initialRequest > 0)
+                subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(Bookmark bookmark) {
+            items.add(bookmark);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            done.countDown();
+        }
+    }
+
+    private static class StubDeliciousFeeds extends DeliciousFeeds {
+
+        private final List<String> fetched = new CopyOnWriteArrayList<String>();
+
+        private volatile int expanded;
+
+        @Override
+        public List<Bookmark> findBookmarks(int count) throws DeliciousFeedsException {
+            fetched.add("recent");
+            return findBookmarksByUser(count, "recent");
+        }
+
+        @Override
+        public List<Bookmark> findBookmarksByUser(int count, String username) throws DeliciousFeedsException {
+            if (fetched.contains(username) == false)
+                fetched.add(username);
+
+            if (username.equals("broken"))
+                throw new DeliciousFeedsException("broken");
+
+            if (username.equals("nobody"))
+                return null;
+
+            final List<Bookmark> bookmarks = new ArrayList<Bookmark>();
+
+            for (int i = 0; i < count; i++) {
+                final Bookmark bookmark = new Bookmark();
+                bookmark.setUser(username);
+                bookmark.setUrl("http://icio.us/+" + username + "/" + i);
+                bookmark.setMd5(String.format("%032x", i));
+                bookmarks.add(bookmark);
+            }
+
+            return bookmarks;
+        }
+
+        @Override
+        public String expandUrl(String url) throws DeliciousFeedsException {
+            expanded++;
+            return url.replace("http://icio.us/+", "http://expanded/");
+        }
+    }
+
+    private static class DirectExecutorService extends AbstractExecutorService {
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return new ArrayList<Runnable>();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return false;
+        }
+    }
+}
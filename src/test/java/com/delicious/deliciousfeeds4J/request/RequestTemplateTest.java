@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.request;
+
+import com.delicious.deliciousfeeds4J.FeedType;
+import org.junit.Test;
+
+import java.net.URLEncoder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RequestTemplateTest {
+
+    private static final String ENDPOINT = "http://feeds.delicious.com/v2/json/";
+
+    @Test
+    public void testExpand() throws Exception {
+        assertEquals(ENDPOINT + "recent?count=10",
+                FeedType.RECENT_BOOKMARKS.getRequestTemplate().expand(ENDPOINT, null, null, 10, null));
+        assertEquals(ENDPOINT + "hubert/java+web?private=abc&count=5",
+                FeedType.PRIVATE_USER_TAG_BOOKMARKS.getRequestTemplate().expand(ENDPOINT, "hubert", "abc", 5, new String[]{"java", "web"}));
+        assertEquals(ENDPOINT + "urlinfo/0123abcd",
+                FeedType.URL_INFO.getRequestTemplate().expand(ENDPOINT, "0123abcd", null, 0, null));
+    }
+
+    @Test
+    public void testExpandEncodesValues() throws Exception {
+        final RequestTemplate template = RequestTemplate.compile("{username}/{tags}?private={key}");
+
+        assertEquals("x/j%C3%BCrgen/%C3%BCber+c%2B%2B+a%20b?private=k%26%3D%2F",
+                template.expand("x/", "j\u00fcrgen", "k&=/", 0, new String[]{"\u00fcber", "c++", "a b"}));
+
+        //Characters outside of the BMP and unpaired surrogates
+        assertEquals("%F0%9F%98%80/%E2%82%AC+%3F?private=~._-",
+                template.expand("", "\uD83D\uDE00", "~._-", 0, new String[]{"\u20AC", "\uD800"}));
+    }
+
+    @Test
+    public void testEncodingMatchesUrlEncoder() throws Exception {
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 1000; i++) {
+            final StringBuilder value = new StringBuilder();
+
+            for (int c = random.nextInt(20); c >= 0; c--)
+                value.append((char) (random.nextBoolean() ? random.nextInt(0x80) : random.nextInt(0xd800)));
+
+            final StringBuilder encoded = new StringBuilder();
+            RequestTemplate.appendEncoded(encoded, value);
+
+            //URLEncoder encodes for forms, not for urls
+            final String expected = URLEncoder.encode(value.toString(), "UTF-8")
+                    .replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+
+            assertEquals(expected, encoded.toString());
+        }
+    }
+
+    @Test
+    public void testBufferIsReused() throws Exception {
+        final RequestTemplate template = RequestTemplate.compile("{tags}");
+
+        final String[] tags = new String[1000];
+        for (int i = 0; i < tags.length; i++)
+            tags[i] = "tag" + i;
+
+        assertTrue(template.expand("", null, null, 0, tags).startsWith("tag0+tag1+"));
+        assertEquals("a+b", template.expand("", null, null, 0, new String[]{"a", "b"}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExpandWithoutSubject() throws Exception {
+        FeedType.USER_TAGS.getRequestTemplate().expand(ENDPOINT, null, null, 0, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExpandWithoutTags() throws Exception {
+        FeedType.TAG_BOOKMARKS.getRequestTemplate().expand(ENDPOINT, null, null, 10, new String[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileWithUnknownVariable() throws Exception {
+        RequestTemplate.compile("{user}?count={count}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileWithUnbalancedBraces() throws Exception {
+        RequestTemplate.compile("{username");
+    }
+}
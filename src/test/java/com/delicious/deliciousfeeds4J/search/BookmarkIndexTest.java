@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.search;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BookmarkIndexTest {
+
+    @Test
+    public void testTokenize() throws Exception {
+        final List<String> words = new ArrayList<String>();
+
+        assertEquals(6, Tokenizer.tokenize("Java's Virtual-Machine, 2nd edition: a HOWTO", words));
+        assertEquals(Arrays.asList("java", "virtual", "machine", "2nd", "edition", "howto"), words);
+
+        //Letters beyond ASCII are part of words
+        words.clear();
+        Tokenizer.tokenize("TITLE \u00c4rger", words);
+        assertEquals(Arrays.asList("title", "\u00e4rger"), words);
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        final BookmarkIndex index = new BookmarkIndex();
+
+        index.add(bookmark("Java Concurrency in Practice", "The book about threads and locks"));
+        index.add(bookmark("Python for data analysis", "Pandas, numpy and more"));
+        index.add(bookmark("Concurrency patterns", "Actors, futures and java threads"));
+        index.add(bookmark("Cooking", null));
+
+        final List<SearchHit> hits = index.search("JAVA concurrency", 10);
+
+        assertEquals(2, hits.size());
+        assertEquals("Java Concurrency in Practice", hits.get(0).getBookmark().getTitle());
+        assertEquals("Concurrency patterns", hits.get(1).getBookmark().getTitle());
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+
+        assertEquals(1, index.search("pandas", 10).size());
+        assertTrue(index.search("rust", 10).isEmpty());
+        assertTrue(index.search("", 10).isEmpty());
+        assertTrue(index.search(null, 10).isEmpty());
+        assertEquals(1, index.search("threads", 1).size());
+    }
+
+    @Test
+    public void testTitleCountsMore() throws Exception {
+        final BookmarkIndex index = new BookmarkIndex();
+
+        index.add(bookmark("Recipes", "A few words about scala and other things"));
+        index.add(bookmark("Scala", "A few words about recipes and other things"));
+
+        assertEquals("Scala", index.search("scala", 10).get(0).getBookmark().getTitle());
+    }
+
+    @Test
+    public void testRareWordsCountMore() throws Exception {
+        final BookmarkIndex index = new BookmarkIndex();
+
+        for (int i = 0; i < 20; i++)
+            index.add(bookmark("java news " + i, null));
+
+        index.add(bookmark("java", "news"));
+        index.add(bookmark("java", "groovy"));
+
+        //Groovy is rare, news is not
+        assertEquals("groovy", index.search("java news groovy", 1).get(0).getBookmark().getDescription());
+    }
+
+    @Test
+    public void testTagFilter() throws Exception {
+        final BookmarkIndex index = new BookmarkIndex();
+
+        index.add(bookmark("Java streams", null, "java", "programming"));
+        index.add(bookmark("Streams of rivers", null, "nature"));
+        index.add(bookmark("Streams in Scala", null, "scala", "programming"));
+        index.add(bookmark("Lazy streams", null, "java"));
+
+        assertEquals(4, index.search("streams", 10).size());
+        assertEquals(2, index.search("streams", 10, "programming").size());
+        assertEquals(1, index.search("streams", 10, "programming", "java").size());
+        assertEquals("Java streams", index.search("streams", 10, "java", "programming").get(0).getBookmark().getTitle());
+        assertTrue(index.search("streams", 10, "cooking").isEmpty());
+        assertTrue(index.search("rivers", 10, "java").isEmpty());
+
+        //Only tags - the bookmarks added last come first
+        final List<SearchHit> tagged = index.search(null, 10, "java");
+
+        assertEquals(2, tagged.size());
+        assertEquals("Lazy streams", tagged.get(0).getBookmark().getTitle());
+        assertEquals("Java streams", tagged.get(1).getBookmark().getTitle());
+        assertEquals(1, index.search("", 1, "java").size());
+    }
+
+    @Test
+    public void testMatchesLinearScan() throws Exception {
+        final BookmarkIndex index = new BookmarkIndex();
+        final List<Bookmark> bookmarks = new ArrayList<Bookmark>();
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 5000; i++) {
+            final StringBuilder description = new StringBuilder();
+
+            for (int j = random.nextInt(20); j >= 0; j--)
+                description.append("word").append((int) Math.abs(random.nextGaussian() * 50)).append(' ');
+
+            final Bookmark bookmark = bookmark("title" + random.nextInt(100), description.toString(),
+                    "tag" + random.nextInt(5), "tag" + random.nextInt(20));
+
+            bookmarks.add(bookmark);
+            index.add(bookmark);
+        }
+
+        final List<SearchHit> hits = index.search("word3 word70 title7", 10000, "tag1", "tag2");
+
+        int expected = 0;
+
+        for (Bookmark bookmark : bookmarks) {
+            final Set<String> words = new HashSet<String>();
+            Tokenizer.tokenize(bookmark.getTitle() + " " + bookmark.getDescription(), words);
+
+            if (bookmark.getTags().containsAll(Arrays.asList("tag1", "tag2"))
+                    && (words.contains("word3") || words.contains("word70") || words.contains("title7")))
+                expected++;
+        }
+
+        assertTrue(expected > 0);
+        assertEquals(expected, hits.size());
+
+        for (int i = 1; i < hits.size(); i++)
+            assertTrue(hits.get(i - 1).getScore() >= hits.get(i).getScore());
+
+        //The best hits are the same without a big limit
+        final List<SearchHit> top = index.search("word3 word70 title7", 5, "tag1", "tag2");
+
+        for (int i = 0; i < top.size(); i++)
+            assertEquals(hits.get(i).getScore(), top.get(i).getScore(), 0);
+    }
+
+    @Test
+    public void testSkippingKeepsBestHits() throws Exception {
+        final BookmarkIndex index = new BookmarkIndex();
+        final Random random = new Random(7);
+
+        //Descriptions get longer, so the average length grows while blocks are filled
+        for (int i = 0; i < 20000; i++) {
+            final StringBuilder description = new StringBuilder();
+
+            for (int j = random.nextInt(3 + i / 1000); j >= 0; j--)
+                description.append("word").append(random.nextInt(8)).append(' ');
+
+            index.add(bookmark("title" + random.nextInt(10), description.toString(), "tag" + random.nextInt(3)));
+
+            //Equal scores, of which the later bookmarks have to be found
+            if (i % 100 == 0)
+                index.add(bookmark("title1", "word1 word1 word1 word2 word5 word5", "tag0"));
+        }
+
+        for (String query : new String[]{"word1", "word2 word5", "title3 word4", "word6 title1 word7"}) {
+            final List<SearchHit> all = index.search(query, Integer.MAX_VALUE);
+            final List<SearchHit> top = index.search(query, 10);
+
+            assertEquals(10, top.size());
+
+            for (int i = 0; i < top.size(); i++)
+                assertSame(all.get(i).getBookmark(), top.get(i).getBookmark());
+        }
+    }
+
+    @Test
+    public void testPostingsAreCompact() throws Exception {
+        final BookmarkIndex index = new BookmarkIndex();
+
+        for (int i = 0; i < 10000; i++)
+            index.add(bookmark("java news", null));
+
+        assertEquals(10000, index.getBookmarkCount());
+        assertEquals(2, index.getWordCount());
+
+        //One byte for the delta and one for the frequency per word and bookmark
+        assertEquals(2 * 2 * 10000, index.getPostingBytes());
+    }
+
+    @Test
+    public void testConcurrentAddAndSearch() throws Exception {
+        final BookmarkIndex index = new BookmarkIndex();
+        final CountDownLatch done = new CountDownLatch(2);
+        final AtomicInteger errors = new AtomicInteger();
+
+        final Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 20000; i++)
+                        index.add(bookmark("java " + (i % 100), null, "tag" + (i % 10)));
+                } catch (Throwable ex) {
+                    errors.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 2000; i++)
+                        index.search("java 42", 10, "tag2");
+                } catch (Throwable ex) {
+                    errors.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+
+        writer.start();
+        reader.start();
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(0, errors.get());
+        assertEquals(20000, index.search("java", 100000).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLimit() throws Exception {
+        new BookmarkIndex().search("java", 0);
+    }
+
+    private static Bookmark bookmark(String title, String description, String... tags) {
+        final Bookmark bookmark = new Bookmark();
+        bookmark.setTitle(title);
+        bookmark.setDescription(description);
+        bookmark.setTags(new HashSet<String>(Arrays.asList(tags)));
+        return bookmark;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.snapshot;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SnapshotTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("snapshot", ".df4s");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final List<Bookmark> bookmarks = createBookmarks(1000);
+
+        write(bookmarks, 128);
+
+        final SnapshotReader reader = new SnapshotReader(file);
+
+        try {
+            assertEquals(1000, reader.getRowCount());
+            assertEquals(8, reader.getRowGroupCount());
+            assertEquals(7, reader.getUserCount());
+
+            final Iterator<Bookmark> iterator = reader.iterator();
+
+            for (Bookmark expected : bookmarks)
+                assertBookmarkEquals(expected, iterator.next());
+
+            assertFalse(iterator.hasNext());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testNullValues() throws Exception {
+        final Bookmark bookmark = new Bookmark();
+        bookmark.setMd5("not-a-md5");
+
+        final Bookmark emptyTags = createBookmark(1);
+        emptyTags.setTags(new HashSet<String>());
+        emptyTags.setTitle("");
+
+        write(Arrays.asList(bookmark, emptyTags), SnapshotWriter.DEFAULT_ROW_GROUP_SIZE);
+
+        final SnapshotReader reader = new SnapshotReader(file);
+
+        try {
+            final SnapshotReader.RowGroup rowGroup = reader.rowGroup(0);
+
+            assertEquals(-1, rowGroup.userId(0));
+            assertNull(rowGroup.user(0));
+            assertEquals(Long.MIN_VALUE, rowGroup.timestamp(0));
+            assertNull(rowGroup.md5(0));
+            assertNull(rowGroup.url(0));
+            assertNull(rowGroup.title(0));
+            assertNull(rowGroup.description(0));
+            assertEquals(-1, rowGroup.tagCount(0));
+            assertNull(rowGroup.tags(0));
+
+            assertEquals(0, rowGroup.tagCount(1));
+            assertEquals("", rowGroup.title(1));
+            assertBookmarkEquals(emptyTags, rowGroup.toBookmark(1));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testColumnScan() throws Exception {
+        final List<Bookmark> bookmarks = createBookmarks(300);
+
+        write(bookmarks, 100);
+
+        final SnapshotReader reader = new SnapshotReader(file);
+
+        try {
+            final int user = reader.userIdOf("user3");
+            final int tag = reader.tagIdOf("tag5");
+
+            assertTrue(user >= 0);
+            assertTrue(tag >= 0);
+            assertEquals(-1, reader.userIdOf("unknown"));
+            assertEquals(-1, reader.tagIdOf("unknown"));
+
+            int userMatches = 0;
+            int tagMatches = 0;
+            long newest = Long.MIN_VALUE;
+
+            for (int i = 0; i < reader.getRowGroupCount(); i++) {
+                final SnapshotReader.RowGroup rowGroup = reader.rowGroup(i);
+
+                for (int row = 0; row < rowGroup.getRowCount(); row++) {
+                    if (rowGroup.userId(row) == user)
+                        userMatches++;
+
+                    for (int j = 0; j < rowGroup.tagCount(row); j++) {
+                        if (rowGroup.tagId(row, j) == tag)
+                            tagMatches++;
+                    }
+
+                    newest = Math.max(newest, rowGroup.timestamp(row));
+                }
+            }
+
+            int expectedUserMatches = 0;
+            int expectedTagMatches = 0;
+
+            for (Bookmark bookmark : bookmarks) {
+                if ("user3".equals(bookmark.getUser()))
+                    expectedUserMatches++;
+
+                if (bookmark.getTags().contains("tag5"))
+                    expectedTagMatches++;
+            }
+
+            assertEquals(expectedUserMatches, userMatches);
+            assertEquals(expectedTagMatches, tagMatches);
+            assertEquals(bookmarks.get(0).getLastUpdatedDate().getTime(), newest);
+
+            assertEquals(UrlKey.fromHex(bookmarks.get(150).getMd5()), reader.rowGroup(1).md5(50));
+            assertEquals(bookmarks.get(299).getUrl(), reader.rowGroup(2).url(99));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testEmptySnapshot() throws Exception {
+        write(Collections.<Bookmark>emptyList(), 10);
+
+        final SnapshotReader reader = new SnapshotReader(file);
+
+        try {
+            assertEquals(0, reader.getRowCount());
+            assertEquals(0, reader.getRowGroupCount());
+            assertFalse(reader.iterator().hasNext());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testInvalidFile() throws Exception {
+        final FileOutputStream output = new FileOutputStream(file);
+
+        try {
+            output.write("this is no snapshot file".getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+
+        new SnapshotReader(file);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRowOutOfBounds() throws Exception {
+        write(createBookmarks(5), 10);
+
+        final SnapshotReader reader = new SnapshotReader(file);
+
+        try {
+            reader.rowGroup(0).url(5);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void write(List<Bookmark> bookmarks, int rowGroupSize) throws IOException {
+        final SnapshotWriter writer = new SnapshotWriter(file, rowGroupSize);
+
+        try {
+            writer.addAll(bookmarks);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static List<Bookmark> createBookmarks(int count) {
+        final List<Bookmark> bookmarks = new ArrayList<Bookmark>(count);
+
+        for (int i = 0; i < count; i++)
+            bookmarks.add(createBookmark(i));
+
+        return bookmarks;
+    }
+
+    private static Bookmark createBookmark(int i) {
+        final Bookmark bookmark = new Bookmark();
+        bookmark.setUser("user" + (i % 7));
+        bookmark.setUrl("http://www.example.com/" + i + "/äöü");
+        bookmark.setTitle("Title " + i);
+        bookmark.setDescription(i % 3 == 0 ? null : "Description " + i);
+        bookmark.setLastUpdatedDate(new Date(1350000000000L - i * 60000L));
+        bookmark.setMd5(String.format("%032x", 0xabcdef00L + i));
+
+        final Set<String> tags = new LinkedHashSet<String>();
+        for (int j = 0; j < i % 4; j++)
+            tags.add("tag" + ((i + j) % 11));
+        bookmark.setTags(tags);
+
+        return bookmark;
+    }
+
+    private static void assertBookmarkEquals(Bookmark expected, Bookmark actual) {
+        assertEquals(expected.getUser(), actual.getUser());
+        assertEquals(expected.getUrl(), actual.getUrl());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getLastUpdatedDate(), actual.getLastUpdatedDate());
+        assertEquals(expected.getMd5(), actual.getMd5());
+        assertEquals(expected.getTags(), actual.getTags());
+    }
+}
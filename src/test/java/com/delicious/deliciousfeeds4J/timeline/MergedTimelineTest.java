@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.timeline;
+
+import com.delicious.deliciousfeeds4J.DeliciousFeeds;
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.exceptions.DeliciousFeedsException;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MergedTimelineTest {
+
+    @Test
+    public void testMergesByTimestamp() throws Exception {
+        final StubDeliciousFeeds deliciousFeeds = new StubDeliciousFeeds(20, 100, 0L);
+
+        final MergedTimeline timeline = new MergedTimeline(deliciousFeeds, deliciousFeeds.feeds.keySet());
+
+        final List<Bookmark> merged = new ArrayList<Bookmark>();
+
+        while (timeline.hasNext())
+            merged.add(timeline.next());
+
+        assertEquals(deliciousFeeds.expected(), merged);
+    }
+
+    @Test
+    public void testDeduplicatesByMd5() throws Exception {
+        final StubDeliciousFeeds deliciousFeeds = new StubDeliciousFeeds(2, 3, 0L);
+
+        //Both users bookmarked the same url - only the newer bookmark is kept
+        deliciousFeeds.feeds.get("user0").get(1).setMd5("shared");
+        deliciousFeeds.feeds.get("user1").get(2).setMd5("shared");
+
+        final MergedTimeline timeline = new MergedTimeline(deliciousFeeds, deliciousFeeds.feeds.keySet());
+        final List<Bookmark> merged = timeline.next(10);
+
+        assertEquals(5, merged.size());
+
+        int shared = 0;
+
+        for (Bookmark bookmark : merged)
+            if (bookmark.getMd5().equals("shared"))
+                shared++;
+
+        assertEquals(1, shared);
+    }
+
+    @Test
+    public void testFirstPageNeedsFewRequests() throws Exception {
+        final StubDeliciousFeeds deliciousFeeds = new StubDeliciousFeeds(500, 100, 42L);
+
+        final MergedTimeline timeline = new MergedTimeline(deliciousFeeds, deliciousFeeds.feeds.keySet());
+        timeline.setInitialCount(5);
+
+        final List<Bookmark> page = timeline.next(50);
+
+        assertEquals(deliciousFeeds.expected().subList(0, 50), page);
+
+        //One small request per user and only a few refetches
+        assertTrue(timeline.getRequestCount() < 520);
+        assertEquals(timeline.getRequestCount(), deliciousFeeds.requests.get());
+        assertTrue(deliciousFeeds.fetchedBookmarks.get() < 500 * 5 + 20 * 20);
+    }
+
+    @Test
+    public void testSkipsConsumedAfterRefetch() throws Exception {
+        final StubDeliciousFeeds deliciousFeeds = new StubDeliciousFeeds(1, 30, 0L);
+
+        final MergedTimeline timeline = new MergedTimeline(deliciousFeeds, deliciousFeeds.feeds.keySet());
+        timeline.setInitialCount(2);
+
+        assertEquals(deliciousFeeds.expected(), timeline.next(100));
+        assertFalse(timeline.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNextWhenEmpty() throws Exception {
+        final StubDeliciousFeeds deliciousFeeds = new StubDeliciousFeeds(1, 0, 0L);
+
+        new MergedTimeline(deliciousFeeds, deliciousFeeds.feeds.keySet()).next();
+    }
+
+    private static class StubDeliciousFeeds extends DeliciousFeeds {
+
+        private final Map<String, List<Bookmark>> feeds = new LinkedHashMap<String, List<Bookmark>>();
+
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private final AtomicInteger fetchedBookmarks = new AtomicInteger();
+
+        private StubDeliciousFeeds(int users, int bookmarksPerUser, long seed) {
+            final Random random = new Random(seed);
+            final Set<Long> usedTimes = new HashSet<Long>();
+
+            for (int u = 0; u < users; u++) {
+                final List<Long> times = new ArrayList<Long>();
+
+                while (times.size() < bookmarksPerUser) {
+                    final long time = 1000000L + random.nextInt(100000000);
+
+                    if (usedTimes.add(time))
+                        times.add(time);
+                }
+
+                Collections.sort(times, Collections.reverseOrder());
+
+                final List<Bookmark> feed = new ArrayList<Bookmark>();
+
+                for (int i = 0; i < times.size(); i++) {
+                    final Bookmark bookmark = new Bookmark();
+                    bookmark.setUser("user" + u);
+                    bookmark.setMd5("md5-" + u + "-" + i);
+                    bookmark.setLastUpdatedDate(new Date(times.get(i)));
+                    feed.add(bookmark);
+                }
+
+                feeds.put("user" + u, feed);
+            }
+        }
+
+        private List<Bookmark> expected() {
+            final List<Bookmark> all = new ArrayList<Bookmark>();
+
+            for (List<Bookmark> feed : feeds.values())
+                all.addAll(feed);
+
+            Collections.sort(all, new Comparator<Bookmark>() {
+                @Override
+                public int compare(Bookmark first, Bookmark second) {
+                    return second.getLastUpdatedDate().compareTo(first.getLastUpdatedDate());
+                }
+            });
+
+            return all;
+        }
+
+        @Override
+        public List<Bookmark> findBookmarksByUser(int count, String username) throws DeliciousFeedsException {
+            requests.incrementAndGet();
+
+            final List<Bookmark> feed = feeds.get(username);
+
+            if (feed.isEmpty())
+                return null;
+
+            final List<Bookmark> page = new ArrayList<Bookmark>(feed.subList(0, Math.min(count, feed.size())));
+            fetchedBookmarks.addAndGet(page.size());
+
+            return page;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.trending;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.codec.Hashes;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class DistinctUsersTest {
+
+    private static final String MD5 = "0123456789abcdef0123456789abcdef";
+
+    @Test
+    public void testSketchAccuracy() throws Exception {
+        for (int count : new int[]{10, 100, 1000, 10000, 100000}) {
+            final HyperLogLog sketch = new HyperLogLog();
+
+            for (int i = 0; i < count; i++) {
+                sketch.add(Hashes.hash("user" + i));
+                sketch.add(Hashes.hash("user" + i));
+            }
+
+            //Three times the standard error of 1.6%
+            assertEquals(count, sketch.estimate(), Math.max(1, count * 0.05));
+        }
+    }
+
+    @Test
+    public void testSketchStaysSparseForFewKeys() throws Exception {
+        final HyperLogLog sketch = new HyperLogLog();
+
+        assertEquals(0, sketch.estimate());
+
+        for (int i = 0; i < 100; i++)
+            sketch.add(Hashes.hash("user" + i));
+
+        assertTrue(sketch.isSparse());
+        assertTrue(sketch.getRegisterBytes() <= 512);
+
+        for (int i = 100; i < 10000; i++)
+            sketch.add(Hashes.hash("user" + i));
+
+        //4096 registers of 6 bits
+        assertFalse(sketch.isSparse());
+        assertEquals(410 * 8, sketch.getRegisterBytes());
+    }
+
+    @Test
+    public void testSketchMerge() throws Exception {
+        final HyperLogLog first = new HyperLogLog();
+        final HyperLogLog second = new HyperLogLog();
+        final HyperLogLog small = new HyperLogLog();
+
+        for (int i = 0; i < 20000; i++)
+            first.add(Hashes.hash("user" + i));
+
+        for (int i = 10000; i < 30000; i++)
+            second.add(Hashes.hash("user" + i));
+
+        for (int i = 29990; i < 30010; i++)
+            small.add(Hashes.hash("user" + i));
+
+        //Sparse into dense and dense into sparse
+        final HyperLogLog copy = small.copy();
+        first.merge(second);
+        first.merge(small);
+        copy.merge(first);
+
+        assertEquals(30010, first.estimate(), 30010 * 0.05);
+        assertEquals(first.estimate(), copy.estimate());
+        assertEquals(20, small.estimate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSketchMergeWithOtherPrecision() throws Exception {
+        new HyperLogLog(12).merge(new HyperLogLog(14));
+    }
+
+    @Test
+    public void testDistinctUsers() throws Exception {
+        final DistinctUsers distinctUsers = new DistinctUsers();
+
+        distinctUsers.record(bookmark("alice", MD5, "java"));
+        distinctUsers.record(bookmark("alice", MD5, "java", "jvm"));
+        distinctUsers.record(bookmark("bob", MD5, "java"));
+        distinctUsers.record(bookmark("carol", null, "java"));
+        distinctUsers.record(bookmark(null, MD5, "java"));
+
+        assertEquals(2, distinctUsers.estimateUsersByUrl(UrlKey.fromHex(MD5)));
+        assertEquals(3, distinctUsers.estimateUsersByTag("java"));
+        assertEquals(1, distinctUsers.estimateUsersByTag("jvm"));
+        assertEquals(0, distinctUsers.estimateUsersByTag("python"));
+        assertEquals(1, distinctUsers.getUrlCount());
+        assertEquals(2, distinctUsers.getTagCount());
+        assertNull(distinctUsers.getTagSketch("python"));
+        assertEquals(3, distinctUsers.getTagSketch("java").estimate());
+    }
+
+    @Test
+    public void testMergeTimeWindows() throws Exception {
+        final DistinctUsers monday = new DistinctUsers();
+        final DistinctUsers tuesday = new DistinctUsers();
+
+        for (int i = 0; i < 5000; i++)
+            monday.record(bookmark("user" + i, MD5, "java"));
+
+        for (int i = 2500; i < 7500; i++)
+            tuesday.record(bookmark("user" + i, MD5, "jvm"));
+
+        final DistinctUsers week = new DistinctUsers();
+        week.merge(monday);
+        week.merge(tuesday);
+
+        assertEquals(7500, week.estimateUsersByUrl(UrlKey.fromHex(MD5)), 7500 * 0.05);
+        assertEquals(monday.estimateUsersByTag("java"), week.estimateUsersByTag("java"));
+        assertEquals(tuesday.estimateUsersByTag("jvm"), week.estimateUsersByTag("jvm"));
+
+        //Merging does not change the merged instances
+        assertEquals(0, monday.estimateUsersByTag("jvm"));
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final DistinctUsers distinctUsers = new DistinctUsers(10);
+
+        for (int i = 0; i < 3000; i++)
+            distinctUsers.record(bookmark("user" + i, MD5, "java", "tag" + (i % 10)));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        distinctUsers.writeTo(bytes);
+
+        final DistinctUsers read = DistinctUsers.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(10, read.getPrecision());
+        assertEquals(11, read.getTagCount());
+        assertEquals(distinctUsers.estimateUsersByUrl(UrlKey.fromHex(MD5)), read.estimateUsersByUrl(UrlKey.fromHex(MD5)));
+        assertEquals(distinctUsers.estimateUsersByTag("java"), read.estimateUsersByTag("java"));
+        assertEquals(distinctUsers.estimateUsersByTag("tag3"), read.estimateUsersByTag("tag3"));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testReadInvalidStream() throws Exception {
+        DistinctUsers.readFrom(new ByteArrayInputStream(new byte[]{'D', 'F', '4', 'B', 0, 0, 0, 1}));
+    }
+
+    private static Bookmark bookmark(String user, String md5, String... tags) {
+        final Bookmark bookmark = new Bookmark();
+        bookmark.setUser(user);
+        bookmark.setMd5(md5);
+        bookmark.setTags(new HashSet<String>(Arrays.asList(tags)));
+        return bookmark;
+    }
+}
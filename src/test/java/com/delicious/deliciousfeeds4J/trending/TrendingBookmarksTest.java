@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.trending;
+
+import com.delicious.deliciousfeeds4J.beans.Bookmark;
+import com.delicious.deliciousfeeds4J.url.UrlKey;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TrendingBookmarksTest {
+
+    private static final long NOW = 1350000000000L;
+
+    @Test
+    public void testSketchNeverEstimatesTooLow() throws Exception {
+        final CountMinSketch sketch = new CountMinSketch(4, 1000);
+
+        assertEquals(1024, sketch.getWidth());
+
+        for (int i = 0; i < 10000; i++)
+            sketch.add(key(i).getHigh(), key(i).getLow(), i % 10 + 1);
+
+        long overestimated = 0;
+
+        for (int i = 0; i < 10000; i++) {
+            final long estimate = sketch.estimate(key(i).getHigh(), key(i).getLow());
+
+            assertTrue(estimate >= i % 10 + 1);
+            overestimated += estimate - (i % 10 + 1);
+        }
+
+        //Mostly within e / width of the total count
+        assertEquals(55000, sketch.getTotal());
+        assertTrue(overestimated / 10000.0 < Math.E / 1024 * 55000);
+    }
+
+    @Test
+    public void testSketchMerge() throws Exception {
+        final CountMinSketch first = new CountMinSketch(4, 1024);
+        final CountMinSketch second = new CountMinSketch(4, 1024);
+
+        first.add(key(1).getHigh(), key(1).getLow(), 3);
+        second.add(key(1).getHigh(), key(1).getLow(), 4);
+
+        first.merge(second);
+
+        assertEquals(7, first.estimate(key(1).getHigh(), key(1).getLow()));
+        assertFalse(first.isCompatible(new CountMinSketch(4, 2048)));
+
+        first.clear();
+
+        assertEquals(0, first.estimate(key(1).getHigh(), key(1).getLow()));
+        assertEquals(0, first.getTotal());
+    }
+
+    @Test
+    public void testTopUrls() throws Exception {
+        final TrendingBookmarks trending = new TrendingBookmarks(1, TimeUnit.HOURS, 10);
+
+        record(trending, 1, 50, NOW);
+        record(trending, 2, 30, NOW);
+        record(trending, 3, 10, NOW);
+
+        //Noise of urls seen once
+        for (int i = 100; i < 5100; i++)
+            record(trending, i, 1, NOW);
+
+        final List<HeavyHitter<UrlKey>> top = trending.getTopUrls(3, NOW);
+
+        assertEquals(3, top.size());
+        assertEquals(key(1), top.get(0).getKey());
+        assertEquals(key(2), top.get(1).getKey());
+        assertEquals(key(3), top.get(2).getKey());
+        assertTrue(top.get(0).getCount() >= 50);
+        assertTrue(top.get(2).getCount() >= 10);
+    }
+
+    @Test
+    public void testTopTags() throws Exception {
+        final TrendingBookmarks trending = new TrendingBookmarks();
+
+        for (int i = 0; i < 20; i++) {
+            final Bookmark bookmark = new Bookmark();
+            bookmark.setTags(new HashSet<String>(i < 5 ? Arrays.asList("java", "jvm") : Arrays.asList("java")));
+            trending.record(bookmark);
+        }
+
+        final List<HeavyHitter<String>> top = trending.getTopTags(5);
+
+        assertEquals(2, top.size());
+        assertEquals(new HeavyHitter<String>("java", 20), top.get(0));
+        assertEquals(new HeavyHitter<String>("jvm", 5), top.get(1));
+        assertEquals(20, trending.estimateTagCount("java"));
+        assertEquals(0, trending.estimateTagCount("python"));
+    }
+
+    @Test
+    public void testWindowSlides() throws Exception {
+        final TrendingBookmarks trending = new TrendingBookmarks(60, TimeUnit.MINUTES, 10);
+        final long slice = TimeUnit.MINUTES.toMillis(5);
+
+        record(trending, 1, 10, NOW);
+        record(trending, 2, 5, NOW + 30 * slice / 5);
+
+        assertEquals(key(1), trending.getTopUrls(1, NOW + 30 * slice / 5).get(0).getKey());
+
+        //The first url fell out of the window
+        final List<HeavyHitter<UrlKey>> top = trending.getTopUrls(10, NOW + 12 * slice);
+
+        assertEquals(1, top.size());
+        assertEquals(new HeavyHitter<UrlKey>(key(2), 5), top.get(0));
+
+        //Older than the window - ignored
+        record(trending, 3, 100, NOW);
+
+        assertEquals(1, trending.getTopUrls(10, NOW + 12 * slice).size());
+    }
+
+    @Test
+    public void testCandidatesAreBounded() throws Exception {
+        final TrendingBookmarks trending = new TrendingBookmarks(1, TimeUnit.HOURS, 5);
+
+        for (int i = 0; i < 10000; i++)
+            record(trending, i, 1 + i % 3, NOW);
+
+        //A late heavy hitter still gets in
+        record(trending, 20000, 20, NOW);
+
+        assertEquals(key(20000), trending.getTopUrls(1, NOW).get(0).getKey());
+        assertEquals(5, trending.getTopUrls(5, NOW).size());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final TrendingBookmarks trending = new TrendingBookmarks(1, TimeUnit.HOURS, 10);
+        final CountDownLatch done = new CountDownLatch(4);
+        final AtomicInteger errors = new AtomicInteger();
+
+        for (int t = 0; t < 4; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 10000; i++)
+                            record(trending, i % 100, 1, NOW);
+                    } catch (Throwable ex) {
+                        errors.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(0, errors.get());
+
+        for (HeavyHitter<UrlKey> hitter : trending.getTopUrls(10, NOW))
+            assertEquals(400, hitter.getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyTopUrls() throws Exception {
+        new TrendingBookmarks(1, TimeUnit.HOURS, 10).getTopUrls(11);
+    }
+
+    private static void record(TrendingBookmarks trending, int url, int times, long timeMillis) {
+        final Bookmark bookmark = new Bookmark();
+        bookmark.setMd5(key(url).toHex());
+
+        for (int i = 0; i < times; i++)
+            trending.record(bookmark, timeMillis);
+    }
+
+    private static UrlKey key(int i) {
+        //Spread like real md5 hashes
+        long high = i * 0x9e3779b97f4a7c15L;
+        high ^= high >>> 31;
+        return new UrlKey(high * 0xbf58476d1ce4e5b9L, (high ^ (high >>> 29)) * 0x94d049bb133111ebL);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2013 by Patrick Meier.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.delicious.deliciousfeeds4J.url;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
+import static org.junit.Assert.*;
+
+public class UrlIdentityTest {
+
+    private final UrlIdentity urlIdentity = new UrlIdentity(100);
+
+    @Test
+    public void testHashMatchesCommonsCodec() throws Exception {
+        assertEquals(md5Hex("http://namechk.com/"), UrlIdentity.hash("http://namechk.com/").toHex());
+        assertEquals(md5Hex(""), UrlIdentity.hash("").toHex());
+
+        final String nonAscii = "http://example.com/über/日本";
+        assertEquals(md5Hex(nonAscii), UrlIdentity.hash(nonAscii).toHex());
+
+        final StringBuilder longUrl = new StringBuilder("http://example.com/");
+        for (int i = 0; i < 100; i++)
+            longUrl.append("segment").append(i).append('/');
+
+        assertEquals(md5Hex(longUrl.toString()), UrlIdentity.hash(longUrl.toString()).toHex());
+    }
+
+    @Test
+    public void testKeyOf() throws Exception {
+        final UrlKey key = urlIdentity.keyOf("http://namechk.com/");
+
+        assertEquals("80e661f28a8f9fb62b4003af90fad6ed", key.toHex());
+        assertSame(key, urlIdentity.keyOf("http://namechk.com/"));
+        assertEquals(key, urlIdentity.keyOf("  HTTP://NameChk.com:80/  "));
+    }
+
+    @Test
+    public void testKeyOfWithoutCache() throws Exception {
+        final UrlIdentity uncached = new UrlIdentity(0);
+
+        assertEquals(urlIdentity.keyOf("http://namechk.com/"), uncached.keyOf("http://namechk.com/"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeyOfWithoutUrl() throws Exception {
+        urlIdentity.keyOf("");
+    }
+
+    @Test
+    public void testCanonicalize() throws Exception {
+        final String url = "http://namechk.com/";
+        assertSame(url, UrlIdentity.canonicalize(url));
+
+        assertEquals("https://example.com/Path?Q=1#Frag", UrlIdentity.canonicalize("HTTPS://Example.COM:443/Path?Q=1#Frag"));
+        assertEquals("http://User@example.com:8080", UrlIdentity.canonicalize("http://User@EXAMPLE.com:8080"));
+        assertEquals("http://example.com?a=B", UrlIdentity.canonicalize("http://example.com:80?a=B"));
+        assertEquals("not a url", UrlIdentity.canonicalize(" not a url "));
+    }
+
+    @Test
+    public void testCanonicalizeIgnoresDefaultLocale() throws Exception {
+        final Locale locale = Locale.getDefault();
+
+        //Lower-casing "I" gives a dotless i in Turkish
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertEquals("http://wiki.org/Index", UrlIdentity.canonicalize("HTTP://WIKI.ORG/Index"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void testUrlKeyFromHex() throws Exception {
+        final UrlKey key = UrlKey.fromHex("4967EF979FCA2B4629C3D5AD70F83C01");
+
+        assertEquals("4967ef979fca2b4629c3d5ad70f83c01", key.toHex());
+        assertEquals(key, UrlKey.fromHex("4967ef979fca2b4629c3d5ad70f83c01"));
+        assertEquals(key.hashCode(), UrlKey.fromHex("4967ef979fca2b4629c3d5ad70f83c01").hashCode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUrlKeyFromInvalidHex() throws Exception {
+        UrlKey.fromHex("4967ef979fca2b4629c3d5ad70f83cXX");
+    }
+
+    @Test
+    public void testUrlKeyTryFromHex() throws Exception {
+        assertEquals(UrlKey.fromHex("4967ef979fca2b4629c3d5ad70f83c01"), UrlKey.tryFromHex("4967EF979FCA2B4629C3D5AD70F83C01"));
+
+        assertNull(UrlKey.tryFromHex(null));
+        assertNull(UrlKey.tryFromHex("4967ef979fca2b4629c3d5ad70f83c"));
+        assertNull(UrlKey.tryFromHex("4967ef979fca2b4629c3d5ad70f83cXX"));
+
+        //Digits of other scripts are not hex
+        assertNull(UrlKey.tryFromHex("4967ef979fca2b4629c3d5ad70f83c\uff10\uff11"));
+        assertNull(UrlKey.tryFromHex("4967ef979fca2b4629c3d5ad70f83c\u0660\u0661"));
+    }
+}